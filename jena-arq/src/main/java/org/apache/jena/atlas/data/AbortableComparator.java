@@ -53,10 +53,27 @@ public final class AbortableComparator<E> implements Comparator<E> {
      * ability to abort the sort.
      */
     public Finish abortableSort(E[] e) {
+        return abortableSort(e, false);
+    }
+
+    /**
+     * Sort the array <code>e</code> using this comparator with the additional
+     * ability to abort the sort, optionally using a parallel sort. A parallel
+     * sort calls the comparator from several threads.
+     */
+    public Finish abortableSort(E[] e, boolean parallel) {
         try {
-            Arrays.sort(e, this);
+            if (parallel)
+                Arrays.parallelSort(e, this);
+            else
+                Arrays.sort(e, this);
         } catch (AbandonSort s) {
             return Finish.ABORTED;
+        } catch (RuntimeException ex) {
+            // A parallel sort may rethrow an AbandonSort from another thread wrapped.
+            if (cancelled)
+                return Finish.ABORTED;
+            throw ex;
         }
         return Finish.COMPLETED;
     }
@@ -50,6 +50,14 @@ public class BagFactory
         return new SortedDataBag<>(policy, serializerFactory, comparator);
     }
     
+    /**
+     * Get a sorted data bag, which may sort using several threads.
+     */
+    public static <T> SortedDataBag<T> newSortedBag(ThresholdPolicy<T> policy, SerializationFactory<T> serializerFactory, Comparator<T> comparator, boolean parallel)
+    {
+        return new SortedDataBag<>(policy, serializerFactory, comparator, parallel);
+    }
+    
     /**
      * Get a distinct data bag.
      */
@@ -159,7 +159,9 @@ public class DefaultDataBag<E> extends AbstractDataBag<E>
         closeWriter();
         
         // Create a new reader
-        if (policy.isThresholdExceeded())
+        // The threshold may have been reached without anything being written
+        // (e.g. exactly the threshold number of items), so check for a spill file.
+        if (spilled)
         {
             File spillFile = getSpillFiles().get(0);
             
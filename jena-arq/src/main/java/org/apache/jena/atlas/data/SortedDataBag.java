@@ -29,10 +29,17 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.jena.atlas.AtlasException;
 import org.apache.jena.atlas.data.AbortableComparator.Finish;
+import org.apache.jena.atlas.io.IO;
 import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.atlas.iterator.IteratorResourceClosing;
 import org.apache.jena.atlas.lib.Closeable;
@@ -64,6 +71,15 @@ import org.apache.jena.atlas.lib.Sink;
  * Implementation Notes: Data is stored in an ArrayList as it comes in. When it
  * is time to spill, that data is sorted and written to disk. An iterator will
  * read in each file and perform a merge-sort as the results are returned.
+ * The files are merged with a loser tree, so each item read needs about
+ * log2(number of files) comparisons.
+ * </p>
+ * <p>
+ * If the bag is created as parallel, the items are sorted with a parallel sort, and
+ * each spill is sorted and written in the background while the next items are
+ * gathered, so up to twice the threshold may be held in memory. The background
+ * writes use a pool of daemon threads, one per processor, shared by all bags.
+ * The comparator must be safe to call from several threads.
  * </p>
  */
 public class SortedDataBag<E> extends AbstractDataBag<E> {
@@ -73,9 +89,28 @@ public class SortedDataBag<E> extends AbstractDataBag<E> {
      */
     protected static int MAX_SPILL_FILES = 100;
 
+    // Threads writing spills in the background. Each bag has at most one spill in the background.
+    private static final ExecutorService spillExecutor;
+    static {
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger(0);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            r -> {
+                Thread thread = new Thread(r, "SortedDataBag-spill-"+counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+        spillExecutor = executor;
+    }
+
     protected final ThresholdPolicy<E> policy;
     protected final SerializationFactory<E> serializationFactory;
     protected final AbortableComparator<E> comparator;
+    protected final boolean parallel;
+    // The spill being written in the background (parallel only).
+    private CompletableFuture<Void> pendingSpill = null;
 
     protected boolean finishedAdding = false;
     protected boolean spilled = false;
@@ -83,9 +118,15 @@ public class SortedDataBag<E> extends AbstractDataBag<E> {
 
     public SortedDataBag(ThresholdPolicy<E> policy, SerializationFactory<E> serializerFactory,
             Comparator<? super E> comparator) {
+        this(policy, serializerFactory, comparator, false);
+    }
+
+    public SortedDataBag(ThresholdPolicy<E> policy, SerializationFactory<E> serializerFactory,
+            Comparator<? super E> comparator, boolean parallel) {
         this.policy = policy;
         this.serializationFactory = serializerFactory;
         this.comparator = new AbortableComparator<>(comparator);
+        this.parallel = parallel;
     }
 
     /**
@@ -155,32 +196,61 @@ public class SortedDataBag<E> extends AbstractDataBag<E> {
                 throw new AtlasException(e);
             }
 
-            // Sort the tuples as an array. The CanAbortComparator will sort
-            // the array using Arrays.sort. The cast to E[] is safe. If the sort is
-            // aborted, don't bother messing around with the serialisation.
-            // We'll never get around to using it anyway.
-
+            // The cast to E[] is safe.
             E[] array = (E[]) memory.toArray();
-            if (comparator.abortableSort(array) == Finish.COMPLETED) {
-                Sink<E> serializer = serializationFactory.createSerializer(out);
-                try {
-                    for (Object tuple : array) {
-                        serializer.send((E) tuple);
-                    }
-                } finally {
-                    serializer.close();
-                }
-            }
-
             spilled = true;
             policy.reset();
             memory.clear();
+
+            if (parallel) {
+                // At most one spill in the background.
+                awaitSpill();
+                pendingSpill = CompletableFuture.runAsync(() -> write(array, out), spillExecutor);
+            } else {
+                write(array, out);
+            }
+        }
+    }
+
+    /**
+     * Sort the tuples and write them out. The AbortableComparator will sort the array.
+     * If the sort is aborted, don't bother messing around with the serialisation.
+     * We'll never get around to using it anyway.
+     */
+    private void write(E[] array, OutputStream out) {
+        if (comparator.abortableSort(array, parallel) == Finish.COMPLETED) {
+            Sink<E> serializer = serializationFactory.createSerializer(out);
+            try {
+                for (E tuple : array) {
+                    serializer.send(tuple);
+                }
+            } finally {
+                serializer.close();
+            }
+        } else {
+            IO.close(out);
+        }
+    }
+
+    /** Wait for any spill being written in the background. */
+    protected void awaitSpill() {
+        if (pendingSpill == null)
+            return;
+        try {
+            pendingSpill.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException)ex.getCause();
+            throw new AtlasException(ex.getCause());
+        } finally {
+            pendingSpill = null;
         }
     }
 
     @Override
     public void flush() {
         spill();
+        awaitSpill();
     }
 
     protected Iterator<E> getInputIterator(File spillFile) throws FileNotFoundException {
@@ -199,6 +269,7 @@ public class SortedDataBag<E> extends AbstractDataBag<E> {
      */
     @Override
     public Iterator<E> iterator() {
+        awaitSpill();
         preMerge();
 
         return iterator(getSpillFiles().size());
@@ -214,7 +285,7 @@ public class SortedDataBag<E> extends AbstractDataBag<E> {
         // like all the the other methods)
         if (!finishedAdding && memSize > 1) {
             E[] array = (E[]) memory.toArray();
-            comparator.abortableSort(array); // don't care if we aborted or not
+            comparator.abortableSort(array, parallel); // don't care if we aborted or not
             memory = Arrays.asList(array);
         }
 
@@ -292,6 +363,11 @@ public class SortedDataBag<E> extends AbstractDataBag<E> {
     @Override
     public void close() {
         if (!closed) {
+            try {
+                awaitSpill();
+            } catch (RuntimeException ex) {
+                // Closing anyway.
+            }
             closeIterators();
             deleteSpillFiles();
 
@@ -302,47 +378,90 @@ public class SortedDataBag<E> extends AbstractDataBag<E> {
 
     /**
      * An iterator that handles getting the next tuple from the bag.
+     * <p>
+     * The inputs are merged with a loser tree: each internal node holds the input that
+     * lost the comparison there, and the overall winner is at the top, so replacing the
+     * winner needs one comparison for each level of the tree.
      */
     protected static class SpillSortIterator<T> implements Iterator<T>, Closeable {
         private final List<Iterator<T>> inputs;
         private final Comparator<? super T> comp;
-        private final PriorityQueue<Item<T>> minHeap;
+        private final int k;
+        // Current item of each input; an input is finished when its entry is null.
+        private final Object[] heads;
+        // tree[0] is the winner, tree[1..k-1] the losers; the leaf of input i is at k+i.
+        private final int[] tree;
 
         public SpillSortIterator(List<Iterator<T>> inputs, Comparator<? super T> comp) {
             this.inputs = inputs;
             this.comp = comp;
-            this.minHeap = new PriorityQueue<>(inputs.size());
-
-            // Prime the heap
-            for (int i = 0; i < inputs.size(); i++) {
-                replaceItem(i);
+            this.k = inputs.size();
+            this.heads = new Object[k];
+            this.tree = new int[Math.max(1, k)];
+            for (int i = 0; i < k; i++) {
+                advance(i);
+            }
+            if (k > 0) {
+                tree[0] = build(1);
             }
         }
 
-        private void replaceItem(int index) {
+        private void advance(int index) {
             Iterator<T> it = inputs.get(index);
-            if (it.hasNext()) {
-                T tuple = it.next();
-                minHeap.add(new Item<>(index, tuple, comp));
+            heads[index] = it.hasNext() ? it.next() : null;
+        }
+
+        /** Play the matches below a node; returns the winner. */
+        private int build(int node) {
+            if (node >= k) {
+                return node - k;
+            }
+            int w1 = build(2 * node);
+            int w2 = build(2 * node + 1);
+            if (beats(w1, w2)) {
+                tree[node] = w2;
+                return w1;
+            }
+            tree[node] = w1;
+            return w2;
+        }
+
+        /** Whether the item of input a comes before the item of input b. */
+        @SuppressWarnings("unchecked")
+        private boolean beats(int a, int b) {
+            T x = (T)heads[a];
+            T y = (T)heads[b];
+            if (x == null || y == null) {
+                return y == null && (x != null || a < b);
             }
+            int c = (null != comp) ? comp.compare(x, y) : ((Comparable<T>) x).compareTo(y);
+            return c < 0 || (c == 0 && a < b);
         }
 
         @Override
         public boolean hasNext() {
-            return (minHeap.peek() != null);
+            return k > 0 && heads[tree[0]] != null;
         }
 
         @Override
+        @SuppressWarnings("unchecked")
         public T next() {
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
-
-            Item<T> curr = minHeap.poll();
-            // Read replacement item
-            replaceItem(curr.getIndex());
-
-            return curr.getTuple();
+            int winner = tree[0];
+            T tuple = (T)heads[winner];
+            // Read replacement item and replay from its leaf to the top.
+            advance(winner);
+            for (int node = (winner + k) / 2; node > 0; node = node / 2) {
+                if (beats(tree[node], winner)) {
+                    int loser = winner;
+                    winner = tree[node];
+                    tree[node] = loser;
+                }
+            }
+            tree[0] = winner;
+            return tuple;
         }
 
         @Override
@@ -356,48 +475,6 @@ public class SortedDataBag<E> extends AbstractDataBag<E> {
                 Iter.close(it);
             }
         }
-
-        private final class Item<U> implements Comparable<Item<U>> {
-            private final int index;
-            private final U tuple;
-            private final Comparator<? super U> c;
-
-            public Item(int index, U tuple, Comparator<? super U> c) {
-                this.index = index;
-                this.tuple = tuple;
-                this.c = c;
-            }
-
-            public int getIndex() {
-                return index;
-            }
-
-            public U getTuple() {
-                return tuple;
-            }
-
-            @Override
-            @SuppressWarnings("unchecked")
-            public int compareTo(Item<U> o) {
-                return (null != c) ? c.compare(tuple, o.getTuple()) : ((Comparable<U>) tuple).compareTo(o.getTuple());
-            }
-
-            @SuppressWarnings("unchecked")
-            @Override
-            public boolean equals(Object obj) {
-                if (obj instanceof Item) {
-                    return compareTo((Item<U>) obj) == 0;
-                }
-
-                return false;
-            }
-
-            @Override
-            public int hashCode() {
-                return tuple.hashCode();
-            }
-        }
-
     }
 
 }
@@ -200,6 +200,13 @@ public class ARQ
      */
     public static final Symbol stageGenerator = SystemARQ.allocSymbol("stageGenerator") ;
 
+    /**
+     * Context key for the {@link org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformation}
+     * used by the general purpose basic graph pattern execution. If not set, a fixed
+     * reordering based on how grounded each triple pattern is, is used.
+     */
+    public static final Symbol reorderTransformation = SystemARQ.allocSymbol("reorderTransformation") ;
+
     /**
      * Context key to control hiding non-distinuished variables
      */
@@ -275,7 +282,7 @@ public class ARQ
      * choosing the value.
      * <p/>
      * Operations currently affected by this symbol: <br>
-     * ORDER BY, SPARQL Update, CONSTRUCT (optionally)
+     * ORDER BY, DISTINCT, GROUP BY, hash joins, SPARQL Update, CONSTRUCT (optionally)
      * <p/>
      * TODO: Give a reasonable suggested value here.  10,000?
      * <p/>
@@ -286,6 +293,41 @@ public class ARQ
     // Hash table: GROUP BY, MINUS, SERVICE, VALUES, and hash joins <br>
     public static final Symbol spillToDiskThreshold = SystemARQ.allocSymbol("spillToDiskThreshold") ;
 
+    /**
+     * The format of the temporary files written when {@link #spillToDiskThreshold} is passed:
+     * "binary" (the default), "compressed" (binary, compressed with deflate) or "text".
+     * The text format is slower to read back but can be read by a person.
+     */
+    public static final Symbol spillFormat = SystemARQ.allocSymbol("spillFormat") ;
+
+    /**
+     * Whether ORDER BY sorts using several threads (default: false).
+     * Large sorts are split into chunks that are sorted in parallel and the chunks
+     * that pass {@link #spillToDiskThreshold} are written out in the background.
+     */
+    public static final Symbol parallelSort = SystemARQ.allocSymbol("parallelSort") ;
+
+    /**
+     * The number of UNION branches, or sides of a join that do not depend on each other,
+     * that are evaluated at the same time, each on its own thread (an integer).
+     * Default: not set, meaning evaluate one after another.
+     * <p>
+     * Rows from the branches of a UNION are returned in the order they arrive.
+     * Parallel evaluation is only used when there is no transaction or a read transaction
+     * that other threads can take part in.
+     */
+    public static final Symbol parallelBranches = SystemARQ.allocSymbol("parallelBranches") ;
+
+    /**
+     * The number of threads, shared by all queries, for evaluating branches at the same time
+     * (see {@link #parallelBranches}) (an integer).
+     * Default: twice the number of processors.
+     * <p>
+     * This is read from the global context when parallel evaluation is first used.
+     * When all the threads are busy, branches are evaluated one after another on the query's thread.
+     */
+    public static final Symbol parallelThreads = SystemARQ.allocSymbol("parallelThreads") ;
+
     // Optimizer controls.
 
     /**
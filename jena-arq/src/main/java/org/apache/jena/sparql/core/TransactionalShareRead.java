@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.core;
+
+/**
+ * A {@link Transactional} where other threads can take part in the read transaction
+ * of a thread, for example to evaluate parts of a query at the same time.
+ */
+public interface TransactionalShareRead
+{
+    /**
+     * Wrap a task so that, when it is run on another thread, it runs in the read
+     * transaction of the calling thread. The calling thread must not end the
+     * transaction until the task has finished.
+     * <p>
+     * Returns null if the calling thread is not in a read transaction.
+     */
+    public Runnable shareRead(Runnable task);
+}
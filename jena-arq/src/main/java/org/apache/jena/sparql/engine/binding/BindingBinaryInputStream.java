@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.binding;
+
+import static org.apache.jena.sparql.engine.binding.BindingBinaryOutputStream.* ;
+
+import java.io.* ;
+import java.nio.charset.StandardCharsets ;
+import java.util.ArrayList ;
+import java.util.List ;
+import java.util.zip.Inflater ;
+import java.util.zip.InflaterInputStream ;
+
+import org.apache.jena.atlas.io.IO ;
+import org.apache.jena.atlas.iterator.IteratorSlotted ;
+import org.apache.jena.atlas.lib.Closeable ;
+import org.apache.jena.datatypes.TypeMapper ;
+import org.apache.jena.graph.Node ;
+import org.apache.jena.graph.NodeFactory ;
+import org.apache.jena.sparql.ARQException ;
+import org.apache.jena.sparql.core.Var ;
+
+/** Reader for the binary form of bindings written by {@link BindingBinaryOutputStream}. */
+public class BindingBinaryInputStream extends IteratorSlotted<Binding> implements Closeable
+{
+    private final DataInputStream in ;
+    private final Inflater inflater ;
+    private final List<Var> vars = new ArrayList<>() ;
+    private final List<Node> terms = new ArrayList<>() ;
+    private byte[] buffer = new byte[128] ;
+
+    public BindingBinaryInputStream(InputStream in)
+    {
+        this(in, false) ;
+    }
+
+    public BindingBinaryInputStream(InputStream in, boolean compressed)
+    {
+        if ( compressed )
+        {
+            inflater = new Inflater() ;
+            in = new InflaterInputStream(in, inflater, BufferSize) ;
+        }
+        else
+            inflater = null ;
+        this.in = new DataInputStream(new BufferedInputStream(in, BufferSize)) ;
+    }
+
+    @Override
+    protected boolean hasMore()
+    {
+        return true ;
+    }
+
+    @Override
+    protected Binding moveToNext()
+    {
+        try {
+            int first = in.read() ;
+            if ( first < 0 )
+                return null ;
+            int N = readInt(first) ;
+            BindingMap binding = BindingFactory.create() ;
+            for ( int i = 0 ; i < N ; i++ )
+            {
+                Var v = readVar() ;
+                Node n = readNode() ;
+                binding.add(v, n) ;
+            }
+            return binding ;
+        } catch (IOException ex) { IO.exception(ex) ; return null ; }
+    }
+
+    private Var readVar() throws IOException
+    {
+        int id = readInt(in.readUnsignedByte()) ;
+        if ( id > 0 )
+            return vars.get(id-1) ;
+        Var v = Var.alloc(readString()) ;
+        vars.add(v) ;
+        return v ;
+    }
+
+    private Node readNode() throws IOException
+    {
+        int id = readInt(in.readUnsignedByte()) ;
+        if ( id > 0 )
+            return terms.get(id-1) ;
+        Node n = readTerm() ;
+        if ( terms.size() < MaxTerms )
+            terms.add(n) ;
+        return n ;
+    }
+
+    private Node readTerm() throws IOException
+    {
+        int kind = in.readUnsignedByte() ;
+        switch (kind)
+        {
+            case URI :
+                return NodeFactory.createURI(readString()) ;
+            case BNODE :
+                return NodeFactory.createBlankNode(readString()) ;
+            case STRING :
+                return NodeFactory.createLiteral(readString()) ;
+            case LANG : {
+                String lex = readString() ;
+                return NodeFactory.createLiteral(lex, readString()) ;
+            }
+            case TYPED : {
+                String lex = readString() ;
+                String datatype = readString() ;
+                return NodeFactory.createLiteral(lex, TypeMapper.getInstance().getSafeTypeByName(datatype)) ;
+            }
+            case TRIPLE : {
+                Node s = readNode() ;
+                Node p = readNode() ;
+                Node o = readNode() ;
+                return NodeFactory.createTripleNode(s, p, o) ;
+            }
+            case VARIABLE :
+                return Var.alloc(readString()) ;
+            default :
+                throw new ARQException("Bad term kind in binary bindings: "+kind) ;
+        }
+    }
+
+    private String readString() throws IOException
+    {
+        int len = readInt(in.readUnsignedByte()) ;
+        if ( len > buffer.length )
+            buffer = new byte[Math.max(len, 2*buffer.length)] ;
+        in.readFully(buffer, 0, len) ;
+        return new String(buffer, 0, len, StandardCharsets.UTF_8) ;
+    }
+
+    /** Unsigned variable length integer, given the first byte. */
+    private int readInt(int b) throws IOException
+    {
+        int x = b & 0x7F ;
+        int shift = 7 ;
+        while ( ( b & 0x80 ) != 0 )
+        {
+            b = in.readUnsignedByte() ;
+            x |= ( b & 0x7F ) << shift ;
+            shift += 7 ;
+        }
+        return x ;
+    }
+
+    @Override
+    protected void closeIterator()
+    {
+        try {
+            IO.close(in) ;
+        } finally {
+            if ( inflater != null )
+                inflater.end() ;
+        }
+    }
+}
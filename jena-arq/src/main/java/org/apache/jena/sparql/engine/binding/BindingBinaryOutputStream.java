@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.binding;
+
+import java.io.BufferedOutputStream ;
+import java.io.DataOutputStream ;
+import java.io.IOException ;
+import java.io.OutputStream ;
+import java.nio.charset.StandardCharsets ;
+import java.util.HashMap ;
+import java.util.List ;
+import java.util.Map ;
+import java.util.zip.Deflater ;
+import java.util.zip.DeflaterOutputStream ;
+
+import org.apache.jena.atlas.io.IO ;
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.atlas.lib.Sink ;
+import org.apache.jena.datatypes.xsd.XSDDatatype ;
+import org.apache.jena.graph.Node ;
+import org.apache.jena.graph.Node_Triple ;
+import org.apache.jena.graph.Triple ;
+import org.apache.jena.sparql.ARQException ;
+import org.apache.jena.sparql.core.Var ;
+
+/**
+ * Writer for a compact binary form of bindings, used for temporary files.
+ * Read with {@link BindingBinaryInputStream}.
+ * <p>
+ * Each binding is the number of variables, then a variable and a term for each.
+ * Variables and terms are written in full the first time they are seen in the stream
+ * and after that by number, so repeated terms cost a few bytes. Strings are UTF-8,
+ * prefixed by their length. The whole stream can be compressed with deflate.
+ */
+public class BindingBinaryOutputStream implements Sink<Binding>
+{
+    // Term kinds.
+    static final int URI        = 1 ;
+    static final int BNODE      = 2 ;
+    static final int STRING     = 3 ;
+    static final int LANG       = 4 ;
+    static final int TYPED      = 5 ;
+    static final int TRIPLE     = 6 ;
+    static final int VARIABLE   = 7 ;
+
+    /** Largest number of terms remembered. After this, new terms are always written in full. */
+    static final int MaxTerms   = 100_000 ;
+
+    static final int BufferSize = 64*1024 ;
+
+    private final DataOutputStream out ;
+    private final Deflater deflater ;
+    private final Map<Var, Integer> vars = new HashMap<>() ;
+    private final Map<Node, Integer> terms = new HashMap<>() ;
+
+    public BindingBinaryOutputStream(OutputStream out)
+    {
+        this(out, false) ;
+    }
+
+    public BindingBinaryOutputStream(OutputStream out, boolean compressed)
+    {
+        if ( compressed )
+        {
+            deflater = new Deflater(Deflater.BEST_SPEED) ;
+            out = new DeflaterOutputStream(out, deflater, BufferSize) ;
+        }
+        else
+            deflater = null ;
+        this.out = new DataOutputStream(new BufferedOutputStream(out, BufferSize)) ;
+    }
+
+    public final void write(Binding binding) { send(binding) ; }
+
+    @Override
+    public void send(Binding binding)
+    {
+        try {
+            List<Var> x = Iter.toList(binding.vars()) ;
+            writeInt(x.size()) ;
+            for ( Var v : x )
+            {
+                writeVar(v) ;
+                writeNode(binding.get(v)) ;
+            }
+        } catch (IOException ex) { IO.exception(ex) ; }
+    }
+
+    private void writeVar(Var v) throws IOException
+    {
+        Integer id = vars.get(v) ;
+        if ( id != null )
+        {
+            writeInt(id+1) ;
+            return ;
+        }
+        vars.put(v, vars.size()) ;
+        writeInt(0) ;
+        writeString(v.getVarName()) ;
+    }
+
+    private void writeNode(Node n) throws IOException
+    {
+        Integer id = terms.get(n) ;
+        if ( id != null )
+        {
+            writeInt(id+1) ;
+            return ;
+        }
+        writeInt(0) ;
+        writeTerm(n) ;
+        // After writing the term so that any terms of a triple term come first.
+        if ( terms.size() < MaxTerms )
+            terms.put(n, terms.size()) ;
+    }
+
+    private void writeTerm(Node n) throws IOException
+    {
+        if ( n.isURI() )
+        {
+            out.write(URI) ;
+            writeString(n.getURI()) ;
+        }
+        else if ( n.isBlank() )
+        {
+            out.write(BNODE) ;
+            writeString(n.getBlankNodeLabel()) ;
+        }
+        else if ( n.isLiteral() )
+        {
+            String lang = n.getLiteralLanguage() ;
+            if ( lang != null && ! lang.isEmpty() )
+            {
+                out.write(LANG) ;
+                writeString(n.getLiteralLexicalForm()) ;
+                writeString(lang) ;
+            }
+            else if ( XSDDatatype.XSDstring.getURI().equals(n.getLiteralDatatypeURI()) )
+            {
+                out.write(STRING) ;
+                writeString(n.getLiteralLexicalForm()) ;
+            }
+            else
+            {
+                out.write(TYPED) ;
+                writeString(n.getLiteralLexicalForm()) ;
+                writeString(n.getLiteralDatatypeURI()) ;
+            }
+        }
+        else if ( n.isNodeTriple() )
+        {
+            out.write(TRIPLE) ;
+            Triple t = Node_Triple.triple(n) ;
+            writeNode(t.getSubject()) ;
+            writeNode(t.getPredicate()) ;
+            writeNode(t.getObject()) ;
+        }
+        else if ( n.isVariable() )
+        {
+            out.write(VARIABLE) ;
+            writeString(n.getName()) ;
+        }
+        else
+            throw new ARQException("Can't write node: "+n) ;
+    }
+
+    private void writeString(String str) throws IOException
+    {
+        byte[] b = str.getBytes(StandardCharsets.UTF_8) ;
+        writeInt(b.length) ;
+        out.write(b) ;
+    }
+
+    /** Unsigned variable length integer, 7 bits a byte. */
+    private void writeInt(int x) throws IOException
+    {
+        while ( ( x & ~0x7F ) != 0 )
+        {
+            out.write(( x & 0x7F ) | 0x80) ;
+            x = x >>> 7 ;
+        }
+        out.write(x) ;
+    }
+
+    @Override
+    public void flush()
+    {
+        IO.flush(out) ;
+    }
+
+    @Override
+    public void close()
+    {
+        try {
+            IO.close(out) ;
+        } finally {
+            if ( deflater != null )
+                deflater.end() ;
+        }
+    }
+}
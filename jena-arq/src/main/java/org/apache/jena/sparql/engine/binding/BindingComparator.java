@@ -68,6 +68,43 @@ public class BindingComparator implements java.util.Comparator<Binding>
     
     public List<SortCondition> getConditions() { return Collections.unmodifiableList(conditions) ; } 
 
+    /**
+     * A binding with the values of the sort conditions worked out, so that sorting
+     * does not evaluate the sort expressions on every comparison. Comparing such
+     * bindings does not evaluate any expressions, so it can be done from several
+     * threads at once.
+     * <p>
+     * Use {@link #unwrap} to get the original binding.
+     */
+    public Binding withSortKeys(Binding binding)
+    {
+        if ( binding instanceof BindingSortKeys )
+            return binding ;
+        NodeValue[] keys = new NodeValue[conditions.size()] ;
+        for ( int i = 0 ; i < keys.length ; i++ )
+            keys[i] = key(conditions.get(i), binding) ;
+        return new BindingSortKeys(binding, keys) ;
+    }
+
+    /** The original binding of one from {@link #withSortKeys}. */
+    public static Binding unwrap(Binding binding)
+    {
+        if ( binding instanceof BindingSortKeys )
+            return ((BindingSortKeys)binding).getWrapped() ;
+        return binding ;
+    }
+
+    private static class BindingSortKeys extends BindingWrapped
+    {
+        private final NodeValue[] keys ;
+
+        BindingSortKeys(Binding binding, NodeValue[] keys)
+        {
+            super(binding) ;
+            this.keys = keys ;
+        }
+    }
+
     // Compare bindings by iterating.
     // Node comparsion is:
     //  Compare by 
@@ -75,42 +112,13 @@ public class BindingComparator implements java.util.Comparator<Binding>
     @Override
     public int compare(Binding bind1, Binding bind2)
     {
-        for ( SortCondition sc : conditions )
+        NodeValue[] keys1 = ( bind1 instanceof BindingSortKeys ) ? ((BindingSortKeys)bind1).keys : null ;
+        NodeValue[] keys2 = ( bind2 instanceof BindingSortKeys ) ? ((BindingSortKeys)bind2).keys : null ;
+        for ( int i = 0 ; i < conditions.size() ; i++ )
         {
-            if ( sc.expression == null )
-            {
-                throw new QueryExecException( "Broken sort condition" );
-            }
-
-            NodeValue nv1 = null;
-            NodeValue nv2 = null;
-
-            try
-            {
-                nv1 = sc.expression.eval( bind1, env );
-            }
-            catch ( VariableNotBoundException ex )
-            {
-            }
-            catch ( ExprEvalException ex )
-            {
-                Log.warn( this, ex.getMessage() );
-            }
-
-            try
-            {
-                nv2 = sc.expression.eval( bind2, env );
-            }
-            catch ( VariableNotBoundException ex )
-            {
-            }
-            catch ( ExprEvalException ex )
-            {
-                Log.warn( this, ex.getMessage() );
-            }
-
-            Node n1 = NodeValue.toNode( nv1 );
-            Node n2 = NodeValue.toNode( nv2 );
+            SortCondition sc = conditions.get(i) ;
+            NodeValue nv1 = ( keys1 != null ) ? keys1[i] : key(sc, bind1) ;
+            NodeValue nv2 = ( keys2 != null ) ? keys2[i] : key(sc, bind2) ;
             int x = compareNodes( nv1, nv2, sc.direction );
             if ( x != Expr.CMP_EQUAL )
             {
@@ -118,9 +126,30 @@ public class BindingComparator implements java.util.Comparator<Binding>
             }
         }
         // Same by the SortConditions - now do any extra tests to make sure they are unique.
-        return compareBindingsSyntactic(bind1, bind2) ;
+        return compareBindingsSyntactic(unwrap(bind1), unwrap(bind2)) ;
         //return 0 ;
     }
+
+    private NodeValue key(SortCondition sc, Binding binding)
+    {
+        if ( sc.expression == null )
+        {
+            throw new QueryExecException( "Broken sort condition" );
+        }
+
+        try
+        {
+            return sc.expression.eval( binding, env );
+        }
+        catch ( VariableNotBoundException ex )
+        {
+        }
+        catch ( ExprEvalException ex )
+        {
+            Log.warn( this, ex.getMessage() );
+        }
+        return null ;
+    }
     
     private static int compareNodes(NodeValue nv1, NodeValue nv2, int direction)
     {
@@ -96,7 +96,7 @@ public class QueryIterDistinct extends QueryIter1
     private void loadDataBag() {
         ThresholdPolicy<Binding> policy = ThresholdPolicyFactory.policyFromContext(super.getExecContext().getContext()) ;
         Comparator<Binding> comparator = new BindingComparator(preserveOrder, super.getExecContext()) ;
-        this.db = BagFactory.newDistinctBag(policy, SerializationFactoryFinder.bindingSerializationFactory(), comparator) ;
+        this.db = BagFactory.newDistinctBag(policy, SerializationFactoryFinder.bindingSerializationFactory(super.getExecContext().getContext()), comparator) ;
         for(;;) {
             Binding b = getInputNextUnseen() ;
             if ( b == null )
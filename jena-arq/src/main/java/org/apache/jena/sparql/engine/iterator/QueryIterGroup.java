@@ -18,17 +18,21 @@
 
 package org.apache.jena.sparql.engine.iterator;
 
-import java.util.ArrayList ;
-import java.util.Collection ;
-import java.util.Iterator ;
-import java.util.List ;
+import java.util.* ;
 
+import org.apache.jena.atlas.data.BagFactory ;
+import org.apache.jena.atlas.data.SortedDataBag ;
+import org.apache.jena.atlas.data.ThresholdPolicyFactory ;
 import org.apache.jena.atlas.iterator.Iter ;
 import org.apache.jena.atlas.iterator.IteratorDelayedInitialization ;
+import org.apache.jena.atlas.iterator.IteratorSlotted ;
+import org.apache.jena.atlas.lib.Closeable ;
 import org.apache.jena.atlas.lib.Pair ;
 import org.apache.jena.ext.com.google.common.collect.Multimap;
 import org.apache.jena.ext.com.google.common.collect.MultimapBuilder;
 import org.apache.jena.graph.Node ;
+import org.apache.jena.query.ARQ ;
+import org.apache.jena.sparql.ARQConstants ;
 import org.apache.jena.sparql.core.Var ;
 import org.apache.jena.sparql.core.VarExprList ;
 import org.apache.jena.sparql.engine.ExecutionContext ;
@@ -39,7 +43,20 @@ import org.apache.jena.sparql.engine.binding.BindingMap ;
 import org.apache.jena.sparql.expr.ExprAggregator ;
 import org.apache.jena.sparql.expr.NodeValue ;
 import org.apache.jena.sparql.expr.aggregate.Accumulator ;
+import org.apache.jena.sparql.expr.aggregate.AccumulatorMergeable ;
+import org.apache.jena.sparql.system.SerializationFactoryFinder ;
+import org.apache.jena.sparql.util.NodeUtils ;
 
+/**
+ * Grouping and aggregation.
+ * <p>
+ * Groups are accumulated in an in-memory hash table. If
+ * {@link ARQ#spillToDiskThreshold} is set, and all the aggregators have
+ * {@link AccumulatorMergeable} accumulators, then when the table has that many groups
+ * its partial aggregates are written to a {@link SortedDataBag}, sorted by group key,
+ * and the table is cleared. At the end, the sorted runs are merged and the partial
+ * aggregates of each group combined.
+ */
 public class QueryIterGroup extends QueryIterPlainWrapper
 {
 	private final QueryIterator embeddedIterator;
@@ -105,6 +122,10 @@ public class QueryIterGroup extends QueryIterPlainWrapper
                 }
                 
                 // Case: there is input.
+                long threshold = spillThreshold(aggregators, execCxt);
+                if ( threshold >= 0 )
+                    return calcSpill(iter, groupVarExpr, aggregators, threshold, execCxt);
+
                 // Phase 1 : Create keys and aggreators per key, and pump bindings through the aggregators.
                 Multimap<Binding, Pair<Var, Accumulator>> accumulators = MultimapBuilder.hashKeys().arrayListValues().build();
 
@@ -159,6 +180,186 @@ public class QueryIterGroup extends QueryIterPlainWrapper
         };
     }
 
+    /** The number of groups before spilling, or -1 for no spilling. */
+    private static long spillThreshold(List<ExprAggregator> aggregators, ExecutionContext execCxt) {
+        if ( execCxt == null )
+            return -1;
+        long threshold = execCxt.getContext().getLong(ARQ.spillToDiskThreshold, -1);
+        if ( threshold < 0 )
+            return -1;
+        if ( aggregators != null ) {
+            for ( ExprAggregator agg : aggregators ) {
+                if ( ! ( agg.getAggregator().createAccumulator() instanceof AccumulatorMergeable ) )
+                    return -1;
+            }
+        }
+        return threshold;
+    }
+
+    /** Variable for part of the state of an accumulator in a spilled row. */
+    private static Var stateVar(int agg, int idx) {
+        return Var.alloc(ARQConstants.allocVarMarker+"@"+agg+"."+idx);
+    }
+
+    private static AccumulatorMergeable[] createAccumulators(List<ExprAggregator> aggregators) {
+        int N = ( aggregators == null ) ? 0 : aggregators.size();
+        AccumulatorMergeable[] accs = new AccumulatorMergeable[N];
+        for ( int i = 0 ; i < N ; i++ )
+            accs[i] = (AccumulatorMergeable)aggregators.get(i).getAggregator().createAccumulator();
+        return accs;
+    }
+
+    /** The result row of a group. */
+    private static Binding result(Binding key, List<ExprAggregator> aggregators, Accumulator[] accs) {
+        BindingMap b = BindingFactory.create(key);
+        for ( int i = 0 ; i < accs.length ; i++ ) {
+            NodeValue value = accs[i].getValue();
+            if ( value == null )
+                continue;
+            b.add(aggregators.get(i).getVar(), value.asNode());
+        }
+        return b;
+    }
+
+    /** Grouping that writes partial aggregates to disk when there are more than {@code threshold} groups. */
+    private static Iterator<Binding> calcSpill(QueryIterator iter, VarExprList groupVarExpr, List<ExprAggregator> aggregators,
+                                               long threshold, ExecutionContext execCxt) {
+        List<Var> groupVars = groupVarExpr.getVars();
+        Map<Binding, AccumulatorMergeable[]> groups = new LinkedHashMap<>();
+        SortedDataBag<Binding> runs = null;
+        try {
+            while ( iter.hasNext() ) {
+                Binding b = iter.nextBinding();
+                Binding key = genKey(groupVarExpr, b, execCxt);
+                AccumulatorMergeable[] accs = groups.get(key);
+                if ( accs == null ) {
+                    if ( ! groups.isEmpty() && groups.size() >= threshold ) {
+                        if ( runs == null )
+                            runs = BagFactory.newSortedBag(ThresholdPolicyFactory.policyFromContext(execCxt.getContext()),
+                                                           SerializationFactoryFinder.bindingSerializationFactory(execCxt.getContext()),
+                                                           (b1, b2)->compareKeys(groupVars, b1, b2));
+                        spill(groups, runs);
+                    }
+                    accs = createAccumulators(aggregators);
+                    groups.put(key, accs);
+                }
+                for ( Accumulator acc : accs )
+                    acc.accumulate(b, execCxt);
+            }
+        } catch (RuntimeException ex) {
+            if ( runs != null )
+                runs.close();
+            throw ex;
+        }
+
+        if ( runs == null ) {
+            // Did not spill.
+            List<Binding> results = new ArrayList<>(groups.size());
+            groups.forEach((key, accs)->results.add(result(key, aggregators, accs)));
+            return results.iterator();
+        }
+        spill(groups, runs);
+        return new IterMergeGroups(runs, groupVars, aggregators);
+    }
+
+    /** Write the partial aggregates of the groups as rows of key and state, and clear the groups. */
+    private static void spill(Map<Binding, AccumulatorMergeable[]> groups, SortedDataBag<Binding> runs) {
+        groups.forEach((key, accs) -> {
+            BindingMap row = BindingFactory.create(key);
+            for ( int i = 0 ; i < accs.length ; i++ ) {
+                List<Node> state = accs[i].getState();
+                for ( int j = 0 ; j < state.size() ; j++ ) {
+                    Node n = state.get(j);
+                    if ( n != null )
+                        row.add(stateVar(i, j), n);
+                }
+            }
+            runs.add(row);
+        });
+        groups.clear();
+    }
+
+    /** Order rows by group key: syntactically, by each group variable, unbound first. */
+    private static int compareKeys(List<Var> groupVars, Binding b1, Binding b2) {
+        for ( Var v : groupVars ) {
+            Node n1 = b1.get(v);
+            Node n2 = b2.get(v);
+            if ( n1 == null || n2 == null ) {
+                if ( n1 != n2 )
+                    return ( n1 == null ) ? -1 : 1;
+                continue;
+            }
+            int x = NodeUtils.compareRDFTerms(n1, n2);
+            if ( x != 0 )
+                return x;
+        }
+        return 0;
+    }
+
+    /** Merge the rows for each group from the sorted runs. */
+    private static class IterMergeGroups extends IteratorSlotted<Binding> implements Closeable {
+        private final SortedDataBag<Binding> runs;
+        private final Iterator<Binding> iter;
+        private final List<Var> groupVars;
+        private final List<ExprAggregator> aggregators;
+        private final int[] stateSize;
+        private Binding pending = null;
+
+        IterMergeGroups(SortedDataBag<Binding> runs, List<Var> groupVars, List<ExprAggregator> aggregators) {
+            this.runs = runs;
+            this.iter = runs.iterator();
+            this.groupVars = groupVars;
+            this.aggregators = aggregators;
+            AccumulatorMergeable[] accs = createAccumulators(aggregators);
+            this.stateSize = new int[accs.length];
+            for ( int i = 0 ; i < accs.length ; i++ )
+                stateSize[i] = accs[i].getState().size();
+        }
+
+        @Override
+        protected boolean hasMore() {
+            return pending != null || iter.hasNext();
+        }
+
+        @Override
+        protected Binding moveToNext() {
+            Binding first = ( pending != null ) ? pending : iter.next();
+            pending = null;
+            AccumulatorMergeable[] accs = createAccumulators(aggregators);
+            merge(accs, first);
+            while ( iter.hasNext() ) {
+                Binding row = iter.next();
+                if ( compareKeys(groupVars, first, row) != 0 ) {
+                    pending = row;
+                    break;
+                }
+                merge(accs, row);
+            }
+            BindingMap key = BindingFactory.create();
+            for ( Var v : groupVars ) {
+                Node n = first.get(v);
+                if ( n != null )
+                    key.add(v, n);
+            }
+            return result(key, aggregators, accs);
+        }
+
+        private void merge(AccumulatorMergeable[] accs, Binding row) {
+            for ( int i = 0 ; i < accs.length ; i++ ) {
+                Node[] state = new Node[stateSize[i]];
+                for ( int j = 0 ; j < state.length ; j++ )
+                    state[j] = row.get(stateVar(i, j));
+                accs[i].merge(Arrays.asList(state));
+            }
+        }
+
+        @Override
+        protected void closeIterator() {
+            Iter.close(iter);
+            runs.close();
+        }
+    }
+
     static private Binding genKey(VarExprList vars, Binding binding, ExecutionContext execCxt) {
         return copyProject(vars, binding, execCxt);
     }
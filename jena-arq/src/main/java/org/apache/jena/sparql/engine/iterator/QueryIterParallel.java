@@ -0,0 +1,381 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.iterator;
+
+import java.util.ArrayList ;
+import java.util.List ;
+import java.util.NoSuchElementException ;
+import java.util.concurrent.* ;
+import java.util.concurrent.atomic.AtomicInteger ;
+import java.util.function.Function ;
+
+import org.apache.jena.atlas.io.IndentedWriter ;
+import org.apache.jena.atlas.lib.Lib ;
+import org.apache.jena.query.ARQ ;
+import org.apache.jena.query.QueryCancelledException ;
+import org.apache.jena.query.QueryExecException ;
+import org.apache.jena.query.ReadWrite ;
+import org.apache.jena.sparql.core.DatasetGraph ;
+import org.apache.jena.sparql.core.TransactionalShareRead ;
+import org.apache.jena.sparql.engine.ExecutionContext ;
+import org.apache.jena.sparql.engine.QueryIterator ;
+import org.apache.jena.sparql.engine.binding.Binding ;
+import org.apache.jena.sparql.serializer.SerializationContext ;
+
+/**
+ * A query iterator that evaluates several branches at the same time, each on its own
+ * thread, and returns the rows of all the branches in the order they arrive.
+ * <p>
+ * At most {@code parallelism} branches are evaluated at once. Branches are evaluated on
+ * threads from a pool, of {@link ARQ#parallelThreads} threads, shared by all queries;
+ * a branch does not use parallel evaluation itself. If no thread is free, the branches
+ * are evaluated one after another on the thread that takes the rows.
+ * If the dataset is in a read transaction, the branches take part in that transaction
+ * (see {@link TransactionalShareRead}).
+ * <p>
+ * Cancelling or closing this iterator cancels all the branches, and close waits
+ * for the threads to finish with the dataset. Branches wait, without a time limit,
+ * for rows to be taken, so an iterator must be closed, or the query cancelled,
+ * when it is no longer wanted.
+ *
+ * @see ARQ#parallelBranches
+ */
+public class QueryIterParallel extends QueryIter
+{
+    /** Number of rows that may be waiting to be returned. */
+    static final int QueueSize = 1000 ;
+
+    /**
+     * The number of threads for all parallel evaluation in the JVM: the setting of
+     * {@link ARQ#parallelThreads} in the global context when this class is loaded.
+     */
+    static final int MaxThreads = Math.max(1, ARQ.getContext().getInt(ARQ.parallelThreads, 2*Runtime.getRuntime().availableProcessors())) ;
+
+    // A worker holds a permit while it runs. A task is only submitted with a permit
+    // so it never waits in the executor queue for a thread that is busy.
+    static final Semaphore permits = new Semaphore(MaxThreads) ;
+
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(MaxThreads, MaxThreads, 60, TimeUnit.SECONDS,
+                                                                              new LinkedBlockingQueue<>(), new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger(0) ;
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ARQ-parallel-"+counter.incrementAndGet()) ;
+            thread.setDaemon(true) ;
+            return thread ;
+        }
+    }) ;
+    static { executor.allowCoreThreadTimeOut(true) ; }
+
+    // Set on threads evaluating a branch.
+    private static final ThreadLocal<Boolean> inBranch = ThreadLocal.withInitial(()->false) ;
+
+    // Marker for the end of a worker.
+    private static final Object END = new Object() ;
+
+    /**
+     * The number of branches to evaluate at the same time, or 0 if branches should be
+     * evaluated one after another.
+     * <p>
+     * This is the setting of {@link ARQ#parallelBranches}, if it is more than one, unless
+     * this thread is already evaluating a branch or the dataset is in a transaction that
+     * can not be shared with other threads.
+     */
+    public static int parallelism(ExecutionContext execCxt)
+    {
+        int n = execCxt.getContext().getInt(ARQ.parallelBranches, 0) ;
+        if ( n <= 1 || inBranch.get() )
+            return 0 ;
+        DatasetGraph dsg = execCxt.getDataset() ;
+        if ( dsg == null || ! dsg.supportsTransactions() || ! dsg.isInTransaction() )
+            return n ;
+        if ( dsg instanceof TransactionalShareRead && dsg.transactionMode() == ReadWrite.READ )
+            return n ;
+        return 0 ;
+    }
+
+    private final List<Function<ExecutionContext, QueryIterator>> branches ;
+    private final int parallelism ;
+    private QueryIterParallel startWith = null ;
+    private boolean started = false ;
+    private final AtomicInteger nextBranch = new AtomicInteger(0) ;
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QueueSize) ;
+    private final List<QueryIterator> running = new ArrayList<>() ;
+    private final List<Future<?>> workers = new ArrayList<>() ;
+    private volatile boolean stopping = false ;
+    private int finishedWorkers = 0 ;
+    private Binding slot = null ;
+    // The branch evaluated on this thread, when there are no workers.
+    private QueryIterator current = null ;
+
+    /**
+     * Evaluate the branches, with at most {@code parallelism} at once.
+     * Each branch is a function from the execution context for the branch to its
+     * results, called on the thread that evaluates the branch.
+     * Evaluation starts when the first row is asked for.
+     */
+    public QueryIterParallel(List<Function<ExecutionContext, QueryIterator>> branches, int parallelism, ExecutionContext execCxt)
+    {
+        super(execCxt) ;
+        this.branches = branches ;
+        this.parallelism = parallelism ;
+    }
+
+    /**
+     * Start evaluating the branches of the other iterator when this one starts,
+     * and the branches of this iterator when the other starts.
+     * Used for the sides of a join, so that both sides are evaluated while the join
+     * reads one of them.
+     */
+    public void startWith(QueryIterParallel other)
+    {
+        this.startWith = other ;
+        other.startWith = this ;
+    }
+
+    private void start()
+    {
+        if ( started || stopping )
+            return ;
+        started = true ;
+        int N = Math.min(Math.max(1, parallelism), branches.size()) ;
+        for ( int i = 0 ; i < N && permits.tryAcquire() ; i++ )
+        {
+            try {
+                workers.add(executor.submit(worker(getExecContext()))) ;
+            } catch (RuntimeException ex) {
+                permits.release() ;
+                stop() ;
+                throw ex ;
+            }
+        }
+        if ( startWith != null )
+            startWith.start() ;
+    }
+
+    // Called on this thread, so that any transaction can be shared.
+    private Runnable worker(ExecutionContext execCxt)
+    {
+        Runnable work = ()->work(execCxt) ;
+        DatasetGraph dsg = execCxt.getDataset() ;
+        if ( dsg instanceof TransactionalShareRead && dsg.isInTransaction() )
+        {
+            work = ((TransactionalShareRead)dsg).shareRead(work) ;
+            if ( work == null )
+                throw new QueryExecException("Can't share the transaction for parallel evaluation") ;
+        }
+        Runnable action = work ;
+        return ()->{
+            try { action.run() ; }
+            catch (Throwable ex) { put(ex) ; }
+            finally {
+                put(END) ;
+                permits.release() ;
+            }
+        } ;
+    }
+
+    // Evaluate branches until there are none left.
+    private void work(ExecutionContext parentCxt)
+    {
+        inBranch.set(true) ;
+        try {
+            for ( ;; )
+            {
+                int idx = nextBranch.getAndIncrement() ;
+                if ( stopping || idx >= branches.size() )
+                    return ;
+                QueryIterator qIter = branches.get(idx).apply(branchContext(parentCxt)) ;
+                if ( ! started(qIter) )
+                    return ;
+                try {
+                    while ( ! stopping && qIter.hasNext() )
+                        put(qIter.nextBinding()) ;
+                } finally {
+                    finished(qIter) ;
+                }
+            }
+        } finally {
+            inBranch.remove() ;
+        }
+    }
+
+    // Each branch has its own context so that iterator tracking is not shared between threads.
+    private static ExecutionContext branchContext(ExecutionContext parentCxt)
+    {
+        return new ExecutionContext(parentCxt.getContext(), parentCxt.getActiveGraph(),
+                                    parentCxt.getDataset(), parentCxt.getExecutor()) ;
+    }
+
+    private boolean started(QueryIterator qIter)
+    {
+        synchronized(running) {
+            if ( ! stopping )
+            {
+                running.add(qIter) ;
+                return true ;
+            }
+        }
+        qIter.close() ;
+        return false ;
+    }
+
+    private void finished(QueryIterator qIter)
+    {
+        synchronized(running) {
+            running.remove(qIter) ;
+        }
+        qIter.close() ;
+    }
+
+    // Add to the queue, unless stopping.
+    private void put(Object item)
+    {
+        try {
+            while ( ! queue.offer(item, 100, TimeUnit.MILLISECONDS) )
+            {
+                if ( stopping )
+                    return ;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt() ;
+        }
+    }
+
+    @Override
+    protected boolean hasNextBinding()
+    {
+        if ( slot != null )
+            return true ;
+        start() ;
+        if ( workers.isEmpty() )
+            return hasNextHere() ;
+        while ( finishedWorkers < workers.size() )
+        {
+            Object item ;
+            try {
+                item = queue.poll(100, TimeUnit.MILLISECONDS) ;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt() ;
+                item = null ;
+                stop() ;
+            }
+            if ( item == null )
+            {
+                // Workers do not queue more once stopping.
+                if ( stopping )
+                    throw new QueryCancelledException() ;
+                continue ;
+            }
+            if ( item == END )
+            {
+                finishedWorkers++ ;
+                continue ;
+            }
+            if ( item instanceof Throwable )
+            {
+                stop() ;
+                if ( item instanceof RuntimeException )
+                    throw (RuntimeException)item ;
+                if ( item instanceof Error )
+                    throw (Error)item ;
+                throw new QueryExecException((Throwable)item) ;
+            }
+            slot = (Binding)item ;
+            return true ;
+        }
+        return false ;
+    }
+
+    // No thread was free: evaluate the branches one after another on this thread.
+    private boolean hasNextHere()
+    {
+        for ( ;; )
+        {
+            if ( current == null )
+            {
+                int idx = nextBranch.getAndIncrement() ;
+                if ( idx >= branches.size() )
+                    return false ;
+                QueryIterator qIter = branches.get(idx).apply(branchContext(getExecContext())) ;
+                if ( ! started(qIter) )
+                    throw new QueryCancelledException() ;
+                current = qIter ;
+            }
+            if ( current.hasNext() )
+            {
+                slot = current.nextBinding() ;
+                return true ;
+            }
+            finished(current) ;
+            current = null ;
+        }
+    }
+
+    @Override
+    protected Binding moveToNextBinding()
+    {
+        if ( ! hasNextBinding() )
+            throw new NoSuchElementException(Lib.className(this)) ;
+        Binding binding = slot ;
+        slot = null ;
+        return binding ;
+    }
+
+    // Stop the workers: no new branches are started and running branches are cancelled.
+    private void stop()
+    {
+        stopping = true ;
+        synchronized(running) {
+            for ( QueryIterator qIter : running )
+                performRequestCancel(qIter) ;
+        }
+    }
+
+    @Override
+    protected void requestCancel()
+    {
+        stop() ;
+    }
+
+    @Override
+    protected void closeIterator()
+    {
+        stop() ;
+        // Wait for the workers so nothing is using the dataset (or its transaction) after close.
+        for ( Future<?> f : workers )
+        {
+            try { f.get() ; }
+            catch (InterruptedException ex) { Thread.currentThread().interrupt() ; }
+            catch (ExecutionException ex) {}
+        }
+        queue.clear() ;
+        if ( current != null )
+        {
+            finished(current) ;
+            current = null ;
+        }
+    }
+
+    @Override
+    public void output(IndentedWriter out, SerializationContext sCxt)
+    {
+        out.println(Lib.className(this)+" "+branches.size()) ;
+    }
+}
@@ -18,16 +18,20 @@
 
 package org.apache.jena.sparql.engine.iterator;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
-import org.apache.jena.atlas.data.BagFactory;
 import org.apache.jena.atlas.data.SortedDataBag;
 import org.apache.jena.atlas.data.ThresholdPolicy;
 import org.apache.jena.atlas.data.ThresholdPolicyFactory;
+import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.atlas.iterator.IteratorDelayedInitialization;
+import org.apache.jena.atlas.iterator.IteratorResourceClosing;
 import org.apache.jena.atlas.lib.Closeable;
+import org.apache.jena.query.ARQ;
 import org.apache.jena.query.QueryCancelledException;
 import org.apache.jena.query.SortCondition;
 import org.apache.jena.sparql.engine.ExecutionContext;
@@ -39,6 +43,10 @@ import org.apache.jena.sparql.system.SerializationFactoryFinder;
 /**
  * Sort a query iterator. The sort will happen in-memory unless the size of the
  * iterator exceeds a configurable threshold. In that case, a disk sort is used.
+ * <p>
+ * When sorting with a {@link BindingComparator}, the values of the sort conditions are
+ * worked out once for each row, and the sort uses several threads if
+ * {@link ARQ#parallelSort} is true.
  * 
  * @see SortedDataBag
  */
@@ -46,6 +54,8 @@ import org.apache.jena.sparql.system.SerializationFactoryFinder;
 public class QueryIterSort extends QueryIterPlainWrapper {
     private final QueryIterator embeddedIterator;
     final SortedDataBag<Binding> db;
+    // Set when the sort keys of rows are kept with the rows.
+    private final BindingComparator keys;
 
     public QueryIterSort(QueryIterator qIter, List<SortCondition> conditions, ExecutionContext context) {
         this(qIter, new BindingComparator(conditions, context), context);
@@ -56,7 +66,18 @@ public class QueryIterSort extends QueryIterPlainWrapper {
         super(null, context);
         this.embeddedIterator = qIter;
         ThresholdPolicy<Binding> policy = ThresholdPolicyFactory.policyFromContext(context.getContext());
-        this.db = BagFactory.newSortedBag(policy, SerializationFactoryFinder.bindingSerializationFactory(), comparator);
+        this.keys = ( comparator instanceof BindingComparator ) ? (BindingComparator)comparator : null;
+        boolean parallel = keys != null && context.getContext().isTrue(ARQ.parallelSort);
+        this.db = new SortedDataBag<Binding>(policy, SerializationFactoryFinder.bindingSerializationFactory(context.getContext()), comparator, parallel) {
+            @Override
+            protected Iterator<Binding> getInputIterator(File spillFile) throws FileNotFoundException {
+                Iterator<Binding> iter = super.getInputIterator(spillFile);
+                if ( keys == null )
+                    return iter;
+                // Rows read back need their sort keys again.
+                return new IteratorResourceClosing<>(Iter.map(iter, keys::withSortKeys), (Closeable)()->Iter.close(iter));
+            }
+        };
         this.setIterator(new SortedBindingIterator(qIter));
     }
 
@@ -84,8 +105,12 @@ public class QueryIterSort extends QueryIterPlainWrapper {
         @Override
         protected Iterator<Binding> initializeIterator() {
             try {
-                db.addAll(qIter);
-                return db.iterator();
+                if ( keys == null ) {
+                    db.addAll(qIter);
+                    return db.iterator();
+                }
+                qIter.forEachRemaining(b -> db.add(keys.withSortKeys(b)));
+                return Iter.map(db.iterator(), BindingComparator::unwrap);
             }
             // Should we catch other exceptions too? Theoretically
             // the user should be using this
@@ -18,10 +18,16 @@
 
 package org.apache.jena.sparql.engine.join;
 
+import java.util.BitSet ;
 import java.util.Iterator ;
 import java.util.List ;
 
+import org.apache.jena.atlas.data.ThresholdPolicy ;
+import org.apache.jena.atlas.data.ThresholdPolicyCount ;
+import org.apache.jena.atlas.data.ThresholdPolicyFactory ;
 import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.query.ARQ ;
+import org.apache.jena.query.QueryCancelledException ;
 import org.apache.jena.sparql.algebra.Algebra ;
 import org.apache.jena.sparql.core.Var ;
 import org.apache.jena.sparql.engine.ExecutionContext ;
@@ -29,11 +35,20 @@ import org.apache.jena.sparql.engine.QueryIterator ;
 import org.apache.jena.sparql.engine.binding.Binding ;
 import org.apache.jena.sparql.engine.iterator.QueryIter2 ;
 import org.apache.jena.sparql.engine.iterator.QueryIterPeek ;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper ;
+import org.apache.jena.sparql.system.SerializationFactoryFinder ;
 
 /** Hash join algorithm
  *  
  * This code materializes one input into the probe table
  * then hash joins the other input from the stream side.
+ * <p>
+ * If the subclass allows it, and the probe side passes the
+ * {@link ARQ#spillToDiskThreshold spill threshold}, this becomes a grace hash join:
+ * the probe rows and then all the stream rows are written to partitions by the hash
+ * of the join key, and the partitions are joined one at a time. Stream rows with no
+ * join key variable are joined with each partition in turn, and passed to
+ * {@link #noYieldedRows} after the last one if nothing matched.
  */
 
 public abstract class AbstractIterHashJoin extends QueryIter2 {
@@ -44,7 +59,7 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
     // See also stats in the probe table.
     
     protected final JoinKey               joinKey ;
-    protected final HashProbeTable        hashTable ;
+    protected HashProbeTable              hashTable ;
 
     private QueryIterator               iterStream ;
     private Binding                     rowStream       = null ;
@@ -53,12 +68,31 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
     // Hanlde any "post join" additions.
     private Iterator<Binding>           iterTail        = null ;
     
-    enum Phase { INIT, HASH , STREAM, TRAILER, DONE }
+    enum Phase { INIT, HASH , PARTITION, STREAM, TRAILER, DONE }
     Phase state = Phase.INIT ;
     
     private Binding slot = null ;
 
+    // Grace hash join.
+    private final ThresholdPolicy<Binding> policy ;
+    private HashJoinPartitions          partitions      = null ;
+    // Partition passes : keyed stream rows of each partition, then the unkeyed
+    // stream rows against each partition, then the unmatched unkeyed stream rows.
+    private int                         pass            = -1 ;
+    private long                        unkeyedRow      = -1 ;
+    private BitSet                      unkeyedMatched  = null ;
+    private volatile boolean            cancelled       = false ;
+
     protected AbstractIterHashJoin(JoinKey joinKey, QueryIterator probeIter, QueryIterator streamIter, ExecutionContext execCxt) {
+        this(joinKey, probeIter, streamIter, false, execCxt) ;
+    }
+
+    /**
+     * Create a hash join.
+     * If {@code canSpill} is true, the join may switch to partitions on disk, after
+     * which {@link #hashTable} is only the table of the current partition.
+     */
+    protected AbstractIterHashJoin(JoinKey joinKey, QueryIterator probeIter, QueryIterator streamIter, boolean canSpill, ExecutionContext execCxt) {
         super(probeIter, streamIter, execCxt) ;
         
         if ( joinKey == null ) {
@@ -79,6 +113,9 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
         this.iterStream = streamIter ;
         this.hashTable = new HashProbeTable(joinKey) ;
         this.iterCurrent = null ;
+        this.policy = ( canSpill && execCxt != null )
+            ? ThresholdPolicyFactory.policyFromContext(execCxt.getContext())
+            : ThresholdPolicyFactory.never() ;
         buildHashTable(probeIter) ;
         
     }
@@ -88,12 +125,87 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
         for (; iter1.hasNext();) {
             Binding row1 = iter1.next() ;
             s_countProbe ++ ;
+            if ( partitions != null ) {
+                partitions.addProbe(row1) ;
+                continue ;
+            }
             hashTable.put(row1) ;
+            policy.increment(row1) ;
+            if ( policy.isThresholdExceeded() )
+                startPartitions() ;
         }
         iter1.close() ;
+        // Partitioning the stream side is left to the first call for a result,
+        // when the iterator can be cancelled.
+        state = ( partitions != null ) ? Phase.PARTITION : Phase.STREAM ;
+    }
+
+    private void partitionStream() {
+        // The whole stream side is needed before any partition can be joined.
+        for (; iterStream.hasNext();) {
+            if ( cancelled )
+                throw new QueryCancelledException() ;
+            partitions.addStream(iterStream.next()) ;
+        }
+        iterStream.close() ;
+        nextPass() ;
         state = Phase.STREAM ;
     }
 
+    private void startPartitions() {
+        long threshold = ( policy instanceof ThresholdPolicyCount<?> ) ? ((ThresholdPolicyCount<?>)policy).getThreshold() : 0 ;
+        partitions = new HashJoinPartitions(joinKey, HashJoinPartitions.DftPartitions, threshold,
+                                            SerializationFactoryFinder.bindingSerializationFactory(getExecContext().getContext())) ;
+        hashTable.values().forEachRemaining(partitions::addProbe) ;
+        hashTable.clear() ;
+        hashTable = new HashProbeTable(joinKey) ;
+    }
+
+    /** Set up the next pass over the partitions. Return false if there are no more. */
+    private boolean nextPass() {
+        int N = partitions.size() ;
+        pass++ ;
+        if ( pass < N ) {
+            setPass(partitions.table(pass, true), partitions.stream(pass)) ;
+            return true ;
+        }
+        if ( ! partitions.hasUnkeyedStream() )
+            return false ;
+        if ( pass < 2 * N ) {
+            // The probe rows with no key are only needed once.
+            if ( unkeyedMatched == null )
+                unkeyedMatched = new BitSet() ;
+            setPass(partitions.table(pass - N, pass == N), partitions.unkeyedStream()) ;
+            unkeyedRow = -1 ;
+            return true ;
+        }
+        if ( pass == 2 * N ) {
+            // Empty table : each unkeyed stream row that did not match anything.
+            setPass(new HashProbeTable(joinKey), partitions.unkeyedStream()) ;
+            unkeyedRow = -1 ;
+            return true ;
+        }
+        return false ;
+    }
+
+    private void setPass(HashProbeTable table, Iterator<Binding> stream) {
+        if ( iterStream != null )
+            iterStream.close() ;
+        hashTable.clear() ;
+        hashTable = table ;
+        iterStream = new QueryIterPlainWrapper(stream, getExecContext()) ;
+    }
+
+    /** In a pass of the stream rows with no join key. */
+    private boolean unkeyedPass() {
+        return partitions != null && pass >= partitions.size() && pass < 2 * partitions.size() ;
+    }
+
+    /** In the pass of the unmatched stream rows with no join key. */
+    private boolean unkeyedFinalPass() {
+        return partitions != null && pass == 2 * partitions.size() ;
+    }
+
     @Override
     protected boolean hasNextBinding() {
         if ( isFinished() ) 
@@ -127,6 +239,9 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
                 throw new IllegalStateException() ;
             case TRAILER :
                 return doOneTail() ;
+            case PARTITION :
+                partitionStream() ;
+                break ;
             case STREAM :
         }
         
@@ -135,6 +250,8 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
             while ( iterCurrent == null ) {
                 // Move on to the next row from the right.
                 if ( ! iterStream.hasNext() ) {
+                    if ( partitions != null && nextPass() )
+                        continue ;
                     state = Phase.TRAILER ;
                     iterTail = joinFinished() ;
                     if ( iterTail != null )
@@ -143,6 +260,11 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
                 }
                 rowStream = iterStream.next() ;
                 s_countScan ++ ;
+                if ( unkeyedPass() || unkeyedFinalPass() ) {
+                    unkeyedRow++ ;
+                    if ( unkeyedFinalPass() && unkeyedMatched.get((int)unkeyedRow) )
+                        continue ;
+                }
                 iterCurrent = hashTable.getCandidates(rowStream) ;
                 yielded = false ;
             }
@@ -150,7 +272,8 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
             // Emit one row using the rightRow and the current matched left rows. 
             if ( ! iterCurrent.hasNext() ) {
                 iterCurrent = null ;
-                if ( ! yielded ) {
+                // Unkeyed stream rows may match in a later partition.
+                if ( ! yielded && ! unkeyedPass() ) {
                     Binding b = noYieldedRows(rowStream) ;
                     if ( b != null ) {
                         s_countScan ++ ;
@@ -173,6 +296,8 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
                 // Reject
             } else {
                 yielded = true ;
+                if ( unkeyedPass() )
+                    unkeyedMatched.set((int)unkeyedRow) ;
                 s_countResults ++ ;
                 return r2 ;
             }
@@ -229,11 +354,13 @@ public abstract class AbstractIterHashJoin extends QueryIter2 {
         // In case it's a peek iterator.
         iterStream.close() ;
         hashTable.clear(); 
+        if ( partitions != null )
+            partitions.close() ;
     }
 
     @Override
     protected void requestSubCancel() 
-    { }
+    { cancelled = true ; }
 }
 
 
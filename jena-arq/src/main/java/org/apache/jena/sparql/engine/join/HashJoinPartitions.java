@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.join;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.jena.atlas.data.BagFactory;
+import org.apache.jena.atlas.data.DataBag;
+import org.apache.jena.atlas.data.SerializationFactory;
+import org.apache.jena.atlas.data.ThresholdPolicyFactory;
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.sparql.engine.binding.Binding;
+
+/**
+ * The partitions of a grace hash join.
+ * <p>
+ * Probe and stream rows are split by the hash of the join key into {@link DataBag}s
+ * that spill to disk, so the rows that can join are in the same partition and each
+ * partition can be joined in memory on its own. Rows with no join key variable can
+ * join with any row and are kept apart.
+ */
+class HashJoinPartitions {
+    /** Number of partitions. */
+    static final int DftPartitions = 32;
+
+    private final JoinKey                joinKey;
+    private final int                    size;
+    private final SerializationFactory<Binding> serialization;
+    private final List<DataBag<Binding>> probe  = new ArrayList<>();
+    private final List<DataBag<Binding>> stream = new ArrayList<>();
+    private final DataBag<Binding>       unkeyedProbe;
+    private final DataBag<Binding>       unkeyedStream;
+
+    /**
+     * Create partitions.
+     * The bags share the threshold, so that together they hold about
+     * as many rows in memory as the threshold.
+     */
+    HashJoinPartitions(JoinKey joinKey, int size, long threshold, SerializationFactory<Binding> serialization) {
+        this.joinKey = joinKey;
+        this.size = size;
+        this.serialization = serialization;
+        long bagThreshold = Math.max(0, threshold / (2 * size + 2));
+        for ( int i = 0 ; i < size ; i++ ) {
+            probe.add(newBag(bagThreshold));
+            stream.add(newBag(bagThreshold));
+        }
+        unkeyedProbe = newBag(bagThreshold);
+        unkeyedStream = newBag(bagThreshold);
+    }
+
+    private DataBag<Binding> newBag(long threshold) {
+        return BagFactory.newDefaultBag(ThresholdPolicyFactory.count(threshold), serialization);
+    }
+
+    /** Number of partitions */
+    int size() {
+        return size;
+    }
+
+    private int partition(Object hash) {
+        long x = (Long)hash;
+        int h = (int)(x ^ (x >>> 32)) * 0x9E3779B9;
+        return Math.floorMod(h ^ (h >>> 16), size);
+    }
+
+    void addProbe(Binding row) {
+        Object hash = JoinLib.hash(joinKey, row);
+        if ( hash == JoinLib.noKeyHash )
+            unkeyedProbe.add(row);
+        else
+            probe.get(partition(hash)).add(row);
+    }
+
+    void addStream(Binding row) {
+        Object hash = JoinLib.hash(joinKey, row);
+        if ( hash == JoinLib.noKeyHash )
+            unkeyedStream.add(row);
+        else
+            stream.get(partition(hash)).add(row);
+    }
+
+    /**
+     * The probe table of one partition, optionally with the probe rows that have no
+     * join key (which must be in the table for each keyed stream row).
+     */
+    HashProbeTable table(int idx, boolean withUnkeyed) {
+        HashProbeTable table = new HashProbeTable(joinKey);
+        load(table, probe.get(idx));
+        if ( withUnkeyed )
+            load(table, unkeyedProbe);
+        return table;
+    }
+
+    private static void load(HashProbeTable table, DataBag<Binding> bag) {
+        Iterator<Binding> iter = bag.iterator();
+        try {
+            iter.forEachRemaining(table::put);
+        } finally { Iter.close(iter); }
+    }
+
+    /** The stream rows of one partition. */
+    Iterator<Binding> stream(int idx) {
+        return stream.get(idx).iterator();
+    }
+
+    boolean hasUnkeyedStream() {
+        return unkeyedStream.size() > 0;
+    }
+
+    /** The stream rows with no join key. */
+    Iterator<Binding> unkeyedStream() {
+        return unkeyedStream.iterator();
+    }
+
+    void close() {
+        probe.forEach(DataBag::close);
+        stream.forEach(DataBag::close);
+        unkeyedProbe.close();
+        unkeyedStream.close();
+    }
+}
@@ -67,7 +67,7 @@ public class QueryIterHashJoin extends AbstractIterHashJoin {
     }
     
     private QueryIterHashJoin(JoinKey joinKey, QueryIterator left, QueryIterator right, ExecutionContext execCxt) {
-        super(joinKey, left, right, execCxt) ;
+        super(joinKey, left, right, true, execCxt) ;
     }
 
     @Override
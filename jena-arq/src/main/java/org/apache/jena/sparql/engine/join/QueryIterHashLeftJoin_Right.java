@@ -82,7 +82,7 @@ public class QueryIterHashLeftJoin_Right extends AbstractIterHashJoin {
     
     private QueryIterHashLeftJoin_Right(JoinKey joinKey, QueryIterator left, QueryIterator right, ExprList conditions, ExecutionContext execCxt) {
         // NB Right. Left
-        super(joinKey, right, left, execCxt) ;
+        super(joinKey, right, left, true, execCxt) ;
         this.conditions = conditions ;
     }
 
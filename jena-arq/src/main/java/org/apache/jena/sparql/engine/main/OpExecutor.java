@@ -22,6 +22,7 @@ import java.util.ArrayList ;
 import java.util.Iterator ;
 import java.util.List ;
 import java.util.Set ;
+import java.util.function.Function ;
 
 import org.apache.jena.atlas.iterator.Iter ;
 import org.apache.jena.graph.Node ;
@@ -218,6 +219,12 @@ public class OpExecutor
             QueryIterator qIter = Join.join(left, right, execCxt) ;
             return qIter ;
         }
+        if ( parallelism(input) > 0 ) {
+            QueryIterParallel left = execParallel(opJoin.getLeft(), input) ;
+            QueryIterParallel right = execParallel(opJoin.getRight(), root()) ;
+            left.startWith(right) ;
+            return Join.join(left, right, execCxt) ;
+        }
         QueryIterator left = exec(opJoin.getLeft(), input) ;
         QueryIterator right = exec(opJoin.getRight(), root()) ;
         // Join key.
@@ -235,7 +242,34 @@ public class OpExecutor
         return qIter ;
     }
 
+    /**
+     * The number of threads to evaluate the sides of a join, or the branches of a union,
+     * that have the given input, or 0 to evaluate them one after the other.
+     * The sides are independent, and evaluated only once, if the input is only the root.
+     */
+    protected int parallelism(QueryIterator input) {
+        if ( ! ( input instanceof QueryIterRoot ) || ! ((QueryIterRoot)input).isJoinIdentity() )
+            return 0 ;
+        return QueryIterParallel.parallelism(execCxt) ;
+    }
+
+    /**
+     * Evaluate on another thread, starting from the root, which is closed.
+     * The thread starts when the first row is asked for.
+     */
+    protected QueryIterParallel execParallel(Op op, QueryIterator root) {
+        root.close() ;
+        List<Function<ExecutionContext, QueryIterator>> branch = List.of(cxt->QC.execute(op, createRootQueryIterator(cxt), cxt)) ;
+        return new QueryIterParallel(branch, 1, execCxt) ;
+    }
+
     protected QueryIterator execute(OpLeftJoin opLeftJoin, QueryIterator input) {
+        if ( parallelism(input) > 0 ) {
+            QueryIterParallel left = execParallel(opLeftJoin.getLeft(), input) ;
+            QueryIterParallel right = execParallel(opLeftJoin.getRight(), root()) ;
+            left.startWith(right) ;
+            return Join.leftJoin(left, right, opLeftJoin.getExprs(), execCxt) ;
+        }
         QueryIterator left = exec(opLeftJoin.getLeft(), input) ;
         QueryIterator right = exec(opLeftJoin.getRight(), root()) ;
         QueryIterator qIter = Join.leftJoin(left, right, opLeftJoin.getExprs(), execCxt) ;
@@ -274,7 +308,8 @@ public class OpExecutor
 
     protected QueryIterator execute(OpUnion opUnion, QueryIterator input) {
         List<Op> x = flattenUnion(opUnion) ;
-        QueryIterator cIter = new QueryIterUnion(input, x, execCxt) ;
+        // Only worth the threads when the branches are evaluated once.
+        QueryIterator cIter = new QueryIterUnion(input, x, parallelism(input), execCxt) ;
         return cIter ;
     }
 
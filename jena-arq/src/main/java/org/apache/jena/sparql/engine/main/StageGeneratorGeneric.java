@@ -20,6 +20,7 @@ package org.apache.jena.sparql.engine.main;
 
 import org.apache.jena.atlas.lib.Lib ;
 import org.apache.jena.atlas.logging.Log ;
+import org.apache.jena.query.ARQ ;
 import org.apache.jena.graph.Graph ;
 import org.apache.jena.sparql.core.BasicPattern ;
 import org.apache.jena.sparql.core.Substitute ;
@@ -48,12 +49,23 @@ public class StageGeneratorGeneric implements StageGenerator {
 
         // Choose reorder transformation and execution strategy.
 
-        ReorderTransformation reorder = reorderFixed ;
+        ReorderTransformation reorder = chooseReorder(execCxt) ;
         StageGenerator executor = StageBuilder.executeInline ;
 
         return execute(pattern, reorder, executor, input, execCxt) ;
     }
 
+    /**
+     * The reorder transformation from the context, else the fixed reordering.
+     * Also used by {@link StageGeneratorGenericStar}.
+     */
+    protected static ReorderTransformation chooseReorder(ExecutionContext execCxt) {
+        Object obj = execCxt.getContext().get(ARQ.reorderTransformation) ;
+        if ( obj instanceof ReorderTransformation )
+            return (ReorderTransformation)obj ;
+        return reorderFixed ;
+    }
+
     protected QueryIterator execute(BasicPattern pattern, ReorderTransformation reorder, StageGenerator execution,
                                     QueryIterator input, ExecutionContext execCxt)
     {
@@ -27,7 +27,6 @@ import org.apache.jena.sparql.engine.QueryIterator ;
 import org.apache.jena.sparql.engine.binding.Binding ;
 import org.apache.jena.sparql.engine.iterator.QueryIterBlockTriplesStar;
 import org.apache.jena.sparql.engine.iterator.QueryIterPeek ;
-import org.apache.jena.sparql.engine.optimizer.reorder.ReorderLib ;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderProc ;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformation ;
 import org.apache.jena.sparql.mgt.Explain ;
@@ -38,7 +37,6 @@ import org.apache.jena.sparql.mgt.Explain ;
  */
 public class StageGeneratorGenericStar implements StageGenerator {
     public StageGeneratorGenericStar() {}
-    private static final ReorderTransformation reorderFixed = ReorderLib.fixed() ;
 
     @Override
     public QueryIterator execute(BasicPattern pattern, QueryIterator input, ExecutionContext execCxt) {
@@ -46,7 +44,7 @@ public class StageGeneratorGenericStar implements StageGenerator {
             Log.error(this, "Null input to " + Lib.classShortName(this.getClass())) ;
 
         // Choose reorder transformation and execution strategy.
-        ReorderTransformation reorder = reorderFixed ;
+        ReorderTransformation reorder = StageGeneratorGeneric.chooseReorder(execCxt) ;
         return execute(pattern, reorder, input, execCxt) ;
     }
 
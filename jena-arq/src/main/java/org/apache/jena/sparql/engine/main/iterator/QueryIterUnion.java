@@ -18,15 +18,19 @@
 
 package org.apache.jena.sparql.engine.main.iterator;
 
+import java.util.ArrayList ;
 import java.util.List ;
+import java.util.function.Function ;
 
 import org.apache.jena.atlas.io.IndentedWriter ;
 import org.apache.jena.atlas.lib.Lib ;
+import org.apache.jena.query.ARQ ;
 import org.apache.jena.sparql.algebra.Op ;
 import org.apache.jena.sparql.engine.ExecutionContext ;
 import org.apache.jena.sparql.engine.QueryIterator ;
 import org.apache.jena.sparql.engine.binding.Binding ;
 import org.apache.jena.sparql.engine.iterator.QueryIterConcat ;
+import org.apache.jena.sparql.engine.iterator.QueryIterParallel ;
 import org.apache.jena.sparql.engine.iterator.QueryIterRepeatApply ;
 import org.apache.jena.sparql.engine.iterator.QueryIterSingleton ;
 import org.apache.jena.sparql.engine.main.QC ;
@@ -34,23 +38,48 @@ import org.apache.jena.sparql.serializer.SerializationContext ;
 
 
 /** Execute each sub stage against the input.
- *  Streamed SPARQL Union. */
+ *  Streamed SPARQL Union.
+ *  The sub stages are evaluated at the same time if a parallelism is given
+ *  (see {@link ARQ#parallelBranches}). */
 
 public class QueryIterUnion extends QueryIterRepeatApply 
 {
     protected List<Op> subOps  ;
+    private final int parallelism ;
     
     public QueryIterUnion(QueryIterator input,
                           List<Op> subOps,
                           ExecutionContext context)
+    {
+        this(input, subOps, 0, context) ;
+    }
+
+    /** Union, with the sub stages for each input row evaluated by up to {@code parallelism}
+     * threads; 0 for one after the other. */
+    public QueryIterUnion(QueryIterator input,
+                          List<Op> subOps,
+                          int parallelism,
+                          ExecutionContext context)
     {
         super(input, context) ;
         this.subOps = subOps ;
+        this.parallelism = parallelism ;
     }
 
     @Override
     protected QueryIterator nextStage(Binding binding)
     {
+        if ( parallelism > 0 )
+        {
+            List<Function<ExecutionContext, QueryIterator>> branches = new ArrayList<>() ;
+            for (Op subOp : subOps)
+            {
+                Op op = QC.substitute(subOp, binding) ;
+                branches.add(cxt -> QC.execute(op, QueryIterSingleton.create(binding, cxt), cxt)) ;
+            }
+            return new QueryIterParallel(branches, parallelism, getExecContext()) ;
+        }
+
         QueryIterConcat unionQIter = new QueryIterConcat(getExecContext()) ;
         for (Op subOp : subOps)
         {
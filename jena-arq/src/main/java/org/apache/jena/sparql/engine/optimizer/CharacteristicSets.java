@@ -0,0 +1,408 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.optimizer;
+
+import static org.apache.jena.sparql.sse.Item.addPair ;
+import static org.apache.jena.sparql.sse.Item.createTagged ;
+
+import java.io.BufferedOutputStream ;
+import java.io.FileOutputStream ;
+import java.io.IOException ;
+import java.io.OutputStream ;
+import java.util.* ;
+
+import org.apache.jena.atlas.io.IO ;
+import org.apache.jena.graph.Graph ;
+import org.apache.jena.graph.GraphUtil ;
+import org.apache.jena.graph.Node ;
+import org.apache.jena.graph.Triple ;
+import org.apache.jena.sparql.ARQException ;
+import org.apache.jena.sparql.sse.Item ;
+import org.apache.jena.sparql.sse.ItemList ;
+import org.apache.jena.sparql.sse.ItemWriter ;
+import org.apache.jena.sparql.sse.SSE ;
+import org.apache.jena.sparql.util.NodeFactoryExtra ;
+import org.apache.jena.util.iterator.ExtendedIterator ;
+
+/**
+ * Characteristic sets: the sets of predicates that occur together on a subject.
+ * <p>
+ * For each distinct set of predicates, this records how many subjects have exactly
+ * that set and, for each predicate in the set, how many triples those subjects have
+ * with the predicate. Together with the number of distinct objects of each
+ * predicate, this gives cardinality estimates for star-shaped basic graph patterns
+ * that do not assume the predicates of the star are independent.
+ * <p>
+ * Format:<pre>(characteristic-sets
+ *    (meta (count N) (subjects M))
+ *    (predicate &lt;p&gt; triples distinctObjects)
+ *    (cset subjects (&lt;p1&gt; triples) (&lt;p2&gt; triples) ...)
+ *  )</pre>
+ */
+public final class CharacteristicSets
+{
+    public static final String TAG          = "characteristic-sets" ;
+    public static final String META         = StatsMatcher.META ;
+    public static final String COUNT        = StatsMatcher.COUNT ;
+    public static final String SUBJECTS     = "subjects" ;
+    public static final String PREDICATE    = "predicate" ;
+    public static final String CSET         = "cset" ;
+
+    /** One characteristic set and its counts. */
+    public static final class CharacteristicSet
+    {
+        private final Map<Node, Long> occurrences ;
+        private final long subjects ;
+        private final long triples ;
+
+        private CharacteristicSet(long subjects, Map<Node, Long> occurrences)
+        {
+            this.subjects = subjects ;
+            this.occurrences = Collections.unmodifiableMap(occurrences) ;
+            long x = 0 ;
+            for ( long n : occurrences.values() )
+                x += n ;
+            this.triples = x ;
+        }
+
+        /** The predicates of this characteristic set. */
+        public Set<Node> predicates()           { return occurrences.keySet() ; }
+
+        /** The number of subjects with exactly this set of predicates. */
+        public long subjects()                  { return subjects ; }
+
+        /** The number of triples of the subjects of this set. */
+        public long triples()                   { return triples ; }
+
+        /** The number of triples with predicate {@code p} of the subjects of this set. */
+        public long occurrences(Node p)
+        {
+            Long x = occurrences.get(p) ;
+            return x == null ? 0 : x ;
+        }
+
+        public boolean containsAll(Collection<Node> predicates)
+        { return occurrences.keySet().containsAll(predicates) ; }
+
+        @Override
+        public String toString()
+        { return "CS["+subjects+"]"+occurrences ; }
+    }
+
+    private final List<CharacteristicSet> sets ;
+    private final Map<Node, List<CharacteristicSet>> byPredicate = new HashMap<>() ;
+    private final Map<Node, Long> predicateTriples = new HashMap<>() ;
+    private final Map<Node, Long> predicateSubjects = new HashMap<>() ;
+    private final Map<Node, Long> predicateObjects ;
+    private final long count ;
+    private final long subjects ;
+    private final long objects ;
+
+    private CharacteristicSets(List<CharacteristicSet> sets, Map<Node, Long> predicateObjects)
+    {
+        this.sets = Collections.unmodifiableList(sets) ;
+        this.predicateObjects = predicateObjects ;
+        long nTriples = 0 ;
+        long nSubjects = 0 ;
+        for ( CharacteristicSet cs : sets )
+        {
+            nSubjects += cs.subjects() ;
+            nTriples += cs.triples() ;
+            for ( Node p : cs.predicates() )
+            {
+                byPredicate.computeIfAbsent(p, x->new ArrayList<>()).add(cs) ;
+                predicateTriples.merge(p, cs.occurrences(p), Long::sum) ;
+                predicateSubjects.merge(p, cs.subjects(), Long::sum) ;
+            }
+        }
+        long nObjects = 0 ;
+        for ( Node p : predicateTriples.keySet() )
+            nObjects += distinctObjects(p) ;
+        this.count = nTriples ;
+        this.subjects = nSubjects ;
+        this.objects = nObjects ;
+    }
+
+    /** The number of triples. */
+    public long count()                         { return count ; }
+
+    /** The number of distinct subjects. */
+    public long subjects()                      { return subjects ; }
+
+    /**
+     * An upper bound on the number of distinct objects
+     * (the sum of the distinct objects of each predicate).
+     */
+    public long objects()                       { return objects ; }
+
+    /** All the characteristic sets. */
+    public List<CharacteristicSet> sets()       { return sets ; }
+
+    /** All the predicates. */
+    public Set<Node> predicates()               { return Collections.unmodifiableSet(predicateTriples.keySet()) ; }
+
+    /** The number of triples with predicate {@code p}. */
+    public long triples(Node p)
+    {
+        Long x = predicateTriples.get(p) ;
+        return x == null ? 0 : x ;
+    }
+
+    /** The number of distinct subjects with predicate {@code p}. */
+    public long distinctSubjects(Node p)
+    {
+        Long x = predicateSubjects.get(p) ;
+        return x == null ? 0 : x ;
+    }
+
+    /**
+     * The number of distinct objects with predicate {@code p}.
+     * If this was not recorded, the number of triples is used.
+     */
+    public long distinctObjects(Node p)
+    {
+        Long x = predicateObjects.get(p) ;
+        return x == null ? triples(p) : x ;
+    }
+
+    /** The characteristic sets that contain all the given predicates. */
+    public List<CharacteristicSet> supersets(Collection<Node> predicates)
+    {
+        if ( predicates.isEmpty() )
+            return sets ;
+        // Start from the predicate in the fewest sets.
+        List<CharacteristicSet> smallest = null ;
+        for ( Node p : predicates )
+        {
+            List<CharacteristicSet> x = byPredicate.get(p) ;
+            if ( x == null )
+                return Collections.emptyList() ;
+            if ( smallest == null || x.size() < smallest.size() )
+                smallest = x ;
+        }
+        if ( predicates.size() == 1 )
+            return smallest ;
+        List<CharacteristicSet> result = new ArrayList<>() ;
+        for ( CharacteristicSet cs : smallest )
+        {
+            if ( cs.containsAll(predicates) )
+                result.add(cs) ;
+        }
+        return result ;
+    }
+
+    @Override
+    public String toString()
+    { return String.format("CharacteristicSets[sets=%d, triples=%d, subjects=%d]", sets.size(), count, subjects) ; }
+
+    /** Create a builder for characteristic sets. */
+    public static Builder create()
+    { return new Builder() ; }
+
+    /**
+     * Build characteristic sets from the subjects of some data.
+     * Each subject must be added exactly once, with all its triples.
+     */
+    public static final class Builder
+    {
+        private static final class Accumulator
+        {
+            long subjects = 0 ;
+            final Map<Node, Long> occurrences = new LinkedHashMap<>() ;
+        }
+
+        private final Map<Set<Node>, Accumulator> sets = new LinkedHashMap<>() ;
+        private final Map<Node, Long> objects = new HashMap<>() ;
+
+        private Builder() {}
+
+        /**
+         * Add one subject : the predicates of all its triples,
+         * one entry for each triple.
+         */
+        public Builder addSubject(Collection<Node> predicates)
+        {
+            if ( predicates.isEmpty() )
+                return this ;
+            Map<Node, Long> counts = new LinkedHashMap<>() ;
+            for ( Node p : predicates )
+                counts.merge(p, 1L, Long::sum) ;
+            Accumulator acc = sets.get(counts.keySet()) ;
+            if ( acc == null )
+            {
+                acc = new Accumulator() ;
+                sets.put(new HashSet<>(counts.keySet()), acc) ;
+            }
+            acc.subjects++ ;
+            for ( Map.Entry<Node, Long> e : counts.entrySet() )
+                acc.occurrences.merge(e.getKey(), e.getValue(), Long::sum) ;
+            return this ;
+        }
+
+        /** Add a characteristic set with its counts. */
+        public Builder addSet(long subjects, Map<Node, Long> occurrences)
+        {
+            Accumulator acc = sets.computeIfAbsent(new HashSet<>(occurrences.keySet()), x->new Accumulator()) ;
+            acc.subjects += subjects ;
+            for ( Map.Entry<Node, Long> e : occurrences.entrySet() )
+                acc.occurrences.merge(e.getKey(), e.getValue(), Long::sum) ;
+            return this ;
+        }
+
+        /** Record the number of distinct objects of a predicate. */
+        public Builder distinctObjects(Node predicate, long count)
+        {
+            objects.put(predicate, count) ;
+            return this ;
+        }
+
+        public CharacteristicSets build()
+        {
+            List<CharacteristicSet> x = new ArrayList<>(sets.size()) ;
+            sets.values().forEach(acc -> x.add(new CharacteristicSet(acc.subjects, new LinkedHashMap<>(acc.occurrences)))) ;
+            return new CharacteristicSets(x, new HashMap<>(objects)) ;
+        }
+    }
+
+    /** Gather characteristic sets, any graph */
+    public static CharacteristicSets gather(Graph graph)
+    {
+        Builder builder = create() ;
+        Set<Node> predicates = new HashSet<>() ;
+        ExtendedIterator<Node> subjects = GraphUtil.listSubjects(graph, Node.ANY, Node.ANY) ;
+        try {
+            List<Node> acc = new ArrayList<>() ;
+            while ( subjects.hasNext() )
+            {
+                Node s = subjects.next() ;
+                acc.clear() ;
+                ExtendedIterator<Triple> iter = graph.find(s, Node.ANY, Node.ANY) ;
+                try {
+                    iter.forEachRemaining(t -> acc.add(t.getPredicate())) ;
+                } finally { iter.close() ; }
+                predicates.addAll(acc) ;
+                builder.addSubject(acc) ;
+            }
+        } finally { subjects.close() ; }
+
+        for ( Node p : predicates )
+        {
+            ExtendedIterator<Node> objects = GraphUtil.listObjects(graph, Node.ANY, p) ;
+            try {
+                builder.distinctObjects(p, objects.toList().size()) ;
+            } finally { objects.close() ; }
+        }
+        return builder.build() ;
+    }
+
+    /** Read characteristic sets from a file. */
+    public static CharacteristicSets read(String filename)
+    {
+        Item item = SSE.readFile(filename) ;
+        if ( item.isNil() )
+            throw new ARQException("Empty characteristic sets file: "+filename) ;
+        return parse(item) ;
+    }
+
+    /** Create characteristic sets from their SSE form. */
+    public static CharacteristicSets parse(Item item)
+    {
+        if ( !item.isTagged(TAG) )
+            throw new ARQException("Not tagged '"+TAG+"'") ;
+        Builder builder = create() ;
+        ItemList list = item.getList().cdr() ;
+        for ( Item elt : list )
+        {
+            if ( elt.isTagged(META) )
+                continue ;
+            if ( elt.isTagged(PREDICATE) )
+            {
+                // (predicate <p> triples distinctObjects)
+                ItemList x = elt.getList() ;
+                builder.distinctObjects(x.get(1).getNode(), asLong(x.get(3))) ;
+                continue ;
+            }
+            if ( elt.isTagged(CSET) )
+            {
+                // (cset subjects (<p> triples) ...)
+                ItemList x = elt.getList() ;
+                long subjects = asLong(x.get(1)) ;
+                Map<Node, Long> occurrences = new LinkedHashMap<>() ;
+                for ( Item pair : x.cdr().cdr() )
+                    occurrences.put(pair.getList().get(0).getNode(), asLong(pair.getList().get(1))) ;
+                builder.addSet(subjects, occurrences) ;
+                continue ;
+            }
+            throw new ARQException("Unrecognized: "+elt) ;
+        }
+        return builder.build() ;
+    }
+
+    private static long asLong(Item item)
+    {
+        if ( !item.isNode() || !item.getNode().isLiteral() )
+            throw new ARQException("Not a number: "+item) ;
+        return Long.parseLong(item.getNode().getLiteralLexicalForm()) ;
+    }
+
+    /** The SSE form of these characteristic sets. */
+    public Item format()
+    {
+        Item item = createTagged(TAG) ;
+        ItemList list = item.getList() ;
+
+        Item meta = createTagged(META) ;
+        addPair(meta.getList(), COUNT, NodeFactoryExtra.intToNode(count)) ;
+        addPair(meta.getList(), SUBJECTS, NodeFactoryExtra.intToNode(subjects)) ;
+        list.add(meta) ;
+
+        for ( Node p : predicateTriples.keySet() )
+        {
+            Item x = createTagged(PREDICATE) ;
+            x.getList().add(p) ;
+            x.getList().add(NodeFactoryExtra.intToNode(triples(p))) ;
+            x.getList().add(NodeFactoryExtra.intToNode(distinctObjects(p))) ;
+            list.add(x) ;
+        }
+
+        for ( CharacteristicSet cs : sets )
+        {
+            Item x = createTagged(CSET) ;
+            x.getList().add(NodeFactoryExtra.intToNode(cs.subjects())) ;
+            for ( Node p : cs.predicates() )
+                addPair(x.getList(), p, NodeFactoryExtra.intToNode(cs.occurrences(p))) ;
+            list.add(x) ;
+        }
+        return item ;
+    }
+
+    /** Write these characteristic sets. */
+    public void write(OutputStream output)
+    {
+        ItemWriter.write(output, format()) ;
+    }
+
+    /** Write these characteristic sets to a file. */
+    public void write(String filename)
+    {
+        try ( OutputStream out = new BufferedOutputStream(new FileOutputStream(filename)) ) {
+            write(out) ;
+        } catch (IOException ex) { IO.exception(ex) ; }
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.optimizer.reorder;
+
+import java.util.* ;
+
+import org.apache.jena.graph.Node ;
+import org.apache.jena.graph.Triple ;
+import org.apache.jena.sparql.core.BasicPattern ;
+import org.apache.jena.sparql.core.Var ;
+import org.apache.jena.sparql.engine.optimizer.CharacteristicSets ;
+import org.apache.jena.sparql.engine.optimizer.CharacteristicSets.CharacteristicSet ;
+
+/**
+ * Cost-based reordering of a basic graph pattern using {@link CharacteristicSets}.
+ * <p>
+ * The triple patterns are grouped into stars by subject. The cardinality of a star
+ * is estimated from the characteristic sets that contain all its predicates, so
+ * correlated predicates are not treated as independent. Stars are combined assuming
+ * independence, using the number of distinct values of each shared variable.
+ * <p>
+ * The order is chosen to minimise the sum of the intermediate result sizes of a
+ * left-deep plan, as executed by substitution (index joins). Patterns of up to
+ * {@link #DftExhaustiveLimit} triples are planned exhaustively by dynamic programming
+ * over the subsets of the pattern; larger patterns are planned greedily. A triple
+ * pattern that shares no variable with the triples before it is only chosen when
+ * there is no connected alternative.
+ */
+public class ReorderCharacteristicSets implements ReorderTransformation
+{
+    /** Default largest basic graph pattern that is planned exhaustively. */
+    public static final int DftExhaustiveLimit = 14 ;
+    // Masks are longs.
+    private static final int MaxSize = 63 ;
+
+    private final CharacteristicSets stats ;
+    private final int exhaustiveLimit ;
+    private final ReorderTransformation fallback = ReorderLib.fixed() ;
+
+    public ReorderCharacteristicSets(CharacteristicSets stats)
+    { this(stats, DftExhaustiveLimit) ; }
+
+    public ReorderCharacteristicSets(CharacteristicSets stats, int exhaustiveLimit)
+    {
+        this.stats = stats ;
+        this.exhaustiveLimit = Math.min(exhaustiveLimit, 20) ;
+    }
+
+    public CharacteristicSets getStats()
+    { return stats ; }
+
+    @Override
+    public BasicPattern reorder(BasicPattern pattern)
+    { return reorderIndexes(pattern).reorder(pattern) ; }
+
+    @Override
+    public ReorderProc reorderIndexes(BasicPattern pattern)
+    {
+        int N = pattern.size() ;
+        if ( N <= 1 )
+            return ReorderLib.identityProc() ;
+        if ( N > MaxSize )
+            return fallback.reorderIndexes(pattern) ;
+        Planner planner = new Planner(pattern.getList()) ;
+        int[] indexes = ( N <= exhaustiveLimit ) ? planner.exhaustive() : planner.greedy() ;
+        return new ReorderProcIndexes(indexes) ;
+    }
+
+    /** Estimate the number of solutions of a basic graph pattern. */
+    public double estimate(BasicPattern pattern)
+    {
+        int N = pattern.size() ;
+        if ( N == 0 )
+            return 1 ;
+        if ( N > MaxSize )
+            return -1 ;
+        Planner planner = new Planner(pattern.getList()) ;
+        return planner.cardinality((1L << N) - 1) ;
+    }
+
+    /** Planning state for one basic graph pattern. */
+    private class Planner
+    {
+        private final List<Triple> triples ;
+        private final int N ;
+        // Bit mask of the triples mentioning each variable.
+        private final Map<Var, Long> varMasks = new HashMap<>() ;
+        // Star estimates, keyed by the mask of the triples of the star.
+        private final Map<Long, Double> starMemo = new HashMap<>() ;
+
+        Planner(List<Triple> triples)
+        {
+            this.triples = triples ;
+            this.N = triples.size() ;
+            for ( int i = 0 ; i < N ; i++ )
+            {
+                Triple t = triples.get(i) ;
+                long bit = 1L << i ;
+                addVar(t.getSubject(), bit) ;
+                addVar(t.getPredicate(), bit) ;
+                addVar(t.getObject(), bit) ;
+            }
+        }
+
+        private void addVar(Node n, long bit)
+        {
+            if ( Var.isVar(n) )
+                varMasks.merge(Var.alloc(n), bit, (a, b) -> a | b) ;
+        }
+
+        /** Triples of {@code candidates} that share a variable with the triples of {@code mask}. */
+        private long connected(long mask, long candidates)
+        {
+            long reach = 0 ;
+            for ( long m : varMasks.values() )
+            {
+                if ( (m & mask) != 0 )
+                    reach |= m ;
+            }
+            return reach & candidates ;
+        }
+
+        /** Choose an order by dynamic programming over all subsets. */
+        int[] exhaustive()
+        {
+            int size = 1 << N ;
+            double[] cost = new double[size] ;
+            int[] last = new int[size] ;
+            for ( int mask = 1 ; mask < size ; mask++ )
+            {
+                if ( Integer.bitCount(mask) == 1 )
+                {
+                    cost[mask] = cardinality(mask) ;
+                    last[mask] = Integer.numberOfTrailingZeros(mask) ;
+                    continue ;
+                }
+                // The last triple must connect to the rest unless no triple does.
+                long choices = 0 ;
+                for ( int i = 0 ; i < N ; i++ )
+                {
+                    long bit = 1L << i ;
+                    if ( (mask & bit) != 0 && connected(mask & ~bit, bit) != 0 )
+                        choices |= bit ;
+                }
+                if ( choices == 0 )
+                    choices = mask ;
+                double best = Double.POSITIVE_INFINITY ;
+                int bestIdx = -1 ;
+                for ( int i = 0 ; i < N ; i++ )
+                {
+                    if ( (choices & (1L << i)) == 0 )
+                        continue ;
+                    double c = cost[mask & ~(1 << i)] ;
+                    if ( bestIdx < 0 || c < best )
+                    {
+                        best = c ;
+                        bestIdx = i ;
+                    }
+                }
+                cost[mask] = best + cardinality(mask) ;
+                last[mask] = bestIdx ;
+            }
+            int[] indexes = new int[N] ;
+            int mask = size - 1 ;
+            for ( int k = N - 1 ; k >= 0 ; k-- )
+            {
+                indexes[k] = last[mask] ;
+                mask &= ~(1 << last[mask]) ;
+            }
+            return indexes ;
+        }
+
+        /** Choose an order by repeatedly adding the triple giving the smallest result. */
+        int[] greedy()
+        {
+            int[] indexes = new int[N] ;
+            long all = (1L << N) - 1 ;
+            long mask = 0 ;
+            for ( int k = 0 ; k < N ; k++ )
+            {
+                long remaining = all & ~mask ;
+                long choices = ( mask == 0 ) ? remaining : connected(mask, remaining) ;
+                if ( choices == 0 )
+                    choices = remaining ;
+                double best = Double.POSITIVE_INFINITY ;
+                int bestIdx = -1 ;
+                for ( int i = 0 ; i < N ; i++ )
+                {
+                    long bit = 1L << i ;
+                    if ( (choices & bit) == 0 )
+                        continue ;
+                    double c = cardinality(mask | bit) ;
+                    if ( bestIdx < 0 || c < best )
+                    {
+                        best = c ;
+                        bestIdx = i ;
+                    }
+                }
+                indexes[k] = bestIdx ;
+                mask |= 1L << bestIdx ;
+            }
+            return indexes ;
+        }
+
+        /** Estimated number of solutions of the triples in the mask. */
+        double cardinality(long mask)
+        {
+            // Group into stars by subject.
+            Map<Node, Long> stars = new LinkedHashMap<>() ;
+            for ( int i = 0 ; i < N ; i++ )
+            {
+                if ( (mask & (1L << i)) != 0 )
+                    stars.merge(triples.get(i).getSubject(), 1L << i, (a, b) -> a | b) ;
+            }
+
+            double card = 1 ;
+            // Distinct values for each place a variable is used.
+            Map<Var, List<Double>> domains = new HashMap<>() ;
+            for ( Map.Entry<Node, Long> e : stars.entrySet() )
+            {
+                Node subject = e.getKey() ;
+                long starMask = e.getValue() ;
+                card *= star(subject, starMask) ;
+                if ( Var.isVar(subject) )
+                    domains.computeIfAbsent(Var.alloc(subject), x->new ArrayList<>()).add(subjects(starMask)) ;
+                for ( int i = 0 ; i < N ; i++ )
+                {
+                    if ( (starMask & (1L << i)) == 0 )
+                        continue ;
+                    Triple t = triples.get(i) ;
+                    if ( Var.isVar(t.getPredicate()) )
+                        domains.computeIfAbsent(Var.alloc(t.getPredicate()), x->new ArrayList<>())
+                            .add((double)stats.predicates().size()) ;
+                    if ( Var.isVar(t.getObject()) )
+                    {
+                        double d = Var.isVar(t.getPredicate())
+                            ? stats.objects()
+                            : stats.distinctObjects(t.getPredicate()) ;
+                        domains.computeIfAbsent(Var.alloc(t.getObject()), x->new ArrayList<>()).add(d) ;
+                    }
+                }
+            }
+            if ( card == 0 )
+                return 0 ;
+
+            // Join on each variable used in more than one place: all but the
+            // smallest domain reduce the result.
+            for ( List<Double> d : domains.values() )
+            {
+                if ( d.size() < 2 )
+                    continue ;
+                Collections.sort(d) ;
+                for ( int j = 1 ; j < d.size() ; j++ )
+                    card = card / Math.max(1, d.get(j)) ;
+            }
+            return card ;
+        }
+
+        /** Constant predicates of the triples in the mask. */
+        private Set<Node> predicates(long mask)
+        {
+            Set<Node> predicates = new HashSet<>() ;
+            for ( int i = 0 ; i < N ; i++ )
+            {
+                if ( (mask & (1L << i)) != 0 && ! Var.isVar(triples.get(i).getPredicate()) )
+                    predicates.add(triples.get(i).getPredicate()) ;
+            }
+            return predicates ;
+        }
+
+        /** Number of subjects that have all the predicates of the star. */
+        private double subjects(long starMask)
+        {
+            long n = 0 ;
+            for ( CharacteristicSet cs : stats.supersets(predicates(starMask)) )
+                n += cs.subjects() ;
+            return n ;
+        }
+
+        /** Estimated number of solutions of a star. */
+        private double star(Node subject, long starMask)
+        {
+            Double x = starMemo.get(starMask) ;
+            if ( x != null )
+                return x ;
+            double card = 0 ;
+            for ( CharacteristicSet cs : stats.supersets(predicates(starMask)) )
+            {
+                double c = cs.subjects() ;
+                for ( int i = 0 ; i < N && c > 0 ; i++ )
+                {
+                    if ( (starMask & (1L << i)) != 0 )
+                        c *= perSubject(cs, triples.get(i)) ;
+                }
+                card += c ;
+            }
+            // A fixed subject is one of all the subjects.
+            if ( ! Var.isVar(subject) )
+                card = ( stats.subjects() == 0 ) ? 0 : card / stats.subjects() ;
+            starMemo.put(starMask, card) ;
+            return card ;
+        }
+
+        /** Matches of a triple pattern for one subject of a characteristic set. */
+        private double perSubject(CharacteristicSet cs, Triple t)
+        {
+            Node p = t.getPredicate() ;
+            Node o = t.getObject() ;
+            if ( Var.isVar(p) )
+            {
+                double m = (double)cs.triples() / cs.subjects() ;
+                if ( ! Var.isVar(o) )
+                    m = m / Math.max(1, stats.objects()) ;
+                return m ;
+            }
+            double m = (double)cs.occurrences(p) / cs.subjects() ;
+            if ( ! Var.isVar(o) )
+                m = m / Math.max(1, stats.distinctObjects(p)) ;
+            return m ;
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package org.apache.jena.sparql.engine.optimizer.reorder ;
 
 import org.apache.jena.sparql.core.BasicPattern ;
+import org.apache.jena.sparql.engine.optimizer.CharacteristicSets ;
 import org.apache.jena.sparql.engine.optimizer.StatsMatcher ;
 
 public class ReorderLib
@@ -85,4 +86,14 @@ public class ReorderLib
         return new ReorderWeighted(stats) ;
     }
 
+    /**
+     * Return a ReorderTransformation that plans using characteristic sets
+     * read from a file.
+     * @see ReorderCharacteristicSets
+     */
+    public static ReorderTransformation characteristicSets(String filename) {
+        CharacteristicSets stats = CharacteristicSets.read(filename) ;
+        return new ReorderCharacteristicSets(stats) ;
+    }
+
 }
@@ -18,9 +18,14 @@
 
 package org.apache.jena.sparql.expr.aggregate;
 
+import java.util.ArrayList ;
+import java.util.Arrays ;
 import java.util.HashSet ;
+import java.util.List ;
 import java.util.Set ;
 
+import org.apache.jena.graph.Node ;
+
 import org.apache.jena.sparql.engine.binding.Binding ;
 import org.apache.jena.sparql.expr.Expr ;
 import org.apache.jena.sparql.expr.ExprEvalException ;
@@ -80,6 +85,24 @@ public abstract class AccumulatorExpr implements Accumulator
 
     /** Get the count of accumulated values */ 
     protected long getAccCount() { return accCount ; }
+
+    /**
+     * State for {@link AccumulatorMergeable} : the given nodes of the subclass then
+     * the counts of values and errors.
+     */
+    protected List<Node> state(Node... nodes) {
+        List<Node> state = new ArrayList<>(Arrays.asList(nodes)) ;
+        state.add(AccumulatorMergeable.asNode(accCount)) ;
+        state.add(AccumulatorMergeable.asNode(errorCount)) ;
+        return state ;
+    }
+
+    /** Merge the counts at the end of a state from {@link #state}. */
+    protected void mergeCounts(List<Node> state) {
+        int N = state.size() ;
+        accCount += AccumulatorMergeable.asLong(state.get(N-2)) ;
+        errorCount += AccumulatorMergeable.asLong(state.get(N-1)) ;
+    }
     
     /** Called if no errors to get the accumulated result */
     protected abstract NodeValue getAccValue() ; 
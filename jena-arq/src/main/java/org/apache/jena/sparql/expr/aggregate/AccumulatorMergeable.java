@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.expr.aggregate;
+
+import java.util.List ;
+
+import org.apache.jena.graph.Node ;
+import org.apache.jena.sparql.expr.NodeValue ;
+
+/**
+ * An {@link Accumulator} that can save its partial state, and merge in the partial
+ * state of another accumulator of the same aggregator. This allows a group to be
+ * accumulated in parts, for example when grouping spills to disk.
+ * <p>
+ * The state is a fixed length list of RDF terms so it can be kept in a binding.
+ * An element is null for "no value".
+ */
+public interface AccumulatorMergeable extends Accumulator
+{
+    /** The state of the accumulator so far. */
+    public List<Node> getState() ;
+
+    /** Merge the state, from {@link #getState}, of another accumulator of the same aggregator. */
+    public void merge(List<Node> state) ;
+
+    /** A count as state */
+    public static Node asNode(long count) {
+        return NodeValue.makeInteger(count).asNode() ;
+    }
+
+    /** A value as state */
+    public static Node asNode(NodeValue nv) {
+        return ( nv == null ) ? null : nv.asNode() ;
+    }
+
+    /** A count from state */
+    public static long asLong(Node node) {
+        return ( node == null ) ? 0 : NodeValue.makeNode(node).getInteger().longValue() ;
+    }
+
+    /** A value from state */
+    public static NodeValue asNodeValue(Node node) {
+        return ( node == null ) ? null : NodeValue.makeNode(node) ;
+    }
+}
@@ -18,6 +18,8 @@
 
 package org.apache.jena.sparql.expr.aggregate;
 
+import java.util.List ;
+
 import org.apache.jena.graph.Node ;
 import org.apache.jena.sparql.engine.binding.Binding ;
 import org.apache.jena.sparql.expr.Expr ;
@@ -65,7 +67,7 @@ public class AggAvg extends AggregatorBase
     }
     
     // ---- Accumulator
-    private static class AccAvg extends AccumulatorExpr
+    private static class AccAvg extends AccumulatorExpr implements AccumulatorMergeable
     {
         // Non-empty case but still can be nothing because the expression may be undefined.
         private NodeValue total = noValuesToAvg ;
@@ -110,5 +112,25 @@ public class AggAvg extends AggregatorBase
             NodeValue nvCount = NodeValue.makeInteger(count) ;
             return XSDFuncOp.numDivide(total, nvCount) ;
         }
+
+        @Override
+        public List<Node> getState()
+        {
+            Node nTotal = ( count == 0 ) ? null : AccumulatorMergeable.asNode(total) ;
+            return state(nTotal, AccumulatorMergeable.asNode(count)) ;
+        }
+
+        @Override
+        public void merge(List<Node> state)
+        {
+            int c = (int)AccumulatorMergeable.asLong(state.get(1)) ;
+            if ( c > 0 )
+            {
+                NodeValue nv = AccumulatorMergeable.asNodeValue(state.get(0)) ;
+                total = ( count == 0 ) ? nv : XSDFuncOp.numAdd(nv, total) ;
+                count += c ;
+            }
+            mergeCounts(state) ;
+        }
     }
 }
@@ -18,6 +18,8 @@
 
 package org.apache.jena.sparql.expr.aggregate;
 
+import java.util.List ;
+
 import org.apache.jena.graph.Node ;
 import org.apache.jena.sparql.engine.binding.Binding ;
 import org.apache.jena.sparql.expr.Expr ;
@@ -56,7 +58,7 @@ public class AggCountVar extends AggregatorBase
     public Node getValueEmpty()     { return NodeConst.nodeZero ; } 
 
     // ---- Accumulator
-    private static class AccCountVar extends AccumulatorExpr
+    private static class AccCountVar extends AccumulatorExpr implements AccumulatorMergeable
     {
         private long count = 0 ;
         public AccCountVar(Expr expr)   { super(expr, false) ; }
@@ -76,5 +78,16 @@ public class AggCountVar extends AggregatorBase
 
         @Override
         public NodeValue getAccValue()             { return NodeValue.makeInteger(count) ; }
+
+        @Override
+        public List<Node> getState()
+        { return state(AccumulatorMergeable.asNode(count)) ; }
+
+        @Override
+        public void merge(List<Node> state)
+        {
+            count += AccumulatorMergeable.asLong(state.get(0)) ;
+            mergeCounts(state) ;
+        }
     }
 }
@@ -18,6 +18,7 @@
 
 package org.apache.jena.sparql.expr.aggregate;
 
+import java.util.List ;
 import java.util.Objects;
 
 import org.apache.jena.atlas.io.IndentedLineBuffer ;
@@ -134,7 +135,7 @@ public class AggGroupConcat extends AggregatorBase
     }
 
     // ---- Accumulator
-    private static class AccGroupConcat extends AccumulatorExpr
+    private static class AccGroupConcat extends AccumulatorExpr implements AccumulatorMergeable
     {
         private StringBuilder stringSoFar = new StringBuilder() ;
         private boolean first = true ;
@@ -160,5 +161,26 @@ public class AggGroupConcat extends AggregatorBase
         @Override
         public NodeValue getAccValue()
         { return NodeValue.makeString(stringSoFar.toString()) ; }
+
+        @Override
+        public List<Node> getState()
+        {
+            Node str = first ? null : NodeValue.makeString(stringSoFar.toString()).asNode() ;
+            return state(str) ;
+        }
+
+        @Override
+        public void merge(List<Node> state)
+        {
+            Node str = state.get(0) ;
+            if ( str != null )
+            {
+                if ( ! first )
+                    stringSoFar.append(separator) ;
+                stringSoFar.append(str.getLiteralLexicalForm()) ;
+                first = false ;
+            }
+            mergeCounts(state) ;
+        }
     }
 }
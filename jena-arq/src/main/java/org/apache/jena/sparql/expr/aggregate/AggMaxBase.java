@@ -18,6 +18,8 @@
 
 package org.apache.jena.sparql.expr.aggregate;
 
+import java.util.List ;
+
 import org.apache.jena.graph.Node ;
 import org.apache.jena.sparql.engine.binding.Binding ;
 import org.apache.jena.sparql.expr.Expr ;
@@ -40,7 +42,7 @@ abstract class AggMaxBase extends AggregatorBase
     public final Node getValueEmpty()     { return null ; } 
 
     // ---- Accumulator
-    private static class AccMax extends AccumulatorExpr
+    private static class AccMax extends AccumulatorExpr implements AccumulatorMergeable
     {
         // Non-empty case but still can be nothing because the expression may be undefined.
         private NodeValue maxSoFar = null ;
@@ -73,5 +75,18 @@ abstract class AggMaxBase extends AggregatorBase
         @Override
         public NodeValue getAccValue()
         { return maxSoFar ; }
+
+        @Override
+        public List<Node> getState()
+        { return state(AccumulatorMergeable.asNode(maxSoFar)) ; }
+
+        @Override
+        public void merge(List<Node> state)
+        {
+            NodeValue nv = AccumulatorMergeable.asNodeValue(state.get(0)) ;
+            if ( nv != null && ( maxSoFar == null || NodeValue.compareAlways(maxSoFar, nv) < 0 ) )
+                maxSoFar = nv ;
+            mergeCounts(state) ;
+        }
     }
 }
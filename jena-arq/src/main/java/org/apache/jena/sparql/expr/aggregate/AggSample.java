@@ -18,6 +18,8 @@
 
 package org.apache.jena.sparql.expr.aggregate;
 
+import java.util.List ;
+
 import org.apache.jena.graph.Node ;
 import org.apache.jena.sparql.engine.binding.Binding ;
 import org.apache.jena.sparql.expr.Expr ;
@@ -56,7 +58,7 @@ public class AggSample extends AggregatorBase
     } 
 
     // ---- Accumulator
-    private static class AccSample extends AccumulatorExpr
+    private static class AccSample extends AccumulatorExpr implements AccumulatorMergeable
     {
         // Sample: first evaluation of the expression that is not an error.
         private NodeValue sampleSoFar = null ;
@@ -85,5 +87,17 @@ public class AggSample extends AggregatorBase
             // Return any seen value and null only if none.
             return getAccValue();
         }
+
+        @Override
+        public List<Node> getState() {
+            return state(AccumulatorMergeable.asNode(sampleSoFar));
+        }
+
+        @Override
+        public void merge(List<Node> state) {
+            if ( sampleSoFar == null )
+                sampleSoFar = AccumulatorMergeable.asNodeValue(state.get(0));
+            mergeCounts(state);
+        }
     }
 }
@@ -296,7 +296,7 @@ public class UpdateEngineWorker implements UpdateVisitor
         // serialize the quads after applying the template instead.
         
         ThresholdPolicy<Binding> policy = ThresholdPolicyFactory.policyFromContext(datasetGraph.getContext());
-        DataBag<Binding> db = BagFactory.newDefaultBag(policy, SerializationFactoryFinder.bindingSerializationFactory());
+        DataBag<Binding> db = BagFactory.newDefaultBag(policy, SerializationFactoryFinder.bindingSerializationFactory(datasetGraph.getContext()));
         try {
             Iterator<Binding> bindings = evalBindings(el);
             db.addAll(bindings);
@@ -347,7 +347,7 @@ public class UpdateEngineWorker implements UpdateVisitor
         
         Query query = elementToQuery(elt) ;
         ThresholdPolicy<Binding> policy = ThresholdPolicyFactory.policyFromContext(datasetGraph.getContext());
-        DataBag<Binding> db = BagFactory.newDefaultBag(policy, SerializationFactoryFinder.bindingSerializationFactory()) ;
+        DataBag<Binding> db = BagFactory.newDefaultBag(policy, SerializationFactoryFinder.bindingSerializationFactory(datasetGraph.getContext())) ;
         try {
             Iterator<Binding> bindings = evalBindings(query, dsg, inputBinding, context);
 
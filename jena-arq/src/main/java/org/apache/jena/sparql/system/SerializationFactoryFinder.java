@@ -24,11 +24,17 @@ import java.util.Iterator ;
 
 import org.apache.jena.atlas.data.SerializationFactory ;
 import org.apache.jena.atlas.lib.Sink ;
-import org.apache.jena.sparql.engine.binding.Binding ;
-import org.apache.jena.sparql.engine.binding.BindingInputStream ;
-import org.apache.jena.sparql.engine.binding.BindingOutputStream ;
+import org.apache.jena.query.ARQ ;
+import org.apache.jena.sparql.ARQException ;
+import org.apache.jena.sparql.engine.binding.* ;
+import org.apache.jena.sparql.util.Context ;
 
 public class SerializationFactoryFinder {
+    public static final String SpillFormatText          = "text";
+    public static final String SpillFormatBinary        = "binary";
+    public static final String SpillFormatCompressed    = "compressed";
+
+    /** The text serialization of bindings. */
     public static SerializationFactory<Binding> bindingSerializationFactory() {
         return new SerializationFactory<Binding>() {
             @Override
@@ -42,4 +48,31 @@ public class SerializationFactoryFinder {
             }
         };
     }
+
+    /** The binary serialization of bindings, optionally compressed. */
+    public static SerializationFactory<Binding> bindingBinarySerializationFactory(boolean compressed) {
+        return new SerializationFactory<Binding>() {
+            @Override
+            public Sink<Binding> createSerializer(OutputStream out) {
+                return new BindingBinaryOutputStream(out, compressed);
+            }
+
+            @Override
+            public Iterator<Binding> createDeserializer(InputStream in) {
+                return new BindingBinaryInputStream(in, compressed);
+            }
+        };
+    }
+
+    /** The serialization of bindings for temporary files, as set by {@link ARQ#spillFormat} in the context. */
+    public static SerializationFactory<Binding> bindingSerializationFactory(Context context) {
+        String format = ( context == null ) ? null : context.getAsString(ARQ.spillFormat);
+        if ( format == null || format.equals(SpillFormatBinary) )
+            return bindingBinarySerializationFactory(false);
+        if ( format.equals(SpillFormatCompressed) )
+            return bindingBinarySerializationFactory(true);
+        if ( format.equals(SpillFormatText) )
+            return bindingSerializationFactory();
+        throw new ARQException("Bad spillFormat: "+format);
+    }
 }
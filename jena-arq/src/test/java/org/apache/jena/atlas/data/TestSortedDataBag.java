@@ -19,12 +19,18 @@
 package org.apache.jena.atlas.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File ;
+import java.io.InputStream ;
+import java.io.OutputStream ;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap ;
 
 import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.atlas.lib.Sink ;
 import org.apache.jena.datatypes.xsd.XSDDatatype ;
 import org.apache.jena.graph.NodeFactory ;
 import org.apache.jena.query.Query ;
@@ -51,6 +57,11 @@ public class TestSortedDataBag
     }
     
     private void testSorting(int numBindings, int threshold)
+    {
+        testSorting(numBindings, threshold, false);
+    }
+    
+    private void testSorting(int numBindings, int threshold, boolean parallel)
     {
         List<Binding> unsorted = randomBindings(numBindings);
         
@@ -65,14 +76,20 @@ public class TestSortedDataBag
         SortedDataBag<Binding> db = new SortedDataBag<>(
                 new ThresholdPolicyCount<Binding>(threshold),
                 SerializationFactoryFinder.bindingSerializationFactory(),
-                comparator);
+                comparator, parallel);
         try
         {
-            db.addAll(unsorted);
+            if ( parallel )
+            {
+                for ( Binding b : unsorted )
+                    db.add(comparator.withSortKeys(b));
+            }
+            else
+                db.addAll(unsorted);
             Iterator<Binding> iter = db.iterator(); 
             while (iter.hasNext())
             {
-                sorted.add(iter.next());
+                sorted.add(BindingComparator.unwrap(iter.next()));
             }
             Iter.close(iter);
         }
@@ -109,6 +126,126 @@ public class TestSortedDataBag
         }
     }
     
+    @Test public void testSortingParallel() 
+    {
+        testSorting(500, 10, true);
+        testSorting(500, 1000, true);
+        testSorting(5000, 1000, true);
+        testSorting(1, 1, true);
+        testSorting(0, 1, true);
+    }
+    
+    @Test public void testSortingParallelWithPreMerge() 
+    {
+        int origMaxSpillFiles = SortedDataBag.MAX_SPILL_FILES;
+        try
+        {
+            SortedDataBag.MAX_SPILL_FILES = 2;    testSorting(5, 1, true);
+            SortedDataBag.MAX_SPILL_FILES = 2;    testSorting(1000, 10, true);
+            SortedDataBag.MAX_SPILL_FILES = 5;    testSorting(1000, 7, true);
+        }
+        finally
+        {
+            SortedDataBag.MAX_SPILL_FILES = origMaxSpillFiles;
+        }
+    }
+    
+    @Test public void testMerge()
+    {
+        // Merge of runs of different lengths, some empty, with repeated items.
+        random = new Random(7);
+        for ( int k = 0 ; k <= 9 ; k++ )
+        {
+            List<Iterator<Integer>> runs = new ArrayList<>();
+            List<Integer> expected = new ArrayList<>();
+            for ( int i = 0 ; i < k ; i++ )
+            {
+                List<Integer> run = new ArrayList<>();
+                int len = random.nextInt(20);
+                for ( int j = 0 ; j < len ; j++ )
+                    run.add(random.nextInt(25));
+                Collections.sort(run);
+                expected.addAll(run);
+                runs.add(run.iterator());
+            }
+            Collections.sort(expected);
+            List<Integer> merged = Iter.toList(new SortedDataBag.SpillSortIterator<>(runs, null));
+            assertEquals(expected, merged);
+        }
+    }
+    
+    @Test public void testMergeComparator()
+    {
+        List<Iterator<String>> runs = new ArrayList<>();
+        runs.add(Arrays.asList("c", "b", "a").iterator());
+        runs.add(Arrays.asList("d", "a").iterator());
+        runs.add(Arrays.asList("e").iterator());
+        List<String> merged = Iter.toList(new SortedDataBag.SpillSortIterator<>(runs, Comparator.reverseOrder()));
+        assertEquals(Arrays.asList("e", "d", "c", "b", "a", "a"), merged);
+    }
+    
+    @Test public void testSpillThreads()
+    {
+        // Background spills are written by the bag's own threads.
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        SerializationFactory<Binding> base = SerializationFactoryFinder.bindingSerializationFactory();
+        SerializationFactory<Binding> serializationFactory = new SerializationFactory<Binding>() {
+            @Override
+            public Sink<Binding> createSerializer(OutputStream out) {
+                threads.add(Thread.currentThread().getName());
+                return base.createSerializer(out);
+            }
+            @Override
+            public Iterator<Binding> createDeserializer(InputStream in) {
+                return base.createDeserializer(in);
+            }
+        };
+        List<SortCondition> conditions = new ArrayList<>();
+        conditions.add(new SortCondition(new ExprVar("8"), Query.ORDER_ASCENDING));
+        BindingComparator comparator = new BindingComparator(conditions);
+        SortedDataBag<Binding> db = new SortedDataBag<>(new ThresholdPolicyCount<Binding>(100), serializationFactory, comparator, true);
+        try
+        {
+            db.addAll(randomBindings(550));
+            assertEquals(550, Iter.count(db.iterator()));
+        }
+        finally
+        {
+            db.close();
+        }
+        assertFalse(threads.isEmpty());
+        for (String name : threads)
+            assertTrue(name, name.startsWith("SortedDataBag-spill-"));
+    }
+    
+    @Test public void testCancelParallel()
+    {
+        // A cancelled sort in the background is abandoned quietly.
+        List<SortCondition> conditions = new ArrayList<>();
+        conditions.add(new SortCondition(new ExprVar("8"), Query.ORDER_ASCENDING));
+        BindingComparator comparator = new BindingComparator(conditions);
+        SortedDataBag<Binding> db = new SortedDataBag<>(
+                new ThresholdPolicyCount<Binding>(100),
+                SerializationFactoryFinder.bindingSerializationFactory(),
+                comparator, true);
+        List<File> spillFiles = new ArrayList<>();
+        try
+        {
+            db.addAll(randomBindings(550));
+            spillFiles.addAll(db.getSpillFiles());
+            assertEquals(5, spillFiles.size());
+            // Cancel while the last spill may still be being sorted.
+            db.cancel();
+            assertTrue(db.isCancelled());
+        }
+        finally
+        {
+            db.close();
+        }
+        for (File file : spillFiles)
+            assertFalse(file.exists());
+    }
+    
     @Test public void testTemporaryFilesAreCleanedUpAfterCompletion()
     {
         List<Binding> unsorted = randomBindings(500);
@@ -18,6 +18,7 @@
 
 package org.apache.jena.sparql.engine;
 
+import org.apache.jena.sparql.engine.binding.TestBindingBinaryStreams ;
 import org.apache.jena.sparql.engine.binding.TestBindingStreams ;
 import org.apache.jena.sparql.engine.http.TestQueryEngineHTTP ;
 import org.apache.jena.sparql.engine.http.TestService ;
@@ -28,6 +29,7 @@ import org.junit.runners.Suite ;
 @RunWith(Suite.class)
 @Suite.SuiteClasses( {
         TestBindingStreams.class
+      , TestBindingBinaryStreams.class
       , TestTableJoin.class
       , TestService.class
       , TestQueryEngineHTTP.class
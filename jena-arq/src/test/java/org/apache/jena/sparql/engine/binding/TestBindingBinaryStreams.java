@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.binding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream ;
+import java.io.ByteArrayOutputStream ;
+import java.util.ArrayList ;
+import java.util.Iterator ;
+import java.util.List ;
+
+import org.apache.jena.atlas.data.SerializationFactory ;
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.atlas.lib.Sink ;
+import org.apache.jena.graph.Node ;
+import org.apache.jena.graph.NodeFactory ;
+import org.apache.jena.query.ARQ ;
+import org.apache.jena.sparql.ARQException ;
+import org.apache.jena.sparql.core.Var ;
+import org.apache.jena.sparql.resultset.ResultSetCompare ;
+import org.apache.jena.sparql.sse.SSE ;
+import org.apache.jena.sparql.sse.builders.BuilderBinding ;
+import org.apache.jena.sparql.system.SerializationFactoryFinder ;
+import org.apache.jena.sparql.util.Context ;
+import org.apache.jena.sparql.util.NodeUtils ;
+import org.junit.Test ;
+
+public class TestBindingBinaryStreams
+{
+    static Binding b12 = build("(?a 1) (?b 2)") ;
+    static Binding b0  = build("") ;
+    static Binding b1  = build("(?a <http://example/abc>) (?b _:XYZ) (?c 'abc') (?d 'abc'@en) (?e 'aΩc'^^<http://example/dt>)") ;
+    static Binding b2  = build("(?a 'a\"b\"c\\n') (?b 1.5) (?c 'x'^^<http://www.w3.org/2001/XMLSchema#int>)") ;
+    static Binding b3  = build("(?a << <http://example/s> <http://example/p> 1 >>) (?b <http://example/s>)") ;
+    static Binding b4  = build("(?a <http://example/abc>) (?b 2)") ;
+
+    @Test public void bindingBinary_01()    { testWriteRead(b12) ; }
+    @Test public void bindingBinary_02()    { testWriteRead(b0) ; }
+    @Test public void bindingBinary_03()    { testWriteRead(b1, b2, b3) ; }
+    @Test public void bindingBinary_04()    { testWriteRead(b12, b4, b1, b0, b12, b3, b3) ; }
+
+    @Test public void bindingBinary_05() {
+        // Long strings.
+        StringBuilder sb = new StringBuilder() ;
+        for ( int i = 0 ; i < 1000 ; i++ )
+            sb.append("abcdefghijΩ") ;
+        BindingMap b = BindingFactory.create() ;
+        b.add(Var.alloc("x"), NodeFactory.createLiteral(sb.toString())) ;
+        testWriteRead(b, b12, b) ;
+    }
+
+    @Test public void bindingBinary_06() {
+        // More terms than are remembered.
+        List<Binding> x = new ArrayList<>() ;
+        for ( int i = 0 ; i < BindingBinaryOutputStream.MaxTerms + 100 ; i++ ) {
+            BindingMap b = BindingFactory.create() ;
+            b.add(Var.alloc("x"), NodeFactory.createURI("http://example/"+i)) ;
+            b.add(Var.alloc("y"), NodeFactory.createURI("http://example/"+(i%10))) ;
+            x.add(b) ;
+        }
+        testWriteRead(x.toArray(new Binding[0])) ;
+    }
+
+    @Test public void bindingBinary_07() {
+        // Parent bindings.
+        BindingMap b = BindingFactory.create(b12) ;
+        b.add(Var.alloc("c"), NodeFactory.createURI("http://example/c")) ;
+        testWriteRead(b, b12) ;
+    }
+
+    @Test public void bindingBinary_context_01() {
+        Context cxt = new Context() ;
+        testWriteRead(SerializationFactoryFinder.bindingSerializationFactory(cxt), b12, b1, b3) ;
+        // The text format does not read triple terms.
+        cxt.set(ARQ.spillFormat, SerializationFactoryFinder.SpillFormatText) ;
+        testWriteRead(SerializationFactoryFinder.bindingSerializationFactory(cxt), b12, b1) ;
+        cxt.set(ARQ.spillFormat, SerializationFactoryFinder.SpillFormatCompressed) ;
+        testWriteRead(SerializationFactoryFinder.bindingSerializationFactory(cxt), b12, b1, b3) ;
+    }
+
+    @Test(expected=ARQException.class)
+    public void bindingBinary_context_02() {
+        Context cxt = new Context() ;
+        cxt.set(ARQ.spillFormat, "unknown") ;
+        SerializationFactoryFinder.bindingSerializationFactory(cxt) ;
+    }
+
+    static void testWriteRead(Binding ... bindings) {
+        testWriteRead(SerializationFactoryFinder.bindingBinarySerializationFactory(false), bindings) ;
+        testWriteRead(SerializationFactoryFinder.bindingBinarySerializationFactory(true), bindings) ;
+    }
+
+    static void testWriteRead(SerializationFactory<Binding> factory, Binding ... bindings) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream() ;
+        Sink<Binding> output = factory.createSerializer(out) ;
+        for ( Binding b : bindings )
+            output.send(b) ;
+        output.close() ;
+
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray()) ;
+        Iterator<Binding> input = factory.createDeserializer(in) ;
+        List<Binding> results = Iter.toList(input) ;
+        Iter.close(input) ;
+        assertEquals(bindings.length, results.size()) ;
+        for ( int i = 0 ; i < bindings.length ; i++ ) {
+            Binding b1 = bindings[i] ;
+            Binding b2 = results.get(i) ;
+            assertTrue("Bindings do not match: expected="+b1+" got="+b2, equalBindings(b1, b2)) ;
+        }
+    }
+
+    private static boolean equalBindings(Binding binding1, Binding binding2) {
+        // Exactly the same terms, including blank node labels.
+        return ResultSetCompare.equal(binding1, binding2, NodeUtils.sameNode) ;
+    }
+
+    private static Binding build(String string) {
+        return BuilderBinding.build(SSE.parse("(binding "+string+")")) ;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.iterator;
+
+import java.io.OutputStream;
+
+import org.apache.jena.atlas.lib.Lib;
+import org.apache.jena.atlas.lib.Sink;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.*;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.engine.binding.BindingMap;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.sparql.system.SerializationFactoryFinder;
+import org.apache.jena.sparql.util.Context;
+
+/**
+ * Compare the formats of the temporary files used when ORDER BY and DISTINCT
+ * spill to disk: bytes written and query time.
+ */
+public class CmdPerfSpillFormat
+{
+    private static final String[] formats = {
+        SerializationFactoryFinder.SpillFormatText,
+        SerializationFactoryFinder.SpillFormatBinary,
+        SerializationFactoryFinder.SpillFormatCompressed
+    };
+
+    private static final String[] queries = {
+        "SELECT * { ?s ?p ?o } ORDER BY ?o ?s",
+        "SELECT DISTINCT ?s ?o { ?s ?p ?o }"
+    };
+
+    public static void main(String...argv) {
+        // Usage: numTriples [threshold]
+        if ( argv.length != 1 && argv.length != 2 ) {
+            System.err.println("Usage: "+Lib.classShortName(CmdPerfSpillFormat.class)+" numTriples [threshold]");
+            System.exit(1);
+        }
+        int N = Integer.parseInt(argv[0]);
+        long threshold = ( argv.length == 2 ) ? Long.parseLong(argv[1]) : 10_000;
+        Graph graph = data(N);
+
+        for ( String format : formats ) {
+            Context cxt = new Context();
+            cxt.set(ARQ.spillFormat, format);
+            System.out.printf("%-10s : %,d bytes\n", format, size(graph, cxt));
+        }
+        for ( String qs : queries ) {
+            System.out.println(qs);
+            for ( String format : formats ) {
+                // Warm up then time.
+                exec(graph, qs, format, threshold);
+                long start = System.currentTimeMillis();
+                long count = exec(graph, qs, format, threshold);
+                long time = System.currentTimeMillis() - start;
+                System.out.printf("  %-10s : %,d rows : %,d ms\n", format, count, time);
+            }
+        }
+    }
+
+    private static long exec(Graph graph, String qs, String format, long threshold) {
+        Query query = QueryFactory.create(qs);
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, ModelFactory.createModelForGraph(graph)) ) {
+            qExec.getContext().set(ARQ.spillToDiskThreshold, threshold);
+            qExec.getContext().set(ARQ.spillFormat, format);
+            return ResultSetFormatter.consume(qExec.execSelect());
+        }
+    }
+
+    /** Bytes to write all the triples as bindings. */
+    private static long size(Graph graph, Context cxt) {
+        long[] count = { 0 };
+        OutputStream out = new OutputStream() {
+            @Override public void write(int b) { count[0]++; }
+            @Override public void write(byte[] b, int off, int len) { count[0] += len; }
+        };
+        Sink<Binding> sink = SerializationFactoryFinder.bindingSerializationFactory(cxt).createSerializer(out);
+        graph.find().forEachRemaining(t->{
+            BindingMap b = BindingFactory.create();
+            b.add(Var.alloc("s"), t.getSubject());
+            b.add(Var.alloc("p"), t.getPredicate());
+            b.add(Var.alloc("o"), t.getObject());
+            sink.send(b);
+        });
+        sink.close();
+        return count[0];
+    }
+
+    /** Subjects with a few properties each: names, numbers and links. */
+    private static Graph data(int N) {
+        Graph graph = GraphFactory.createDefaultGraph();
+        String NS = "http://example/";
+        Node name = NodeFactory.createURI(NS+"name");
+        Node value = NodeFactory.createURI(NS+"value");
+        Node link = NodeFactory.createURI(NS+"link");
+        for ( int i = 0 ; graph.size() < N ; i++ ) {
+            Node s = NodeFactory.createURI(NS+"subject/"+i);
+            graph.add(Triple.create(s, name, NodeFactory.createLiteral("Name "+(i%5000), "en")));
+            graph.add(Triple.create(s, value, NodeFactory.createLiteral(Integer.toString(i % 1000), XSDDatatype.XSDinteger)));
+            graph.add(Triple.create(s, link, NodeFactory.createURI(NS+"subject/"+((i*7919) % (N/3+1)))));
+        }
+        return graph;
+    }
+}
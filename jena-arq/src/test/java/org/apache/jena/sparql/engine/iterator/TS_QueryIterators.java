@@ -30,6 +30,8 @@ import org.junit.runners.Suite ;
     , TestDataBagDistinctOrder.class
     , TestCancelDistinct.class
     , TestSortedDataBagCancellation.class
+    , TestGroupSpill.class
+    , TestQueryIterParallel.class
 })
 public class TS_QueryIterators {
 
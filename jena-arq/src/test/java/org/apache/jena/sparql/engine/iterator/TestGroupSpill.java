@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.*;
+
+import org.apache.jena.query.*;
+import org.apache.jena.rdf.model.*;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.junit.Test;
+
+/** GROUP BY that writes partial aggregates to disk. */
+public class TestGroupSpill {
+    private static final String NS = "http://example/";
+    private static final String PREFIX = "PREFIX : <"+NS+">\n";
+
+    // 100 subjects, each with 1 to 4 values, some not numbers, some subjects with an error.
+    private static Model data() {
+        Model model = ModelFactory.createDefaultModel();
+        Property p = model.createProperty(NS, "p");
+        Property q = model.createProperty(NS, "q");
+        for ( int i = 0 ; i < 100 ; i++ ) {
+            Resource s = model.createResource(NS+"s"+i);
+            for ( int j = 0 ; j <= i % 4 ; j++ ) {
+                if ( j == 0 )
+                    s.addLiteral(p, i);
+                else if ( j == 1 )
+                    s.addLiteral(p, i+0.5d);
+                else
+                    s.addLiteral(p, model.createTypedLiteral(new java.math.BigDecimal(i+"."+j)));
+            }
+            if ( i % 10 == 3 )
+                s.addProperty(p, "str"+i);
+            s.addProperty(q, model.createResource(NS+"o"+(i%7)));
+        }
+        return model;
+    }
+
+    private static final Model data = data();
+
+    private static List<QuerySolution> exec(String qs, Long threshold) {
+        Query query = QueryFactory.create(PREFIX+qs);
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, data) ) {
+            if ( threshold != null )
+                qExec.getContext().set(ARQ.spillToDiskThreshold, threshold);
+            return ResultSetFormatter.toList(qExec.execSelect());
+        }
+    }
+
+    private static void test(String qs) {
+        ResultSetRewindable expected = ResultSetFactory.makeRewindable(resultSet(qs, null));
+        for ( long threshold : new long[] {2, 10, 1000} ) {
+            ResultSetRewindable actual = ResultSetFactory.makeRewindable(resultSet(qs, threshold));
+            expected.reset();
+            assertTrue("Threshold "+threshold, ResultSetCompare.equalsByValue(expected, actual));
+        }
+    }
+
+    private static ResultSet resultSet(String qs, Long threshold) {
+        Query query = QueryFactory.create(PREFIX+qs);
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, data) ) {
+            if ( threshold != null )
+                qExec.getContext().set(ARQ.spillToDiskThreshold, threshold);
+            return ResultSetFactory.copyResults(qExec.execSelect());
+        }
+    }
+
+    @Test public void group_spill_01() {
+        test("SELECT ?s (count(*) AS ?c) { ?s :p ?v } GROUP BY ?s");
+    }
+
+    @Test public void group_spill_02() {
+        test("SELECT ?s (sum(?v) AS ?x) (avg(?v) AS ?y) (min(?v) AS ?min) (max(?v) AS ?max) { ?s :p ?v } GROUP BY ?s");
+    }
+
+    @Test public void group_spill_03() {
+        // Groups over many spilled runs.
+        test("SELECT ?o (count(?v) AS ?c) (sum(?v) AS ?x) (avg(?v) AS ?y) (sample(?o) AS ?z) { ?s :p ?v ; :q ?o } GROUP BY ?o");
+    }
+
+    @Test public void group_spill_04() {
+        // Unbound group keys.
+        test("SELECT ?o (count(*) AS ?c) { ?s :p ?v OPTIONAL { ?s :q ?o FILTER(?v > 50) } } GROUP BY ?o");
+    }
+
+    @Test public void group_spill_05() {
+        // No aggregators.
+        test("SELECT ?s { ?s :p ?v } GROUP BY ?s");
+    }
+
+    @Test public void group_spill_06() {
+        // Not mergeable: no spill.
+        test("SELECT ?s (count(DISTINCT ?v) AS ?c) { ?s :p ?v } GROUP BY ?s");
+    }
+
+    @Test public void group_spill_07() {
+        // GROUP_CONCAT : the order of the values is not defined.
+        String qs = "SELECT ?o (group_concat(?s ; separator='|') AS ?c) { ?s :q ?o } GROUP BY ?o";
+        Map<String, Set<String>> expected = concat(exec(qs, null));
+        assertEquals(7, expected.size());
+        assertEquals(expected, concat(exec(qs, 2L)));
+        assertEquals(expected, concat(exec(qs, 5L)));
+    }
+
+    private static Map<String, Set<String>> concat(List<QuerySolution> x) {
+        Map<String, Set<String>> results = new HashMap<>();
+        for ( QuerySolution soln : x ) {
+            List<String> values = Arrays.asList(soln.getLiteral("c").getLexicalForm().split("\\|"));
+            Set<String> set = new HashSet<>(values);
+            assertEquals(values.size(), set.size());
+            results.put(soln.getResource("o").getURI(), set);
+        }
+        return results;
+    }
+}
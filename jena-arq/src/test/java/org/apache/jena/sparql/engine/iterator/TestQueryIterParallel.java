@@ -0,0 +1,330 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.iterator;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.*;
+import org.apache.jena.rdf.model.*;
+import org.apache.jena.sparql.ARQException;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.function.FunctionBase1;
+import org.apache.jena.sparql.function.FunctionRegistry;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.system.Txn;
+import org.junit.Test;
+
+/** Evaluation of UNION branches and sides of joins at the same time. */
+public class TestQueryIterParallel {
+    private static final String NS = "http://example/";
+    private static final String PREFIX = "PREFIX : <"+NS+">\n";
+
+    private static Model data() {
+        Model model = ModelFactory.createDefaultModel();
+        for ( int i = 0 ; i < 200 ; i++ ) {
+            Resource s = model.createResource(NS+"s"+i);
+            s.addLiteral(model.createProperty(NS, "p"+(i%20)), i);
+            s.addProperty(model.createProperty(NS, "q"), model.createResource(NS+"o"+(i%7)));
+        }
+        return model;
+    }
+
+    private static final Model data = data();
+
+    private static ResultSetRewindable exec(String qs, int parallelism) {
+        Query query = QueryFactory.create(PREFIX+qs);
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, data) ) {
+            if ( parallelism > 0 )
+                qExec.getContext().set(ARQ.parallelBranches, parallelism);
+            return ResultSetFactory.copyResults(qExec.execSelect());
+        }
+    }
+
+    private static void test(String qs) {
+        ResultSetRewindable expected = exec(qs, 0);
+        for ( int parallelism : new int[] {2, 4, 32} ) {
+            ResultSetRewindable actual = exec(qs, parallelism);
+            expected.reset();
+            assertTrue("Parallelism "+parallelism, ResultSetCompare.equalsByTerm(expected, actual));
+        }
+    }
+
+    private static String union(int n) {
+        StringBuilder sb = new StringBuilder("SELECT * {");
+        for ( int i = 0 ; i < n ; i++ ) {
+            if ( i > 0 )
+                sb.append(" UNION");
+            sb.append(" { ?s :p").append(i).append(" ?o }");
+        }
+        return sb.append(" }").toString();
+    }
+
+    @Test public void parallel_union_01() { test(union(20)); }
+
+    @Test public void parallel_union_02() { test("SELECT * { ?s :q :o1 { ?s :p1 ?o } UNION { ?s :p8 ?o } UNION { ?s :q ?o } }"); }
+
+    @Test public void parallel_union_03() {
+        // Nested.
+        test("SELECT * { { ?s :p1 ?o } UNION { { ?s :p2 ?o } UNION { ?s :p3 ?o } } UNION { ?s :q :o3 } }");
+    }
+
+    /** Records the threads that evaluate it. */
+    public static class FnThread extends FunctionBase1 {
+        static final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        @Override
+        public NodeValue exec(NodeValue v) {
+            threads.add(Thread.currentThread());
+            return NodeValue.TRUE;
+        }
+    }
+
+    @Test public void parallel_union_04() {
+        // Only a union evaluated once, from the root, has branches on other threads.
+        String fn = "urn:test:thread";
+        FunctionRegistry.get().put(fn, FnThread.class);
+        try {
+            String branches = "{ ?s :p1 ?o FILTER(<"+fn+">(?o)) } UNION { ?s :p2 ?o FILTER(<"+fn+">(?o)) }";
+            FnThread.threads.clear();
+            exec("SELECT * { "+branches+" }", 4);
+            assertFalse(FnThread.threads.isEmpty());
+            assertFalse(FnThread.threads.contains(Thread.currentThread()));
+            // Union for each row of the left side.
+            FnThread.threads.clear();
+            exec("SELECT * { ?s :q :o1 OPTIONAL { "+branches+" } }", 4);
+            assertEquals(Set.of(Thread.currentThread()), FnThread.threads);
+        } finally {
+            FunctionRegistry.get().remove(fn);
+        }
+    }
+
+    @Test public void parallel_join_01() {
+        test("SELECT * { { ?s :q ?o } { SELECT ?s (1 AS ?x) { ?s :p4 ?v } } }");
+    }
+
+    @Test public void parallel_join_02() {
+        test("SELECT * { ?s :q ?o OPTIONAL { SELECT ?s ?v { ?s :p5 ?v } } }");
+    }
+
+    @Test public void parallel_join_03() {
+        test("SELECT ?o (count(*) AS ?c) { { ?s :q ?o } { { ?s :p1 ?v } UNION { ?s :p2 ?v } } } GROUP BY ?o");
+    }
+
+    private static final Var var = Var.alloc("x");
+
+    private static Function<ExecutionContext, QueryIterator> branch(int start, int n) {
+        return cxt -> {
+            List<Binding> rows = new ArrayList<>();
+            for ( int i = start ; i < start+n ; i++ )
+                rows.add(BindingFactory.binding(var, NodeFactory.createLiteral(Integer.toString(i))));
+            return new QueryIterPlainWrapper(rows.iterator(), cxt);
+        };
+    }
+
+    private static ExecutionContext execCxt() {
+        return new ExecutionContext(new Context(), null, null, null);
+    }
+
+    @Test public void parallel_iter_01() {
+        List<Function<ExecutionContext, QueryIterator>> branches = new ArrayList<>();
+        for ( int i = 0 ; i < 10 ; i++ )
+            branches.add(branch(i*500, 500));
+        QueryIterator qIter = new QueryIterParallel(branches, 3, execCxt());
+        List<Binding> rows = Iter.toList(qIter);
+        qIter.close();
+        assertEquals(5000, rows.size());
+        assertEquals(5000, rows.stream().distinct().count());
+    }
+
+    @Test public void parallel_iter_02() {
+        // At most the given number of branches at once.
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        List<Function<ExecutionContext, QueryIterator>> branches = new ArrayList<>();
+        for ( int i = 0 ; i < 12 ; i++ ) {
+            branches.add(cxt -> {
+                int x = active.incrementAndGet();
+                maxActive.accumulateAndGet(x, Math::max);
+                try { Thread.sleep(10); } catch (InterruptedException ex) {}
+                active.decrementAndGet();
+                return QueryIterSingleton.create(BindingFactory.binding(), cxt);
+            });
+        }
+        QueryIterator qIter = new QueryIterParallel(branches, 2, execCxt());
+        assertEquals(12, Iter.count(qIter));
+        qIter.close();
+        assertTrue(maxActive.get() <= 2);
+    }
+
+    @Test(expected=ARQException.class)
+    public void parallel_iter_03() {
+        // An error in a branch.
+        List<Function<ExecutionContext, QueryIterator>> branches = new ArrayList<>();
+        branches.add(branch(0, 5000));
+        branches.add(cxt -> { throw new ARQException("Branch error"); });
+        QueryIterator qIter = new QueryIterParallel(branches, 2, execCxt());
+        try {
+            Iter.count(qIter);
+        } finally { qIter.close(); }
+    }
+
+    @Test public void parallel_iter_04() {
+        // Cancel endless branches.
+        Binding row = BindingFactory.binding(var, NodeFactory.createLiteral("x"));
+        List<Function<ExecutionContext, QueryIterator>> branches = new ArrayList<>();
+        for ( int i = 0 ; i < 3 ; i++ )
+            branches.add(cxt -> new QueryIterPlainWrapper(Stream.generate(()->row).iterator(), cxt));
+        QueryIterator qIter = new QueryIterParallel(branches, 3, execCxt());
+        assertTrue(qIter.hasNext());
+        qIter.next();
+        qIter.cancel();
+        try {
+            qIter.hasNext();
+            fail("Expected QueryCancelledException");
+        } catch (QueryCancelledException ex) {}
+        // Returns when the branches have stopped.
+        qIter.close();
+    }
+
+    @Test public void parallel_iter_05() {
+        // The consumer pauses while the queue is full, and still gets all the rows.
+        List<Function<ExecutionContext, QueryIterator>> branches = new ArrayList<>();
+        for ( int i = 0 ; i < 3 ; i++ )
+            branches.add(branch(i*2*QueryIterParallel.QueueSize, 2*QueryIterParallel.QueueSize));
+        QueryIterator qIter = new QueryIterParallel(branches, 3, execCxt());
+        try {
+            assertTrue(qIter.hasNext());
+            qIter.next();
+            Thread.sleep(1000);
+            List<Binding> rows = Iter.toList(qIter);
+            assertEquals(6*QueryIterParallel.QueueSize-1, rows.size());
+            assertEquals(rows.size(), rows.stream().distinct().count());
+        } catch (InterruptedException ex) {
+            fail("Interrupted");
+        } finally {
+            qIter.close();
+        }
+    }
+
+    private static List<Function<ExecutionContext, QueryIterator>> recordThreads(Set<Thread> threads) {
+        List<Function<ExecutionContext, QueryIterator>> branches = new ArrayList<>();
+        for ( int i = 0 ; i < 4 ; i++ ) {
+            Function<ExecutionContext, QueryIterator> branch = branch(i*100, 100);
+            branches.add(cxt -> {
+                threads.add(Thread.currentThread());
+                return branch.apply(cxt);
+            });
+        }
+        return branches;
+    }
+
+    @Test public void parallel_iter_06() {
+        // No threads free: the branches are evaluated on this thread.
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        int n = QueryIterParallel.permits.drainPermits();
+        try {
+            QueryIterator qIter = new QueryIterParallel(recordThreads(threads), 4, execCxt());
+            List<Binding> rows = Iter.toList(qIter);
+            qIter.close();
+            assertEquals(400, rows.size());
+            assertEquals(400, rows.stream().distinct().count());
+            assertEquals(Set.of(Thread.currentThread()), threads);
+        } finally {
+            QueryIterParallel.permits.release(n);
+        }
+    }
+
+    @Test public void parallel_iter_07() {
+        // Fewer threads free than asked for.
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        int n = QueryIterParallel.permits.drainPermits();
+        QueryIterParallel.permits.release(1);
+        try {
+            QueryIterator qIter = new QueryIterParallel(recordThreads(threads), 4, execCxt());
+            assertEquals(400, Iter.count(qIter));
+            qIter.close();
+            assertEquals(1, threads.size());
+            assertFalse(threads.contains(Thread.currentThread()));
+        } finally {
+            QueryIterParallel.permits.drainPermits();
+            QueryIterParallel.permits.release(n);
+        }
+    }
+
+    @Test public void parallel_iter_08() {
+        // Nothing is evaluated until a row is asked for; then both linked iterators start.
+        Set<Thread> threads1 = ConcurrentHashMap.newKeySet();
+        Set<Thread> threads2 = ConcurrentHashMap.newKeySet();
+        QueryIterParallel qIter1 = new QueryIterParallel(recordThreads(threads1), 1, execCxt());
+        QueryIterParallel qIter2 = new QueryIterParallel(recordThreads(threads2), 1, execCxt());
+        qIter1.startWith(qIter2);
+        try {
+            Thread.sleep(100);
+            assertTrue(threads1.isEmpty());
+            assertTrue(threads2.isEmpty());
+            assertTrue(qIter1.hasNext());
+            for ( int i = 0 ; i < 100 && threads2.isEmpty() ; i++ )
+                Thread.sleep(10);
+            assertFalse(threads2.isEmpty());
+            assertEquals(400, Iter.count(qIter1));
+            assertEquals(400, Iter.count(qIter2));
+        } catch (InterruptedException ex) {
+            fail("Interrupted");
+        } finally {
+            qIter1.close();
+            qIter2.close();
+        }
+    }
+
+    @Test public void parallel_setting_01() {
+        ExecutionContext execCxt = execCxt();
+        assertEquals(0, QueryIterParallel.parallelism(execCxt));
+        execCxt.getContext().set(ARQ.parallelBranches, 1);
+        assertEquals(0, QueryIterParallel.parallelism(execCxt));
+        execCxt.getContext().set(ARQ.parallelBranches, 4);
+        assertEquals(4, QueryIterParallel.parallelism(execCxt));
+    }
+
+    @Test public void parallel_setting_02() {
+        // A transaction that can not be shared.
+        DatasetGraph dsg = DatasetGraphFactory.createTxnMem();
+        Context cxt = new Context();
+        cxt.set(ARQ.parallelBranches, 4);
+        ExecutionContext execCxt = new ExecutionContext(cxt, dsg.getDefaultGraph(), dsg, null);
+        assertEquals(4, QueryIterParallel.parallelism(execCxt));
+        Txn.executeRead(dsg, ()->assertEquals(0, QueryIterParallel.parallelism(execCxt)));
+    }
+}
@@ -28,12 +28,14 @@ import org.junit.runners.Suite.SuiteClasses ;
     , TestJoinNestedLoopSimple.class    // Real simple materializing version.
     , TestJoinNestedLoop.class
     , TestHashJoin.class
+    , TestHashJoinSpill.class
     
     , TestLeftJoinSimple.class
     , TestLeftJoinNestedLoopSimple.class    // Real simple materializing version.
     , TestLeftJoinNestedLoop.class
     , TestHashLeftJoin_Left.class           // Left hash, stream right 
     , TestHashLeftJoin_Right.class          // Normal implementation.
+    , TestHashLeftJoinSpill_Right.class
 })
 
 public class TS_Join { }
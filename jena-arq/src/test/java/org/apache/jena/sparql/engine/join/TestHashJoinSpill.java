@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.join;
+
+import static org.junit.Assert.assertTrue ;
+import static org.junit.Assert.fail ;
+
+import java.util.Iterator ;
+import java.util.concurrent.atomic.AtomicInteger ;
+import java.util.concurrent.atomic.AtomicReference ;
+
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.query.ARQ ;
+import org.apache.jena.query.QueryCancelledException ;
+import org.apache.jena.sparql.algebra.Table ;
+import org.apache.jena.sparql.algebra.TableFactory ;
+import org.apache.jena.sparql.core.Var ;
+import org.apache.jena.sparql.engine.ExecutionContext ;
+import org.apache.jena.sparql.engine.QueryIterator ;
+import org.apache.jena.sparql.engine.binding.Binding ;
+import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper ;
+import org.apache.jena.sparql.expr.ExprList ;
+import org.apache.jena.sparql.util.Context ;
+import org.junit.Test ;
+
+/** Hash join that has spilled to partitions on disk */
+public class TestHashJoinSpill extends AbstractTestInnerJoin {
+
+    static ExecutionContext execCxt(long threshold) {
+        Context cxt = new Context() ;
+        cxt.set(ARQ.spillToDiskThreshold, threshold) ;
+        return new ExecutionContext(cxt, null, null, null) ;
+    }
+
+    // Spill after the first probe row.
+    private static final ExecutionContext execCxt = execCxt(1) ;
+
+    @Override
+    public QueryIterator join(JoinKey joinKey, Table left, Table right, ExprList conditions) {
+        return Join.hashJoin(joinKey, left.iterator(null), right.iterator(null), execCxt) ;
+    }
+
+    // Tables with many rows, some without the join key.
+    static Table tableN(int rows, int keys, String var, boolean withUnkeyed) {
+        StringBuilder sb = new StringBuilder("(table") ;
+        for ( int i = 0 ; i < rows ; i++ ) {
+            if ( withUnkeyed && i % 50 == 7 )
+                sb.append(String.format(" (row (?%s %d))", var, i)) ;
+            else
+                sb.append(String.format(" (row (?a %d) (?%s %d))", i % keys, var, i)) ;
+        }
+        sb.append(")") ;
+        return parseTableInt(sb.toString()) ;
+    }
+
+    @Test public void join_spill_01() {
+        Table left = tableN(400, 37, "b", true) ;
+        Table right = tableN(300, 41, "c", true) ;
+        Table expected = TableFactory.create(Join.nestedLoopJoin(left.iterator(null), right.iterator(null), null)) ;
+        testJoin("a", left, right, expected) ;
+    }
+
+    @Test public void join_spill_02() {
+        Table left = tableN(400, 37, "b", false) ;
+        Table right = tableN(300, 41, "c", false) ;
+        Table expected = TableFactory.create(Join.nestedLoopJoin(left.iterator(null), right.iterator(null), null)) ;
+        testJoin("a", left, right, expected) ;
+    }
+
+    @Test public void join_spill_cancel_01() {
+        Table left = tableN(400, 37, "b", false) ;
+        Table right = tableN(300, 41, "c", false) ;
+        AtomicReference<QueryIterator> join = new AtomicReference<>() ;
+        AtomicInteger count = new AtomicInteger() ;
+        // Cancel the join while the stream side is being partitioned.
+        Iterator<Binding> stream = Iter.map(right.rows(), b -> {
+            if ( count.incrementAndGet() == 10 )
+                join.get().cancel() ;
+            return b ;
+        }) ;
+        join.set(Join.hashJoin(JoinKey.create(Var.alloc("a")), left.iterator(null),
+                               new QueryIterPlainWrapper(stream, execCxt), execCxt)) ;
+        try {
+            join.get().hasNext() ;
+            fail("Expected QueryCancelledException") ;
+        } catch (QueryCancelledException ex) {}
+        finally { join.get().close() ; }
+        assertTrue(count.get() < 300) ;
+    }
+}
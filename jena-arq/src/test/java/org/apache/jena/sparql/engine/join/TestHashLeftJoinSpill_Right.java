@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.engine.join;
+
+import org.apache.jena.sparql.algebra.Table ;
+import org.apache.jena.sparql.algebra.TableFactory ;
+import org.apache.jena.sparql.engine.ExecutionContext ;
+import org.apache.jena.sparql.engine.QueryIterator ;
+import org.apache.jena.sparql.expr.ExprList ;
+import org.apache.jena.sparql.sse.SSE ;
+import org.junit.Test ;
+
+/** Left outer join, hashing the right hand side, that has spilled to partitions on disk */
+public class TestHashLeftJoinSpill_Right extends AbstractTestLeftJoin {
+
+    // Spill after the first probe row.
+    private static final ExecutionContext execCxt = TestHashJoinSpill.execCxt(1) ;
+
+    @Override
+    public QueryIterator join(JoinKey joinKey, Table left, Table right, ExprList conditions) {
+        return QueryIterHashLeftJoin_Right.create(joinKey, left.iterator(null), right.iterator(null), conditions, execCxt) ;
+    }
+
+    @Test public void leftjoin_spill_01() {
+        Table left = TestHashJoinSpill.tableN(400, 37, "b", true) ;
+        Table right = TestHashJoinSpill.tableN(300, 53, "c", true) ;
+        Table expected = TableFactory.create(Join.nestedLoopLeftJoin(left.iterator(null), right.iterator(null), null, null)) ;
+        testJoin("a", left, right, expected) ;
+    }
+
+    @Test public void leftjoin_spill_02() {
+        Table left = TestHashJoinSpill.tableN(400, 37, "b", true) ;
+        Table right = TestHashJoinSpill.tableN(300, 53, "c", true) ;
+        String cond = "(< ?c 150)" ;
+        Table expected = TableFactory.create(Join.nestedLoopLeftJoin(left.iterator(null), right.iterator(null), SSE.parseExprList(cond), null)) ;
+        testJoin("a", left, right, cond, expected) ;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.sparql.solver;
+
+import static org.apache.jena.sparql.solver.SolverLibTest.bgp ;
+import static org.apache.jena.sparql.solver.SolverLibTest.triple ;
+import static org.junit.Assert.* ;
+
+import java.util.* ;
+import java.util.concurrent.atomic.AtomicInteger ;
+
+import org.apache.jena.graph.Graph ;
+import org.apache.jena.graph.Node ;
+import org.apache.jena.query.* ;
+import org.apache.jena.rdf.model.ModelFactory ;
+import org.apache.jena.shared.PrefixMapping ;
+import org.apache.jena.sparql.core.BasicPattern ;
+import org.apache.jena.sparql.engine.optimizer.CharacteristicSets ;
+import org.apache.jena.sparql.engine.optimizer.CharacteristicSets.CharacteristicSet ;
+import org.apache.jena.sparql.engine.optimizer.reorder.* ;
+import org.apache.jena.sparql.sse.SSE ;
+import org.junit.Test ;
+
+public class TestReorderCharacteristicSets
+{
+    private static String PRE = "(prefix ((: <http://example/>)) " ;
+
+    private static PrefixMapping pmap = PrefixMapping.Factory.create().setNsPrefix("", "http://example/") ;
+
+    private static Node node(String str)        { return SSE.parseNode(str, pmap) ; }
+    private static Graph graph(String str)      { return SSE.parseGraph(PRE+str+")") ; }
+
+    private static Graph data = graph(String.join("\n",
+        "(graph",
+        "  (:s1 :p 1) (:s1 :q 2)",
+        "  (:s2 :p 3)",
+        "  (:s3 :p 4) (:s3 :q 5) (:s3 :q 6)",
+        ")")) ;
+
+    // 1000 subjects with :type and :name, 5 of them also have :rare.
+    private static CharacteristicSets skewed() {
+        CharacteristicSets.Builder builder = CharacteristicSets.create() ;
+        for ( int i = 0 ; i < 995 ; i++ )
+            builder.addSubject(Arrays.asList(node(":type"), node(":name"))) ;
+        for ( int i = 0 ; i < 5 ; i++ )
+            builder.addSubject(Arrays.asList(node(":type"), node(":name"), node(":rare"))) ;
+        builder.distinctObjects(node(":type"), 10) ;
+        builder.distinctObjects(node(":name"), 1000) ;
+        builder.distinctObjects(node(":rare"), 5) ;
+        return builder.build() ;
+    }
+
+    @Test public void cset_gather_01() {
+        CharacteristicSets cs = CharacteristicSets.gather(data) ;
+        assertEquals(6, cs.count()) ;
+        assertEquals(3, cs.subjects()) ;
+        assertEquals(2, cs.sets().size()) ;
+        assertEquals(3, cs.triples(node(":p"))) ;
+        assertEquals(3, cs.triples(node(":q"))) ;
+        assertEquals(3, cs.distinctObjects(node(":p"))) ;
+        assertEquals(2, cs.distinctSubjects(node(":q"))) ;
+        assertEquals(0, cs.triples(node(":r"))) ;
+    }
+
+    @Test public void cset_gather_02() {
+        CharacteristicSets cs = CharacteristicSets.gather(data) ;
+        List<CharacteristicSet> x = cs.supersets(Arrays.asList(node(":p"), node(":q"))) ;
+        assertEquals(1, x.size()) ;
+        CharacteristicSet pq = x.get(0) ;
+        assertEquals(2, pq.subjects()) ;
+        assertEquals(2, pq.occurrences(node(":p"))) ;
+        assertEquals(3, pq.occurrences(node(":q"))) ;
+        assertEquals(2, cs.supersets(Collections.singleton(node(":p"))).size()) ;
+        assertTrue(cs.supersets(Collections.singleton(node(":r"))).isEmpty()) ;
+    }
+
+    @Test public void cset_format_01() {
+        CharacteristicSets cs = CharacteristicSets.gather(data) ;
+        CharacteristicSets cs2 = CharacteristicSets.parse(cs.format()) ;
+        assertEquals(cs.count(), cs2.count()) ;
+        assertEquals(cs.subjects(), cs2.subjects()) ;
+        assertEquals(cs.sets().size(), cs2.sets().size()) ;
+        for ( Node p : cs.predicates() ) {
+            assertEquals(cs.triples(p), cs2.triples(p)) ;
+            assertEquals(cs.distinctObjects(p), cs2.distinctObjects(p)) ;
+        }
+    }
+
+    @Test public void cset_estimate_01() {
+        ReorderCharacteristicSets reorder = new ReorderCharacteristicSets(CharacteristicSets.gather(data)) ;
+        // Exact for stars.
+        assertEquals(3, reorder.estimate(bgp("(bgp (?x :p ?a) (?x :q ?b))")), 0.001) ;
+        assertEquals(3, reorder.estimate(bgp("(bgp (?x :q ?b))")), 0.001) ;
+        assertEquals(4.5, reorder.estimate(bgp("(bgp (?x :q ?b) (?x :q ?c))")), 0.001) ;
+        assertEquals(0, reorder.estimate(bgp("(bgp (?x :p ?a) (?x :r ?b))")), 0) ;
+    }
+
+    @Test public void cset_estimate_02() {
+        ReorderCharacteristicSets reorder = new ReorderCharacteristicSets(skewed()) ;
+        double d1 = reorder.estimate(bgp("(bgp (?x :type :T) (?x :name ?n))")) ;
+        assertEquals(100, d1, 0.001) ;
+        double d2 = reorder.estimate(bgp("(bgp (?x :rare ?r) (?x :name ?n))")) ;
+        assertEquals(5, d2, 0.001) ;
+        // Fixed subject
+        double d3 = reorder.estimate(bgp("(bgp (:s :name ?n))")) ;
+        assertEquals(1, d3, 0.001) ;
+    }
+
+    @Test public void cset_reorder_01() {
+        ReorderCharacteristicSets reorder = new ReorderCharacteristicSets(skewed()) ;
+        BasicPattern bgp = bgp("(bgp (?x :name ?n) (?x :type ?t) (?x :rare ?r))") ;
+        BasicPattern bgp2 = reorder.reorder(bgp) ;
+        assertEquals(triple("(?x :rare ?r)"), bgp2.get(0)) ;
+    }
+
+    @Test public void cset_reorder_02() {
+        // Greedy gives the same answer on a star.
+        ReorderCharacteristicSets reorder = new ReorderCharacteristicSets(skewed(), 0) ;
+        BasicPattern bgp = bgp("(bgp (?x :name ?n) (?x :type ?t) (?x :rare ?r))") ;
+        BasicPattern bgp2 = reorder.reorder(bgp) ;
+        assertEquals(triple("(?x :rare ?r)"), bgp2.get(0)) ;
+    }
+
+    @Test public void cset_reorder_03() {
+        // Two stars : the one with fewer solutions first, not interleaved with the other
+        // and no cross product.
+        ReorderCharacteristicSets reorder = new ReorderCharacteristicSets(skewed()) ;
+        BasicPattern bgp = bgp("(bgp (?x :name ?n) (?x :type ?t) (?y :type ?t) (?y :rare ?r))") ;
+        BasicPattern bgp2 = reorder.reorder(bgp) ;
+        assertEquals(triple("(?y :rare ?r)"), bgp2.get(0)) ;
+        assertEquals(triple("(?y :type ?t)"), bgp2.get(1)) ;
+        assertEquals(triple("(?x :type ?t)"), bgp2.get(2)) ;
+        assertEquals(triple("(?x :name ?n)"), bgp2.get(3)) ;
+    }
+
+    @Test public void cset_reorder_04() {
+        // A large star, planned exhaustively and greedily.
+        CharacteristicSets.Builder builder = CharacteristicSets.create() ;
+        List<Node> all = new ArrayList<>() ;
+        for ( int i = 0 ; i < 12 ; i++ )
+            all.add(node(":p"+i)) ;
+        for ( int i = 0 ; i < 100 ; i++ )
+            builder.addSubject(all.subList(1, 12)) ;
+        for ( int i = 0 ; i < 3 ; i++ )
+            builder.addSubject(all) ;
+        CharacteristicSets stats = builder.build() ;
+
+        StringBuilder sb = new StringBuilder("(bgp") ;
+        for ( int i = 11 ; i >= 0 ; i-- )
+            sb.append(" (?x :p"+i+" ?o"+i+")") ;
+        sb.append(")") ;
+        BasicPattern bgp = bgp(sb.toString()) ;
+
+        for ( int limit : new int[] {ReorderCharacteristicSets.DftExhaustiveLimit, 0} ) {
+            BasicPattern bgp2 = new ReorderCharacteristicSets(stats, limit).reorder(bgp) ;
+            assertEquals(12, bgp2.size()) ;
+            assertEquals(new HashSet<>(bgp.getList()), new HashSet<>(bgp2.getList())) ;
+            assertEquals(triple("(?x :p0 ?o0)"), bgp2.get(0)) ;
+        }
+    }
+
+    @Test public void cset_execute_01() {
+        // Use in the general purpose BGP execution.
+        AtomicInteger calls = new AtomicInteger(0) ;
+        ReorderTransformation reorder = new ReorderCharacteristicSets(CharacteristicSets.gather(data)) {
+            @Override
+            public ReorderProc reorderIndexes(BasicPattern pattern) {
+                calls.incrementAndGet() ;
+                return super.reorderIndexes(pattern) ;
+            }
+        } ;
+        Query query = QueryFactory.create("PREFIX : <http://example/> SELECT * { ?x :p ?a ; :q ?b }") ;
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, ModelFactory.createModelForGraph(data)) ) {
+            qExec.getContext().set(ARQ.reorderTransformation, reorder) ;
+            ResultSet rs = qExec.execSelect() ;
+            assertEquals(3, ResultSetFormatter.consume(rs)) ;
+        }
+        assertEquals(1, calls.get()) ;
+    }
+}
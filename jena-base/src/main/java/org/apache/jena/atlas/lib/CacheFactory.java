@@ -18,6 +18,8 @@
 
 package org.apache.jena.atlas.lib ;
 
+import java.util.function.ToIntBiFunction ;
+
 import org.apache.jena.atlas.lib.cache.* ;
 
 public class CacheFactory {
@@ -31,6 +33,18 @@ public class CacheFactory {
         return new CacheGuava<>(maxSize) ;
     }
 
+    /**
+     * Create a cache which is bounded by the total weight of its entries, as given by
+     * the {@code weigher} (for example, an estimate of bytes used), rather than by the
+     * number of entries. When full, a new entry is only admitted if it is used at least
+     * as often as the entries it would replace.
+     * The cache returns null for a cache miss.
+     * The cache is thread-safe for single operations.
+     */
+    public static <Key, Value> Cache<Key, Value> createCache(long maxWeight, ToIntBiFunction<Key, Value> weigher) {
+        return new CacheTinyLFU<>(maxWeight, weigher) ;
+    }
+
     /** Create a null cache */
     public static <Key, Value> Cache<Key, Value> createNullCache() {
         return new Cache0<>() ;
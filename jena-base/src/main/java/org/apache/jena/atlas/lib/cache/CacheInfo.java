@@ -27,22 +27,28 @@ public class CacheInfo {
     public final long misses;
     public final double hitRate;
     public final int cacheSize;
+    public final long evictions;
 
     public CacheInfo(int cacheSize, CacheStats stats) {
-        this(cacheSize, stats.requestCount(), stats.hitCount(), stats.missCount(), stats.hitRate() ) ;
+        this(cacheSize, stats.requestCount(), stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount() ) ;
     }
 
     public CacheInfo(int cacheSize, long requests, long hits, long misses, double hitRate) {
+        this(cacheSize, requests, hits, misses, hitRate, 0) ;
+    }
+
+    public CacheInfo(int cacheSize, long requests, long hits, long misses, double hitRate, long evictions) {
         this.cacheSize = cacheSize ;
         this.requests = requests ;
         this.hits = hits ;
         this.misses = misses ;
         this.hitRate = hitRate ;
+        this.evictions = evictions ;
     }
 
     @Override
     public String toString() {
-        return String.format("size=%,d  count=%,d  hits=%,d  misses=%,d  rate=%.1f",
-                             cacheSize, requests, hits, misses, hitRate) ;
+        return String.format("size=%,d  count=%,d  hits=%,d  misses=%,d  rate=%.1f  evictions=%,d",
+                             cacheSize, requests, hits, misses, hitRate, evictions) ;
     }
 }
@@ -0,0 +1,365 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.atlas.lib.cache;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntBiFunction;
+
+import org.apache.jena.atlas.lib.Cache;
+import org.apache.jena.atlas.logging.Log;
+
+/**
+ * A cache bounded by the total weight of its entries (for example, an estimate of the
+ * bytes used) with a frequency-aware admission policy (TinyLFU).
+ * <p>
+ * The cache is split into lock-striped segments, each an LRU list, so concurrent
+ * readers of different keys rarely contend. Key use is counted in a shared, approximate
+ * frequency sketch which is periodically halved so that it follows changes in the
+ * workload. When a segment is full, a new entry is only admitted if its key has been
+ * used at least as often as the least recently used entries it would replace; a scan
+ * of one-off keys does not flush the frequently used ones.
+ * <p>
+ * The cache is thread-safe for single operations.
+ */
+public class CacheTinyLFU<K,V> implements Cache<K,V>
+{
+    private static final int DefaultSegments = 16;
+    // Used to size the frequency sketch from the weight limit.
+    private static final int AssumedEntryWeight = 64;
+
+    private final Segment<K,V>[] segments;
+    private final int segmentMask;
+    private final FrequencySketch sketch;
+    private final ToIntBiFunction<K,V> weigher;
+    private final long maxWeight;
+    private BiConsumer<K,V> dropHandler = null;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public CacheTinyLFU(long maxWeight, ToIntBiFunction<K,V> weigher) {
+        this(maxWeight, weigher, DefaultSegments);
+    }
+
+    public CacheTinyLFU(long maxWeight, ToIntBiFunction<K,V> weigher, int numSegments) {
+        if ( maxWeight <= 0 )
+            throw new IllegalArgumentException("Cache weight must be positive: "+maxWeight);
+        int n = Integer.highestOneBit(Math.max(1, numSegments));
+        // Each segment must be able to hold some entries.
+        while ( n > 1 && maxWeight / n < 4 * AssumedEntryWeight )
+            n = n / 2;
+        @SuppressWarnings("unchecked")
+        Segment<K,V>[] x = (Segment<K,V>[])new Segment<?,?>[n];
+        for ( int i = 0 ; i < n ; i++ )
+            x[i] = new Segment<>(maxWeight / n);
+        this.segments = x;
+        this.segmentMask = n - 1;
+        this.weigher = weigher;
+        this.maxWeight = maxWeight;
+        long expectedEntries = Math.max(1024, maxWeight / AssumedEntryWeight);
+        this.sketch = new FrequencySketch((int)Math.min(expectedEntries, 1 << 24));
+    }
+
+    private static int spread(int h) {
+        h ^= (h >>> 16);
+        h *= 0x45d9f3b;
+        h ^= (h >>> 16);
+        return h;
+    }
+
+    private Segment<K,V> segment(int hash) {
+        return segments[(hash >>> 8) & segmentMask];
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        Segment<K,V> seg = segment(spread(key.hashCode()));
+        synchronized(seg) {
+            return seg.map.containsKey(key);
+        }
+    }
+
+    @Override
+    public V getIfPresent(K key) {
+        int hash = spread(key.hashCode());
+        sketch.increment(hash);
+        Segment<K,V> seg = segment(hash);
+        V value;
+        synchronized(seg) {
+            value = seg.map.get(key);
+        }
+        if ( value == null )
+            misses.increment();
+        else
+            hits.increment();
+        return value;
+    }
+
+    @Override
+    public V getOrFill(K key, Callable<V> filler) {
+        V value = getIfPresent(key);
+        if ( value != null )
+            return value;
+        try {
+            value = filler.call();
+        } catch (Exception ex) {
+            Log.warn(CacheTinyLFU.class, "Exception filling cache", ex);
+            return null;
+        }
+        if ( value != null )
+            put(key, value);
+        return value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        if ( value == null ) {
+            remove(key);
+            return;
+        }
+        int hash = spread(key.hashCode());
+        int weight = weigher.applyAsInt(key, value);
+        Segment<K,V> seg = segment(hash);
+        List<Map.Entry<K,V>> dropped = null;
+        synchronized(seg) {
+            V old = seg.map.get(key);
+            if ( old != null ) {
+                // Replace.
+                seg.weight -= weigher.applyAsInt(key, old);
+            } else {
+                if ( weight > seg.maxWeight ) {
+                    rejections.increment();
+                    return;
+                }
+                // Admission: when full, the new entry must be used at least as often
+                // as the entries it would replace.
+                if ( seg.weight + weight > seg.maxWeight ) {
+                    int freq = sketch.frequency(hash);
+                    long needed = seg.weight + weight - seg.maxWeight;
+                    long freed = 0;
+                    for ( Map.Entry<K,V> e : seg.map.entrySet() ) {
+                        if ( freed >= needed )
+                            break;
+                        if ( sketch.frequency(spread(e.getKey().hashCode())) > freq ) {
+                            rejections.increment();
+                            return;
+                        }
+                        freed += weigher.applyAsInt(e.getKey(), e.getValue());
+                    }
+                }
+            }
+            seg.map.put(key, value);
+            seg.weight += weight;
+            // Evict least recently used entries.
+            Iterator<Map.Entry<K,V>> iter = seg.map.entrySet().iterator();
+            while ( seg.weight > seg.maxWeight && iter.hasNext() ) {
+                Map.Entry<K,V> e = iter.next();
+                if ( e.getKey().equals(key) )
+                    continue;
+                seg.weight -= weigher.applyAsInt(e.getKey(), e.getValue());
+                iter.remove();
+                evictions.increment();
+                if ( dropHandler != null ) {
+                    if ( dropped == null )
+                        dropped = new ArrayList<>();
+                    dropped.add(e);
+                }
+            }
+        }
+        if ( dropped != null )
+            dropped.forEach(e->dropHandler.accept(e.getKey(), e.getValue()));
+    }
+
+    @Override
+    public void remove(K key) {
+        Segment<K,V> seg = segment(spread(key.hashCode()));
+        synchronized(seg) {
+            V old = seg.map.remove(key);
+            if ( old != null )
+                seg.weight -= weigher.applyAsInt(key, old);
+        }
+    }
+
+    /** Iterate over a snapshot of the keys. */
+    @Override
+    public Iterator<K> keys() {
+        List<K> keys = new ArrayList<>();
+        for ( Segment<K,V> seg : segments ) {
+            synchronized(seg) {
+                keys.addAll(seg.map.keySet());
+            }
+        }
+        return keys.iterator();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public void clear() {
+        for ( Segment<K,V> seg : segments ) {
+            synchronized(seg) {
+                seg.map.clear();
+                seg.weight = 0;
+            }
+        }
+    }
+
+    @Override
+    public long size() {
+        long x = 0;
+        for ( Segment<K,V> seg : segments ) {
+            synchronized(seg) {
+                x += seg.map.size();
+            }
+        }
+        return x;
+    }
+
+    /** Total weight of the entries in the cache. */
+    public long weight() {
+        long x = 0;
+        for ( Segment<K,V> seg : segments ) {
+            synchronized(seg) {
+                x += seg.weight;
+            }
+        }
+        return x;
+    }
+
+    /** Maximum total weight of the entries in the cache. */
+    public long maxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public void setDropHandler(BiConsumer<K,V> dropHandler) {
+        this.dropHandler = dropHandler;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /** Number of new entries not admitted to the cache because they were not used often enough. */
+    public long rejectionCount() {
+        return rejections.sum();
+    }
+
+    public CacheInfo stats() {
+        long h = hitCount();
+        long m = missCount();
+        long requests = h + m;
+        double hitRate = ( requests == 0 ) ? 1.0 : (double)h / requests;
+        return new CacheInfo((int)Math.min(Integer.MAX_VALUE, size()), requests, h, m, hitRate, evictionCount());
+    }
+
+    private static class Segment<K,V> {
+        // Access order - eldest is least recently used.
+        final LinkedHashMap<K,V> map = new LinkedHashMap<>(16, 0.75f, true);
+        final long maxWeight;
+        long weight = 0;
+
+        Segment(long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters, 16 to a long, with 4 hash functions.
+     * Updates are not synchronized; lost updates only make the counts more approximate.
+     */
+    private static class FrequencySketch {
+        private static final long[] Seeds = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+        private static final long ResetMask = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions = 0;
+
+        FrequencySketch(int expectedEntries) {
+            int size = Integer.highestOneBit(Math.max(4, expectedEntries) - 1) << 1;
+            // 16 counters per long.
+            this.table = new long[Math.max(1, size / 4)];
+            this.tableMask = table.length - 1;
+            this.sampleSize = 10 * size;
+        }
+
+        int frequency(int hash) {
+            int freq = Integer.MAX_VALUE;
+            for ( int i = 0 ; i < 4 ; i++ ) {
+                int idx = indexOf(hash, i);
+                int shift = offset(hash, i);
+                int count = (int)((table[idx] >>> shift) & 0xF);
+                freq = Math.min(freq, count);
+            }
+            return freq;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for ( int i = 0 ; i < 4 ; i++ ) {
+                int idx = indexOf(hash, i);
+                int shift = offset(hash, i);
+                long x = table[idx];
+                if ( ((x >>> shift) & 0xF) != 0xF ) {
+                    table[idx] = x + (1L << shift);
+                    added = true;
+                }
+            }
+            if ( added && ++additions >= sampleSize )
+                reset();
+        }
+
+        // Halve all counters - ageing.
+        private void reset() {
+            for ( int i = 0 ; i < table.length ; i++ )
+                table[i] = (table[i] >>> 1) & ResetMask;
+            additions = additions / 2;
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + Seeds[i]) * Seeds[i];
+            h += (h >>> 32);
+            return ((int)h) & tableMask;
+        }
+
+        // Counter within the long.
+        private static int offset(int hash, int i) {
+            return (((hash >>> (i << 3)) & 0x3) << 2) + (i << 4) & 0x3F;
+        }
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.jena.atlas.lib;
 
 
 import org.apache.jena.atlas.lib.cache.TestCacheSimple;
+import org.apache.jena.atlas.lib.cache.TestCacheTinyLFU;
 import org.junit.runner.RunWith ;
 import org.junit.runners.Suite ;
 
@@ -49,6 +50,7 @@ import org.junit.runners.Suite ;
     , TestNumberUtils.class
     , TestDateTimeUtils.class
     , TestCacheSimple.class
+    , TestCacheTinyLFU.class
     , TestRefCountingMap.class
 } )
 
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.atlas.lib.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests of CacheTinyLFU
+ */
+public class TestCacheTinyLFU {
+
+    // One segment, each entry has weight 10 : room for 10 entries.
+    private static CacheTinyLFU<Integer, String> make() {
+        return new CacheTinyLFU<>(100, (k,v)->10, 1);
+    }
+
+    @Test public void tinylfu_01() {
+        CacheTinyLFU<Integer, String> cache = make();
+        assertTrue(cache.isEmpty());
+        cache.put(1, "A");
+        assertEquals("A", cache.getIfPresent(1));
+        assertNull(cache.getIfPresent(2));
+        assertEquals(1, cache.size());
+        assertEquals(10, cache.weight());
+    }
+
+    @Test public void tinylfu_02() {
+        // Replace
+        CacheTinyLFU<Integer, String> cache = make();
+        cache.put(1, "A");
+        cache.put(1, "B");
+        assertEquals(1, cache.size());
+        assertEquals(10, cache.weight());
+        assertEquals("B", cache.getIfPresent(1));
+    }
+
+    @Test public void tinylfu_03() {
+        // Bounded by weight.
+        CacheTinyLFU<Integer, String> cache = make();
+        for ( int i = 0 ; i < 50 ; i++ )
+            cache.put(i, "V"+i);
+        assertEquals(10, cache.size());
+        assertTrue(cache.weight() <= cache.maxWeight());
+        assertEquals(40, cache.evictionCount() + cache.rejectionCount());
+    }
+
+    @Test public void tinylfu_04() {
+        // Weigher
+        CacheTinyLFU<Integer, String> cache = new CacheTinyLFU<>(100, (k,v)->v.length(), 1);
+        cache.put(1, "12345678901234567890");
+        cache.put(2, "1234567890");
+        assertEquals(30, cache.weight());
+        // Too big.
+        cache.put(3, new String(new char[200]));
+        assertNull(cache.getIfPresent(3));
+        assertEquals(1, cache.rejectionCount());
+    }
+
+    @Test public void tinylfu_05() {
+        CacheTinyLFU<Integer, String> cache = make();
+        cache.put(1, "A");
+        cache.put(2, "B");
+        cache.remove(1);
+        assertFalse(cache.containsKey(1));
+        assertTrue(cache.containsKey(2));
+        assertEquals(10, cache.weight());
+        cache.clear();
+        assertTrue(cache.isEmpty());
+        assertEquals(0, cache.weight());
+    }
+
+    @Test public void tinylfu_06() {
+        // Stats
+        CacheTinyLFU<Integer, String> cache = make();
+        cache.getOrFill(1, ()->"A");
+        cache.getOrFill(1, ()->"A");
+        cache.getOrFill(1, ()->"A");
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        CacheInfo info = cache.stats();
+        assertEquals(1, info.cacheSize);
+        assertEquals(3, info.requests);
+        assertEquals(0, info.evictions);
+    }
+
+    @Test public void tinylfu_07() {
+        // Drop handler
+        CacheTinyLFU<Integer, String> cache = make();
+        List<Integer> dropped = new ArrayList<>();
+        cache.setDropHandler((k,v)->dropped.add(k));
+        for ( int i = 0 ; i < 11 ; i++ )
+            cache.put(i, "V"+i);
+        assertEquals(1, dropped.size());
+        assertEquals(Integer.valueOf(0), dropped.get(0));
+    }
+
+    @Test public void tinylfu_scan_resistant() {
+        CacheTinyLFU<Integer, String> cache = make();
+        // Hot keys.
+        for ( int j = 0 ; j < 5 ; j++ ) {
+            for ( int i = 0 ; i < 10 ; i++ )
+                cache.getOrFill(i, ()->"hot");
+        }
+        // Scan of one-off keys.
+        for ( int i = 1000 ; i < 1100 ; i++ ) {
+            int k = i;
+            cache.getOrFill(k, ()->"scan"+k);
+        }
+        for ( int i = 0 ; i < 10 ; i++ )
+            assertTrue("Hot key flushed by a scan: "+i, cache.containsKey(i));
+        assertTrue(cache.rejectionCount() > 0);
+    }
+}
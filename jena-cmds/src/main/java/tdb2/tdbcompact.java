@@ -18,11 +18,17 @@
 
 package tdb2;
 
+import org.apache.jena.cmd.ArgDecl;
 import org.apache.jena.tdb2.store.DatasetGraphSwitchable;
 import org.apache.jena.tdb2.sys.DatabaseOps;
+import org.apache.jena.tdb2.sys.NodeTableGC;
 import tdb2.cmdline.CmdTDB;
 
 public class tdbcompact extends CmdTDB {
+    private static final ArgDecl argNodes = new ArgDecl(ArgDecl.NoValue, "nodes");
+
+    private boolean nodes = false;
+
     static public void main(String... argv) {
         CmdTDB.init() ;
         new tdbcompact(argv).mainRun() ;
@@ -30,6 +36,13 @@ public class tdbcompact extends CmdTDB {
 
     protected tdbcompact(String[] argv) {
         super(argv) ;
+        super.add(argNodes, "--nodes", "Report unused nodes; compact only if there are any");
+    }
+
+    @Override
+    protected void processModulesAndArgs() {
+        super.processModulesAndArgs();
+        nodes = contains(argNodes);
     }
 
     @Override
@@ -41,7 +54,15 @@ public class tdbcompact extends CmdTDB {
     protected void exec() {
         DatasetGraphSwitchable dsg = getDatabaseContainer() ;
         long start = System.currentTimeMillis();
-        DatabaseOps.compact(dsg) ;
+        if ( nodes ) {
+            NodeTableGC.Report report = NodeTableGC.collect(dsg, false);
+            System.out.printf("Nodes: %d, unused: %d (%d bytes)\n",
+                              report.getNodes(), report.getUnreferencedNodes(), report.getUnreferencedBytes());
+            if ( ! report.isCollected() )
+                return;
+            System.out.printf("Reclaimed %d bytes\n", report.getReclaimedBytes());
+        } else
+            DatabaseOps.compact(dsg) ;
         long finish = System.currentTimeMillis();
         System.out.printf("Compacted in %.3fs\n", (finish-start)/1000.0);
     }
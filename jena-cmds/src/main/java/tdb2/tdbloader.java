@@ -52,7 +52,7 @@ public class tdbloader extends CmdTDBGraph {
     private static final ArgDecl argLoader  = new ArgDecl(ArgDecl.HasValue, "loader");
     private static final ArgDecl argSyntax  = new ArgDecl(ArgDecl.HasValue, "syntax");
     
-    private enum LoaderEnum { Basic, Parallel, Sequential, Light, Phased }
+    private enum LoaderEnum { Basic, Parallel, Sequential, Light, Phased, Sorted, Merge }
     
     private boolean    showProgress  = true;
     private boolean    generateStats = false;
@@ -67,7 +67,7 @@ public class tdbloader extends CmdTDBGraph {
     protected tdbloader(String[] argv) {
         super(argv);
 //        super.add(argStats, "Generate statistics");
-        super.add(argLoader, "--loader=", "Loader to use: 'basic', 'phased' (default), 'sequential', 'parallel' or 'light'");
+        super.add(argLoader, "--loader=", "Loader to use: 'basic', 'phased' (default), 'sequential', 'parallel', 'sorted', 'merge' or 'light'");
         super.add(argSyntax, "--syntax=LANG", "Syntax of data from stdin");
     }
 
@@ -85,6 +85,10 @@ public class tdbloader extends CmdTDBGraph {
                 loader = LoaderEnum.Sequential;
             else if ( loadername.matches("para.*") )
                 loader = LoaderEnum.Parallel;
+            else if ( loadername.matches("sort.*") )
+                loader = LoaderEnum.Sorted;
+            else if ( loadername.matches("merge.*") )
+                loader = LoaderEnum.Merge;
             else if ( loadername.matches("light") )
                 loader = LoaderEnum.Light;
             else
@@ -229,6 +233,10 @@ public class tdbloader extends CmdTDBGraph {
                 return LoaderFactory.phasedLoader(dsg, gn, output);
             case Parallel :
                 return LoaderFactory.parallelLoader(dsg, gn, output);
+            case Sorted :
+                return LoaderFactory.sortedLoader(dsg, gn, output);
+            case Merge :
+                return LoaderFactory.mergeLoader(dsg, gn, output);
             case Sequential :
                 return LoaderFactory.sequentialLoader(dsg, gn, output);
             case Light :
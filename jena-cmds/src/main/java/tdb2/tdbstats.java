@@ -22,10 +22,15 @@ import java.util.Iterator ;
 
 import org.apache.jena.atlas.lib.tuple.Tuple ;
 import org.apache.jena.atlas.logging.Log ;
+import org.apache.jena.cmd.ArgDecl;
+import org.apache.jena.cmd.CmdException;
+import org.apache.jena.dboe.sys.Names;
 import org.apache.jena.system.Txn;
 import org.apache.jena.graph.Node ;
 import org.apache.jena.sparql.core.Quad ;
+import org.apache.jena.sparql.engine.optimizer.CharacteristicSets;
 import org.apache.jena.tdb2.solver.SolverLib;
+import org.apache.jena.tdb2.solver.stats.CharacteristicSetsCollector;
 import org.apache.jena.tdb2.solver.stats.Stats;
 import org.apache.jena.tdb2.solver.stats.StatsCollectorNodeId;
 import org.apache.jena.tdb2.solver.stats.StatsResults;
@@ -38,6 +43,10 @@ import tdb2.cmdline.CmdTDB;
 import tdb2.cmdline.CmdTDBGraph;
 
 public class tdbstats extends CmdTDBGraph {
+    private static final ArgDecl argCSet = new ArgDecl(ArgDecl.NoValue, "cset");
+
+    private boolean cset = false;
+
     static public void main(String... argv) {
         CmdTDB.init();
         new tdbstats(argv).mainRun();
@@ -45,6 +54,13 @@ public class tdbstats extends CmdTDBGraph {
 
     protected tdbstats(String[] argv) {
         super(argv);
+        super.add(argCSet, "--cset", "Output characteristic sets of the default graph (for "+Names.optCharacteristicSets+")");
+    }
+
+    @Override
+    protected void processModulesAndArgs() {
+        super.processModulesAndArgs();
+        cset = contains(argCSet);
     }
 
     @Override
@@ -93,6 +109,13 @@ public class tdbstats extends CmdTDBGraph {
     protected void exec() {
         DatasetGraphTDB dsg = TDBInternal.getDatasetGraphTDB(getDatasetGraph());
         Node gn = getGraphName();
+        if ( cset ) {
+            if ( gn != null )
+                throw new CmdException("Characteristic sets are only available for the default graph");
+            CharacteristicSets sets = Txn.calculateRead(dsg, ()->CharacteristicSetsCollector.gather(dsg.getTripleTable().getNodeTupleTable()));
+            sets.write(System.out);
+            return;
+        }
         StatsResults results = stats(dsg, gn);
         Stats.write(System.out, results);
     }
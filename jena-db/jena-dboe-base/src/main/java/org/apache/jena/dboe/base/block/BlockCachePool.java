@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.base.block;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A budget of memory outside the Java heap, shared by the off-heap block read caches
+ * ({@link BlockMgrCacheOffHeap}) of the files of one store.
+ * <p>
+ * The memory is divided into slots of one block. Slots are handed out to caches as
+ * they need them, and the direct memory is allocated, a slab at a time, only when
+ * slots are first used, so a small database does not take the whole budget.
+ * When all the slots are in use, a cache reuses its own least valuable slot, and a
+ * cache holding more than an equal share of the pool gives slots back if another
+ * cache, with less than its share, has asked for one.
+ */
+public class BlockCachePool {
+    /** Largest slab of direct memory. */
+    static final int            MaxSlabSize = 64*1024*1024;
+
+    private final int           blockSize;
+    private final int           numSlots;
+    private final int           slotsPerSlab;
+    private final ByteBuffer[]  slabs;
+    // Slots used at least once.
+    private int                 highWater   = 0;
+    // Stack of slots returned by caches.
+    private int[]               freeSlots   = new int[16];
+    private int                 freeTop     = 0;
+    private int                 users       = 0;
+    // A cache with less than its share found no free slot.
+    private volatile boolean    wanted      = false;
+
+    /** A pool of {@code sizeBytes} bytes, in slots of {@code blockSize}. */
+    public BlockCachePool(long sizeBytes, int blockSize) {
+        this.blockSize = blockSize;
+        long n = Math.max(0, sizeBytes / blockSize);
+        if ( n > Integer.MAX_VALUE )
+            throw new BlockException("Off-heap block cache too large: "+sizeBytes+" bytes");
+        this.numSlots = (int)n;
+        this.slotsPerSlab = Math.max(1, MaxSlabSize / blockSize);
+        this.slabs = new ByteBuffer[(numSlots + slotsPerSlab - 1) / slotsPerSlab];
+    }
+
+    public int getBlockSize()                   { return blockSize; }
+
+    /** Capacity, in blocks, of the pool. */
+    public int getCapacity()                    { return numSlots; }
+
+    /** Number of blocks of direct memory allocated so far. */
+    public synchronized int getAllocated()      { return highWater; }
+
+    /** Number of slots held by caches. */
+    public synchronized int getInUse()          { return highWater - freeTop; }
+
+    synchronized void register()                { users++; }
+
+    synchronized void unregister()              { users--; }
+
+    /** The number of slots each cache may keep when the pool is used up. */
+    synchronized int fairShare() {
+        return numSlots / Math.max(1, users);
+    }
+
+    /** Whether a cache with less than its share is waiting for a slot. */
+    boolean isWanted()                          { return wanted; }
+
+    /** Take a slot for a cache holding {@code held} slots, or return -1 if all the slots are in use. */
+    synchronized int allocSlot(int held) {
+        if ( freeTop > 0 )
+            return freeSlots[--freeTop];
+        if ( highWater == numSlots ) {
+            if ( held < fairShare() )
+                wanted = true;
+            return -1;
+        }
+        int slot = highWater++;
+        int slab = slot / slotsPerSlab;
+        if ( slabs[slab] == null ) {
+            int slots = Math.min(slotsPerSlab, numSlots - slab*slotsPerSlab);
+            slabs[slab] = ByteBuffer.allocateDirect(slots*blockSize);
+        }
+        return slot;
+    }
+
+    /** Return a slot to the pool. */
+    synchronized void freeSlot(int slot) {
+        if ( freeTop == freeSlots.length ) {
+            int[] a = new int[Math.min(numSlots, 2*freeSlots.length)];
+            System.arraycopy(freeSlots, 0, a, 0, freeTop);
+            freeSlots = a;
+        }
+        freeSlots[freeTop++] = slot;
+        wanted = false;
+    }
+
+    /**
+     * The memory of a slot, positioned for one block. Only for a slot held by the caller:
+     * the slab was allocated before the slot was handed out, so no lock is needed.
+     */
+    ByteBuffer slotBuffer(int slot) {
+        ByteBuffer slab = slabs[slot / slotsPerSlab].duplicate();
+        int posn = (slot % slotsPerSlab) * blockSize;
+        slab.limit(posn + blockSize);
+        slab.position(posn);
+        return slab;
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.base.block;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.atlas.lib.Cache;
+import org.apache.jena.atlas.lib.CacheFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caching block manager where the read cache is held outside the Java heap.
+ * <p>
+ * The read cache is sized in bytes, not slots, and the memory is taken from a
+ * {@link BlockCachePool} which may be shared with the caches of other files.
+ * Block contents are copied into the pool's direct memory; a read hit copies the
+ * bytes into a fresh heap block so the caller never sees memory that may be reused.
+ * <p>
+ * The replacement policy is a segmented LRU. New blocks go into a
+ * "probation" segment; a second access moves a block into the "protected"
+ * segment. Victims are taken from the probation segment so a single long scan
+ * cycles through probation and does not flush frequently used blocks such as
+ * the interior nodes of a B+Tree.
+ * <p>
+ * Dirty blocks are held in an on-heap write cache, as for {@link BlockMgrCache}.
+ */
+public class BlockMgrCacheOffHeap extends BlockMgrSync {
+    private static Logger log = LoggerFactory.getLogger(BlockMgrCacheOffHeap.class);
+
+    /** Proportion of the slots in the protected segment. */
+    private static final double ProtectedFraction = 0.8;
+
+    private final int           blockSize;
+    private final BlockCachePool pool;
+
+    // Block id to slot, access ordered. The eldest entry is the LRU block.
+    private final LinkedHashMap<Long, Integer> probation   = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Long, Integer> protectedSeg = new LinkedHashMap<>(16, 0.75f, true);
+    private final int           protectedCapacity;
+
+    // Delayed dirty writes. May be present, may not.
+    private final Cache<Long, Block> writeCache;
+
+    // ---- stats
+    private long                cacheReadHits  = 0;
+    private long                cacheMisses    = 0;
+    private long                cacheWriteHits = 0;
+    private long                cacheEvictions = 0;
+
+    /** An off-heap read cache of its own, of {@code cacheSizeBytes} bytes. */
+    static BlockMgr create(long cacheSizeBytes, int writeSlots, int blockSize, BlockMgr blockMgr) {
+        return create(new BlockCachePool(cacheSizeBytes, blockSize), writeSlots, blockMgr);
+    }
+
+    /** An off-heap read cache using memory from {@code pool}. */
+    static BlockMgr create(BlockCachePool pool, int writeSlots, BlockMgr blockMgr) {
+        if ( pool.getCapacity() <= 0 && writeSlots <= 0 )
+            return blockMgr;
+        return new BlockMgrCacheOffHeap(pool, writeSlots, blockMgr);
+    }
+
+    private BlockMgrCacheOffHeap(BlockCachePool pool, int writeSlots, BlockMgr blockMgr) {
+        super(blockMgr);
+        this.pool = pool;
+        this.blockSize = pool.getBlockSize();
+        this.protectedCapacity = (int)(pool.getCapacity()*ProtectedFraction);
+        pool.register();
+
+        if ( writeSlots <= 0 )
+            writeCache = null;
+        else {
+            writeCache = CacheFactory.createCache(writeSlots);
+            writeCache.setDropHandler((id, block) -> {
+                // We're inside a synchronized operation at this point.
+                if ( block == null ) {
+                    log.warn("Write cache: " + id + " dropping an entry that isn't there");
+                    return;
+                }
+                BlockMgrCacheOffHeap.super.write(block);
+                cachePut(id, block);
+            });
+        }
+    }
+
+    /** Number of reads satisfied by the off-heap read cache. */
+    public synchronized long getReadHits()      { return cacheReadHits; }
+    /** Number of reads satisfied by the write cache. */
+    public synchronized long getWriteHits()     { return cacheWriteHits; }
+    /** Number of block requests passed to the underlying block manager. */
+    public synchronized long getMisses()        { return cacheMisses; }
+    /** Number of blocks evicted from the off-heap read cache. */
+    public synchronized long getEvictions()     { return cacheEvictions; }
+    /** Number of blocks currently in the off-heap read cache. */
+    public synchronized int getCachedBlocks()   { return probation.size() + protectedSeg.size(); }
+    /** Capacity, in blocks, of the off-heap read cache, shared with any other users of the pool. */
+    public int getCapacity()                    { return pool.getCapacity(); }
+
+    @Override
+    synchronized public void resetAlloc(long boundary) {
+        // On abort, need to clear the caches of inaccesible blocks.
+        List<Long> removals = new ArrayList<>();
+        probation.keySet().forEach(x -> { if ( x >= boundary ) removals.add(x); });
+        protectedSeg.keySet().forEach(x -> { if ( x >= boundary ) removals.add(x); });
+        removals.forEach(this::cacheRemove);
+        removals.clear();
+        if ( writeCache != null ) {
+            writeCache.keys().forEachRemaining((x)->{
+                if ( x >= boundary )
+                    removals.add(x);
+            });
+            removals.forEach(writeCache::remove);
+        }
+        super.resetAlloc(boundary);
+    }
+
+    @Override
+    synchronized public Block getRead(long id) {
+        Block blk = cacheGet(id);
+        if ( blk != null ) {
+            cacheReadHits++;
+            return blk;
+        }
+        if ( writeCache != null )
+            blk = writeCache.getIfPresent(id);
+        if ( blk != null ) {
+            cacheWriteHits++;
+            return blk;
+        }
+        cacheMisses++;
+        blk = super.getRead(id);
+        cachePut(id, blk);
+        return blk;
+    }
+
+    @Override
+    synchronized public Block getWrite(long _id) {
+        Long id = _id;
+        Block blk = null;
+        if ( writeCache != null )
+            blk = writeCache.getIfPresent(id);
+        if ( blk != null ) {
+            cacheWriteHits++;
+            return blk;
+        }
+        blk = cacheGet(id);
+        if ( blk != null ) {
+            cacheReadHits++;
+            blk.setReadOnly(false);
+            return promote(blk);
+        }
+        cacheMisses++;
+        blk = super.getWrite(id);
+        if ( writeCache != null )
+            writeCache.put(id, blk);
+        return blk;
+    }
+
+    @Override
+    synchronized public Block promote(Block block) {
+        Long id = block.getId();
+        cacheRemove(id);
+        Block block2 = super.promote(block);
+        if ( writeCache != null )
+            writeCache.put(id, block2);
+        return block2;
+    }
+
+    @Override
+    synchronized public void write(Block block) {
+        Long id = block.getId();
+        if ( writeCache != null ) {
+            cacheRemove(id);
+            writeCache.put(id, block);
+        }
+        super.write(block);
+        if ( writeCache == null )
+            cachePut(id, block);
+    }
+
+    @Override
+    synchronized public void overwrite(Block block) {
+        super.overwrite(block);
+        // Keep the read cache up-to-date.
+        cachePut(block.getId(), block);
+    }
+
+    @Override
+    synchronized public void free(Block block) {
+        Long id = block.getId();
+        cacheRemove(id);
+        if ( writeCache != null )
+            writeCache.remove(id);
+        super.free(block);
+    }
+
+    @Override
+    synchronized public void sync() {
+        _sync(false);
+    }
+
+    @Override
+    synchronized public void syncForce() {
+        _sync(true);
+    }
+
+    @Override
+    synchronized public void close() {
+        syncFlush();
+        // Return the memory to the pool.
+        probation.values().forEach(pool::freeSlot);
+        protectedSeg.values().forEach(pool::freeSlot);
+        probation.clear();
+        protectedSeg.clear();
+        pool.unregister();
+        super.close();
+    }
+
+    @Override
+    public String toString() {
+        return "CacheOffHeap:" + super.blockMgr.toString();
+    }
+
+    /** Statistics as a string, labelled with the underlying file. */
+    public synchronized String stats() {
+        return String.format("%s : H=%d, W=%d, M=%d, E=%d, size=%d/%d", getLabel(),
+                             cacheReadHits, cacheWriteHits, cacheMisses, cacheEvictions,
+                             getCachedBlocks(), pool.getCapacity());
+    }
+
+    private void _sync(boolean force) {
+        if ( log.isDebugEnabled() )
+            log.debug(stats());
+        boolean somethingWritten = syncFlush();
+        if ( force )
+            super.syncForce();
+        else if ( somethingWritten )
+            super.sync();
+    }
+
+    private boolean syncFlush() {
+        if ( writeCache == null )
+            return false;
+        List<Long> ids = new ArrayList<>();
+        Iterator<Long> iter = writeCache.keys();
+        iter.forEachRemaining(ids::add);
+        if ( ids.isEmpty() )
+            return false;
+        for ( Long id : ids ) {
+            Block block = writeCache.getIfPresent(id);
+            if ( block == null )
+                continue;
+            super.write(block);
+            writeCache.remove(id);
+            // Often read after writing.
+            cachePut(id, block);
+        }
+        super.sync();
+        return true;
+    }
+
+    // ---- Off-heap read cache.
+
+    /** Get a heap copy of a cached block, or null. */
+    private Block cacheGet(Long id) {
+        Integer slot = protectedSeg.get(id);
+        if ( slot == null ) {
+            slot = probation.remove(id);
+            if ( slot == null )
+                return null;
+            // Second access : move to the protected segment.
+            protectedSeg.put(id, slot);
+            demoteOverflow();
+        }
+        ByteBuffer dst = ByteBuffer.allocate(blockSize);
+        ByteBuffer src = pool.slotBuffer(slot);
+        dst.put(src);
+        dst.clear();
+        Block block = new Block(id, dst);
+        block.setReadOnly(true);
+        return block;
+    }
+
+    /** Place a copy of the block contents in the cache. */
+    private void cachePut(Long id, Block block) {
+        ByteBuffer bb = block.getByteBuffer();
+        if ( bb.capacity() != blockSize )
+            return;
+        Integer slot = protectedSeg.get(id);
+        if ( slot == null )
+            slot = probation.get(id);
+        if ( slot == null ) {
+            int x = allocSlot();
+            if ( x < 0 )
+                return;
+            slot = x;
+            probation.put(id, slot);
+        }
+        ByteBuffer dst = pool.slotBuffer(slot);
+        ByteBuffer src = bb.duplicate();
+        src.clear();
+        dst.put(src);
+    }
+
+    private void cacheRemove(Long id) {
+        Integer slot = probation.remove(id);
+        if ( slot == null )
+            slot = protectedSeg.remove(id);
+        if ( slot != null )
+            pool.freeSlot(slot);
+    }
+
+    /** A slot from the pool or, if the pool is used up, one of this cache's slots. -1 if none. */
+    private int allocSlot() {
+        int held = getCachedBlocks();
+        int slot = pool.allocSlot(held);
+        if ( slot >= 0 )
+            return slot;
+        if ( held == 0 )
+            return -1;
+        slot = evict();
+        // Give a slot back for another cache.
+        if ( pool.isWanted() && held > pool.fairShare() && held > 1 )
+            pool.freeSlot(evict());
+        return slot;
+    }
+
+    /**
+     * Evict the least recently used probationary block, or failing that, the LRU protected block,
+     * and return its slot for reuse.
+     */
+    private int evict() {
+        Map<Long, Integer> segment = probation.isEmpty() ? protectedSeg : probation;
+        Iterator<Map.Entry<Long, Integer>> iter = segment.entrySet().iterator();
+        Map.Entry<Long, Integer> e = iter.next();
+        iter.remove();
+        cacheEvictions++;
+        return e.getValue();
+    }
+
+    /** Move blocks from the protected segment, back to probation, when the protected segment is full. */
+    private void demoteOverflow() {
+        while ( protectedSeg.size() > protectedCapacity ) {
+            Iterator<Map.Entry<Long, Integer>> iter = protectedSeg.entrySet().iterator();
+            Map.Entry<Long, Integer> e = iter.next();
+            iter.remove();
+            probation.put(e.getKey(), e.getValue());
+        }
+    }
+}
@@ -43,11 +43,9 @@ public class BlockMgrFactory {
     }
 
     public static BlockMgr create(FileSet fileSet, String ext, BlockParams params) {
-        return create(fileSet, ext,
-                      params.getFileMode(),
-                      params.getBlockSize(),
-                      params.getBlockReadCacheSize(),
-                      params.getBlockWriteCacheSize());
+        if ( fileSet.isMem() )
+            return createMem(fileSet.filename(ext), params.getBlockSize());
+        return createFile(fileSet.filename(ext), params);
     }
 
     public static BlockMgr create(FileSet fileSet, String ext, int blockSize, int readBlockCacheSize, int writeBlockCacheSize) {
@@ -74,6 +72,18 @@ public class BlockMgrFactory {
 
     /** Create a BlockMgr backed by a real file */
     public static BlockMgr createFile(String filename, BlockParams params) {
+        Integer offHeapMB = params.getBlockReadCacheOffHeapMB();
+        FileMode fileMode = params.getFileMode();
+        if ( fileMode == null )
+            fileMode = SystemIndex.fileMode();
+        if ( fileMode == FileMode.direct && offHeapMB != null && offHeapMB > 0 ) {
+            BlockCachePool pool = params.getBlockCachePool();
+            if ( pool == null )
+                pool = new BlockCachePool(offHeapMB*1024L*1024L, params.getBlockSize());
+            else if ( pool.getBlockSize() != params.getBlockSize() )
+                throw new BlockException("Block cache pool is for blocks of "+pool.getBlockSize()+" bytes: "+filename);
+            return createStdFileOffHeapCache(filename, pool, params.getBlockWriteCacheSize());
+        }
         return createFile(filename,
                           params.getFileMode(), params.getBlockSize(),
                           params.getBlockReadCacheSize(), params.getBlockWriteCacheSize());
@@ -107,6 +117,30 @@ public class BlockMgrFactory {
         return track(blockMgr);
     }
 
+    /**
+     * Create a Block Manager using direct access and an off-heap, scan resistant
+     * read cache of {@code readCacheBytes} bytes.
+     *
+     * @see BlockMgrCacheOffHeap
+     */
+    public static BlockMgr createStdFileOffHeapCache(String filename, int blockSize, long readCacheBytes, int writeBlockCacheSize) {
+        return createStdFileOffHeapCache(filename, new BlockCachePool(readCacheBytes, blockSize), writeBlockCacheSize);
+    }
+
+    /**
+     * Create a Block Manager using direct access and an off-heap, scan resistant
+     * read cache with memory from a pool that may be shared with other files.
+     *
+     * @see BlockMgrCacheOffHeap
+     */
+    public static BlockMgr createStdFileOffHeapCache(String filename, BlockCachePool pool, int writeBlockCacheSize) {
+        int blockSize = pool.getBlockSize();
+        BlockAccess file = new BlockAccessDirect(filename, blockSize);
+        BlockMgr blockMgr = wrapFileAccess(file, blockSize);
+        blockMgr = BlockMgrCacheOffHeap.create(pool, writeBlockCacheSize, blockMgr);
+        return track(blockMgr);
+    }
+
     /** Create a Block Manager using direct access, no caching, no nothing. */
     public static BlockMgr createStdFileNoCache(String filename, int blockSize) {
         BlockAccess blockAccess = new BlockAccessDirect(filename, blockSize);
@@ -23,5 +23,20 @@ public interface BlockParams {
     public Integer getBlockSize();
     public Integer getBlockReadCacheSize();
     public Integer getBlockWriteCacheSize();
+
+    /**
+     * Size, in megabytes, of the off-heap block read cache.
+     * This is one budget shared by all the files created with the same
+     * {@link #getBlockCachePool() pool}; without a pool, it is for each file.
+     * Zero or negative means use the on-heap, slot-sized read cache.
+     * Only used for "direct" file mode.
+     */
+    public default Integer getBlockReadCacheOffHeapMB() { return 0; }
+
+    /**
+     * The memory for the off-heap block read caches, shared by several files,
+     * or null for each file to have a cache of {@link #getBlockReadCacheOffHeapMB()} of its own.
+     */
+    public default BlockCachePool getBlockCachePool() { return null; }
 }
 
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.base.buffer;
+
+import static java.lang.String.format;
+
+import java.nio.ByteBuffer;
+
+import org.apache.jena.dboe.base.record.RecordException;
+import org.apache.jena.dboe.base.record.RecordFactory;
+
+/**
+ * Compact encoding of the sorted records of a {@link RecordBuffer}.
+ * <p>
+ * Each key is written relative to the previous key (the first key is relative to the
+ * all-zeros key). A header byte gives the length of the shared prefix; the remaining
+ * bytes of the key are written either as-is or, when it is shorter, as a varint of
+ * the difference between the trailing bytes of this key and the previous one,
+ * treated as unsigned numbers. The top bit of the header byte marks the delta form.
+ * Values are written as-is.
+ * <p>
+ * Adjacent keys of an index of NodeId tuples share long prefixes and differ by
+ * small amounts so this is much shorter than the fixed width layout.
+ */
+public final class PrefixRecordCodec {
+    private static final int DeltaFlag = 0x80;
+    private static final int MaxDeltaBytes = Long.BYTES;
+
+    private final RecordFactory factory;
+    private final int keyLength;
+    private final int valueLength;
+    private final int recordLength;
+
+    public PrefixRecordCodec(RecordFactory factory) {
+        if ( factory.keyLength() >= DeltaFlag )
+            throw new RecordException("Key too long for prefix encoding: "+factory.keyLength());
+        this.factory = factory;
+        this.keyLength = factory.keyLength();
+        this.valueLength = factory.valueLength();
+        this.recordLength = factory.recordLength();
+    }
+
+    public RecordFactory getRecordFactory() {
+        return factory;
+    }
+
+    /** Longest encoding of a single record. */
+    public int maxEncodedLength() {
+        return 1 + keyLength + valueLength;
+    }
+
+    /** Shortest encoding of a single record (distinct keys). */
+    public int minEncodedLength() {
+        return 2 + valueLength;
+    }
+
+    /** Bytes needed to encode the records of a {@link RecordBuffer}. */
+    public int encodedLength(RecordBuffer rb) {
+        ByteBuffer bb = rb.bb;
+        int len = 0;
+        for ( int i = 0 ; i < rb.numSlot ; i++ )
+            len += encodedKeyLength(bb, i) + valueLength;
+        return len;
+    }
+
+    /** Bytes needed to encode the record at {@code idx}, given the records before it. */
+    public int encodedLength(RecordBuffer rb, int idx) {
+        return encodedKeyLength(rb.bb, idx) + valueLength;
+    }
+
+    /**
+     * Encode the records of a {@link RecordBuffer} into {@code dst}, starting at
+     * {@code offset} and not going beyond {@code limit}. Returns the number of bytes written.
+     */
+    public int encode(RecordBuffer rb, ByteBuffer dst, int offset, int limit) {
+        ByteBuffer bb = rb.bb;
+        int posn = offset;
+        for ( int i = 0 ; i < rb.numSlot ; i++ ) {
+            int needed = encodedKeyLength(bb, i) + valueLength;
+            if ( posn + needed > limit )
+                throw new RecordException(format("Encoded records overflow: record %d of %d, limit=%d", i, rb.numSlot, limit-offset));
+            int rStart = i * recordLength;
+            int p = prefixLength(bb, i);
+            int s = keyLength - p;
+            long delta = delta(bb, i, p);
+            if ( useDelta(s, delta) ) {
+                dst.put(posn++, (byte)(p | DeltaFlag));
+                posn = writeVarint(dst, posn, delta);
+            } else {
+                dst.put(posn++, (byte)p);
+                for ( int j = p ; j < keyLength ; j++ )
+                    dst.put(posn++, bb.get(rStart + j));
+            }
+            for ( int j = 0 ; j < valueLength ; j++ )
+                dst.put(posn++, bb.get(rStart + keyLength + j));
+        }
+        return posn - offset;
+    }
+
+    /**
+     * Decode {@code count} records from {@code src}, starting at {@code offset},
+     * into an empty {@link RecordBuffer}.
+     */
+    public void decode(ByteBuffer src, int offset, int count, RecordBuffer rb) {
+        if ( count > rb.maxSlot )
+            throw new RecordException(format("Decode: too many records (%d) for buffer (%d)", count, rb.maxSlot));
+        ByteBuffer bb = rb.bb;
+        int posn = offset;
+        for ( int i = 0 ; i < count ; i++ ) {
+            int rStart = i * recordLength;
+            int prevStart = rStart - recordLength;
+            int h = src.get(posn++) & 0xFF;
+            int p = h & ~DeltaFlag;
+            for ( int j = 0 ; j < p ; j++ )
+                bb.put(rStart + j, ( i == 0 ) ? 0 : bb.get(prevStart + j));
+            if ( (h & DeltaFlag) != 0 ) {
+                long delta = 0;
+                int shift = 0;
+                int b;
+                do {
+                    b = src.get(posn++);
+                    delta |= (long)(b & 0x7F) << shift;
+                    shift += 7;
+                } while ( (b & 0x80) != 0 );
+                long prev = ( i == 0 ) ? 0 : suffix(bb, prevStart, p);
+                long x = prev + delta;
+                for ( int j = keyLength - 1 ; j >= p ; j-- ) {
+                    bb.put(rStart + j, (byte)x);
+                    x >>>= 8;
+                }
+            } else {
+                for ( int j = p ; j < keyLength ; j++ )
+                    bb.put(rStart + j, src.get(posn++));
+            }
+            for ( int j = 0 ; j < valueLength ; j++ )
+                bb.put(rStart + keyLength + j, src.get(posn++));
+        }
+        rb.numSlot = count;
+    }
+
+    private int encodedKeyLength(ByteBuffer bb, int idx) {
+        int p = prefixLength(bb, idx);
+        int s = keyLength - p;
+        long delta = delta(bb, idx, p);
+        if ( useDelta(s, delta) )
+            return 1 + varintLength(delta);
+        return 1 + s;
+    }
+
+    private static boolean useDelta(int s, long delta) {
+        return s <= MaxDeltaBytes && varintLength(delta) < s;
+    }
+
+    /** Length of the common prefix of the key at idx and the previous key. */
+    private int prefixLength(ByteBuffer bb, int idx) {
+        int rStart = idx * recordLength;
+        int prevStart = rStart - recordLength;
+        int p = 0;
+        while ( p < keyLength ) {
+            byte b = bb.get(rStart + p);
+            byte prev = ( idx == 0 ) ? 0 : bb.get(prevStart + p);
+            if ( b != prev )
+                break;
+            p++;
+        }
+        return p;
+    }
+
+    /** Difference between the suffixes (from p) of the key at idx and the previous key. */
+    private long delta(ByteBuffer bb, int idx, int p) {
+        if ( keyLength - p > MaxDeltaBytes )
+            return -1;
+        int rStart = idx * recordLength;
+        long x = suffix(bb, rStart, p);
+        long prev = ( idx == 0 ) ? 0 : suffix(bb, rStart - recordLength, p);
+        return x - prev;
+    }
+
+    private long suffix(ByteBuffer bb, int rStart, int p) {
+        long x = 0;
+        for ( int j = p ; j < keyLength ; j++ )
+            x = (x << 8) | (bb.get(rStart + j) & 0xFF);
+        return x;
+    }
+
+    private static int varintLength(long x) {
+        int n = 1;
+        while ( (x & ~0x7FL) != 0 ) {
+            x >>>= 7;
+            n++;
+        }
+        return n;
+    }
+
+    private static int writeVarint(ByteBuffer dst, int posn, long x) {
+        while ( (x & ~0x7FL) != 0 ) {
+            dst.put(posn++, (byte)((x & 0x7F) | 0x80));
+            x >>>= 7;
+        }
+        dst.put(posn++, (byte)x);
+        return posn;
+    }
+}
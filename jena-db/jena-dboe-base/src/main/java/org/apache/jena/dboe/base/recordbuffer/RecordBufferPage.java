@@ -18,8 +18,15 @@
 
 package org.apache.jena.dboe.base.recordbuffer;
 
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
 import org.apache.jena.dboe.base.block.Block;
+import org.apache.jena.dboe.base.buffer.PrefixRecordCodec;
+import org.apache.jena.dboe.base.buffer.RecordBuffer;
 import org.apache.jena.dboe.base.page.Page;
+import org.apache.jena.dboe.base.record.Record;
+import org.apache.jena.dboe.base.record.RecordException;
 import org.apache.jena.dboe.base.record.RecordFactory;
 import org.apache.jena.dboe.sys.Sys;
 
@@ -40,8 +47,18 @@ public final class RecordBufferPage extends RecordBufferPageBase
     // Adds this field over RecordBufferPageBase
     final public static int LINK            = 4;
     final private static int FIELD_LENGTH   = Sys.SizeOfInt; // Length of the space needed here (not count)
+    final private static int HEADER_LENGTH  = LINK + FIELD_LENGTH;
+
+    // Prefix format: the records are decoded into a RecordBuffer of up to this
+    // many times the number of fixed width records that fit in the block.
+    final private static int PrefixExpansion = 4;
+    // Prefix format: minimum block space, in maximum length records.
+    final private static int MinPrefixRecords = 4;
 
     private int link = Page.NO_ID;
+    private final RecordPageFormat format;
+    // Prefix format only.
+    private final PrefixRecordCodec codec;
 
     public final int getLink() { return link; }
 
@@ -50,8 +67,73 @@ public final class RecordBufferPage extends RecordBufferPageBase
         getBackingBlock().getByteBuffer().putInt(LINK, link);
     }
 
+    public RecordPageFormat getFormat() { return format; }
+
+    /** Whether the page has no space for another record. */
+    public boolean isFull() {
+        if ( recBuff.isFull() )
+            return true;
+        if ( codec == null )
+            return false;
+        // Inserting a record adds at most maxEncodedLength; keep one more in hand.
+        return codec.encodedLength(recBuff) + 2 * codec.maxEncodedLength() > dataLength();
+    }
+
+    /**
+     * Whether the page is at, or below, the minimum B+Tree packing.
+     * Two pages at the minimum can be merged into one page that is not full.
+     */
+    public boolean isMinSize() {
+        // 50% packing minimum.
+        // If of max length 5 (i.e. odd), min size is 2. Integer division works.
+        if ( recBuff.size() > recBuff.maxSize() / 2 )
+            return false;
+        if ( codec == null || recBuff.size() <= 1 )
+            return true;
+        return codec.encodedLength(recBuff) <= (dataLength() - 3 * codec.maxEncodedLength()) / 2;
+    }
+
+    /**
+     * Add records to the top of the page until it is full or the iterator is exhausted.
+     * Return the number of records added.
+     */
+    public int fill(Iterator<Record> records) {
+        int n = 0;
+        if ( codec == null ) {
+            while ( !recBuff.isFull() && records.hasNext() ) {
+                recBuff.add(records.next());
+                n++;
+            }
+            return n;
+        }
+        // Track the encoded length incrementally.
+        int limit = dataLength() - 2 * codec.maxEncodedLength();
+        int len = codec.encodedLength(recBuff);
+        while ( !recBuff.isFull() && len <= limit && records.hasNext() ) {
+            recBuff.add(records.next());
+            len += codec.encodedLength(recBuff, recBuff.size() - 1);
+            n++;
+        }
+        return n;
+    }
+
+    /** Write the records into the backing block (prefix format). */
+    void encode() {
+        if ( codec == null )
+            return;
+        ByteBuffer bb = getBackingBlock().getByteBuffer();
+        codec.encode(recBuff, bb, HEADER_LENGTH, bb.capacity());
+    }
+
+    private int dataLength() {
+        return getBackingBlock().getByteBuffer().capacity() - HEADER_LENGTH;
+    }
+
     @Override
     protected void _reset(Block block) {
+        if ( codec != null )
+            // The records are not held in the block.
+            return;
         // TODO -- should this be format?
         // Print this
         super.rebuild(block, this.getCount());
@@ -66,6 +148,19 @@ public final class RecordBufferPage extends RecordBufferPageBase
     public static int calcBlockSize(RecordFactory factory, int maxRec)
     { return RecordBufferPageBase.calcBlockSize(factory, maxRec, FIELD_LENGTH); }
 
+    /** Maximum number of records in a page of the given format. */
+    public static int calcRecordSize(RecordFactory factory, int blkSize, RecordPageFormat format) {
+        int fixedMax = calcRecordSize(factory, blkSize);
+        if ( format == RecordPageFormat.fixed )
+            return fixedMax;
+        int dataLength = blkSize - HEADER_LENGTH;
+        PrefixRecordCodec codec = new PrefixRecordCodec(factory);
+        // A full page (see isFull) must have at least two records to split.
+        if ( dataLength < MinPrefixRecords * codec.maxEncodedLength() )
+            throw new RecordException(String.format("Block too small for prefix format records: block=%d, record=%d", blkSize, factory.recordLength()));
+        return Math.min(PrefixExpansion * fixedMax, dataLength / codec.minEncodedLength());
+    }
+
     /** The construction methods */
     public static RecordBufferPage createBlank(Block block,RecordFactory factory) {
         int count = 0;
@@ -79,9 +174,38 @@ public final class RecordBufferPage extends RecordBufferPageBase
         return new RecordBufferPage(block, factory, count, linkId);
     }
 
+    public static RecordBufferPage createBlank(Block block, RecordFactory factory, RecordPageFormat format) {
+        if ( format == RecordPageFormat.fixed )
+            return createBlank(block, factory);
+        PrefixRecordCodec codec = new PrefixRecordCodec(factory);
+        RecordBuffer rb = new RecordBuffer(factory, calcRecordSize(factory, block.getByteBuffer().capacity(), format));
+        return new RecordBufferPage(block, codec, rb, NO_ID);
+    }
+
+    public static RecordBufferPage format(Block block, RecordFactory factory, RecordPageFormat format) {
+        if ( format == RecordPageFormat.fixed )
+            return format(block, factory);
+        PrefixRecordCodec codec = new PrefixRecordCodec(factory);
+        ByteBuffer bb = block.getByteBuffer();
+        int count = bb.getInt(COUNT);
+        int linkId = bb.getInt(LINK);
+        RecordBuffer rb = new RecordBuffer(factory, calcRecordSize(factory, bb.capacity(), format));
+        codec.decode(bb, HEADER_LENGTH, count, rb);
+        return new RecordBufferPage(block, codec, rb, linkId);
+    }
+
     private RecordBufferPage(Block block, RecordFactory factory, int count, int linkId) {
         super(block, FIELD_LENGTH, factory, count);
         this.link = linkId;
+        this.format = RecordPageFormat.fixed;
+        this.codec = null;
+    }
+
+    private RecordBufferPage(Block block, PrefixRecordCodec codec, RecordBuffer recBuff, int linkId) {
+        super(block, FIELD_LENGTH, codec.getRecordFactory(), recBuff);
+        this.link = linkId;
+        this.format = RecordPageFormat.prefix;
+        this.codec = codec;
     }
 
     @Override
@@ -70,6 +70,14 @@ public abstract class RecordBufferPageBase extends PageBase // implements Page
         rebuild(block, count);
     }
 
+    /** Page with the records held in a separate {@link RecordBuffer}, not overlaid on the block. */
+    protected RecordBufferPageBase(Block block, int offset, RecordFactory factory, RecordBuffer recBuff) {
+        super(block);
+        this.headerLength = FIELD_LENGTH + offset;
+        this.factory = factory;
+        this.recBuff = recBuff;
+    }
+
     protected void rebuild(Block block, int count) {
         ByteBuffer bb = block.getByteBuffer();
         bb.clear();
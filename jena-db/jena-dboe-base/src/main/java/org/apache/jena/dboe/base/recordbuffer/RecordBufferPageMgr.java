@@ -39,22 +39,37 @@ public class RecordBufferPageMgr extends PageBlockMgr<RecordBufferPage>
 {
     private final RecordFactory factory;
 
+    private final RecordPageFormat format;
+
     public RecordBufferPageMgr(RecordFactory factory, BlockMgr blockMgr) {
-        super(new Block2RecordBufferPage(factory), blockMgr);
+        this(factory, RecordPageFormat.fixed, blockMgr);
+    }
+
+    public RecordBufferPageMgr(RecordFactory factory, RecordPageFormat format, BlockMgr blockMgr) {
+        super(new Block2RecordBufferPage(factory, format), blockMgr);
         this.factory = factory;
+        this.format = format;
     }
 
     public RecordFactory getRecordFactory() { return factory; }
 
+    public RecordPageFormat getFormat() { return format; }
+
     public RecordBufferPage create() {
         return super.create(BlockType.RECORD_BLOCK);
     }
 
     public static class Block2RecordBufferPage implements BlockConverter<RecordBufferPage> {
         private RecordFactory factory;
+        private RecordPageFormat format;
 
         public Block2RecordBufferPage(RecordFactory factory) {
+            this(factory, RecordPageFormat.fixed);
+        }
+
+        public Block2RecordBufferPage(RecordFactory factory, RecordPageFormat format) {
             this.factory = factory;
+            this.format = format;
         }
 
         @Override
@@ -62,14 +77,14 @@ public class RecordBufferPageMgr extends PageBlockMgr<RecordBufferPage>
             if ( blkType != BlockType.RECORD_BLOCK )
                 throw new RecordException("Not RECORD_BLOCK: " + blkType);
             // Initially empty
-            RecordBufferPage rb = RecordBufferPage.createBlank(block, factory);
+            RecordBufferPage rb = RecordBufferPage.createBlank(block, factory, format);
             return rb;
         }
 
         @Override
         public RecordBufferPage fromBlock(Block block) {
             synchronized (block) {
-                RecordBufferPage rb = RecordBufferPage.format(block, factory);
+                RecordBufferPage rb = RecordBufferPage.format(block, factory, format);
                 // int count = block.getByteBuffer().getInt(COUNT);
                 // int linkId = block.getByteBuffer().getInt(LINK);
                 // RecordBufferPage rb = new RecordBufferPage(block, linkId,
@@ -84,6 +99,7 @@ public class RecordBufferPageMgr extends PageBlockMgr<RecordBufferPage>
             ByteBuffer bb = rbp.getBackingBlock().getByteBuffer();
             bb.putInt(COUNT, rbp.getCount());
             bb.putInt(LINK, rbp.getLink());
+            rbp.encode();
             return rbp.getBackingBlock();
         }
     }
@@ -64,6 +64,7 @@ public class Names
     /* Node files */
     public static final String extBdfState              = "bdf";           // Node state
     public static final String extObjNodeData           = "obj";
+    public static final String extNodeFilter            = "bloom";         // Node hash filter
     public static final String nodeTableBaseName        = "nodes";         // Node table
 
     /** Prefixes file */
@@ -73,6 +74,8 @@ public class Names
     public static final String optStats                 = "stats.opt";
     public static final String optFixed                 = "fixed.opt";
     public static final String optNone                  = "none.opt";
+    public static final String optCharacteristicSets    = "cset.opt";      // Characteristic sets, cost-based planning
+    public static final String statsAuto                = "stats.auto";    // Maintained statistics, saved at shutdown
     public static final String optDefault               = optFixed;
 
     public static final String extMeta                  = "info";
@@ -27,6 +27,7 @@ import org.junit.runners.Suite;
     , TestBlockMgrDirect.class
     , TestBlockMgrMapped.class
     , TestBlockMgrTracked.class
+    , TestBlockMgrCacheOffHeap.class
 })
 
 public class TS_Block
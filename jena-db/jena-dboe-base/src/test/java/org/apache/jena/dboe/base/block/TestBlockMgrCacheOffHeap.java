@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.base.block;
+
+import static org.apache.jena.atlas.lib.ByteBufferLib.fill;
+
+import org.apache.jena.dboe.base.file.BlockAccess;
+import org.apache.jena.dboe.base.file.BlockAccessMem;
+import org.junit.Test;
+
+public class TestBlockMgrCacheOffHeap extends AbstractTestBlockMgr
+{
+    // 10 blocks in the read cache.
+    private static final int CacheBytes = 10 * BlkSize;
+
+    @Override
+    protected BlockMgr make() {
+        BlockAccess file = new BlockAccessMem("mem", BlkSize);
+        BlockMgr mgr = new BlockMgrFileAccess(file, BlkSize);
+        return BlockMgrCacheOffHeap.create(CacheBytes, 0, BlkSize, mgr);
+    }
+
+    private BlockMgrCacheOffHeap cache() {
+        return (BlockMgrCacheOffHeap)blockMgr;
+    }
+
+    private long[] writeBlocks(int N) {
+        long[] ids = new long[N];
+        for ( int i = 0 ; i < N ; i++ ) {
+            Block block = blockMgr.allocate(BlkSize);
+            fill(block.getByteBuffer(), (byte)i);
+            ids[i] = block.getId();
+            blockMgr.write(block);
+            blockMgr.release(block);
+        }
+        return ids;
+    }
+
+    private void read(long id) {
+        Block block = blockMgr.getRead(id);
+        blockMgr.release(block);
+    }
+
+    @Test public void offheap_01() {
+        long[] ids = writeBlocks(3);
+        long misses = cache().getMisses();
+        Block block = blockMgr.getRead(ids[1]);
+        contains(block.getByteBuffer(), (byte)1);
+        blockMgr.release(block);
+        assertEquals(misses, cache().getMisses());
+        assertEquals(1, cache().getReadHits());
+    }
+
+    @Test public void offheap_02() {
+        // Read hits are copies - changes do not leak into the cache.
+        long[] ids = writeBlocks(1);
+        Block block1 = blockMgr.getRead(ids[0]);
+        fill(block1.getByteBuffer(), (byte)99);
+        blockMgr.release(block1);
+        Block block2 = blockMgr.getRead(ids[0]);
+        contains(block2.getByteBuffer(), (byte)0);
+        blockMgr.release(block2);
+    }
+
+    @Test public void offheap_03() {
+        long[] ids = writeBlocks(25);
+        assertEquals(10, cache().getCachedBlocks());
+        assertTrue(cache().getEvictions() >= 15);
+        // Everything is still readable.
+        for ( int i = 0 ; i < ids.length ; i++ ) {
+            Block block = blockMgr.getRead(ids[i]);
+            contains(block.getByteBuffer(), (byte)i);
+            blockMgr.release(block);
+        }
+    }
+
+    @Test public void offheap_scan_resistant() {
+        // Hot blocks, read twice so they are in the protected segment.
+        long[] hot = writeBlocks(4);
+        for ( long id : hot ) { read(id); read(id); }
+        // Scan, touching each block once.
+        long[] scan = writeBlocks(50);
+        for ( long id : scan )
+            read(id);
+        long misses = cache().getMisses();
+        for ( long id : hot )
+            read(id);
+        assertEquals("Hot blocks flushed by a scan", misses, cache().getMisses());
+    }
+
+    @Test public void offheap_overwrite() {
+        long[] ids = writeBlocks(1);
+        Block block = blockMgr.getWrite(ids[0]);
+        fill(block.getByteBuffer(), (byte)7);
+        blockMgr.overwrite(block);
+        Block block2 = blockMgr.getRead(ids[0]);
+        contains(block2.getByteBuffer(), (byte)7);
+        blockMgr.release(block2);
+    }
+
+    private static BlockMgrCacheOffHeap make(BlockCachePool pool) {
+        BlockAccess file = new BlockAccessMem("mem", BlkSize);
+        return (BlockMgrCacheOffHeap)BlockMgrCacheOffHeap.create(pool, 0, new BlockMgrFileAccess(file, BlkSize));
+    }
+
+    private static void write(BlockMgr mgr, int N) {
+        for ( int i = 0 ; i < N ; i++ ) {
+            Block block = mgr.allocate(BlkSize);
+            fill(block.getByteBuffer(), (byte)i);
+            mgr.write(block);
+            mgr.release(block);
+        }
+    }
+
+    @Test public void offheap_pool_01() {
+        // Memory is allocated as blocks are cached.
+        BlockCachePool pool = new BlockCachePool(10 * BlkSize, BlkSize);
+        BlockMgrCacheOffHeap mgr = make(pool);
+        assertEquals(0, pool.getAllocated());
+        write(mgr, 3);
+        assertEquals(3, pool.getAllocated());
+        mgr.close();
+        assertEquals(0, pool.getInUse());
+    }
+
+    @Test public void offheap_pool_02() {
+        // One budget for two caches.
+        BlockCachePool pool = new BlockCachePool(10 * BlkSize, BlkSize);
+        BlockMgrCacheOffHeap mgr1 = make(pool);
+        BlockMgrCacheOffHeap mgr2 = make(pool);
+        write(mgr1, 25);
+        assertEquals(10, mgr1.getCachedBlocks());
+        // The second cache gets slots back from the first.
+        for ( int i = 0 ; i < 10 ; i++ ) {
+            write(mgr2, 1);
+            write(mgr1, 1);
+        }
+        assertTrue(mgr2.getCachedBlocks() > 0);
+        assertTrue(mgr1.getCachedBlocks() + mgr2.getCachedBlocks() <= 10);
+        assertEquals(10, pool.getAllocated());
+        mgr1.close();
+        mgr2.close();
+    }
+}
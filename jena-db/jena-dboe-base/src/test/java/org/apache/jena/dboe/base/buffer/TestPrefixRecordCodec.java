@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jena.dboe.base.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.apache.jena.atlas.lib.Bytes;
+import org.apache.jena.dboe.base.record.Record;
+import org.apache.jena.dboe.base.record.RecordException;
+import org.apache.jena.dboe.base.record.RecordFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPrefixRecordCodec extends Assert
+{
+    // Triple index records : 3 x 8 byte keys.
+    static RecordFactory tupleFactory = new RecordFactory(24, 0);
+    // Node table records : hash and NodeId.
+    static RecordFactory hashFactory = new RecordFactory(16, 8);
+
+    @Test public void prefix_codec_01() {
+        RecordBuffer rb = new RecordBuffer(tupleFactory, 10);
+        roundTrip(rb, tupleFactory);
+    }
+
+    @Test public void prefix_codec_02() {
+        RecordBuffer rb = new RecordBuffer(tupleFactory, 10);
+        rb.add(tuple(1, 2, 3));
+        roundTrip(rb, tupleFactory);
+    }
+
+    @Test public void prefix_codec_03() {
+        RecordBuffer rb = new RecordBuffer(tupleFactory, 100);
+        for ( int i = 0 ; i < 100 ; i++ )
+            rb.add(tuple(1000, 5+i/10, 20000+i));
+        roundTrip(rb, tupleFactory);
+        // Adjacent tuples share a prefix and differ by small amounts.
+        PrefixRecordCodec codec = new PrefixRecordCodec(tupleFactory);
+        assertTrue(codec.encodedLength(rb) < 100 * tupleFactory.recordLength() / 4);
+    }
+
+    @Test public void prefix_codec_04() {
+        // Large gaps, and keys with the high bit set.
+        RecordBuffer rb = new RecordBuffer(tupleFactory, 10);
+        rb.add(tuple(1, 0, 0));
+        rb.add(tuple(1, 0, -1L));
+        rb.add(tuple(1, 1, 0));
+        rb.add(tuple(Long.MAX_VALUE, 0, 7));
+        rb.add(tuple(-2L, -1L, -1L));
+        rb.add(tuple(-1L, -1L, -1L));
+        roundTrip(rb, tupleFactory);
+    }
+
+    @Test public void prefix_codec_05() {
+        // Random keys with values.
+        Random random = new Random(1234);
+        TreeSet<Record> records = new TreeSet<>(Record::compareByKey);
+        while ( records.size() < 200 ) {
+            Record r = hashFactory.create();
+            random.nextBytes(r.getKey());
+            random.nextBytes(r.getValue());
+            records.add(r);
+        }
+        RecordBuffer rb = new RecordBuffer(hashFactory, records.size());
+        records.forEach(rb::add);
+        roundTrip(rb, hashFactory);
+    }
+
+    @Test public void prefix_codec_06() {
+        PrefixRecordCodec codec = new PrefixRecordCodec(hashFactory);
+        RecordBuffer rb = new RecordBuffer(hashFactory, 10);
+        for ( int i = 0 ; i < 10 ; i++ ) {
+            Record r = hashFactory.create();
+            Bytes.setLong(i+1, r.getKey(), 8);
+            rb.add(r);
+        }
+        for ( int i = 0 ; i < rb.size() ; i++ ) {
+            assertTrue(codec.encodedLength(rb, i) <= codec.maxEncodedLength());
+            assertTrue(codec.encodedLength(rb, i) >= codec.minEncodedLength());
+        }
+    }
+
+    @Test(expected=RecordException.class)
+    public void prefix_codec_overflow() {
+        PrefixRecordCodec codec = new PrefixRecordCodec(hashFactory);
+        RecordBuffer rb = new RecordBuffer(hashFactory, 10);
+        for ( int i = 0 ; i < 10 ; i++ ) {
+            Record r = hashFactory.create();
+            Bytes.setLong(i, r.getKey(), 8);
+            rb.add(r);
+        }
+        ByteBuffer bb = ByteBuffer.allocate(codec.encodedLength(rb) - 1);
+        codec.encode(rb, bb, 0, bb.capacity());
+    }
+
+    private static void roundTrip(RecordBuffer rb, RecordFactory factory) {
+        PrefixRecordCodec codec = new PrefixRecordCodec(factory);
+        int len = codec.encodedLength(rb);
+        // Offset, and trailing space, in the encoding.
+        ByteBuffer bb = ByteBuffer.allocate(len + 20);
+        int n = codec.encode(rb, bb, 10, bb.capacity());
+        assertEquals(len, n);
+
+        RecordBuffer rb2 = new RecordBuffer(factory, rb.maxSize());
+        codec.decode(bb, 10, rb.size(), rb2);
+        assertEquals(rb.size(), rb2.size());
+        for ( int i = 0 ; i < rb.size() ; i++ )
+            assertTrue("Record "+i, Record.equals(rb.get(i), rb2.get(i)));
+    }
+
+    private static Record tuple(long a, long b, long c) {
+        Record r = tupleFactory.create();
+        Bytes.setLong(a, r.getKey(), 0);
+        Bytes.setLong(b, r.getKey(), 8);
+        Bytes.setLong(c, r.getKey(), 16);
+        return r;
+    }
+}
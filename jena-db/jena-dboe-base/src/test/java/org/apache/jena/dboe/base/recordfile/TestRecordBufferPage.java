@@ -18,6 +18,12 @@
 
 package org.apache.jena.dboe.base.recordfile;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.jena.atlas.lib.Bytes;
 import org.junit.Assert;
 import org.apache.jena.dboe.base.block.BlockMgr;
 import org.apache.jena.dboe.base.block.BlockMgrFactory;
@@ -26,6 +32,7 @@ import org.apache.jena.dboe.base.record.Record;
 import org.apache.jena.dboe.base.record.RecordFactory;
 import org.apache.jena.dboe.base.recordbuffer.RecordBufferPage;
 import org.apache.jena.dboe.base.recordbuffer.RecordBufferPageMgr;
+import org.apache.jena.dboe.base.recordbuffer.RecordPageFormat;
 import org.apache.jena.dboe.sys.SystemIndex;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -38,6 +45,8 @@ public class TestRecordBufferPage extends Assert
     static final int TestRecordSize = 2;           // Size, in bytes.
     static final int TestNumRecord  = 3;           // Size, in bytes.
     static RecordFactory factory = new RecordFactory(2, 0);
+    // For compressed pages.
+    static RecordFactory factory8 = new RecordFactory(8, 0);
 
     static boolean originalNullOut;
     @BeforeClass static public void beforeClass() {
@@ -84,6 +93,66 @@ public class TestRecordBufferPage extends Assert
         blkMgr.endRead();
     }
 
+    @Test public void recBufferPagePrefix01() {
+        // Prefix format: more records than fixed width, written and read back.
+        BlockMgr blkMgr = BlockMgrFactory.createMem("RecordBuffer", 256);
+        blkMgr.beginUpdate();
+        RecordBufferPageMgr rpm = new RecordBufferPageMgr(factory8, RecordPageFormat.prefix, blkMgr);
+        int fixedMax = RecordBufferPage.calcRecordSize(factory8, 256);
+        int x = -99; {
+            RecordBufferPage page1 = rpm.create();
+            assertEquals(RecordPageFormat.prefix, page1.getFormat());
+            int i = 0;
+            while ( !page1.isFull() )
+                page1.getRecordBuffer().add(record8(1000+i++));
+            assertTrue(page1.getCount() > fixedMax);
+            page1.setLink(57);
+            x = page1.getId();
+            rpm.put(page1);
+        }
+        blkMgr.endUpdate();
+        blkMgr.beginRead(); {
+            RecordBufferPage page2 = rpm.getRead(x);
+            assertTrue(page2.getCount() > fixedMax);
+            assertEquals(57, page2.getLink());
+            for ( int i = 0 ; i < page2.getCount() ; i++ )
+                assertEquals(1000+i, Bytes.getLong(page2.getRecordBuffer().get(i).getKey()));
+            rpm.release(page2);
+        }
+        blkMgr.endRead();
+    }
+
+    @Test public void recBufferPagePrefix02() {
+        BlockMgr blkMgr = BlockMgrFactory.createMem("RecordBuffer", 256);
+        blkMgr.beginUpdate();
+        RecordBufferPageMgr rpm = new RecordBufferPageMgr(factory8, RecordPageFormat.prefix, blkMgr);
+        RecordBufferPage page = rpm.create();
+        assertTrue(page.isMinSize());
+        List<Record> records = new ArrayList<>();
+        for ( int i = 0 ; i < 1000 ; i++ )
+            records.add(record8(i));
+        Iterator<Record> iter = records.iterator();
+        int n = page.fill(iter);
+        assertTrue(page.isFull());
+        assertTrue(iter.hasNext());
+        assertEquals(n, page.getCount());
+        assertFalse(page.isMinSize());
+        rpm.release(page);
+        blkMgr.endUpdate();
+    }
+
+    @Test public void recBufferPageFill01() {
+        BlockMgr blkMgr = makeBlockMgr();
+        blkMgr.beginUpdate();
+        RecordBufferPageMgr rpm = new RecordBufferPageMgr(factory, blkMgr);
+        RecordBufferPage page = rpm.create();
+        int n = page.fill(Arrays.asList(record(10), record(20), record(30), record(40)).iterator());
+        assertEquals(TestNumRecord, n);
+        assertTrue(page.isFull());
+        rpm.release(page);
+        blkMgr.endUpdate();
+    }
+
     private static void fill(RecordBuffer rb, int ... nums) {
         for ( int num : nums ) {
             Record rec = record( num );
@@ -107,6 +176,12 @@ public class TestRecordBufferPage extends Assert
         return r;
     }
 
+    private static Record record8(long i) {
+        Record r = factory8.create();
+        Bytes.setLong(i, r.getKey());
+        return r;
+    }
+
     private static BlockMgr makeBlockMgr() {
         return BlockMgrFactory.createMem("RecordBuffer", RecordBufferPage.calcBlockSize(factory, TestNumRecord));
     }
@@ -20,6 +20,7 @@ package org.apache.jena.dboe.index;
 
 import java.util.Iterator;
 
+import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.dboe.base.record.Record;
 import org.apache.jena.dboe.base.record.RecordMapper;
 
@@ -30,6 +31,14 @@ public interface RangeIndex extends Index
 
     public <X> Iterator<X> iterator(Record recordMin, Record recordMax, RecordMapper<X> mapper);
 
+    /**
+     * Return the number of records between min (inclusive) and max (exclusive), based on the record keys.
+     * Null means no limit. Implementations may be able to do this without a scan of the records.
+     */
+    public default long countRange(Record recordMin, Record recordMax) {
+        return Iter.count(iterator(recordMin, recordMax));
+    }
+
     /** Return the record containing the least key - may or may not have the associated value */
     public Record minKey();
 
@@ -73,6 +73,10 @@ public class RangeIndexWrapper implements RangeIndex
     public <X> Iterator<X> iterator(Record minRec, Record maxRec, RecordMapper<X> mapper)
     { return rIndex.iterator(minRec, maxRec, mapper); }
 
+    @Override
+    public long countRange(Record minRec, Record maxRec)
+    { return rIndex.countRange(minRec, maxRec); }
+
     @Override
     public boolean isEmpty()
     { return rIndex.isEmpty(); }
@@ -31,10 +31,12 @@ import org.apache.jena.atlas.io.IndentedLineBuffer;
 import org.apache.jena.atlas.io.IndentedWriter;
 import org.apache.jena.dboe.base.block.Block;
 import org.apache.jena.dboe.base.block.BlockMgr;
+import org.apache.jena.dboe.base.buffer.CountBuffer;
 import org.apache.jena.dboe.base.buffer.PtrBuffer;
 import org.apache.jena.dboe.base.buffer.RecordBuffer;
 import org.apache.jena.dboe.base.page.PageBlockMgr;
 import org.apache.jena.dboe.base.record.Record;
+import org.apache.jena.dboe.base.recordbuffer.RecordPageFormat;
 import org.apache.jena.dboe.sys.SystemIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,6 +69,11 @@ public final class BPTreeNode extends BPTreePage
     /*package*/ PtrBuffer ptrs;
     /*package*/ void setPtrBuffer(PtrBuffer pb) { ptrs = pb; }
 
+    // Number of records below each pointer, for a counted B+Tree, else null.
+    // Kept in step with the pointers.
+    /*package*/ CountBuffer counts;
+    /*package*/ void setCountBuffer(CountBuffer cb) { counts = cb; }
+
     /* B+Tree
      *
      * Two block managers :
@@ -232,8 +239,11 @@ public final class BPTreeNode extends BPTreePage
             trackPath(path, root, 0, page);
             Record r = page.internalDelete(path, rec);
             page.release();
-            if ( r != null )
+            if ( r != null ) {
+                if ( root.counts != null )
+                    root.counts.adjust(0, -1);
                 root.write();
+            }
             if ( BPT.DumpTree )
                 root.dump();
             return r;
@@ -263,6 +273,14 @@ public final class BPTreeNode extends BPTreePage
      * @return Iterator&lt;BPTreePage&gt;
      */
     Iterator<BPTreePage> iterator(Record minRec, Record maxRec) {
+        return iterator(minRec, maxRec, null);
+    }
+
+    /** Iterator over the pages below that have records between minRec (inclusive) and maxRec(exclusive).
+     *  If this node is a leaf and there is a {@link BPTreeReadAhead.Scan}, the records blocks
+     *  are fetched as the iterator moves on, with read-ahead.
+     */
+    Iterator<BPTreePage> iterator(Record minRec, Record maxRec, BPTreeReadAhead.Scan scan) {
         if ( minRec != null && maxRec != null && Record.keyGE(minRec, maxRec) )
             return null;//throw new IllegalArgumentException("minRec >= maxRec: "+minRec+" >= "+maxRec ) ;
 
@@ -287,6 +305,13 @@ public final class BPTreeNode extends BPTreePage
         // Pages from pointer slots x1 to x2 (inc because while we exclude maxRec,
         // keys are only a max of the subtree they mark out.
 
+        if ( isLeaf && scan != null ) {
+            int[] ids = new int[x2-x1+1];
+            for ( int i = x1; i <= x2 ; i++ )
+                ids[i-x1] = ptrs.get(i);
+            return scan.iterator(bpTree, ids, this.getId());
+        }
+
         // XXX Just grab them now - later, keep indexes and fetch on next().
         // XXX Epoch tracking
 
@@ -331,6 +356,86 @@ public final class BPTreeNode extends BPTreePage
 //        return id;
 //    }
 
+    /**
+     * Count the records between minRec (inclusive) and maxRec (exclusive); null means no
+     * limit. The B+Tree must be counted. Only the nodes and records blocks along the
+     * edges of the range are read.
+     */
+    static long countRange(BPTreeNode root, Record minRec, Record maxRec) {
+        if ( minRec != null && maxRec != null && Record.keyGE(minRec, maxRec) )
+            return 0;
+        return root.internalCountRange(minRec, maxRec);
+    }
+
+    private long internalCountRange(Record minRec, Record maxRec) {
+        int x1 = 0;
+        if ( minRec != null )
+            x1 = apply(findSlot(minRec));
+        int x2 = count;
+        if ( maxRec != null )
+            x2 = apply(findSlot(maxRec));
+        if ( x1 == x2 )
+            return countBelow(x1, minRec, maxRec);
+        // Partial at each end, whole subtrees in between.
+        return countBelow(x1, minRec, null) + counts.sum(x1 + 1, x2) + countBelow(x2, null, maxRec);
+    }
+
+    private long countBelow(int idx, Record minRec, Record maxRec) {
+        if ( minRec == null && maxRec == null )
+            return counts.get(idx);
+        BPTreePage page = get(idx);
+        try {
+            if ( isLeaf ) {
+                RecordBuffer rb = ((BPTreeRecords)page).getRecordBuffer();
+                int x1 = ( minRec == null ) ? 0 : apply(rb.find(minRec));
+                int x2 = ( maxRec == null ) ? rb.size() : apply(rb.find(maxRec));
+                return x2 - x1;
+            }
+            return cast(page).internalCountRange(minRec, maxRec);
+        } finally { page.release(); }
+    }
+
+    /**
+     * Set the counts of a node, and of all the nodes below it, from the records blocks.
+     * This is for trees built other than by insert and delete, such as by
+     * {@code BPlusTreeRewriter}, where the node blocks below are new and can be written
+     * in place. The caller writes the node itself. Does nothing if the B+Tree is not
+     * counted.
+     */
+    public static void recount(BPTreeNode node) {
+        if ( node.counts != null )
+            node.internalRecount();
+    }
+
+    private long internalRecount() {
+        counts.setSize(ptrs.size());
+        long total = 0;
+        for ( int i = 0 ; i < ptrs.size() ; i++ ) {
+            int id = ptrs.get(i);
+            long x;
+            if ( isLeaf ) {
+                BPTreeRecords page = bpTree.getRecordsMgr().getRead(id);
+                x = page.getCount();
+                page.release();
+            } else {
+                BPTreeNode n = bpTree.getNodeManager().getWrite(id, getId());
+                x = n.internalRecount();
+                n.write();
+                n.release();
+            }
+            counts.set(i, x);
+            total += x;
+        }
+        return total;
+    }
+
+    /** Number of records in a page, and below it if it is a node. */
+    private static long subtreeCount(BPTreePage page) {
+        if ( page instanceof BPTreeRecords )
+            return page.getCount();
+        return cast(page).counts.sum();
+    }
+
     final static Record minRecord(BPTreeNode root) {
         AccessPath path = new AccessPath(root);
         return root.internalMinRecord(path);
@@ -390,6 +495,8 @@ public final class BPTreeNode extends BPTreePage
     public final RecordBuffer getRecordBuffer()  { return records; }
     /** Do not use without great care */
     public final PtrBuffer getPtrBuffer()        { return ptrs; }
+    /** Do not use without great care. Null if the B+Tree is not counted. */
+    public final CountBuffer getCountBuffer()    { return counts; }
 
     final void setParent(int parentId)           { this.parent = parentId; }
     final int getParent()                        { return parent; }
@@ -521,6 +628,11 @@ public final class BPTreeNode extends BPTreePage
 
         Record r = page.internalInsert(path, record);
         page.release();
+        if ( r == null && counts != null ) {
+            // A new record; the path has been promoted.
+            counts.adjust(idx, 1);
+            this.write();
+        }
         return r;
     }
 
@@ -578,6 +690,11 @@ public final class BPTreeNode extends BPTreePage
         // Insert new node. "add" shuffle's up as well.
         records.add(idx, splitKey);
         ptrs.add(idx + 1, z.getId());
+        if ( counts != null ) {
+            long cz = subtreeCount(z);
+            counts.adjust(idx, -cz);
+            counts.add(idx + 1, cz);
+        }
         count++;
 
         if ( logging(log) ) {
@@ -627,6 +744,11 @@ public final class BPTreeNode extends BPTreePage
         ptrs.copy(ix + 1, z.ptrs, 0, params.MaxPtr - (ix + 1));
         ptrs.clear(ix + 1, params.MaxPtr - (ix + 1));
         ptrs.setSize(ix + 1);
+        if ( counts != null ) {
+            counts.copy(ix + 1, z.counts, 0, params.MaxPtr - (ix + 1));
+            counts.clear(ix + 1, params.MaxPtr - (ix + 1));
+            counts.setSize(ix + 1);
+        }
 
         // Set sizes of subnodes
         setCount(ix); // Median is ix
@@ -680,11 +802,15 @@ public final class BPTreeNode extends BPTreePage
         // New left
         root.records.copy(0, left.records, 0, splitIdx);
         root.ptrs.copy(0, left.ptrs, 0, splitIdx + 1);
+        if ( root.counts != null )
+            root.counts.copy(0, left.counts, 0, splitIdx + 1);
         left.count = splitIdx;
 
         // New right
         root.records.copy(splitIdx + 1, right.records, 0, root.maxRecords() - (splitIdx + 1));
         root.ptrs.copy(splitIdx + 1, right.ptrs, 0, root.params.MaxPtr - (splitIdx + 1));
+        if ( root.counts != null )
+            root.counts.copy(splitIdx + 1, right.counts, 0, root.params.MaxPtr - (splitIdx + 1));
         right.count = root.maxRecords() - (splitIdx + 1);
 
         if ( logging(log) ) {
@@ -706,6 +832,11 @@ public final class BPTreeNode extends BPTreePage
         root.ptrs.setSize(2);
         root.ptrs.set(0, left.getId()); // slot 0
         root.ptrs.set(1, right.getId()); // slot 1
+        if ( root.counts != null ) {
+            root.counts.setSize(2);
+            root.counts.set(0, left.counts.sum());
+            root.counts.set(1, right.counts.sum());
+        }
 
         if ( logging(log) ) {
             log(log, "splitRoot <<   %s", root);
@@ -770,6 +901,11 @@ public final class BPTreeNode extends BPTreePage
         // Go to bottom
         // Need to return the deleted key/value.
         Record r2 = page.internalDelete(path, rec);
+        if ( r2 != null && counts != null ) {
+            // A record removed; the path has been promoted.
+            counts.adjust(y, -1);
+            this.write();
+        }
         if ( x >= 0 ) {
             // And hence r2 != null.
             // The deleted key was in the tree as well as the records.
@@ -818,6 +954,8 @@ public final class BPTreeNode extends BPTreePage
         BPTreeNodeMgr.formatForRoot(root, n.isLeaf);
         n.records.copy(0, root.records, 0, n.count);
         n.ptrs.copy(0, root.ptrs, 0, n.count + 1);
+        if ( root.counts != null )
+            n.counts.copy(0, root.counts, 0, n.count + 1);
         root.isLeaf = n.isLeaf;
         root.count = n.count;
         root.write();
@@ -953,6 +1091,8 @@ public final class BPTreeNode extends BPTreePage
 
         // /==\ + key + /==\ ==> /====\
         Record splitKey = records.get(dividingSlot);
+        if ( counts != null )
+            counts.adjust(dividingSlot, counts.get(dividingSlot + 1));
         BPTreePage page = left.merge(right, splitKey);
         // Must release right (not done in merge)
         if ( logging(log) )
@@ -971,7 +1111,11 @@ public final class BPTreeNode extends BPTreePage
                 // (it's already there, with its value).
                 // Size is N+N and max could be odd so N+N and N+N+1 are
                 // possible.
-                if ( left.getCount() + 1 != left.getMaxSize() && left.getCount() != left.getMaxSize() )
+                // Compressed records pages have a variable number of records.
+                boolean fixedSize = ((BPTreeRecords)left).getRecordBufferPage().getFormat() == RecordPageFormat.fixed;
+                if ( fixedSize && left.getCount() + 1 != left.getMaxSize() && left.getCount() != left.getMaxSize() )
+                    BPT.error("Inconsistent data node size: %d/%d", left.getCount(), left.getMaxSize());
+                if ( left.getCount() > left.getMaxSize() )
                     BPT.error("Inconsistent data node size: %d/%d", left.getCount(), left.getMaxSize());
             } else if ( !left.isFull() ) {
                 // If not two data blocks, the left side should now be full
@@ -1006,6 +1150,8 @@ public final class BPTreeNode extends BPTreePage
         // Copy over right to top of left.
         right.records.copyToTop(left.records);
         right.ptrs.copyToTop(left.ptrs);
+        if ( left.counts != null )
+            right.counts.copyToTop(left.counts);
 
         // Update count
         left.count = left.count + right.count + 1;
@@ -1013,6 +1159,8 @@ public final class BPTreeNode extends BPTreePage
 
         right.records.clear();
         right.ptrs.clear();
+        if ( right.counts != null )
+            right.counts.clear();
         return left;
     }
 
@@ -1026,6 +1174,10 @@ public final class BPTreeNode extends BPTreePage
         Record r2 = left.shiftRight(right, r1);
         r2 = keyRecord(r2);
         this.records.set(i, r2);
+        if ( counts != null ) {
+            counts.set(i, subtreeCount(left));
+            counts.set(i + 1, subtreeCount(right));
+        }
 
         left.write();
         right.write();
@@ -1047,6 +1199,10 @@ public final class BPTreeNode extends BPTreePage
         Record r2 = left.shiftLeft(right, r1);
         r2 = keyRecord(r2);
         this.records.set(i, r2);
+        if ( counts != null ) {
+            counts.set(i, subtreeCount(left));
+            counts.set(i + 1, subtreeCount(right));
+        }
 
         left.write();
         right.write();
@@ -1074,6 +1230,8 @@ public final class BPTreeNode extends BPTreePage
 
         // Pointers just shift
         this.ptrs.shiftRight(node.ptrs);
+        if ( counts != null )
+            this.counts.shiftRight(node.counts);
 
         this.count--;
         node.count++;
@@ -1098,6 +1256,8 @@ public final class BPTreeNode extends BPTreePage
 
         // Pointers just shift
         this.ptrs.shiftLeft(node.ptrs);
+        if ( counts != null )
+            this.counts.shiftLeft(node.counts);
 
         this.count++;
         node.count--;
@@ -1119,6 +1279,8 @@ public final class BPTreeNode extends BPTreePage
         if ( x == count - 1 ) {
             records.removeTop();
             ptrs.removeTop();
+            if ( counts != null )
+                counts.removeTop();
 
             count--;
             if ( logging(log) ) {
@@ -1133,6 +1295,8 @@ public final class BPTreeNode extends BPTreePage
 
         records.shiftDown(x);
         ptrs.shiftDown(x + 1);
+        if ( counts != null )
+            counts.shiftDown(x + 1);
         count--;
         if ( logging(log) )
             log(log, "shuffleDown << %s", this);
@@ -1332,6 +1496,9 @@ public final class BPTreeNode extends BPTreePage
         if ( !isLeaf && count + 1 != ptrs.size() )
             BPT.error("Inconsistent: id=%d, count+1=%d, ptrs.size()=%d; %s", id, count + 1, ptrs.size(), this) ;
 
+        if ( counts != null && counts.size() != ptrs.size() )
+            BPT.error("Inconsistent: id=%d, counts.size()=%d, ptrs.size()=%d; %s", id, counts.size(), ptrs.size(), this) ;
+
         // No BPT remembered root node currently
         // if ( bpTree.root != null && !isRoot() && count < params.MinRec)
         if ( !isRoot() && count < params.MinRec ) {
@@ -1414,6 +1581,9 @@ public final class BPTreeNode extends BPTreePage
             Record max1 = max;
             BPTreePage n = get(i);
 
+            if ( counts != null && counts.get(i) != subtreeCount(n) )
+                BPT.error("Node: %d: Count %d is not the size [%d] of the sub-tree idx=%d", id, counts.get(i), subtreeCount(n), i);
+
             if ( i != count ) {
                 Record keySubTree = n.getHighRecord(); // high key in immediate
                                                         // child
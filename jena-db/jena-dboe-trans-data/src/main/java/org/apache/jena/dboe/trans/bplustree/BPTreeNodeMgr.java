@@ -27,6 +27,7 @@ import java.nio.ByteBuffer;
 import org.apache.jena.dboe.base.block.Block;
 import org.apache.jena.dboe.base.block.BlockMgr;
 import org.apache.jena.dboe.base.block.BlockType;
+import org.apache.jena.dboe.base.buffer.CountBuffer;
 import org.apache.jena.dboe.base.buffer.PtrBuffer;
 import org.apache.jena.dboe.base.buffer.RecordBuffer;
 import org.apache.jena.dboe.base.page.BlockConverter;
@@ -147,6 +148,7 @@ public final class BPTreeNodeMgr extends PageBlockMgr<BPTreeNode>
      *  Internal nodes:
      *    4-X:        Records: b+tree.MaxRec*record length
      *    X- :        Pointers: b+tree.MaxPtr*ptr length
+     *    Y- :        Counts (if counted): b+tree.MaxPtr*8
      */
     private static BPTreeNode overlay(BPlusTree bpTree, Block block, boolean asLeaf, int count) {
         // if ( byteBuffer.order() != Const.NetworkOrder )
@@ -208,6 +210,15 @@ public final class BPTreeNodeMgr extends PageBlockMgr<BPTreeNode>
         // bbi.limit(ptrBuffLen);
         n.setPtrBuffer(new PtrBuffer(bbi, numPtrs));
 
+        // -- Counts area, one for each pointer.
+        if ( params.isCounted() ) {
+            int cStart = pStart + ptrBuffLen;
+            byteBuffer.position(cStart);
+            byteBuffer.limit(cStart + params.MaxPtr * CountBuffer.SizeOfCount);
+            ByteBuffer bbc = byteBuffer.slice();
+            n.setCountBuffer(new CountBuffer(bbc, numPtrs));
+        }
+
         // Reset
         byteBuffer.rewind();
     }
@@ -41,6 +41,7 @@ class BPTreeRangeIterator implements Iterator<Record> {
     private final Deque<Iterator<BPTreePage>> stack = new ArrayDeque<>();
     final private Record minRecord;
     final private Record maxRecord;
+    final private BPTreeReadAhead.Scan scan;
     private Iterator<Record> current;
     private Record slot = null;
     private boolean finished = false;
@@ -48,6 +49,8 @@ class BPTreeRangeIterator implements Iterator<Record> {
     BPTreeRangeIterator(BPTreeNode node, Record minRec, Record maxRec ) {
         this.minRecord = minRec;
         this.maxRecord = maxRec;
+        BPTreeReadAhead readAhead = node.bpTree.getReadAhead();
+        this.scan = ( readAhead == null ) ? null : readAhead.newScan();
         BPTreeRecords r = loadStack(node);
         current = getRecordsIterator(r, minRecord, maxRecord);
     }
@@ -112,7 +115,7 @@ class BPTreeRangeIterator implements Iterator<Record> {
         List<AccessStep> steps = path.getPath();
         for ( AccessStep step : steps ) {
             BPTreeNode n = step.node;
-            Iterator<BPTreePage> it = n.iterator(minRecord, maxRecord);
+            Iterator<BPTreePage> it = n.iterator(minRecord, maxRecord, scan);
             if ( it == null || ! it.hasNext() )
                 continue;
             BPTreePage p = it.next();
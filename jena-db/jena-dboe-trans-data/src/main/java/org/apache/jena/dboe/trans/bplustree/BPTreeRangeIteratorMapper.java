@@ -47,6 +47,7 @@ class BPTreeRangeIteratorMapper<X> implements Iterator<X> {
     final private Deque<Iterator<BPTreePage>> stack = new ArrayDeque<>();
     final private Record minRecord;
     final private Record maxRecord;
+    final private BPTreeReadAhead.Scan scan;
     final private RecordMapper<X> mapper;
     private Iterator<X> current;
     private X slot = null;
@@ -56,6 +57,8 @@ class BPTreeRangeIteratorMapper<X> implements Iterator<X> {
     BPTreeRangeIteratorMapper(BPTreeNode node, Record minRec, Record maxRec, int keyLength, RecordMapper<X> mapper) {
         this.minRecord = minRec;
         this.maxRecord = maxRec;
+        BPTreeReadAhead readAhead = node.bpTree.getReadAhead();
+        this.scan = ( readAhead == null ) ? null : readAhead.newScan();
         this.mapper = mapper;
         this.keySlot = new byte[keyLength];
 
@@ -123,7 +126,7 @@ class BPTreeRangeIteratorMapper<X> implements Iterator<X> {
         List<AccessStep> steps = path.getPath();
         for ( AccessStep step : steps ) {
             BPTreeNode n = step.node;
-            Iterator<BPTreePage> it = n.iterator(minRecord, maxRecord);
+            Iterator<BPTreePage> it = n.iterator(minRecord, maxRecord, scan);
             if ( it == null || ! it.hasNext() )
                 continue;
             BPTreePage p = it.next();
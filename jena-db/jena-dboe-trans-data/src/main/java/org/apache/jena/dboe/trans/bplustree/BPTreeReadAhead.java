@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.trans.bplustree;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.jena.dboe.base.block.Block;
+import org.apache.jena.dboe.base.block.BlockMgr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-ahead for long range scans of a {@link BPlusTree}.
+ * <p>
+ * Once a scan has crossed {@link #getThreshold()} records blocks, the next
+ * {@link #getWindow()} records blocks, taken from the pointers of the parent node, are
+ * read on a background thread. The scanning thread then finds them in the block
+ * cache (direct mode) or already paged in (mapped mode) and rarely waits on I/O.
+ * Read-ahead does not go beyond the children of the parent node being scanned.
+ * <p>
+ * The counters record how many blocks have been read ahead and how many of those the
+ * scan went on to use.
+ */
+public class BPTreeReadAhead {
+    private static Logger log = LoggerFactory.getLogger(BPTreeReadAhead.class);
+
+    /** Number of records blocks a scan crosses before read-ahead starts. */
+    public static final int DefaultThreshold = 4;
+
+    // Outstanding read-ahead requests, across all B+Trees, beyond which requests are dropped.
+    private static final int MaxQueued = 4096;
+    private static final int Threads = 2;
+
+    // A ThreadFactory that creates daemons
+    private static ThreadFactory threadFactory = new BasicThreadFactory.Builder()
+        .daemon(true)
+        .namingPattern("bptree-readahead-%d")
+        .build();
+
+    // Shared by all B+Trees. The threads must not be interrupted - that closes the FileChannel.
+    private static final ExecutorService executor =
+        new ThreadPoolExecutor(Threads, Threads, 0L, TimeUnit.MILLISECONDS,
+                               new ArrayBlockingQueue<>(MaxQueued), threadFactory);
+
+    // Keep the touching of mapped pages from being optimized away.
+    private static volatile int sink = 0;
+
+    private final BlockMgr blockMgr;
+    private final int window;
+    private final int threshold;
+    private final AtomicLong prefetched = new AtomicLong(0);
+    private final AtomicLong used = new AtomicLong(0);
+
+    /*package*/ BPTreeReadAhead(BlockMgr blockMgr, int window, int threshold) {
+        if ( window <= 0 )
+            throw new IllegalArgumentException("Read-ahead window must be positive: "+window);
+        if ( threshold < 0 )
+            throw new IllegalArgumentException("Read-ahead threshold must not be negative: "+threshold);
+        this.blockMgr = blockMgr;
+        this.window = window;
+        this.threshold = threshold;
+    }
+
+    /** Number of records blocks read ahead of the scan. */
+    public int getWindow() {
+        return window;
+    }
+
+    /** Number of records blocks a scan crosses before read-ahead starts. */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /** Number of blocks read ahead. */
+    public long getPrefetched() {
+        return prefetched.get();
+    }
+
+    /** Number of blocks read ahead that a scan then went on to use. */
+    public long getUsed() {
+        return used.get();
+    }
+
+    /*package*/ Scan newScan() {
+        return new Scan();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ReadAhead[window=%d, threshold=%d, prefetched=%d, used=%d]",
+                             window, threshold, getPrefetched(), getUsed());
+    }
+
+    private boolean prefetch(int id) {
+        try {
+            executor.execute(()->read(id));
+        } catch (RejectedExecutionException ex) {
+            // Queue full - skip this one.
+            return false;
+        }
+        prefetched.incrementAndGet();
+        return true;
+    }
+
+    private void read(int id) {
+        try {
+            blockMgr.beginRead();
+            try {
+                Block block = blockMgr.getRead(id);
+                touch(block.getByteBuffer());
+                blockMgr.release(block);
+            } finally {
+                blockMgr.endRead();
+            }
+        } catch (RuntimeException ex) {
+            // Read-ahead is only advisory; the scan will read the block itself.
+            log.debug("Read-ahead of block "+id+" failed: "+ex.getMessage());
+        }
+    }
+
+    private static void touch(ByteBuffer bb) {
+        int x = 0;
+        for ( int i = 0 ; i < bb.limit() ; i += 4096 )
+            x += bb.get(i);
+        sink = x;
+    }
+
+    /** State of one range scan. Only used by the scanning thread. */
+    /*package*/ class Scan {
+        private int leaves = 0;
+        // Blocks requested but not yet reached by the scan.
+        private final Set<Integer> pending = new HashSet<>();
+
+        private Scan() {}
+
+        /**
+         * Iterator over the records blocks {@code ids}, children of {@code parent},
+         * that reads ahead of the scan.
+         */
+        /*package*/ Iterator<BPTreePage> iterator(BPlusTree bpTree, int[] ids, int parent) {
+            return new Iterator<BPTreePage>() {
+                private int idx = 0;
+                // ids[0..requested) have been read or requested.
+                private int requested = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return idx < ids.length;
+                }
+
+                @Override
+                public BPTreePage next() {
+                    if ( ! hasNext() )
+                        throw new NoSuchElementException();
+                    int id = ids[idx++];
+                    leaves++;
+                    if ( pending.remove(id) )
+                        used.incrementAndGet();
+                    requested = Math.max(requested, idx);
+                    if ( leaves >= threshold ) {
+                        int limit = Math.min(ids.length, idx + window);
+                        for ( ; requested < limit ; requested++ ) {
+                            int x = ids[requested];
+                            if ( prefetch(x) )
+                                pending.add(x);
+                        }
+                    }
+                    bpTree.startReadBlkMgr();
+                    try {
+                        return bpTree.getRecordsMgr().getRead(id, parent);
+                    } finally {
+                        bpTree.finishReadBlkMgr();
+                    }
+                }
+            };
+        }
+    }
+}
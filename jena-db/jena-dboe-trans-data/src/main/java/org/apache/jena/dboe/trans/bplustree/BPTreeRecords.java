@@ -92,7 +92,7 @@ public final class BPTreeRecords extends BPTreePage {
 
     @Override
     public boolean isFull() {
-        return (rBuff.size() >= rBuff.maxSize());
+        return rBuffPage.isFull();
     }
 
     @Override
@@ -102,9 +102,8 @@ public final class BPTreeRecords extends BPTreePage {
 
     @Override
     public boolean isMinSize() {
-        // 50% packing minimum.
-        // If of max length 5 (i.e. odd), min size is 2. Integer division works.
-        return (rBuff.size() <= rBuff.maxSize() / 2);
+        // 50% packing minimum (by count, and by space for compressed pages).
+        return rBuffPage.isMinSize();
     }
 
     @Override
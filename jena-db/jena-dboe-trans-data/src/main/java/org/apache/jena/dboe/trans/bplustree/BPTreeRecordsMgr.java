@@ -26,6 +26,7 @@ import org.apache.jena.dboe.base.record.RecordFactory;
 import org.apache.jena.dboe.base.recordbuffer.RecordBufferPage;
 import org.apache.jena.dboe.base.recordbuffer.RecordBufferPageMgr;
 import org.apache.jena.dboe.base.recordbuffer.RecordBufferPageMgr.Block2RecordBufferPage;
+import org.apache.jena.dboe.base.recordbuffer.RecordPageFormat;
 
 /** Bridge for making, getting and putting BPTreeRecords over a RecordBufferPageMgr */
 final public class BPTreeRecordsMgr extends PageBlockMgr<BPTreeRecords>
@@ -39,7 +40,7 @@ final public class BPTreeRecordsMgr extends PageBlockMgr<BPTreeRecords>
     BPTreeRecordsMgr(BPlusTree bpTree, RecordFactory recordFactory, RecordBufferPageMgr rBuffPageMgr) {
         super(null , rBuffPageMgr.getBlockMgr());
         this.bpTree = bpTree;
-        super.setConverter(new Block2BPTreeRecords(this, recordFactory));
+        super.setConverter(new Block2BPTreeRecords(this, recordFactory, rBuffPageMgr.getFormat()));
         // bpt is uninitialized at this point.
         // so record rBuffPageMgr
         this.rBuffPageMgr = rBuffPageMgr;
@@ -50,9 +51,9 @@ final public class BPTreeRecordsMgr extends PageBlockMgr<BPTreeRecords>
         private Block2RecordBufferPage recordBufferConverter;
         private BPTreeRecordsMgr       recordsMgr;
 
-        Block2BPTreeRecords(BPTreeRecordsMgr mgr, RecordFactory recordFactory) {
+        Block2BPTreeRecords(BPTreeRecordsMgr mgr, RecordFactory recordFactory, RecordPageFormat format) {
             this.recordsMgr = mgr;
-            this.recordBufferConverter = new RecordBufferPageMgr.Block2RecordBufferPage(recordFactory);
+            this.recordBufferConverter = new RecordBufferPageMgr.Block2RecordBufferPage(recordFactory, format);
         }
 
         @Override
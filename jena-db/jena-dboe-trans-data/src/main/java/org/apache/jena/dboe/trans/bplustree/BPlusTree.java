@@ -128,6 +128,7 @@ public class BPlusTree extends TransactionalComponentLifecycle<BptTxnState> impl
     private final BPlusTreeParams bpTreeParams;
     private Mode mode = Mode.TRANSACTIONAL;
     private BptTxnState nonTxnState = null;
+    private BPTreeReadAhead readAhead = null;
 
     // Construction is a two stage process
     //    1/ Create the object, uninitialized
@@ -225,6 +226,33 @@ public class BPlusTree extends TransactionalComponentLifecycle<BptTxnState> impl
     /** Only use for careful manipulation of structures */
     public BPTreeRecordsMgr getRecordsMgr()     { return recordsMgr; }
 
+    /**
+     * Set the number of records blocks read ahead of a long range scan; 0 turns
+     * read-ahead off. Read-ahead starts after a scan has crossed
+     * {@link BPTreeReadAhead#DefaultThreshold} records blocks.
+     */
+    public void setReadAhead(int window) {
+        setReadAhead(window, BPTreeReadAhead.DefaultThreshold);
+    }
+
+    /**
+     * Set the number of records blocks read ahead of a long range scan, and the
+     * number of records blocks a scan crosses before read-ahead starts.
+     * A window of 0 turns read-ahead off.
+     */
+    public void setReadAhead(int window, int threshold) {
+        if ( window <= 0 ) {
+            readAhead = null;
+            return;
+        }
+        readAhead = new BPTreeReadAhead(recordsMgr.getBlockMgr(), window, threshold);
+    }
+
+    /** The read-ahead settings and counters, or null if read-ahead is off. */
+    public BPTreeReadAhead getReadAhead() {
+        return readAhead;
+    }
+
     @Override
     public RecordFactory getRecordFactory() {
         return bpTreeParams.recordFactory;
@@ -426,8 +454,28 @@ public class BPlusTree extends TransactionalComponentLifecycle<BptTxnState> impl
 
     @Override
     public long size() {
-        Iterator<Record> iter = iterator();
-        return Iter.count(iter);
+        return countRange(noMin, noMax);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the B+Tree is counted (see {@link BPlusTreeParams#isCounted}), the count is
+     * calculated from the counts in the nodes and the records blocks at the ends of
+     * the range, without a scan of the range.
+     */
+    @Override
+    public long countRange(Record minRec, Record maxRec) {
+        if ( ! bpTreeParams.isCounted() )
+            return Iter.count(iterator(minRec, maxRec));
+        startReadBlkMgr();
+        BPTreeNode root = getRootRead();
+        try {
+            return BPTreeNode.countRange(root, minRec, maxRec);
+        } finally {
+            releaseRootRead(root);
+            finishReadBlkMgr();
+        }
     }
 
     @Override
@@ -528,8 +576,8 @@ public class BPlusTree extends TransactionalComponentLifecycle<BptTxnState> impl
 
     @Override
     protected ByteBuffer _commitPrepare(TxnId txnId, BptTxnState state) {
-        nodeManager.getBlockMgr().sync();
-        recordsMgr.getBlockMgr().sync();
+        syncData(nodeManager.getBlockMgr());
+        syncData(recordsMgr.getBlockMgr());
 
         long nodeLimit = nodeManager.allocLimit();
         long recordsLimit = recordsMgr.allocLimit();
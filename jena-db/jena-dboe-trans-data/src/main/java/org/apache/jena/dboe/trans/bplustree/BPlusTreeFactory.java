@@ -22,6 +22,7 @@ import org.apache.jena.dboe.DBOpEnvException;
 import org.apache.jena.dboe.base.block.BlockMgr;
 import org.apache.jena.dboe.base.block.BlockMgrFactory;
 import org.apache.jena.dboe.base.block.BlockMgrLogger;
+import org.apache.jena.dboe.base.block.BlockParams;
 import org.apache.jena.dboe.base.file.BufferChannel;
 import org.apache.jena.dboe.base.file.BufferChannelMem;
 import org.apache.jena.dboe.base.file.FileFactory;
@@ -29,6 +30,7 @@ import org.apache.jena.dboe.base.file.FileSet;
 import org.apache.jena.dboe.base.record.RecordFactory;
 import org.apache.jena.dboe.base.recordbuffer.RecordBufferPage;
 import org.apache.jena.dboe.base.recordbuffer.RecordBufferPageMgr;
+import org.apache.jena.dboe.base.recordbuffer.RecordPageFormat;
 import org.apache.jena.dboe.index.RangeIndex;
 import org.apache.jena.dboe.sys.Names;
 import org.apache.jena.dboe.sys.SystemIndex;
@@ -102,6 +104,45 @@ public class BPlusTreeFactory {
         return createBPTreeByBlockSize(cid, fileset, blockSize, readCacheSize, writeCacheSize, factory);
     }
 
+    /** Create a B+Tree using the block settings (size, file mode and caching) of a {@link BlockParams} */
+    public static BPlusTree createBPTree(ComponentId cid, FileSet fileset, BlockParams blockParams, RecordFactory factory) {
+        return createBPTree(cid, fileset, blockParams, RecordPageFormat.fixed, factory);
+    }
+
+    /**
+     * Create a B+Tree using the block settings (size, file mode and caching) of a {@link BlockParams}
+     * and the given layout for the records blocks.
+     */
+    public static BPlusTree createBPTree(ComponentId cid, FileSet fileset, BlockParams blockParams,
+                                         RecordPageFormat recordFormat, RecordFactory factory) {
+        return createBPTree(cid, fileset, blockParams, recordFormat, false, factory);
+    }
+
+    /**
+     * Create a B+Tree using the block settings (size, file mode and caching) of a {@link BlockParams}
+     * and the given layout for the records blocks, with or without counts in the nodes
+     * (see {@link BPlusTreeParams#isCounted}).
+     */
+    public static BPlusTree createBPTree(ComponentId cid, FileSet fileset, BlockParams blockParams,
+                                         RecordPageFormat recordFormat, boolean counted, RecordFactory factory) {
+        BlockMgr blkMgrNodes;
+        BlockMgr blkMgrRecords;
+        int blockSize;
+        if ( fileset.isMem() ) {
+            blockSize = SystemIndex.BlockSizeTest;
+            blkMgrNodes = BlockMgrFactory.create(fileset, Names.extBptTree, blockSize, 0, 0);
+            blkMgrRecords = BlockMgrFactory.create(fileset, Names.extBptRecords, blockSize, 0, 0);
+        } else {
+            blockSize = blockParams.getBlockSize();
+            blkMgrNodes = BlockMgrFactory.create(fileset, Names.extBptTree, blockParams);
+            blkMgrRecords = BlockMgrFactory.create(fileset, Names.extBptRecords, blockParams);
+        }
+        int order = BPlusTreeParams.calcOrder(blockSize, factory.recordLength(), counted);
+        BPlusTreeParams params = new BPlusTreeParams(order, factory, recordFormat, counted);
+        BufferChannel bptState = FileFactory.createBufferChannel(fileset, Names.extBptState);
+        return BPlusTreeFactory.create(cid, params, bptState, blkMgrNodes, blkMgrRecords);
+    }
+
     /** Create a B+Tree by BlockSize */
     public static BPlusTree createBPTreeByBlockSize(ComponentId cid, FileSet fileset,
                                                     int blockSize,
@@ -174,7 +215,7 @@ public class BPlusTreeFactory {
 
         BPTreeNodeMgr nodeManager = new BPTreeNodeMgr(bpt, blkMgrNodes);
 
-        RecordBufferPageMgr recordPageMgr = new RecordBufferPageMgr(params.getRecordFactory(), blkMgrRecords);
+        RecordBufferPageMgr recordPageMgr = new RecordBufferPageMgr(params.getRecordFactory(), params.getRecordPageFormat(), blkMgrRecords);
         BPTreeRecordsMgr recordsMgr = new BPTreeRecordsMgr(bpt, params.getRecordFactory(), recordPageMgr);
 
         createIfAbsent(isReset, stateMgr, nodeManager, recordsMgr);
@@ -204,9 +245,20 @@ public class BPlusTreeFactory {
 
     /** (Testing mainly) Make an in-memory B+Tree, with copy-in, copy-out block managers */
     public static BPlusTree makeMem(String name, int order, int minDataRecords, int keyLength, int valueLength) {
+        return makeMem(name, order, minDataRecords, keyLength, valueLength, RecordPageFormat.fixed);
+    }
+
+    /** (Testing mainly) Make an in-memory B+Tree, with copy-in, copy-out block managers */
+    public static BPlusTree makeMem(String name, int order, int minDataRecords, int keyLength, int valueLength, RecordPageFormat recordFormat) {
+        return makeMem(name, order, minDataRecords, keyLength, valueLength, recordFormat, false);
+    }
+
+    /** (Testing mainly) Make an in-memory B+Tree, with copy-in, copy-out block managers */
+    public static BPlusTree makeMem(String name, int order, int minDataRecords, int keyLength, int valueLength,
+                                    RecordPageFormat recordFormat, boolean counted) {
         if ( name == null )
             name = "Mem";
-        BPlusTreeParams params = new BPlusTreeParams(order, keyLength, valueLength);
+        BPlusTreeParams params = new BPlusTreeParams(order, new RecordFactory(keyLength, valueLength), recordFormat, counted);
 
         int blkSize;
         if ( minDataRecords > 0 ) {
@@ -304,6 +356,10 @@ public class BPlusTreeFactory {
             // Force to right layout.
             n.ptrs.setSize(0);                 // No pointers
             n.ptrs.add(recordsPage.getId());   // Add the page below
+            if ( n.counts != null ) {
+                n.counts.setSize(0);
+                n.counts.add(0, 0);            // No records below
+            }
 
             //n.ptrs.set(0, page.getId()); // This is the same as the size is one.
 
@@ -22,8 +22,10 @@ import static org.apache.jena.dboe.sys.SystemIndex.SizeOfPointer;
 
 import org.apache.jena.atlas.logging.Log;
 import org.apache.jena.dboe.DBOpEnvException;
+import org.apache.jena.dboe.base.buffer.CountBuffer;
 import org.apache.jena.dboe.base.file.MetaFile;
 import org.apache.jena.dboe.base.record.RecordFactory;
+import org.apache.jena.dboe.base.recordbuffer.RecordPageFormat;
 import org.apache.jena.dboe.sys.Names;
 
 /** Configuration for a B+Tree */
@@ -36,6 +38,8 @@ final public class BPlusTreeParams
     public static final String ParamKeyLength      = NS+".keyLength";
     public static final String ParamValueLength    = NS+".valueLength";
     public static final String ParamBlockSize      = NS+".blockSize";
+    public static final String ParamRecordFormat   = NS+".recordFormat";
+    public static final String ParamCounted        = NS+".counted";
 
     /* The gap is extra space in a node - some books have node size as 2*N
      * (often for the classic insertion algorithm where it's easier to implement
@@ -60,6 +64,12 @@ final public class BPlusTreeParams
     /** Factory for key-only records */
     final RecordFactory keyFactory;
 
+    /** Layout of the records in the leaf (records) blocks */
+    final RecordPageFormat recordFormat;
+
+    /** Whether the nodes keep the number of records below each pointer */
+    final boolean counted;
+
     // ---- Derived constants.
 
     /** Maximum number of keys per non-leaf block */
@@ -90,13 +100,15 @@ final public class BPlusTreeParams
 
     @Override
     public String toString() {
-        return String.format("Order=%d : Records [key=%d, value=%d] : records=[%d,%d] : pointers=[%d,%d] : split=%d",
+        return String.format("Order=%d : Records [key=%d, value=%d, %s] : records=[%d,%d] : pointers=[%d,%d] : split=%d%s",
                              order,
                              keyFactory.keyLength() ,
                              recordFactory.valueLength() ,
+                             recordFormat ,
                              MinRec, MaxRec,
                              MinPtr, MaxPtr,
-                             SplitIndex
+                             SplitIndex,
+                             counted ? " : counted" : ""
                              );
     }
 
@@ -105,8 +117,10 @@ final public class BPlusTreeParams
             int pOrder = mf.getPropertyAsInteger(ParamOrder);
             int pKeyLen = mf.getPropertyAsInteger(ParamKeyLength);
             int pRecLen = mf.getPropertyAsInteger(ParamValueLength);
-            return new BPlusTreeParams(pOrder, pKeyLen, pRecLen);
-        } catch (NumberFormatException ex) {
+            String pFormat = mf.getProperty(ParamRecordFormat, RecordPageFormat.fixed.name());
+            boolean pCounted = Boolean.parseBoolean(mf.getProperty(ParamCounted, "false"));
+            return new BPlusTreeParams(pOrder, new RecordFactory(pKeyLen, pRecLen), RecordPageFormat.valueOf(pFormat), pCounted);
+        } catch (IllegalArgumentException ex) {
             Log.error(BPlusTreeParams.class, "Badly formed metadata for B+Tree");
             throw new DBOpEnvException("Failed to read metadata");
         }
@@ -116,6 +130,8 @@ final public class BPlusTreeParams
         mf.setProperty(ParamOrder, order);
         mf.setProperty(ParamKeyLength, recordFactory.keyLength());
         mf.setProperty(ParamValueLength, recordFactory.valueLength());
+        mf.setProperty(ParamRecordFormat, recordFormat.name());
+        mf.setProperty(ParamCounted, Boolean.toString(counted));
         mf.flush();
     }
 
@@ -124,6 +140,20 @@ final public class BPlusTreeParams
     }
 
     public BPlusTreeParams(int order, RecordFactory factory) {
+        this(order, factory, RecordPageFormat.fixed);
+    }
+
+    public BPlusTreeParams(int order, RecordFactory factory, RecordPageFormat recordFormat) {
+        this(order, factory, recordFormat, false);
+    }
+
+    /**
+     * B+Tree parameters. If {@code counted} is true, each node also keeps the number of
+     * records below each of its pointers, which makes
+     * {@link BPlusTree#countRange} proportional to the depth of the tree,
+     * not the number of records, at the cost of fewer keys in each node.
+     */
+    public BPlusTreeParams(int order, RecordFactory factory, RecordPageFormat recordFormat, boolean counted) {
         // BTrees of order one aren't strictly BTrees
         // Order 1 => Min size = 0 and max size = 2*N-1 = 1.
         // If there is a gap, then the code may be defensive enough
@@ -136,6 +166,8 @@ final public class BPlusTreeParams
         this.order = order;
         recordFactory = factory;
         keyFactory = factory.keyFactory();
+        this.recordFormat = recordFormat;
+        this.counted = counted;
 
         // Derived constants.
         MaxRec  = 2*order-1 + Gap;
@@ -173,8 +205,17 @@ final public class BPlusTreeParams
         return keyFactory;
     }
 
+    public RecordPageFormat getRecordPageFormat() {
+        return recordFormat;
+    }
+
+    /** Whether the nodes keep the number of records below each pointer. */
+    public boolean isCounted() {
+        return counted;
+    }
+
     public int getCalcBlockSize() {
-        return calcBlockSize(order, recordFactory);
+        return calcBlockSize(order, recordFactory, counted);
     }
 
     /**
@@ -190,22 +231,39 @@ final public class BPlusTreeParams
      * block header space.
      */
     public static int calcOrder(int blockSize, int recordLength)    {
+        return calcOrder(blockSize, recordLength, false);
+    }
+
+    /**
+     * Return the best fit for the blocksize and the record length, for nodes with or
+     * without counts. Knows about block header space.
+     */
+    public static int calcOrder(int blockSize, int recordLength, boolean counted)    {
         // Length = X*recordLength+(X+1)*PtrLength
         // => X = (Length-PtrLength)/(recordLength+PtrLength)
+        // With counts, each pointer has a count as well.
         // BTree order N
         // MaxRec = 2N-1+Gap = X
         // N = (X+1-Gap)/2
         blockSize -= BlockHeaderSize;
+        int countLength = counted ? CountBuffer.SizeOfCount : 0;
 
-        int X = (blockSize-recordLength)/(recordLength+SizeOfPointer);
+        int X = (blockSize-recordLength-countLength)/(recordLength+SizeOfPointer+countLength);
         int order = (X+1-Gap)/2;
         return order;
     }
 
     /** return the size of a block */
     public static int calcBlockSize(int bpTreeOrder, RecordFactory factory) {
+        return calcBlockSize(bpTreeOrder, factory, false);
+    }
+
+    /** return the size of a block, for nodes with or without counts */
+    public static int calcBlockSize(int bpTreeOrder, RecordFactory factory, boolean counted) {
         BPlusTreeParams p = new BPlusTreeParams(bpTreeOrder, factory);
         int x = p.getMaxRec() * factory.recordLength() + p.getMaxPtr() * SizeOfPointer;
+        if ( counted )
+            x += p.getMaxPtr() * CountBuffer.SizeOfCount;
         x += BlockHeaderSize;
         return x;
     }
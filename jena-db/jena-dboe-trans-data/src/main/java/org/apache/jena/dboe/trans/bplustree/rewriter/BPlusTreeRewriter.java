@@ -117,6 +117,71 @@ public class BPlusTreeRewriter {
         return bpt2;
     }
 
+    /**
+     * Replace the contents of a B+Tree with a stream of records, building the tree
+     * bottom-up in newly allocated blocks. The records must be sorted and without
+     * duplicates.
+     * <p>
+     * For a transactional B+Tree, this must be called inside a write transaction on
+     * the B+Tree. The new tree becomes the tree of the transaction; the blocks of the
+     * previous tree are not changed so readers, and abort, are not affected, and the
+     * change is made durable by the transaction commit.
+     * The records stream may be a scan of the previous tree merged with new records.
+     */
+    public static void packIntoBPlusTree(BPlusTree bpt, Iterator<Record> iterRecords) {
+        BPTreeNodeMgr nodeMgr = bpt.getNodeManager();
+        BPTreeRecordsMgr recordsMgr = bpt.getRecordsMgr();
+        nodeMgr.startUpdate();
+        recordsMgr.startUpdate();
+        try {
+            BPTreeNode root;
+            if ( !iterRecords.hasNext() ) {
+                root = emptyRoot(nodeMgr, recordsMgr);
+            } else {
+                Iterator<Pair<Integer, Record>> iter = writePackedDataBlocks(iterRecords, bpt);
+                boolean leafLayer = true;
+                while (true) {
+                    iter = genTreeLevel(iter, bpt, leafLayer);
+                    IteratorWithBuffer<Pair<Integer, Record>> iter2 = new IteratorWithBuffer<>(iter, 2);
+                    boolean singleBlock = (iter2.peek(1) == null);
+                    iter = iter2;
+                    if ( singleBlock )
+                        break;
+                    leafLayer = false;
+                }
+                // The top block is the root; no need to move it.
+                Pair<Integer, Record> pair = iter.next();
+                if ( bpt.getParams().isCounted() ) {
+                    root = nodeMgr.getWrite(pair.car(), BPlusTreeParams.RootParent);
+                    BPTreeNode.recount(root);
+                    nodeMgr.write(root);
+                } else
+                    root = nodeMgr.getRead(pair.car(), BPlusTreeParams.RootParent);
+            }
+            bpt.newRoot(root);
+            nodeMgr.release(root);
+        } finally {
+            recordsMgr.finishUpdate();
+            nodeMgr.finishUpdate();
+        }
+    }
+
+    /** A root node with one empty records block. */
+    private static BPTreeNode emptyRoot(BPTreeNodeMgr nodeMgr, BPTreeRecordsMgr recordsMgr) {
+        BPTreeRecords recordsPage = recordsMgr.create();
+        recordsMgr.write(recordsPage);
+        recordsMgr.release(recordsPage);
+        BPTreeNode root = nodeMgr.createNode(BPlusTreeParams.RootParent);
+        root.setIsLeaf(true);
+        root.getRecordBuffer().clear();
+        root.getPtrBuffer().setSize(0);
+        root.getPtrBuffer().add(recordsPage.getId());
+        root.setCount(0);
+        BPTreeNode.recount(root);
+        nodeMgr.put(root);
+        return root;
+    }
+
     // **** data block phase
 
     /** Pack record blocks into linked RecordBufferPages */
@@ -178,6 +243,9 @@ public class BPlusTreeRewriter {
 
             // Wrong calculatation.
             for ( int i = page2.getCount(); i < page1.getMaxSize() / 2 ; i++ ) {
+                // Compressed pages hold a variable number of records.
+                if ( page2.isFull() || page2.getCount() >= page1.getCount() )
+                    break;
                 // shiftOneup(node1, node2);
                 Record r = page1.getRecordBuffer().getHigh();
                 page1.getRecordBuffer().removeTop();
@@ -346,6 +414,7 @@ public class BPlusTreeRewriter {
         BPTreeNode node = bpt2.getNodeManager().getRead(pair.car(), BPlusTreeParams.RootParent);
         copyBPTreeNode(node, root, bpt2);
         bpt2.getNodeManager().release(node);
+        BPTreeNode.recount(root);
         bpt2.getNodeManager().write(root);
     }
 
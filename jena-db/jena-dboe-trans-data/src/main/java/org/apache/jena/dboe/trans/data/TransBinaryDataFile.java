@@ -140,7 +140,7 @@ public class TransBinaryDataFile extends TransactionalComponentLifecycle<TransBi
     @Override
     protected ByteBuffer _commitPrepare(TxnId txnId, TxnBinFile txnResetState) {
         // Force to disk but do not set the on-disk state to record that.
-        binFile.sync();
+        syncData(binFile);
         fileState.length(binFile.length());
         return fileState.getState();
     }
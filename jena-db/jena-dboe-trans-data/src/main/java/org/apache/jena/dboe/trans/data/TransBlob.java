@@ -77,7 +77,11 @@ public class TransBlob extends TransactionalComponentLifecycle<TransBlob.BlobSta
     }
 
     private void writeBlobState() {
-        ByteBuffer blob = blobRef.get();
+        writeBlobState(blobRef.get());
+    }
+
+    private void writeBlobState(ByteBuffer bytes) {
+        ByteBuffer blob = bytes.duplicate();
         blob.rewind();
         int x = blob.remaining();
         file.truncate(0);
@@ -85,7 +89,6 @@ public class TransBlob extends TransactionalComponentLifecycle<TransBlob.BlobSta
         if ( len != x )
             throw new RuntimeIOException("Short write: "+len+" of "+x);
         file.sync();
-        blob.rewind();
     }
 
     /** Set the byte buffer.
@@ -190,11 +193,12 @@ public class TransBlob extends TransactionalComponentLifecycle<TransBlob.BlobSta
         if ( ! state.hasChanged )
             return;
         // Change reference.
-        blobRef.set(state.getByteBuffer());
+        ByteBuffer blob = state.getByteBuffer();
+        blobRef.set(blob);
         // Write to persistent storage.
         // It's in the journal already, and is rewritten from the journal
         // if there is a crash at this point.
-        writeBlobState();
+        writeCommittedState(this, ()->writeBlobState(blob));
     }
 
     @Override
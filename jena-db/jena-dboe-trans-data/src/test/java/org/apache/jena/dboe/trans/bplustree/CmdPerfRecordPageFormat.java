@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jena.dboe.trans.bplustree;
+
+import java.util.Iterator;
+
+import org.apache.jena.atlas.lib.Bytes;
+import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.atlas.lib.Lib;
+import org.apache.jena.dboe.base.block.BlockMgr;
+import org.apache.jena.dboe.base.block.BlockMgrFactory;
+import org.apache.jena.dboe.base.file.BufferChannel;
+import org.apache.jena.dboe.base.file.FileFactory;
+import org.apache.jena.dboe.base.file.FileSet;
+import org.apache.jena.dboe.base.record.Record;
+import org.apache.jena.dboe.base.record.RecordFactory;
+import org.apache.jena.dboe.base.recordbuffer.RecordPageFormat;
+import org.apache.jena.dboe.sys.Names;
+import org.apache.jena.dboe.sys.SystemIndex;
+import org.apache.jena.dboe.trans.bplustree.rewriter.BPlusTreeRewriter;
+
+/**
+ * Compare the fixed width and prefix compressed layouts of records blocks:
+ * size on disk and full scan time of a B+Tree of triple index shaped records.
+ */
+public class CmdPerfRecordPageFormat
+{
+    public static void main(String...argv) {
+        // Usage: directory numRecords [scans]
+        if ( argv.length != 2 && argv.length != 3 ) {
+            System.err.println("Usage: "+Lib.classShortName(CmdPerfRecordPageFormat.class)+" directory numRecords [scans]");
+            System.exit(1);
+        }
+        String dir = argv[0];
+        int N = Integer.parseInt(argv[1]);
+        int scans = ( argv.length == 3 ) ? Integer.parseInt(argv[2]) : 5;
+        FileOps.ensureDir(dir);
+        FileOps.clearAll(dir);
+
+        RecordFactory recordFactory = new RecordFactory(3*8, 0);
+        for ( RecordPageFormat format : RecordPageFormat.values() )
+            run(dir, format, recordFactory, N, scans);
+    }
+
+    private static void run(String dir, RecordPageFormat format, RecordFactory recordFactory, int N, int scans) {
+        int blockSize = SystemIndex.BlockSize;
+        int order = BPlusTreeParams.calcOrder(blockSize, recordFactory.recordLength());
+        BPlusTreeParams params = new BPlusTreeParams(order, recordFactory, format);
+        FileSet fileset = new FileSet(dir, format.name());
+        BufferChannel rootState = FileFactory.createBufferChannel(fileset, Names.extBptState);
+        BlockMgr blkMgrNodes = BlockMgrFactory.create(fileset, Names.extBptTree, blockSize, 100, 100);
+        BlockMgr blkMgrRecords = BlockMgrFactory.create(fileset, Names.extBptRecords, blockSize, 1000, 100);
+
+        long start = System.currentTimeMillis();
+        BPlusTree bpt = BPlusTreeRewriter.packIntoBPlusTree(data(recordFactory, N), params, recordFactory,
+                                                            rootState, blkMgrNodes, blkMgrRecords);
+        long buildTime = System.currentTimeMillis() - start;
+        // Memory mapped files grow in large segments so count the blocks used.
+        long dataSize = blkMgrRecords.allocLimit() * blockSize;
+
+        long count = 0;
+        start = System.currentTimeMillis();
+        for ( int i = 0 ; i < scans ; i++ ) {
+            Iterator<Record> iter = bpt.iterator();
+            while ( iter.hasNext() ) {
+                iter.next();
+                count++;
+            }
+        }
+        long scanTime = System.currentTimeMillis() - start;
+        bpt.close();
+
+        System.out.printf("%-6s : records blocks = %,d bytes (%.1f bytes/record) : build = %,d ms : scan = %,.0f records/s\n",
+                          format, dataSize, (double)dataSize / N, buildTime,
+                          1000.0 * count / Math.max(1, scanTime));
+    }
+
+    /** Sorted records in the shape of an SPO index: few subjects, many objects. */
+    private static Iterator<Record> data(RecordFactory recordFactory, int N) {
+        return new Iterator<Record>() {
+            int i = 0;
+            @Override
+            public boolean hasNext() {
+                return i < N;
+            }
+
+            @Override
+            public Record next() {
+                Record r = recordFactory.create();
+                Bytes.setLong(1+i/100, r.getKey(), 0);
+                Bytes.setLong(1+(i/10)%10, r.getKey(), 8);
+                Bytes.setLong(1000000+3L*i, r.getKey(), 16);
+                i++;
+                return r;
+            }
+        };
+    }
+}
@@ -19,6 +19,7 @@
 package org.apache.jena.dboe.trans.bplustree;
 
 import org.apache.jena.dboe.trans.bplustree.rewriter.TestBPlusTreeRewriterNonTxn;
+import org.apache.jena.dboe.trans.bplustree.rewriter.TestBPlusTreeRewriterTxn;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
@@ -29,13 +30,18 @@ import org.junit.runners.Suite;
     TestBPTreeRecordsNonTxn.class,
     TestBPlusTreeIndexNonTxn.class,
     TestBPlusTreeNonTxn.class,
+    TestBPlusTreePrefixNonTxn.class,
+    TestBPlusTreeReadAheadNonTxn.class,
+    TestBPlusTreeCountedNonTxn.class,
     TestBPTreeModes.class,
 
     // Transactional tests
     TestBPlusTreeTxn.class,
+    TestBPlusTreePrefixTxn.class,
 
     // Rewriter
-    TestBPlusTreeRewriterNonTxn.class
+    TestBPlusTreeRewriterNonTxn.class,
+    TestBPlusTreeRewriterTxn.class
 } )
 
 public class TS_TxnBPTree
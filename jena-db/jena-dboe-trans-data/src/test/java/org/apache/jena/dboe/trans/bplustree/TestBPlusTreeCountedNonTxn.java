@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.trans.bplustree;
+
+import static org.apache.jena.dboe.test.RecordLib.intToRecord;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.base.record.Record;
+import org.apache.jena.dboe.base.recordbuffer.RecordPageFormat;
+import org.apache.jena.dboe.test.RecordLib;
+import org.apache.jena.dboe.trans.bplustree.rewriter.BPlusTreeRewriter;
+import org.apache.jena.dboe.transaction.Transactional;
+import org.apache.jena.dboe.transaction.TransactionalFactory;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.system.Txn;
+import org.junit.Test;
+
+/**
+ * Run the non-transactional B+Tree tests with counts in the nodes, and test
+ * {@link BPlusTree#countRange} against scans.
+ */
+public class TestBPlusTreeCountedNonTxn extends TestBPlusTreeNonTxn {
+
+    @Override
+    protected BPlusTree makeRangeIndex(int order, int minRecords) {
+        BPlusTree bpt = makeCounted(order, minRecords);
+        bpt.nonTransactional();
+        return bpt;
+    }
+
+    private static BPlusTree makeCounted(int order, int minRecords) {
+        return BPlusTreeFactory.makeMem(null, order, minRecords, RecordLib.TestRecordLength, 0, RecordPageFormat.fixed, true);
+    }
+
+    private static Record record(int i) {
+        return intToRecord(i, RecordLib.TestRecordLength);
+    }
+
+    /** Compare countRange with a scan, for a selection of ranges over keys 0 to N. */
+    private static void checkCounts(BPlusTree bpt, int N, Random random) {
+        assertEquals(Iter.count(bpt.iterator()), bpt.size());
+        assertEquals(bpt.size(), bpt.countRange(null, null));
+        for ( int i = 0 ; i < 50 ; i++ ) {
+            int lo = random.nextInt(N+2) - 1;
+            int hi = random.nextInt(N+2) - 1;
+            Record min = record(lo);
+            Record max = record(hi);
+            assertEquals("["+lo+","+hi+")", Iter.count(bpt.iterator(min, max)), bpt.countRange(min, max));
+            assertEquals(Iter.count(bpt.iterator(min, null)), bpt.countRange(min, null));
+            assertEquals(Iter.count(bpt.iterator(null, max)), bpt.countRange(null, max));
+        }
+    }
+
+    private static List<Integer> shuffled(int N, Random random) {
+        List<Integer> keys = new ArrayList<>(N);
+        for ( int i = 0 ; i < N ; i++ )
+            keys.add(i);
+        Collections.shuffle(keys, random);
+        return keys;
+    }
+
+    @Test public void bptree_counted_01() {
+        BPlusTree bpt = makeRangeIndex(2, 2);
+        assertEquals(0, bpt.size());
+        assertEquals(0, bpt.countRange(record(1), record(5)));
+        bpt.insert(record(3));
+        assertEquals(1, bpt.countRange(record(1), record(5)));
+        assertEquals(0, bpt.countRange(record(3), record(3)));
+        assertEquals(0, bpt.countRange(record(5), record(1)));
+        bpt.insert(record(3));
+        assertEquals(1, bpt.size());
+        bpt.delete(record(4));
+        assertEquals(1, bpt.size());
+        bpt.delete(record(3));
+        assertEquals(0, bpt.size());
+    }
+
+    @Test public void bptree_counted_02() {
+        // Random inserts and deletes: splits, merges and shifts.
+        Random random = new Random(1234);
+        for ( int order : new int[] {2, 3, 5} ) {
+            int N = 400;
+            BPlusTree bpt = makeRangeIndex(order, 2);
+            List<Integer> keys = shuffled(N, random);
+            keys.forEach(i -> bpt.insert(record(i)));
+            bpt.check();
+            checkCounts(bpt, N, random);
+            Collections.shuffle(keys, random);
+            for ( int i = 0 ; i < N ; i++ ) {
+                bpt.delete(record(keys.get(i)));
+                if ( i % 50 == 0 ) {
+                    bpt.check();
+                    checkCounts(bpt, N, random);
+                }
+            }
+            assertEquals(0, bpt.size());
+        }
+    }
+
+    @Test public void bptree_counted_txn_01() {
+        // Copy-on-write, commit and abort.
+        Random random = new Random(5678);
+        int N = 200;
+        BPlusTree bpt = makeCounted(3, 2);
+        Transactional transactional = TransactionalFactory.createTransactional(Location.mem(), bpt);
+        List<Integer> keys = shuffled(N, random);
+        Txn.executeWrite(transactional, ()->keys.subList(0, 100).forEach(i -> bpt.insert(record(i))));
+        transactional.begin(ReadWrite.WRITE);
+        keys.subList(100, N).forEach(i -> bpt.insert(record(i)));
+        keys.subList(0, 50).forEach(i -> bpt.delete(record(i)));
+        assertEquals(150, bpt.size());
+        transactional.abort();
+        transactional.end();
+        Txn.executeRead(transactional, ()->{
+            bpt.check();
+            assertEquals(100, bpt.size());
+            checkCounts(bpt, N, random);
+        });
+        Txn.executeWrite(transactional, ()->keys.subList(0, 50).forEach(i -> bpt.delete(record(i))));
+        Txn.executeRead(transactional, ()->{
+            bpt.check();
+            assertEquals(50, bpt.size());
+            checkCounts(bpt, N, random);
+        });
+    }
+
+    @Test public void bptree_counted_rewrite_01() {
+        // Built bottom-up, then updated.
+        Random random = new Random(9012);
+        int N = 500;
+        BPlusTree bpt = makeCounted(3, 2);
+        Transactional transactional = TransactionalFactory.createTransactional(Location.mem(), bpt);
+        List<Record> data = new ArrayList<>();
+        for ( int i = 0 ; i < N ; i += 2 )
+            data.add(record(i));
+        Txn.executeWrite(transactional, ()->BPlusTreeRewriter.packIntoBPlusTree(bpt, data.iterator()));
+        Txn.executeRead(transactional, ()->{
+            bpt.check();
+            assertEquals(N/2, bpt.size());
+            checkCounts(bpt, N, random);
+        });
+        Txn.executeWrite(transactional, ()->{
+            for ( int i = 1 ; i < N ; i += 4 )
+                bpt.insert(record(i));
+            for ( int i = 0 ; i < N ; i += 8 )
+                bpt.delete(record(i));
+        });
+        Txn.executeRead(transactional, ()->{
+            bpt.check();
+            checkCounts(bpt, N, random);
+        });
+    }
+
+    @Test public void bptree_counted_rewrite_02() {
+        // Empty.
+        BPlusTree bpt = makeCounted(3, 2);
+        Transactional transactional = TransactionalFactory.createTransactional(Location.mem(), bpt);
+        Txn.executeWrite(transactional, ()->BPlusTreeRewriter.packIntoBPlusTree(bpt, Collections.emptyIterator()));
+        Txn.executeWrite(transactional, ()->bpt.insert(record(1)));
+        Txn.executeRead(transactional, ()->{
+            bpt.check();
+            assertEquals(1, bpt.size());
+        });
+    }
+}
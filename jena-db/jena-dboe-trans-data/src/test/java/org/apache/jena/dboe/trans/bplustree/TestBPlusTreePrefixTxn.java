@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.trans.bplustree;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.base.recordbuffer.RecordPageFormat;
+import org.apache.jena.dboe.index.test.IndexTestLib;
+import org.apache.jena.dboe.test.RecordLib;
+import org.apache.jena.dboe.transaction.Transactional;
+import org.apache.jena.dboe.transaction.TransactionalFactory;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.system.Txn;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests of B+Tree with prefix compressed records blocks and transactions.
+ * Records blocks committed by an earlier transaction are not modifiable so a
+ * later write transaction works on a duplicate of the block (copy-on-write).
+ */
+public class TestBPlusTreePrefixTxn extends Assert {
+
+    static BPlusTree createBPTree() {
+        // Compressed blocks need space for a few maximum length records.
+        return BPlusTreeFactory.makeMem(null, 2, 3, RecordLib.TestRecordLength, 0, RecordPageFormat.prefix);
+    }
+
+    static Transactional transactional(BPlusTree bpt) {
+        return TransactionalFactory.createTransactional(Location.mem(), bpt);
+    }
+
+    static int[] toArray(TreeSet<Integer> keys) {
+        return keys.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Commit, then modify the committed blocks in a second transaction.
+    @Test public void bptree_prefix_txn_01() {
+        BPlusTree bpt = createBPTree();
+        Transactional thing = transactional(bpt);
+        Txn.executeWrite(thing, () -> {
+            IndexTestLib.add(bpt, 1, 2, 3);
+        } );
+        int outerRootIdx1 = bpt.getRootId();
+        Txn.executeWrite(thing, () -> {
+            IndexTestLib.add(bpt, 4);
+            IndexTestLib.delete(bpt, 2);
+            IndexTestLib.testIndexContents(bpt, 1, 3, 4);
+        } );
+        int outerRootIdx2 = bpt.getRootId();
+        assertNotEquals("After txn (2)", outerRootIdx1, outerRootIdx2);
+        Txn.executeRead(thing, ()->{
+            IndexTestLib.testIndexContents(bpt, 1, 3, 4);
+        } );
+    }
+
+    // Changes to a duplicated block are discarded on abort; the committed block is untouched.
+    @Test public void bptree_prefix_txn_02() {
+        BPlusTree bpt = createBPTree();
+        Transactional thing = transactional(bpt);
+        Txn.executeWrite(thing, () -> {
+            IndexTestLib.add(bpt, 10, 20, 30);
+        } );
+        int outerRootIdx1 = bpt.getRootId();
+
+        thing.begin(ReadWrite.WRITE);
+        IndexTestLib.add(bpt, 15, 25);
+        IndexTestLib.delete(bpt, 10);
+        IndexTestLib.testIndexContents(bpt, 15, 20, 25, 30);
+        thing.abort();
+        thing.end();
+
+        assertEquals("After abort", outerRootIdx1, bpt.getRootId());
+        Txn.executeRead(thing, ()->{
+            IndexTestLib.testIndexContents(bpt, 10, 20, 30);
+        } );
+    }
+
+    // Duplicate records: re-adding or deleting across transactions.
+    @Test public void bptree_prefix_txn_03() {
+        BPlusTree bpt = createBPTree();
+        Transactional thing = transactional(bpt);
+        Txn.executeWrite(thing, () -> {
+            IndexTestLib.add(bpt, 1, 2, 3);
+            IndexTestLib.add(bpt, 2, 3);
+        } );
+        Txn.executeWrite(thing, () -> {
+            IndexTestLib.add(bpt, 3, 1, 4);
+            IndexTestLib.delete(bpt, 4, 4);
+        } );
+        Txn.executeRead(thing, ()->{
+            IndexTestLib.testIndexContents(bpt, 1, 2, 3);
+        } );
+    }
+
+    // Many transactions, each changing blocks committed by earlier ones, with splits and merges.
+    @Test public void bptree_prefix_txn_04() {
+        BPlusTree bpt = createBPTree();
+        Transactional thing = transactional(bpt);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(1234);
+        for ( int i = 0 ; i < 50 ; i++ ) {
+            boolean commit = ( i % 5 != 4 );
+            TreeSet<Integer> keys = new TreeSet<>(expected);
+            thing.begin(ReadWrite.WRITE);
+            for ( int j = 0 ; j < 10 ; j++ ) {
+                int k = random.nextInt(200);
+                if ( random.nextInt(3) == 0 ) {
+                    IndexTestLib.delete(bpt, k);
+                    keys.remove(k);
+                } else {
+                    IndexTestLib.add(bpt, k);
+                    keys.add(k);
+                }
+            }
+            IndexTestLib.testIndexContents(bpt, toArray(keys));
+            if ( commit ) {
+                thing.commit();
+                expected = keys;
+            } else
+                thing.abort();
+            thing.end();
+            int[] contents = toArray(expected);
+            Txn.executeRead(thing, ()->{
+                IndexTestLib.testIndexContents(bpt, contents);
+            } );
+        }
+    }
+}
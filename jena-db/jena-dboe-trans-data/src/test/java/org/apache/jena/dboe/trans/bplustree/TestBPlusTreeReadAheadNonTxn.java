@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jena.dboe.trans.bplustree;
+
+import static org.apache.jena.dboe.index.test.IndexTestLib.add;
+import static org.apache.jena.dboe.test.RecordLib.intToRecord;
+
+import java.util.Iterator;
+
+import org.apache.jena.dboe.base.record.Record;
+import org.apache.jena.dboe.base.record.RecordFactory;
+import org.apache.jena.dboe.test.RecordLib;
+import org.junit.Test;
+
+/** Run the non-transactional B+Tree tests with read-ahead on every scan */
+public class TestBPlusTreeReadAheadNonTxn extends TestBPlusTreeNonTxn {
+    private static final int Window = 2;
+
+    @Override
+    protected BPlusTree makeRangeIndex(int order, int minRecords) {
+        BPlusTree bpt = super.makeRangeIndex(order, minRecords);
+        // Read ahead from the start of the scan.
+        bpt.setReadAhead(Window, 0);
+        return bpt;
+    }
+
+    private static BPlusTree build(int N, int window, int threshold) {
+        BPlusTree bpt = BPlusTreeFactory.makeMem(10, 2, RecordLib.TestRecordLength, 0);
+        bpt.nonTransactional();
+        int[] keys = new int[N];
+        for ( int i = 0 ; i < N ; i++ )
+            keys[i] = i;
+        add(bpt, keys);
+        bpt.setReadAhead(window, threshold);
+        return bpt;
+    }
+
+    private static int scan(BPlusTree bpt, int lo, int hi) {
+        Record min = intToRecord(lo, RecordLib.TestRecordLength);
+        Record max = intToRecord(hi, RecordLib.TestRecordLength);
+        Iterator<Record> iter = bpt.iterator(min, max);
+        int count = 0;
+        while(iter.hasNext()) {
+            Record r = iter.next();
+            assertEquals(intToRecord(lo+count, RecordLib.TestRecordLength), r);
+            count++;
+        }
+        return count;
+    }
+
+    @Test public void bptree_readahead_01() {
+        BPlusTree bpt = build(2000, 4, 2);
+        BPTreeReadAhead readAhead = bpt.getReadAhead();
+        assertNotNull(readAhead);
+        assertEquals(4, readAhead.getWindow());
+        assertEquals(2000, scan(bpt, 0, 2000));
+        assertTrue(readAhead.getPrefetched() > 0);
+        // Whole tree scan - every block read ahead is reached.
+        assertEquals(readAhead.getPrefetched(), readAhead.getUsed());
+    }
+
+    @Test public void bptree_readahead_02() {
+        // Short scans do not read ahead.
+        BPlusTree bpt = build(2000, 4, 1000);
+        BPTreeReadAhead readAhead = bpt.getReadAhead();
+        assertEquals(100, scan(bpt, 500, 600));
+        assertEquals(0, readAhead.getPrefetched());
+        assertEquals(0, readAhead.getUsed());
+    }
+
+    @Test public void bptree_readahead_03() {
+        BPlusTree bpt = build(2000, 8, 0);
+        BPTreeReadAhead readAhead = bpt.getReadAhead();
+        assertEquals(5, scan(bpt, 1000, 1005));
+        assertTrue(readAhead.getUsed() <= readAhead.getPrefetched());
+        // Mapper path.
+        Iterator<Record> iter = bpt.iterator(null, null, RecordFactory.mapperRecord);
+        int count = 0;
+        while(iter.hasNext()) { iter.next(); count++; }
+        assertEquals(2000, count);
+    }
+
+    @Test public void bptree_readahead_04() {
+        BPlusTree bpt = build(100, 4, 0);
+        bpt.setReadAhead(0);
+        assertNull(bpt.getReadAhead());
+        assertEquals(100, scan(bpt, 0, 100));
+    }
+}
@@ -30,6 +30,7 @@ import org.apache.jena.dboe.base.file.FileFactory;
 import org.apache.jena.dboe.base.file.FileSet;
 import org.apache.jena.dboe.base.record.Record;
 import org.apache.jena.dboe.base.record.RecordFactory;
+import org.apache.jena.dboe.base.recordbuffer.RecordPageFormat;
 import org.apache.jena.dboe.sys.Names;
 import org.apache.jena.dboe.trans.bplustree.BPTreeException;
 import org.apache.jena.dboe.trans.bplustree.BPlusTree;
@@ -66,11 +67,24 @@ public class TestBPlusTreeRewriterNonTxn extends Assert
 
     @Test public void bpt_rewrite_99()  { runTest(5, 1000); }
 
+    // Prefix compressed records blocks.
+    @Test public void bpt_rewrite_prefix_01()  { runTest(3, 0, RecordPageFormat.prefix); }
+    @Test public void bpt_rewrite_prefix_02()  { runTest(3, 1, RecordPageFormat.prefix); }
+    @Test public void bpt_rewrite_prefix_03()  { runTest(3, 100, RecordPageFormat.prefix); }
+    @Test public void bpt_rewrite_prefix_04()  { runTest(5, 1000, RecordPageFormat.prefix); }
+
     static void runTest(int order, int N)
     { runOneTest(order, N , recordFactory, false); }
 
+    static void runTest(int order, int N, RecordPageFormat format)
+    { runOneTest(order, N , recordFactory, format, false); }
+
     public static void runOneTest(int order, int N, RecordFactory recordFactory, boolean debug) {
-        BPlusTreeParams bptParams = new BPlusTreeParams(order, recordFactory);
+        runOneTest(order, N, recordFactory, RecordPageFormat.fixed, debug);
+    }
+
+    public static void runOneTest(int order, int N, RecordFactory recordFactory, RecordPageFormat format, boolean debug) {
+        BPlusTreeParams bptParams = new BPlusTreeParams(order, recordFactory, format);
         BPlusTreeRewriter.debug = debug;
 
         // ---- Test data
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.trans.bplustree.rewriter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.dboe.base.block.BlockMgrFactory;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.base.record.Record;
+import org.apache.jena.dboe.trans.bplustree.BPlusTree;
+import org.apache.jena.dboe.trans.bplustree.BPlusTreeFactory;
+import org.apache.jena.dboe.transaction.Transactional;
+import org.apache.jena.dboe.transaction.TransactionalFactory;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.system.Txn;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Building a transactional B+Tree bottom-up inside a write transaction. */
+public class TestBPlusTreeRewriterTxn extends Assert
+{
+    static boolean b;
+    @BeforeClass public static void beforeClass()   { b = BlockMgrFactory.AddTracker; BlockMgrFactory.AddTracker = false ; }
+    @AfterClass  public static void afterClass()    { BlockMgrFactory.AddTracker = b ;}
+
+    private static BPlusTree createBPTree(int order) {
+        return BPlusTreeFactory.makeMem(order, TestBPlusTreeRewriterNonTxn.KeySize, TestBPlusTreeRewriterNonTxn.ValueSize);
+    }
+
+    @Test public void bpt_rewrite_txn_01() { packTest(3, 0); }
+    @Test public void bpt_rewrite_txn_02() { packTest(3, 1); }
+    @Test public void bpt_rewrite_txn_03() { packTest(2, 100); }
+    @Test public void bpt_rewrite_txn_04() { packTest(5, 1000); }
+
+    private static void packTest(int order, int N) {
+        BPlusTree bpt = createBPTree(order);
+        Transactional transactional = TransactionalFactory.createTransactional(Location.mem(), bpt);
+        List<Record> data = TestBPlusTreeRewriterNonTxn.createData(N, bpt.getRecordFactory());
+        Txn.executeWrite(transactional, ()->BPlusTreeRewriter.packIntoBPlusTree(bpt, data.iterator()));
+        Txn.executeRead(transactional, ()->{
+            bpt.check();
+            TestBPlusTreeRewriterNonTxn.scanComparision(data, bpt);
+            TestBPlusTreeRewriterNonTxn.findComparison(data, bpt);
+        });
+        // The tree can be updated as normal.
+        Record extra = TestBPlusTreeRewriterNonTxn.createData(N+1, bpt.getRecordFactory()).get(N);
+        Txn.executeWrite(transactional, ()->bpt.insert(extra));
+        Txn.executeRead(transactional, ()->{
+            bpt.check();
+            assertEquals(N+1, bpt.size());
+        });
+    }
+
+    // Replace: merge a scan of the existing tree with new records.
+    @Test public void bpt_rewrite_txn_merge() {
+        BPlusTree bpt = createBPTree(3);
+        Transactional transactional = TransactionalFactory.createTransactional(Location.mem(), bpt);
+        List<Record> data = TestBPlusTreeRewriterNonTxn.createData(200, bpt.getRecordFactory());
+        List<Record> even = new ArrayList<>();
+        List<Record> odd = new ArrayList<>();
+        for ( int i = 0 ; i < data.size() ; i++ )
+            (i % 2 == 0 ? even : odd).add(data.get(i));
+        Txn.executeWrite(transactional, ()->even.forEach(bpt::insert));
+        Txn.executeWrite(transactional, ()->{
+            List<Record> merged = new ArrayList<>(Iter.toList(bpt.iterator()));
+            merged.addAll(odd);
+            merged.sort(Record::compareByKey);
+            BPlusTreeRewriter.packIntoBPlusTree(bpt, merged.iterator());
+        });
+        Txn.executeRead(transactional, ()->{
+            bpt.check();
+            TestBPlusTreeRewriterNonTxn.scanComparision(data, bpt);
+        });
+    }
+
+    // Abort leaves the tree as it was.
+    @Test public void bpt_rewrite_txn_abort() {
+        BPlusTree bpt = createBPTree(3);
+        Transactional transactional = TransactionalFactory.createTransactional(Location.mem(), bpt);
+        List<Record> data = TestBPlusTreeRewriterNonTxn.createData(50, bpt.getRecordFactory());
+        Txn.executeWrite(transactional, ()->data.subList(0, 10).forEach(bpt::insert));
+        int rootIdx = bpt.getRootId();
+        transactional.begin(ReadWrite.WRITE);
+        BPlusTreeRewriter.packIntoBPlusTree(bpt, data.iterator());
+        assertEquals(50, bpt.size());
+        transactional.abort();
+        transactional.end();
+        assertEquals(rootIdx, bpt.getRootId());
+        Txn.executeRead(transactional, ()->{
+            bpt.check();
+            TestBPlusTreeRewriterNonTxn.scanComparision(data.subList(0, 10), bpt);
+        });
+    }
+}
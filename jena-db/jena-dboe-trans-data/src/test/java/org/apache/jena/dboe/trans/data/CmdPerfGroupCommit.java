@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.trans.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jena.atlas.lib.Bytes;
+import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.atlas.lib.Lib;
+import org.apache.jena.dboe.base.file.*;
+import org.apache.jena.dboe.base.record.Record;
+import org.apache.jena.dboe.base.record.RecordFactory;
+import org.apache.jena.dboe.sys.Names;
+import org.apache.jena.dboe.trans.bplustree.BPlusTree;
+import org.apache.jena.dboe.trans.bplustree.BPlusTreeFactory;
+import org.apache.jena.dboe.transaction.Transactional;
+import org.apache.jena.dboe.transaction.txn.ComponentId;
+import org.apache.jena.dboe.transaction.txn.TransactionCoordinator;
+import org.apache.jena.dboe.transaction.txn.TransactionalBase;
+import org.apache.jena.system.Txn;
+
+/**
+ * Many small write transactions from several threads, each adding one record to a
+ * B+Tree and a few bytes to a binary data file, with and without group commit.
+ * Reports commits per second and the number of journal flushes.
+ */
+public class CmdPerfGroupCommit
+{
+    private static final RecordFactory recordFactory = new RecordFactory(8, 8);
+
+    public static void main(String...argv) throws InterruptedException {
+        // Usage: directory threads commitsPerThread
+        if ( argv.length != 3 ) {
+            System.err.println("Usage: "+Lib.classShortName(CmdPerfGroupCommit.class)+" directory threads commitsPerThread");
+            System.exit(1);
+        }
+        String dir = argv[0];
+        int threads = Integer.parseInt(argv[1]);
+        int commits = Integer.parseInt(argv[2]);
+        run(dir, false, threads, commits);
+        run(dir, true, threads, commits);
+    }
+
+    private static void run(String dir, boolean groupCommit, int threads, int commits) throws InterruptedException {
+        FileOps.ensureDir(dir);
+        FileOps.clearAll(dir);
+        Location location = Location.create(dir);
+        BPlusTree index = BPlusTreeFactory.createBPTree(ComponentId.allocLocal(), new FileSet(location, "index"), recordFactory);
+        FileSet fs = new FileSet(location, "data");
+        TransBinaryDataFile data = new TransBinaryDataFile(FileFactory.createBinaryDataFile(fs, Names.extObjNodeData),
+                                                           ComponentId.allocLocal(),
+                                                           FileFactory.createBufferChannel(fs, Names.extBdfState));
+        data.open();
+        TransactionCoordinator txnMgr = new TransactionCoordinator(location);
+        txnMgr.add(index).add(data);
+        txnMgr.setGroupCommit(groupCommit);
+        Transactional transactional = new TransactionalBase(txnMgr);
+        txnMgr.start();
+
+        AtomicLong keys = new AtomicLong(0);
+        byte[] bytes = new byte[32];
+        List<Thread> workers = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        for ( int i = 0 ; i < threads ; i++ ) {
+            Thread t = new Thread(()->{
+                for ( int j = 0 ; j < commits ; j++ ) {
+                    long key = keys.incrementAndGet();
+                    Txn.executeWrite(transactional, ()->{
+                        long posn = data.write(bytes);
+                        Record r = recordFactory.create();
+                        Bytes.setLong(key, r.getKey());
+                        Bytes.setLong(posn, r.getValue());
+                        index.insert(r);
+                    });
+                }
+            });
+            workers.add(t);
+            t.start();
+        }
+        for ( Thread t : workers )
+            t.join();
+        long millis = Math.max(1, System.currentTimeMillis() - start);
+
+        long total = (long)threads * commits;
+        long flushes = txnMgr.countCommitFlushes();
+        System.out.printf("Group commit %-5s: %,d commits in %,d ms : %,.0f commits/s : %,d journal flushes (%.1f commits/flush)\n",
+                          groupCommit, total, millis, 1000.0 * total / millis, flushes, (double)total / Math.max(1, flushes));
+        txnMgr.shutdown();
+        index.close();
+        data.close();
+    }
+}
@@ -29,6 +29,7 @@ import org.junit.runners.Suite.SuiteClasses;
     , TestTransBlobPersistent.class
     , TestTransBinaryDataFileGeneral.class
     , TestTransBinaryDataFile.class
+    , TestTransGroupCommit.class
 })
 
 public class TS_TransData { }
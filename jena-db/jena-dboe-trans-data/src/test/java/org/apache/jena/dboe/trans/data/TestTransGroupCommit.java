@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.trans.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.atlas.lib.Bytes;
+import org.apache.jena.atlas.lib.StrUtils;
+import org.apache.jena.dboe.base.file.*;
+import org.apache.jena.dboe.base.record.Record;
+import org.apache.jena.dboe.base.record.RecordFactory;
+import org.apache.jena.dboe.sys.Names;
+import org.apache.jena.dboe.trans.bplustree.BPlusTree;
+import org.apache.jena.dboe.trans.bplustree.BPlusTreeFactory;
+import org.apache.jena.dboe.transaction.Transactional;
+import org.apache.jena.dboe.transaction.txn.ComponentId;
+import org.apache.jena.dboe.transaction.txn.TransactionCoordinator;
+import org.apache.jena.dboe.transaction.txn.TransactionalBase;
+import org.apache.jena.system.Txn;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Group commit with persistent B+Tree and binary data file components. */
+public class TestTransGroupCommit {
+    @Rule public TemporaryFolder dir = new TemporaryFolder();
+
+    private static final ComponentId cidIndex = ComponentId.allocLocal();
+    private static final ComponentId cidData = ComponentId.allocLocal();
+    private static final RecordFactory recordFactory = new RecordFactory(8, 8);
+
+    private Location location;
+    private TransactionCoordinator txnMgr;
+    private BPlusTree index;
+    private TransBinaryDataFile data;
+    private Transactional transactional;
+
+    @Before public void before() {
+        location = Location.create(dir.getRoot().getAbsolutePath());
+        start();
+    }
+
+    @After public void after() {
+        stop();
+    }
+
+    private void start() {
+        index = BPlusTreeFactory.createBPTree(cidIndex, new FileSet(location, "index"), recordFactory);
+        FileSet fs = new FileSet(location, "data");
+        BinaryDataFile binFile = FileFactory.createBinaryDataFile(fs, Names.extObjNodeData);
+        BufferChannel state = FileFactory.createBufferChannel(fs, Names.extBdfState);
+        data = new TransBinaryDataFile(binFile, cidData, state);
+        data.open();
+        txnMgr = new TransactionCoordinator(location);
+        txnMgr.add(index).add(data);
+        txnMgr.setGroupCommit(true);
+        transactional = new TransactionalBase(txnMgr);
+        txnMgr.start();
+    }
+
+    private void stop() {
+        txnMgr.shutdown(true);
+        index.close();
+        data.close();
+    }
+
+    private void add(long key, String str) {
+        Txn.executeWrite(transactional, ()->{
+            byte[] bytes = StrUtils.asUTF8bytes(str);
+            byte[] lenBytes = new byte[4];
+            Bytes.setInt(bytes.length, lenBytes);
+            long posn = data.write(lenBytes);
+            data.write(bytes);
+            index.insert(record(key, posn));
+        });
+    }
+
+    private String get(long key) {
+        return Txn.calculateRead(transactional, ()->{
+            Record r = index.find(record(key, 0));
+            assertNotNull("key="+key, r);
+            long posn = Bytes.getLong(r.getValue());
+            byte[] lenBytes = new byte[4];
+            data.read(posn, lenBytes);
+            byte[] bytes = new byte[Bytes.getInt(lenBytes)];
+            data.read(posn+4, bytes);
+            return StrUtils.fromUTF8bytes(bytes);
+        });
+    }
+
+    private static Record record(long key, long value) {
+        Record r = recordFactory.create();
+        Bytes.setLong(key, r.getKey());
+        Bytes.setLong(value, r.getValue());
+        return r;
+    }
+
+    @Test public void group_commit_persistent_1() {
+        add(1, "one");
+        add(2, "two");
+        stop();
+        start();
+        assertEquals("one", get(1));
+        assertEquals("two", get(2));
+    }
+
+    @Test public void group_commit_persistent_2() throws Exception {
+        int threads = 4;
+        int commits = 25;
+        AtomicInteger keys = new AtomicInteger(0);
+        List<Throwable> errors = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        for ( int i = 0 ; i < threads ; i++ ) {
+            Thread t = new Thread(()->{
+                try {
+                    for ( int j = 0 ; j < commits ; j++ ) {
+                        int k = keys.incrementAndGet();
+                        add(k, "value-"+k);
+                    }
+                } catch (Throwable th) {
+                    synchronized(errors) { errors.add(th); }
+                }
+            });
+            workers.add(t);
+            t.start();
+        }
+        for ( Thread t : workers )
+            t.join();
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertTrue(txnMgr.getJournal().isEmpty());
+
+        stop();
+        start();
+        for ( int k = 1 ; k <= threads * commits ; k++ )
+            assertEquals("value-"+k, get(k));
+        assertEquals(threads * commits, (long)Txn.calculateRead(transactional, ()->index.size()));
+    }
+}
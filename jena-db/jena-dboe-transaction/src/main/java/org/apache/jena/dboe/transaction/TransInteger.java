@@ -217,7 +217,8 @@ public class TransInteger extends TransactionalComponentLifecycle<TransInteger.I
     protected void _commit(TxnId txnId, IntegerState state) {
         if ( isReadTxn() )
             return;
-        writeLocation(state.txnValue);
+        long x = state.txnValue;
+        writeCommittedState(this, ()->writeLocation(x));
     }
 
     @Override
@@ -138,6 +138,22 @@ public class TransLogger implements TransactionalComponent {
         log.info("attach");
     }
 
+    @Override
+    public SysTransState shareRead() {
+        log.info("shareRead");
+        return null;
+    }
+
+    @Override
+    public void joinRead(SysTransState systemState) {
+        log.info("joinRead");
+    }
+
+    @Override
+    public void leaveRead() {
+        log.info("leaveRead");
+    }
+
     @Override
     public void shutdown() {
         if ( everyEvent )
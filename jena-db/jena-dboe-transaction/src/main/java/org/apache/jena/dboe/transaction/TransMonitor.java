@@ -183,6 +183,28 @@ public class TransMonitor implements TransactionalComponent {
         counterAttach.increment();
     }
 
+    public LongAdder counterShareRead = allocCounter("shareRead");
+
+    @Override
+    public SysTransState shareRead() {
+        counterShareRead.increment();
+        return null;
+    }
+
+    public LongAdder counterJoinRead = allocCounter("joinRead");
+
+    @Override
+    public void joinRead(SysTransState systemState) {
+        counterJoinRead.increment();
+    }
+
+    public LongAdder counterLeaveRead = allocCounter("leaveRead");
+
+    @Override
+    public void leaveRead() {
+        counterLeaveRead.increment();
+    }
+
     public LongAdder counterShutdown = allocCounter("shutdown");
 
     @Override
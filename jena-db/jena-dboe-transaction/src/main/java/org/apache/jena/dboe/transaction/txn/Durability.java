@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.transaction.txn;
+
+/**
+ * When the commit of a write transaction is on disk.
+ * <p>
+ * In every mode, the disk work of commits is done in commit order, and the data of
+ * a commit is written before the journal entries that refer to it, so recovery
+ * restores the database as of the last commit written to the journal. The modes
+ * differ in whether that is forced to disk, and whether {@code commit} waits for it.
+ *
+ * @see TransactionCoordinator#setDurability
+ */
+public enum Durability {
+    /** Each commit forces its changes to disk before {@code commit} returns. This is the default. */
+    SYNC,
+    /**
+     * Commits at about the same time are forced to disk together. Each commit is on
+     * disk when {@code commit} returns.
+     */
+    GROUP,
+    /**
+     * {@code commit} returns without waiting; commits are forced to disk at a fixed
+     * interval. A crash may lose the commits of the last interval.
+     */
+    PERIODIC,
+    /**
+     * Commits are written when {@code commit} is called but never forced to disk; the
+     * operating system decides when they reach the disk. Nothing is lost if the
+     * process fails. If the operating system fails, or on power loss, the database
+     * may be lost because the writes may reach the disk in any order.
+     */
+    OS
+}
@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.transaction.txn;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.jena.atlas.lib.Sync;
+import org.apache.jena.dboe.sys.Sys;
+import org.apache.jena.dboe.transaction.txn.journal.Journal;
+import org.apache.jena.dboe.transaction.txn.journal.JournalEntry;
+import org.slf4j.Logger;
+
+/**
+ * Group commit: the disk work of write transactions that commit close together is
+ * done with one journal flush. This also provides the relaxed {@link Durability}
+ * modes, which do the same disk work, in the same order, but do not wait for it
+ * ({@link Durability#PERIODIC}) or do not force it to disk ({@link Durability#OS}).
+ * <p>
+ * A committing writer does not write the journal or force files to disk. It records
+ * the journal entries, the files to sync and the new on-disk state of the components
+ * in the open batch, makes the commit visible in memory and releases the writer lock,
+ * then waits until the batch is durable. The first waiter to get the flush lock does
+ * the work for every commit in the batch so far, in the order:
+ * <ol>
+ * <li>force the data of the components to disk,
+ * <li>write and sync the journal entries and a COMMIT for each transaction (the commit point),
+ * <li>write and sync the on-disk state of the components,
+ * <li>reset the journal.
+ * </ol>
+ * This is the same order as committing one transaction at a time, so recovery from
+ * the journal is unchanged; the journal may now hold several committed transactions.
+ * <p>
+ * Components take part through {@link TransactionalComponentLifecycle#syncData} and
+ * {@link TransactionalComponentLifecycle#writeCommittedState}, and
+ * {@link StateMgrBase#writeState}, which act immediately when not in a group commit.
+ * <p>
+ * Readers, and the next writer, may see a commit before it is durable; the committing
+ * thread does not return until it is.
+ */
+/*package*/ final class GroupCommit {
+    private static Logger SysErr = Sys.errlog;
+
+    /** Write of the on-disk state of a component. */
+    @FunctionalInterface
+    /*package*/ interface StateWrite {
+        /** Write the state, and if {@code force} is true, force it to disk. */
+        void write(boolean force);
+    }
+
+    /** Disk work of one write transaction. */
+    private static class TxnWork {
+        final List<PrepareState> prepared = new ArrayList<>();
+        final Set<Sync> syncs = new LinkedHashSet<>();
+        final Map<Object, StateWrite> stateWrites = new LinkedHashMap<>();
+    }
+
+    /** Disk work of the transactions that are made durable by one journal flush. */
+    private static class Batch {
+        final List<List<PrepareState>> commits = new ArrayList<>();
+        final Set<Sync> syncs = new LinkedHashSet<>();
+        final Map<Object, StateWrite> stateWrites = new LinkedHashMap<>();
+        volatile boolean flushed = false;
+        volatile Throwable failure = null;
+
+        void add(TxnWork work) {
+            commits.add(work.prepared);
+            syncs.addAll(work.syncs);
+            // Later states replace earlier ones.
+            work.stateWrites.forEach((k,w)->{
+                stateWrites.remove(k);
+                stateWrites.put(k, w);
+            });
+        }
+
+        boolean isEmpty() {
+            return commits.isEmpty() && syncs.isEmpty() && stateWrites.isEmpty();
+        }
+    }
+
+    // The work of the transaction on this thread while it runs component prepare or commit.
+    private static final ThreadLocal<TxnWork> threadWork = new ThreadLocal<>();
+
+    private final Journal journal;
+    // Force the disk work to disk?
+    private final boolean force;
+    // Does a commit wait for its disk work?
+    private final boolean waitForFlush;
+    // Milliseconds between flushes, for Durability.PERIODIC.
+    private final long interval;
+    private volatile Thread flusher = null;
+    // Wakes the flusher to stop. Not an interrupt which would close the files.
+    private final Object flusherSignal = new Object();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // Guarded by "this".
+    private Batch openBatch = new Batch();
+    // Single active writer: the work of the writer between prepare and commit.
+    private TxnWork writerWork = null;
+    // Committed transactions waiting for their batch to be flushed.
+    private final Map<Transaction, Batch> waiting = new ConcurrentHashMap<>();
+
+    private final AtomicLong countFlushes = new AtomicLong(0);
+    private final AtomicLong countCommits = new AtomicLong(0);
+
+    /*package*/ GroupCommit(Journal journal, Durability durability, long intervalMillis) {
+        this.journal = journal;
+        switch(durability) {
+            case GROUP:     force = true;  waitForFlush = true;  break;
+            case PERIODIC:  force = true;  waitForFlush = false; break;
+            case OS:        force = false; waitForFlush = true;  break;
+            default:
+                throw new IllegalArgumentException("Not a group commit durability: "+durability);
+        }
+        if ( durability == Durability.PERIODIC && intervalMillis <= 0 )
+            throw new IllegalArgumentException("Interval must be positive: "+intervalMillis);
+        this.interval = intervalMillis;
+    }
+
+    /** Start flushing at intervals, if this is {@link Durability#PERIODIC}. */
+    /*package*/ void start(String label) {
+        if ( waitForFlush )
+            return;
+        Thread t = new Thread(this::flushPeriodically, "TxnFlush-"+label);
+        t.setDaemon(true);
+        flusher = t;
+        t.start();
+    }
+
+    /** Stop flushing at intervals, and make every commit so far durable. */
+    /*package*/ void stop() {
+        Thread t = flusher;
+        if ( t != null ) {
+            synchronized(flusherSignal) {
+                flusher = null;
+                flusherSignal.notifyAll();
+            }
+            try { t.join(); } catch (InterruptedException ex) { Thread.currentThread().interrupt(); }
+        }
+        flushAll();
+    }
+
+    private void flushPeriodically() {
+        for (;;) {
+            synchronized(flusherSignal) {
+                if ( flusher != Thread.currentThread() )
+                    return;
+                try { flusherSignal.wait(interval); }
+                catch (InterruptedException ex) { return; }
+                if ( flusher != Thread.currentThread() )
+                    return;
+            }
+            flushAll();
+        }
+    }
+
+    // ---- Component operations.
+
+    /** Force {@code sync} to disk, now or before the journal of the batch is written. */
+    /*package*/ static void syncData(Sync sync) {
+        TxnWork work = threadWork.get();
+        if ( work == null )
+            sync.sync();
+        else
+            work.syncs.add(sync);
+    }
+
+    /**
+     * Write the on-disk state of a component, now or after the journal of the batch
+     * is written. Only the latest write for each {@code key} is done.
+     */
+    /*package*/ static void writeState(Object key, Runnable write) {
+        writeState(key, force->write.run());
+    }
+
+    /*package*/ static void writeState(Object key, StateWrite write) {
+        TxnWork work = threadWork.get();
+        if ( work == null )
+            write.write(true);
+        else
+            work.stateWrites.put(key, write);
+    }
+
+    /** Is there a group commit in progress on this thread? */
+    /*package*/ static boolean isDeferring() {
+        return threadWork.get() != null;
+    }
+
+    // ---- Coordinator operations.
+
+    /** Start the prepare step of the writer on this thread. */
+    /*package*/ void startPrepare() {
+        writerWork = new TxnWork();
+        threadWork.set(writerWork);
+    }
+
+    /** Record a journal entry of the prepare step. The bytes are copied. */
+    /*package*/ void prepared(ComponentId componentId, ByteBuffer data) {
+        writerWork.prepared.add(new PrepareState(componentId, copy(data)));
+    }
+
+    /** Start the commit step of the writer on this thread. */
+    /*package*/ void startCommit() {
+        if ( writerWork == null )
+            writerWork = new TxnWork();
+        threadWork.set(writerWork);
+    }
+
+    /** End of the prepare or commit step on this thread. */
+    /*package*/ void finishStep() {
+        threadWork.remove();
+    }
+
+    /**
+     * Add the work of the committed writer to the open batch.
+     * Called inside the coordinator lock, before the writer lock is released.
+     */
+    /*package*/ void committed(Transaction transaction) {
+        TxnWork work = writerWork;
+        writerWork = null;
+        if ( work == null )
+            return;
+        synchronized(this) {
+            openBatch.add(work);
+            if ( waitForFlush )
+                waiting.put(transaction, openBatch);
+        }
+        countCommits.incrementAndGet();
+    }
+
+    /**
+     * Wait until the commit of the transaction is durable, doing the flush if no
+     * other thread is. Does nothing if the transaction has no commit waiting.
+     */
+    /*package*/ void awaitDurable(Transaction transaction) {
+        Batch batch = waiting.remove(transaction);
+        if ( batch == null )
+            return;
+        if ( ! batch.flushed ) {
+            flushLock.lock();
+            try {
+                // Batches are taken, and flushed, only while holding the flush lock
+                // so the batch has either been flushed or it is still the open batch.
+                if ( ! batch.flushed )
+                    flush();
+            } finally { flushLock.unlock(); }
+        }
+        if ( batch.failure != null )
+            throw new TransactionException("Group commit: transaction committed in memory but writing to disk failed", batch.failure);
+    }
+
+    /** Make every commit so far durable. */
+    /*package*/ void flushAll() {
+        flushLock.lock();
+        try { flush(); }
+        finally { flushLock.unlock(); }
+    }
+
+    /** Number of journal flushes. */
+    /*package*/ long countFlushes() { return countFlushes.get(); }
+
+    /** Number of transactions committed. */
+    /*package*/ long countCommits() { return countCommits.get(); }
+
+    // Inside the flush lock.
+    private void flush() {
+        Batch batch;
+        synchronized(this) {
+            batch = openBatch;
+            if ( batch.isEmpty() )
+                return;
+            openBatch = new Batch();
+        }
+        try {
+            if ( force )
+                batch.syncs.forEach(Sync::sync);
+            for ( List<PrepareState> commit : batch.commits ) {
+                for ( PrepareState s : commit )
+                    journal.write(s);
+                journal.writeJournal(JournalEntry.COMMIT);
+            }
+            // *** COMMIT POINT for the batch.
+            if ( force )
+                journal.sync();
+            batch.stateWrites.values().forEach(w->w.write(force));
+            if ( force )
+                journal.reset();
+            else
+                journal.truncate(0);
+            countFlushes.incrementAndGet();
+        } catch (Throwable th) {
+            SysErr.error("Group commit: exception writing "+batch.commits.size()+" commit(s) to disk. System unstable.", th);
+            batch.failure = th;
+        } finally {
+            batch.flushed = true;
+        }
+    }
+
+    private static ByteBuffer copy(ByteBuffer data) {
+        ByteBuffer src = data.duplicate();
+        src.rewind();
+        ByteBuffer bb = ByteBuffer.allocate(src.remaining());
+        bb.put(src);
+        bb.flip();
+        return bb;
+    }
+}
@@ -140,7 +140,11 @@ public abstract class StateMgrBase implements Sync, Closeable {
     //public BufferChannel getChannel() { return storage; }
 
     /** The write process : serialize, write, sync,
-     * After this, the bytes definitely are on disk, not in some OS cache
+     * After this, the bytes definitely are on disk, not in some OS cache.
+     * <p>
+     * In a {@linkplain TransactionCoordinator#setGroupCommit group commit}, or with a relaxed
+     * {@link Durability}, the bytes are copied and written after the commit is written to
+     * the journal.
      */
     public void writeState() {
         bb.rewind();
@@ -148,12 +152,26 @@ public abstract class StateMgrBase implements Sync, Closeable {
         if ( bb1 != null )
             bb = bb1;
         bb.rewind();
-        int len = storage.write(bb, 0);
-        storage.sync();
+        if ( GroupCommit.isDeferring() ) {
+            ByteBuffer bytes = ByteBuffer.allocate(bb.remaining());
+            bytes.put(bb);
+            bytes.flip();
+            bb.rewind();
+            GroupCommit.writeState(this, force->write(bytes, force));
+        } else
+            write(bb, true);
         dirty = false;
         writeStateEvent();
     }
 
+    private void write(ByteBuffer bytes, boolean force) {
+        synchronized(storage) {
+            int len = storage.write(bytes, 0);
+            if ( force )
+                storage.sync();
+        }
+    }
+
     /** The read process : get all bytes on disk, deserialize */
     public void readState() {
         bb.rewind();
@@ -61,6 +61,13 @@ import org.slf4j.Logger;
  * Exclusive mode is when the current thread is the only active code : no readers, no writers.
  * <p>
  * See {@link #startExclusiveMode()}/{@link #tryExclusiveMode()} {@link #finishExclusiveMode()}, {@link #execExclusive(Runnable)}
+ * <h3>Group commit and durability</h3>
+ * With group commit, write transactions that commit close together share one journal
+ * flush. Each commit is still durable when {@code commit} returns, but it becomes
+ * visible to other transactions before then. Other {@link Durability} settings trade
+ * losing the most recent commits after a crash for commits that do not wait for the disk.
+ * <p>
+ * See {@link #setGroupCommit(boolean)}, {@link #setDurability(Durability, long)}
  *
  * @see Transaction
  * @see TransactionalComponent
@@ -114,6 +121,12 @@ public class TransactionCoordinator {
     // Coordinator wide lock object.
     private Object coordinatorLock = new Object();
 
+    private Durability durability = Durability.SYNC;
+    // Null when each commit flushes the journal itself (Durability.SYNC).
+    private GroupCommit groupCommit = null;
+    // Journal flushes of commits when not using group commit.
+    private final AtomicLong countCommitFlushes = new AtomicLong(0);
+
     @FunctionalInterface
     public interface ShutdownHook { void shutdown(); }
 
@@ -217,6 +230,62 @@ public class TransactionCoordinator {
         shutdownHooks.remove(hook);
     }
 
+    /**
+     * Enable or disable group commit: write transactions that commit at about the same
+     * time are made durable together, with one journal flush. A transaction is durable
+     * when its {@code commit} returns, as without group commit, but other transactions
+     * may see its changes before then. This can only be set before the
+     * {@code TransactionCoordinator} is started.
+     * <p>
+     * All the {@link TransactionalComponent TransactionalComponents} that write to disk
+     * when committing must do so through {@link StateMgrBase},
+     * {@link TransactionalComponentLifecycle#syncData} or
+     * {@link TransactionalComponentLifecycle#writeCommittedState}.
+     */
+    public TransactionCoordinator setGroupCommit(boolean enable) {
+        return setDurability(enable ? Durability.GROUP : Durability.SYNC);
+    }
+
+    /** Whether group commit is enabled. */
+    public boolean isGroupCommit() {
+        return durability == Durability.GROUP;
+    }
+
+    /** Default interval, in milliseconds, for {@link Durability#PERIODIC}. */
+    public static final long DftSyncIntervalMillis = 1000;
+
+    /**
+     * Set when commits are on disk. See {@link #setDurability(Durability, long)}.
+     * {@link Durability#PERIODIC} uses the default interval, {@value #DftSyncIntervalMillis}ms.
+     */
+    public TransactionCoordinator setDurability(Durability durability) {
+        return setDurability(durability, DftSyncIntervalMillis);
+    }
+
+    /**
+     * Set when commits are on disk. Whatever the setting, recovery after a crash
+     * restores the last commit that was written to the journal. This can only be set
+     * before the {@code TransactionCoordinator} is started.
+     * <p>
+     * The same restrictions on {@link TransactionalComponent TransactionalComponents}
+     * apply as for {@linkplain #setGroupCommit group commit}.
+     *
+     * @param durability The durability of commits.
+     * @param syncIntervalMillis Milliseconds between forcing commits to disk, for {@link Durability#PERIODIC}.
+     */
+    public TransactionCoordinator setDurability(Durability durability, long syncIntervalMillis) {
+        Objects.requireNonNull(durability);
+        checklAllowModification();
+        this.groupCommit = ( durability == Durability.SYNC ) ? null : new GroupCommit(journal, durability, syncIntervalMillis);
+        this.durability = durability;
+        return this;
+    }
+
+    /** The durability of commits. */
+    public Durability getDurability() {
+        return durability;
+    }
+
     public void setQuorumGenerator(QuorumGenerator qGen) {
         checklAllowModification();
         this.quorumGenerator = qGen;
@@ -225,6 +294,8 @@ public class TransactionCoordinator {
     public void start() {
         checklAllowModification();
         recovery();
+        if ( groupCommit != null )
+            groupCommit.start(journal.getFilename());
         configurable = false;
     }
 
@@ -312,6 +383,32 @@ public class TransactionCoordinator {
         });
     }
 
+    /** Share the read transaction of the current thread; see {@link TransactionalSystem#shareRead}. */
+    public TransactionCoordinatorState shareRead(Transaction txn) {
+        if ( ! txn.isReadTxn() )
+            throw new TransactionException("Not a read transaction");
+        TransactionCoordinatorState coordinatorState = new TransactionCoordinatorState(txn);
+        components.forEach((id, c) -> {
+            SysTransState s = c.shareRead();
+            coordinatorState.componentStates.put(id, s);
+        } );
+        return coordinatorState;
+    }
+
+    /** The current thread takes part in a shared read transaction. */
+    public void joinRead(TransactionCoordinatorState coordinatorState) {
+        coordinatorState.componentStates.forEach((id, obj) -> {
+            components.findComponent(id).joinRead(obj);
+        });
+    }
+
+    /** The current thread stops taking part in a shared read transaction. */
+    public void leaveRead(TransactionCoordinatorState coordinatorState) {
+        coordinatorState.componentStates.forEach((id, obj) -> {
+            components.findComponent(id).leaveRead();
+        });
+    }
+
     public void shutdown() {
         shutdown(false);
     }
@@ -321,6 +418,8 @@ public class TransactionCoordinator {
             return;
         if ( ! silent && countActive() > 0 )
             FmtLog.warn(SysErr, "Transactions active: W=%d, R=%d", countActiveWriter(), countActiveReaders());
+        if ( groupCommit != null )
+            groupCommit.stop();
         components.forEach((id, c) -> c.shutdown());
         shutdownHooks.forEach((h)-> h.shutdown());
         coordinatorLock = null;
@@ -399,11 +498,14 @@ public class TransactionCoordinator {
     }
 
     private boolean startExclusiveMode(boolean canBlock) {
-        if ( canBlock ) {
+        if ( canBlock )
             exclusivitylock.writeLock().lock();
-            return true;
-        }
-        return exclusivitylock.writeLock().tryLock();
+        else if ( ! exclusivitylock.writeLock().tryLock() )
+            return false;
+        // Exclusive mode users may write files directly; delayed commits must
+        // not be written after that.
+        flushCommits();
+        return true;
     }
 
     /** Return to normal (release waiting transactions, allow new transactions).
@@ -442,6 +544,7 @@ public class TransactionCoordinator {
      */
     public void blockWriters() {
         acquireWriterLock(true);
+        flushCommits();
     }
 
     /** Try to block all writers, or return if can't at the moment.
@@ -469,7 +572,16 @@ public class TransactionCoordinator {
      * @return true if the operation succeeded and writers are blocked
      */
     public boolean tryBlockWriters(boolean canBlock) {
-        return acquireWriterLock(canBlock);
+        boolean b = acquireWriterLock(canBlock);
+        if ( b )
+            flushCommits();
+        return b;
+    }
+
+    /** With group commit or a relaxed durability, make all commits so far durable. */
+    private void flushCommits() {
+        if ( groupCommit != null )
+            groupCommit.flushAll();
     }
     /** Allow writers.
      * This must be used in conjunction with {@link #blockWriters()} or {@link #tryBlockWriters()}
@@ -530,6 +642,12 @@ public class TransactionCoordinator {
                 return null;
         }
 
+        // Shutdown while waiting, e.g. the database was replaced by a compaction.
+        if ( coordinatorLock == null ) {
+            exclusivitylock.readLock().unlock();
+            checkNotShutdown();
+        }
+
         // Readers never block.
         if ( txnType == TxnType.WRITE ) {
             // Writers take a WRITE permit from the semaphore to ensure there
@@ -704,6 +822,14 @@ public class TransactionCoordinator {
     // Called once by Transaction after the action of commit()/abort() or end()
     /** Signal that the transaction has finished. */
     /*package*/ void completed(Transaction transaction) {
+        if ( groupCommit != null ) {
+            // Wait for the commit to be durable while still an active transaction,
+            // so exclusive mode waits as well.
+            try { groupCommit.awaitDurable(transaction); }
+            finally { finishActiveTransaction(transaction); }
+            notifyEnd(transaction);
+            return;
+        }
         finishActiveTransaction(transaction);
         journal.reset();
         notifyEnd(transaction);
@@ -714,6 +840,11 @@ public class TransactionCoordinator {
     /*package*/ void executePrepare(Transaction transaction) {
         // Do here because it needs access to the journal.
         notifyPrepareStart(transaction);
+        if ( groupCommit != null ) {
+            executePrepareGroup(transaction);
+            notifyPrepareFinish(transaction);
+            return;
+        }
         transaction.getComponents().forEach(sysTrans -> {
             ByteBuffer data = sysTrans.commitPrepare();
             if ( data != null ) {
@@ -724,6 +855,18 @@ public class TransactionCoordinator {
         notifyPrepareFinish(transaction);
     }
 
+    // Group commit : record the journal entries and the deferred disk work.
+    private void executePrepareGroup(Transaction transaction) {
+        groupCommit.startPrepare();
+        try {
+            transaction.getComponents().forEach(sysTrans -> {
+                ByteBuffer data = sysTrans.commitPrepare();
+                if ( data != null )
+                    groupCommit.prepared(sysTrans.getComponentId(), data);
+            });
+        } finally { groupCommit.finishStep(); }
+    }
+
     /*package*/ void executeCommit(Transaction transaction, Runnable commit, Runnable finish, Runnable sysabort) {
         notifyCommitStart(transaction);
         if ( transaction.getMode() == ReadWrite.READ ) {
@@ -731,6 +874,12 @@ public class TransactionCoordinator {
             notifyCommitFinish(transaction);
             return;
         }
+        if ( groupCommit != null ) {
+            // The commit is made durable in 'completed', after the writer lock is released.
+            executeCommitGroup(transaction, commit, finish);
+            notifyCommitFinish(transaction);
+            return;
+        }
         journal.startWrite();
         try {
             executeCommitWriter(transaction, commit, finish, sysabort);
@@ -799,6 +948,19 @@ public class TransactionCoordinator {
             finish.run();
             // Bump global serialization point
             advanceDataVersion();
+            countCommitFlushes.incrementAndGet();
+        }
+    }
+
+    private void executeCommitGroup(Transaction transaction, Runnable commit, Runnable finish) {
+        synchronized(coordinatorLock) {
+            // Component state changes are recorded, not written.
+            groupCommit.startCommit();
+            try { commit.run(); }
+            finally { groupCommit.finishStep(); }
+            groupCommit.committed(transaction);
+            finish.run();
+            advanceDataVersion();
         }
     }
 
@@ -849,6 +1011,10 @@ public class TransactionCoordinator {
 
     /*package*/ void executeAbort(Transaction transaction, Runnable abort) {
         notifyAbortStart(transaction);
+        // An aborting writer restores the last committed state on disk
+        // so that state must be durable first.
+        if ( transaction.getMode() == ReadWrite.WRITE )
+            flushCommits();
         abort.run();
         notifyAbortFinish(transaction);
     }
@@ -982,4 +1148,12 @@ public class TransactionCoordinator {
     public long countBeginWrite()   { return countBeginWrite.get(); }
 
     public long countFinished()     { return countFinished.get(); }
+
+    /**
+     * Number of journal flushes that made write transactions durable.
+     * Without group commit, this is one per commit.
+     */
+    public long countCommitFlushes() {
+        return groupCommit == null ? countCommitFlushes.get() : groupCommit.countFlushes();
+    }
 }
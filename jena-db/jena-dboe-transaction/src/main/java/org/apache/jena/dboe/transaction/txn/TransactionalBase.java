@@ -97,6 +97,27 @@ public class TransactionalBase implements TransactionalSystem {
             Log.info(this,  "<< attach");
     }
 
+    @Override
+    public Runnable shareRead(Runnable task) {
+        checkRunning();
+        Transaction txn = theTxn.get();
+        if ( txn == null || ! txn.isReadTxn() || txn.getState() != TxnState.ACTIVE )
+            return null;
+        TransactionCoordinatorState coordinatorState = txnMgr.shareRead(txn);
+        return () -> {
+            if ( theTxn.get() != null )
+                throw new TransactionException("Already in a transaction");
+            txnMgr.joinRead(coordinatorState);
+            theTxn.set(txn);
+            try {
+                task.run();
+            } finally {
+                theTxn.remove();
+                txnMgr.leaveRead(coordinatorState);
+            }
+        };
+    }
+
     @Override
     public final void begin(ReadWrite readWrite) {
         begin(TxnType.convert(readWrite));
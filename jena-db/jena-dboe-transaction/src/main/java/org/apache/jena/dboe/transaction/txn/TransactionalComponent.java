@@ -172,6 +172,26 @@ public interface TransactionalComponent
      */
     public void attach(SysTransState systemState);
 
+    /** Return internal state so that other threads can take part in the read
+     * transaction of the current thread by calling {@link #joinRead(SysTransState)}.
+     * <p>
+     * Unlike {@link #detach()}, the current thread stays in the transaction.
+     * The transaction must not end while other threads are using it.
+     * Returns {@code null} if the current thread not in a transaction.
+     */
+    public SysTransState shareRead();
+
+    /** Set the current thread to be in a read transaction of another thread.
+     * The {@code systemState} must be obtained from a call of {@link #shareRead()}.
+     * The thread leaves the transaction with {@link #leaveRead()}.
+     */
+    public void joinRead(SysTransState systemState);
+
+    /** The current thread stops using a read transaction it joined with
+     * {@link #joinRead(SysTransState)}. The transaction itself is unaffected.
+     */
+    public void leaveRead();
+
     /** Shutdown component, aborting any in-progress transactions.
      * This operation is not guaranteed to be called.
      */
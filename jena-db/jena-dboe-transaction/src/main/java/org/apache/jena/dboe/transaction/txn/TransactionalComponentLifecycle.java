@@ -26,6 +26,7 @@ import java.util.Objects;
 import org.apache.jena.query.ReadWrite;
 
 import org.apache.jena.atlas.lib.InternalErrorException;
+import org.apache.jena.atlas.lib.Sync;
 
 /**
  * Base implementation of the component interface for {@link TransactionalComponent}.
@@ -195,6 +196,31 @@ public abstract class TransactionalComponentLifecycle<X> implements Transactiona
         setTrackTxn(ACTIVE);
     }
 
+    @Override
+    final public SysTransState shareRead() {
+        TxnState txnState = getTxnState();
+        if ( txnState == null )
+            return null;
+        checkState(ACTIVE);
+        if ( ! getTransaction().isReadTxn() )
+            throw new TransactionException("Not a read transaction");
+        return new SysTransState(this, getTransaction(), getDataState());
+    }
+
+    @Override
+    public void joinRead(SysTransState state) {
+        @SuppressWarnings("unchecked")
+        X x = (X)state.getState();
+        setTransaction(state.getTransaction());
+        setDataState(x);
+        setTrackTxn(ACTIVE);
+    }
+
+    @Override
+    public void leaveRead() {
+        releaseThreadState();
+    }
+
     // -- Access object members.
 
     public static class ComponentState<X> {
@@ -325,6 +351,26 @@ public abstract class TransactionalComponentLifecycle<X> implements Transactiona
     protected abstract void        _complete(TxnId txnId, X state);
     protected abstract void        _shutdown();
 
+    /**
+     * Force data written by the transaction to disk, for use in {@link #_commitPrepare}.
+     * With {@linkplain TransactionCoordinator#setGroupCommit group commit}, or a relaxed
+     * {@link Durability}, this happens later, before the journal is written.
+     */
+    protected void syncData(Sync sync) {
+        GroupCommit.syncData(sync);
+    }
+
+    /**
+     * Write the on-disk state of the component, for use in {@link #_commit}. The action
+     * must not depend on the component state at the time it runs, only on the state
+     * when this is called. With {@linkplain TransactionCoordinator#setGroupCommit group
+     * commit}, or a relaxed {@link Durability}, this happens later, after the journal is
+     * written, and only the latest action for the same {@code key} is run.
+     */
+    protected void writeCommittedState(Object key, Runnable write) {
+        GroupCommit.writeState(key, write);
+    }
+
     /** Current READ/WRITE mode. */
     protected ReadWrite getReadWriteMode() {
         Transaction txn = getTransaction();
@@ -97,6 +97,21 @@ public class TransactionalComponentWrapper implements TransactionalComponent {
         other.attach(systemState);
     }
 
+    @Override
+    public SysTransState shareRead() {
+        return other.shareRead();
+    }
+
+    @Override
+    public void joinRead(SysTransState systemState) {
+        other.joinRead(systemState);
+    }
+
+    @Override
+    public void leaveRead() {
+        other.leaveRead();
+    }
+
     @Override
     public void shutdown() {
         other.shutdown();
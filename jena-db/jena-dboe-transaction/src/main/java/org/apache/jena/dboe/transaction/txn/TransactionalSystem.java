@@ -19,13 +19,14 @@
 package org.apache.jena.dboe.transaction.txn;
 
 import org.apache.jena.dboe.transaction.Transactional;
+import org.apache.jena.sparql.core.TransactionalShareRead;
 
 /** Implementation side of a {@link Transactional}.
  *  {@link Transactional} presents the application facing view
  *  whereas this has all the possible steps of an implementation.
  *  Normally, the implementation of {@link #commit} is split up.
  */
-public interface TransactionalSystem extends Transactional {
+public interface TransactionalSystem extends Transactional, TransactionalShareRead {
 
     @Override
     public default void commit() {
@@ -57,6 +58,15 @@ public interface TransactionalSystem extends Transactional {
      */
     public void attach(TransactionCoordinatorState coordinatorState);
 
+    /**
+     * Wrap a task so that, when it is run on another thread, it is in the read
+     * transaction of this thread. Other threads only read the transaction state;
+     * the transaction must not end until the task has finished.
+     * Returns null if this thread is not in a read transaction.
+     */
+    @Override
+    public Runnable shareRead(Runnable task);
+
     /** Get the associated {@link TransactionCoordinator} */
     public TransactionCoordinator getTxnMgr();
 
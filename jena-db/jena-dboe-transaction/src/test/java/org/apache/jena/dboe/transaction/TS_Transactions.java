@@ -35,6 +35,7 @@ import org.junit.runners.Suite.SuiteClasses;
     , TestTxnLib2.class
     , TestThreadingTransactions.class
     , TestTxnSwitching.class
+    , TestGroupCommit.class
 
 })
 public class TS_Transactions {
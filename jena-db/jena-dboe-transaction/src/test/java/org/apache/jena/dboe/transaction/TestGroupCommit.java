@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.dboe.transaction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.transaction.txn.ComponentId;
+import org.apache.jena.dboe.transaction.txn.Durability;
+import org.apache.jena.dboe.transaction.txn.TransactionCoordinator;
+import org.apache.jena.dboe.transaction.txn.TransactionalBase;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.system.Txn;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestGroupCommit {
+    @Rule public TemporaryFolder dir = new TemporaryFolder();
+
+    private static final ComponentId cid = ComponentId.allocLocal();
+    private String filename;
+    private TransactionCoordinator txnMgr;
+    private TransInteger counter;
+    private Transactional unit;
+
+    @Before public void before() {
+        filename = dir.getRoot().getAbsolutePath()+"/counter";
+        start(Durability.GROUP);
+    }
+
+    @After public void after() {
+        txnMgr.shutdown(true);
+    }
+
+    private void start(Durability durability) {
+        counter = new TransInteger(filename, cid);
+        txnMgr = new TransactionCoordinator(Location.create(dir.getRoot().getAbsolutePath()));
+        txnMgr.add(counter);
+        txnMgr.setDurability(durability, 60_000);
+        unit = new TransactionalBase(txnMgr);
+        txnMgr.start();
+    }
+
+    private void restart() {
+        Durability durability = txnMgr.getDurability();
+        txnMgr.shutdown(true);
+        start(durability);
+    }
+
+    private void restart(Durability durability) {
+        txnMgr.shutdown(true);
+        start(durability);
+    }
+
+    @Test public void group_commit_1() {
+        assertTrue(txnMgr.isGroupCommit());
+        Txn.executeWrite(unit, ()->counter.inc());
+        assertEquals(1, txnMgr.countCommitFlushes());
+        assertTrue(txnMgr.getJournal().isEmpty());
+        assertEquals(1, (long)Txn.calculateRead(unit, ()->counter.get()));
+        restart();
+        assertEquals(1, (long)Txn.calculateRead(unit, ()->counter.get()));
+    }
+
+    @Test public void group_commit_2() throws Exception {
+        int threads = 4;
+        int commits = 50;
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        for ( int i = 0 ; i < threads ; i++ ) {
+            Thread t = new Thread(()->{
+                try {
+                    barrier.await();
+                    for ( int j = 0 ; j < commits ; j++ )
+                        Txn.executeWrite(unit, ()->counter.inc());
+                } catch (Throwable th) {
+                    synchronized(errors) { errors.add(th); }
+                }
+            });
+            workers.add(t);
+            t.start();
+        }
+        for ( Thread t : workers )
+            t.join();
+        assertTrue(errors.toString(), errors.isEmpty());
+
+        long total = threads * commits;
+        assertEquals(total, (long)Txn.calculateRead(unit, ()->counter.get()));
+        assertTrue(txnMgr.countCommitFlushes() <= total);
+        assertTrue(txnMgr.getJournal().isEmpty());
+        restart();
+        assertEquals(total, (long)Txn.calculateRead(unit, ()->counter.get()));
+    }
+
+    @Test public void group_commit_3() {
+        Txn.executeWrite(unit, ()->counter.set(10));
+        unit.begin(ReadWrite.WRITE);
+        counter.set(20);
+        unit.abort();
+        unit.end();
+        assertEquals(10, (long)Txn.calculateRead(unit, ()->counter.get()));
+        restart();
+        assertEquals(10, (long)Txn.calculateRead(unit, ()->counter.get()));
+    }
+
+    @Test public void group_commit_4() {
+        Txn.executeWrite(unit, ()->counter.set(5));
+        txnMgr.blockWriters();
+        try {
+            assertTrue(txnMgr.getJournal().isEmpty());
+        } finally { txnMgr.enableWriters(); }
+        Txn.executeWrite(unit, ()->counter.inc());
+        assertEquals(6, (long)Txn.calculateRead(unit, ()->counter.get()));
+    }
+
+    @Test public void durability_periodic_1() {
+        restart(Durability.PERIODIC);
+        assertEquals(Durability.PERIODIC, txnMgr.getDurability());
+        for ( int i = 0 ; i < 10 ; i++ )
+            Txn.executeWrite(unit, ()->counter.inc());
+        // Not flushed yet: the interval is long.
+        assertEquals(0, txnMgr.countCommitFlushes());
+        assertEquals(10, (long)Txn.calculateRead(unit, ()->counter.get()));
+        txnMgr.blockWriters();
+        txnMgr.enableWriters();
+        assertEquals(1, txnMgr.countCommitFlushes());
+        assertTrue(txnMgr.getJournal().isEmpty());
+        restart();
+        assertEquals(10, (long)Txn.calculateRead(unit, ()->counter.get()));
+    }
+
+    @Test public void durability_periodic_2() {
+        restart(Durability.PERIODIC);
+        Txn.executeWrite(unit, ()->counter.set(7));
+        // Shutdown writes outstanding commits.
+        restart(Durability.SYNC);
+        assertEquals(7, (long)Txn.calculateRead(unit, ()->counter.get()));
+    }
+
+    @Test public void durability_os() {
+        restart(Durability.OS);
+        Txn.executeWrite(unit, ()->counter.set(3));
+        Txn.executeWrite(unit, ()->counter.inc());
+        assertEquals(2, txnMgr.countCommitFlushes());
+        assertTrue(txnMgr.getJournal().isEmpty());
+        restart();
+        assertEquals(4, (long)Txn.calculateRead(unit, ()->counter.get()));
+    }
+
+    @Test public void no_group_commit() {
+        TransactionCoordinator coord = new TransactionCoordinator(Location.mem());
+        TransInteger integer = new TransInteger(0);
+        coord.add(integer);
+        Transactional transactional = new TransactionalBase(coord);
+        coord.start();
+        for ( int i = 0 ; i < 3 ; i++ )
+            Txn.executeWrite(transactional, ()->integer.inc());
+        assertEquals(3, coord.countCommitFlushes());
+        coord.shutdown(true);
+    }
+}
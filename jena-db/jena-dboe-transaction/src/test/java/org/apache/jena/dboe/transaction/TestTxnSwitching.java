@@ -18,9 +18,12 @@
 
 package org.apache.jena.dboe.transaction;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.fail;
+import static org.junit.Assert.*;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jena.atlas.lib.ThreadLib;
 import org.apache.jena.dboe.base.file.Location;
 import org.apache.jena.system.Txn;
 import org.apache.jena.dboe.transaction.txn.*;
@@ -189,5 +192,49 @@ public class TestTxnSwitching {
         TransactionCoordinatorState txnState2 = transactional.detach();
     }
 
-}
+    // Sharing a read transaction with other threads.
+    @Test public void txnShareRead_01() {
+        long z = integer.value();
+        transactional.begin(TxnType.READ);
+        AtomicLong seen = new AtomicLong(-1);
+        AtomicBoolean inTxn = new AtomicBoolean(false);
+        Runnable task = transactional.shareRead(()->{
+            inTxn.set(transactional.isInTransaction());
+            seen.set(integer.get());
+        });
+        assertNotNull(task);
+        // Change the value after the read transaction started.
+        ThreadTxn.threadTxnWrite(transactional, ()->integer.inc()).run();
+        assertEquals(z+1, integer.value());
+
+        ThreadLib.syncOtherThread(task);
+        assertTrue(inTxn.get());
+        assertEquals(z, seen.get());
+        // Still in the transaction.
+        assertEquals(z, integer.get());
+        transactional.end();
+        assertEquals(z+1, integer.get());
+    }
+
+    @Test public void txnShareRead_02() {
+        // Only a read transaction.
+        transactional.begin(TxnType.WRITE);
+        assertNull(transactional.shareRead(()->{}));
+        transactional.abort();
+        transactional.end();
+        assertNull(transactional.shareRead(()->{}));
+    }
 
+    @Test public void txnShareRead_03() {
+        // After the task, the other thread is not in the transaction.
+        transactional.begin(TxnType.READ);
+        AtomicBoolean after = new AtomicBoolean(true);
+        Runnable task = transactional.shareRead(()->{});
+        ThreadLib.syncOtherThread(()->{
+            task.run();
+            after.set(transactional.isInTransaction());
+        });
+        assertFalse(after.get());
+        transactional.end();
+    }
+}
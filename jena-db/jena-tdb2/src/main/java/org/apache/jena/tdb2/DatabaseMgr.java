@@ -21,10 +21,13 @@ package org.apache.jena.tdb2;
 import org.apache.jena.dboe.base.file.Location;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.tdb2.params.StoreParams;
 import org.apache.jena.tdb2.store.DatasetGraphSwitchable;
 import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.sys.CompactionProgress;
 import org.apache.jena.tdb2.sys.DatabaseConnection;
 import org.apache.jena.tdb2.sys.DatabaseOps;
+import org.apache.jena.tdb2.sys.NodeTableGC;
 import org.apache.jena.tdb2.sys.TDBInternal;
 
 /** Operations for TDBS DatasetGraph, including admin operations
@@ -37,13 +40,23 @@ public class DatabaseMgr {
     private DatabaseMgr() {}
 
     // All creation of DatasetGraph for TDB2 goes through this method.
-    private static DatasetGraph DB_ConnectCreate(Location location) {
-        return DatabaseConnection.connectCreate(location).getDatasetGraph();
+    private static DatasetGraph DB_ConnectCreate(Location location, StoreParams params) {
+        return DatabaseConnection.connectCreate(location, params).getDatasetGraph();
     }
 
     /** Create or connect to a TDB2-backed dataset */
     public static DatasetGraph connectDatasetGraph(Location location) {
-        return DB_ConnectCreate(location);
+        return DB_ConnectCreate(location, null);
+    }
+
+    /**
+     * Create or connect to a TDB2-backed dataset, using the {@link StoreParams}.
+     * Settings already at the location take precedence except for dynamic settings
+     * such as cache sizes and commit durability. The {@code StoreParams} only apply
+     * when the first connection to the location is made.
+     */
+    public static DatasetGraph connectDatasetGraph(Location location, StoreParams params) {
+        return DB_ConnectCreate(location, params);
     }
 
     /** Create or connect to a TDB2-backed dataset */
@@ -62,6 +75,49 @@ public class DatabaseMgr {
         DatabaseOps.compact(dsg);
     }
 
+    /**
+     * Compact a switchable TDB database without holding off writers while the
+     * database is copied. Writers are only held off for the final switch to the
+     * compacted database.
+     *
+     * @param container
+     * @return The final progress of the compaction.
+     * @see #compactOnline(DatasetGraph, CompactionProgress)
+     */
+    public static CompactionProgress compactOnline(DatasetGraph container) {
+        CompactionProgress progress = new CompactionProgress();
+        compactOnline(container, progress);
+        return progress;
+    }
+
+    /**
+     * Compact a switchable TDB database without holding off writers while the
+     * database is copied. The {@link CompactionProgress} can be read by other threads
+     * while the compaction runs.
+     *
+     * @param container
+     * @param progress
+     */
+    public static void compactOnline(DatasetGraph container, CompactionProgress progress) {
+        DatasetGraphSwitchable dsg = requireSwitchable(container);
+        DatabaseOps.compactOnline(dsg, progress);
+    }
+
+    /**
+     * Remove nodes no longer used by any triple or quad from the node table of a
+     * switchable TDB database. If there are unused nodes, the database is compacted,
+     * which rewrites the node table with only the nodes in use.
+     *
+     * @param container
+     * @param online Compact without holding off writers while copying.
+     * @return Report of the unused nodes and the space reclaimed.
+     * @see NodeTableGC
+     */
+    public static NodeTableGC.Report collectNodeTable(DatasetGraph container, boolean online) {
+        DatasetGraphSwitchable dsg = requireSwitchable(container);
+        return NodeTableGC.collect(dsg, online);
+    }
+
     /**
      * Create a backup for a switchable TDB database. This is the normal dataset type for
      * on-disk TDB2 databases.
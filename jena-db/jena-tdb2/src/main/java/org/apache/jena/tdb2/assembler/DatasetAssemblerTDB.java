@@ -20,14 +20,19 @@ package org.apache.jena.tdb2.assembler;
 
 import static org.apache.jena.sparql.util.graph.GraphUtils.exactlyOneProperty;
 import static org.apache.jena.sparql.util.graph.GraphUtils.getStringValue;
+import static org.apache.jena.tdb2.assembler.VocabTDB2.pDurability;
 import static org.apache.jena.tdb2.assembler.VocabTDB2.pLocation;
+import static org.apache.jena.tdb2.assembler.VocabTDB2.pSyncInterval;
 import static org.apache.jena.tdb2.assembler.VocabTDB2.pUnionDefaultGraph;
 
+import java.util.Locale;
+
 import org.apache.jena.assembler.Assembler;
 import org.apache.jena.assembler.Mode;
 import org.apache.jena.assembler.exceptions.AssemblerException;
 import org.apache.jena.atlas.logging.Log;
 import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.transaction.txn.Durability;
 import org.apache.jena.graph.Node;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.DatasetFactory;
@@ -39,6 +44,8 @@ import org.apache.jena.sparql.expr.NodeValue;
 import org.apache.jena.sys.JenaSystem;
 import org.apache.jena.tdb2.DatabaseMgr;
 import org.apache.jena.tdb2.TDB2;
+import org.apache.jena.tdb2.params.StoreParams;
+import org.apache.jena.tdb2.params.StoreParamsBuilder;
 
 public class DatasetAssemblerTDB extends DatasetAssembler
 {
@@ -56,7 +63,7 @@ public class DatasetAssemblerTDB extends DatasetAssembler
 
         String dir = getStringValue(root, pLocation);
         Location loc = Location.create(dir);
-        DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(loc);
+        DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(loc, storeParams(root));
 
         if ( root.hasProperty(pUnionDefaultGraph) ) {
             Node b = root.getProperty(pUnionDefaultGraph).getObject().asNode();
@@ -72,9 +79,34 @@ public class DatasetAssemblerTDB extends DatasetAssembler
             tdb:location "dir";
             //ja:context [ ja:cxtName "arq:queryTimeout";  ja:cxtValue "10000" ] ;
             tdb:unionGraph true; # or "true"
+            tdb:durability "periodic" ; # "sync", "group", "periodic" or "os"
+            tdb:syncInterval 500 ;      # milliseconds, for "periodic"
         */
         AssemblerUtils.mergeContext(root, dsg.getContext());
         return DatasetFactory.wrap(dsg);
     }
 
+    /** Dynamic settings of the database from the description, or null if there are none. */
+    private static StoreParams storeParams(Resource root) {
+        if ( !root.hasProperty(pDurability) && !root.hasProperty(pSyncInterval) )
+            return null;
+        StoreParamsBuilder builder = StoreParams.builder();
+        if ( root.hasProperty(pDurability) ) {
+            String str = getStringValue(root, pDurability);
+            try {
+                builder.durability(Durability.valueOf(str.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException ex) {
+                throw new AssemblerException(root, "Not a durability setting: "+str);
+            }
+        }
+        if ( root.hasProperty(pSyncInterval) ) {
+            Node n = root.getProperty(pSyncInterval).getObject().asNode();
+            NodeValue nv = NodeValue.makeNode(n);
+            if ( !nv.isInteger() || nv.getInteger().signum() <= 0 )
+                throw new AssemblerException(root, "Sync interval is not a positive integer: "+n);
+            builder.syncIntervalMillis(nv.getInteger().intValue());
+        }
+        return builder.build();
+    }
+
 }
@@ -44,6 +44,8 @@ public class VocabTDB2
 
     public static final Property pLocation          = Vocab.property(NS, "location");
     public static final Property pUnionDefaultGraph = Vocab.property(NS, "unionDefaultGraph");
+    public static final Property pDurability        = Vocab.property(NS, "durability");
+    public static final Property pSyncInterval      = Vocab.property(NS, "syncInterval");
 
     public static final Property pIndex             = Vocab.property(NS, "index");
     public static final Property pGraphName1        = Vocab.property(NS, "graphName");
@@ -27,10 +27,12 @@ import org.apache.jena.sparql.core.Quad;
 import org.apache.jena.tdb2.loader.base.MonitorOutput;
 import org.apache.jena.tdb2.loader.basic.LoaderBasic;
 import org.apache.jena.tdb2.loader.main.LoaderMain;
+import org.apache.jena.tdb2.loader.main.LoaderMerge;
 import org.apache.jena.tdb2.loader.main.LoaderParallel;
 import org.apache.jena.tdb2.loader.main.LoaderPhased;
 import org.apache.jena.tdb2.loader.main.LoaderPlan;
 import org.apache.jena.tdb2.loader.main.LoaderPlans;
+import org.apache.jena.tdb2.loader.main.LoaderSorted;
 import org.apache.jena.tdb2.loader.sequential.LoaderSequential;
 
 /** Obtain a {@link DataLoader}.
@@ -196,6 +198,76 @@ public class LoaderFactory {
         return new LoaderParallel(dsg, graphName, output);
     }
 
+    /**
+     * A loader that sorts the data for each index, using temporary files in the database
+     * directory, and then writes each index bottom-up. The indexes are built in parallel.
+     * <p>
+     * This loader is suitable for large data where the indexes do not fit in the RAM
+     * available for caching. Any existing data in the database is merged with the new data.
+     * <p>
+     * The dataset can not be used for other operations - the code will block other transactions
+     * as necessary and release then when loading has finished.
+     * <p>
+     * Supply a {@link MonitorOutput} for the desirable progress and summary output messages
+     * or {@code null} for no output.
+     */
+    public static DataLoader sortedLoader(DatasetGraph dsg, MonitorOutput output) {
+        Objects.requireNonNull(dsg);
+        return new LoaderSorted(dsg, null, output);
+    }
+
+    /**
+     * A sorted loader to load a single graph in the destination {@code DatasetGraph}.
+     * See {@link #sortedLoader(DatasetGraph, MonitorOutput)} for loader characteristics.
+     * <p>
+     * Use {@link Quad#defaultGraphIRI} to load the default graph.
+     * <p>
+     * No other graphs in the destination {@code DatasetGraph} are touched. If quads
+     * data is read, default graph data is sent to the destination named graph but all
+     * other quad data is discarded.
+     *
+     * @see #sortedLoader(DatasetGraph, MonitorOutput)
+     */
+    public static DataLoader sortedLoader(DatasetGraph dsg, Node graphName, MonitorOutput output) {
+        Objects.requireNonNull(dsg);
+        return new LoaderSorted(dsg, graphName, output);
+    }
+
+    /**
+     * A loader for adding data to a database that already has data. The new data is
+     * sorted and merged with the existing indexes to write a new generation of the
+     * database, as compaction does, and the new generation replaces the current database
+     * at the end of the load. The time taken depends on reading and writing the indexes
+     * sequentially, not on random updates to large B+Trees.
+     * <p>
+     * The dataset must be a database on disk. It can be read but not updated during the
+     * load. If the load fails, the database is not changed.
+     * <p>
+     * Supply a {@link MonitorOutput} for the desirable progress and summary output messages
+     * or {@code null} for no output.
+     */
+    public static DataLoader mergeLoader(DatasetGraph dsg, MonitorOutput output) {
+        Objects.requireNonNull(dsg);
+        return new LoaderMerge(dsg, null, output);
+    }
+
+    /**
+     * A merge loader to load a single graph in the destination {@code DatasetGraph}.
+     * See {@link #mergeLoader(DatasetGraph, MonitorOutput)} for loader characteristics.
+     * <p>
+     * Use {@link Quad#defaultGraphIRI} to load the default graph.
+     * <p>
+     * No other graphs in the destination {@code DatasetGraph} are touched. If quads
+     * data is read, default graph data is sent to the destination named graph but all
+     * other quad data is discarded.
+     *
+     * @see #mergeLoader(DatasetGraph, MonitorOutput)
+     */
+    public static DataLoader mergeLoader(DatasetGraph dsg, Node graphName, MonitorOutput output) {
+        Objects.requireNonNull(dsg);
+        return new LoaderMerge(dsg, graphName, output);
+    }
+
     /**
      * Return a loader to load a dataset, using the provided plan.
      * See {@link LoaderPlans} for the standard plans.
@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.loader.main;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.apache.jena.atlas.RuntimeIOException;
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.atlas.lib.IRILib;
+import org.apache.jena.graph.Node;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.lang.LabelToNode;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.tdb2.loader.base.LoaderOps;
+import org.apache.jena.tdb2.loader.base.ProgressMonitor;
+
+/**
+ * Parse N-Triples and N-Quads files on several threads.
+ * <p>
+ * These formats are one triple or quad per line and a newline can not appear inside a
+ * term, so the file is split into chunks of bytes at line boundaries and each chunk is
+ * parsed by a separate parser. All the parsers for a file use the same seed for blank
+ * node labels so a label used in different chunks is the same blank node, and is different
+ * from the same label in another file, as it is when the file is parsed in one go.
+ * <p>
+ * The triples and quads from different chunks arrive in no particular order. Line numbers
+ * in parse error messages are relative to the start of the chunk.
+ */
+public class ChunkedParser {
+    private static final int IOBufferSize = 128*1024;
+
+    /**
+     * Whether a file can be parsed in chunks by the loader: a local, uncompressed
+     * N-Triples or N-Quads file of more than one chunk.
+     */
+    public static boolean canParseInChunks(String filename) {
+        if ( LoaderConst.ParserThreads <= 1 )
+            return false;
+        Path path = localFile(filename);
+        if ( path == null )
+            return false;
+        if ( ! isLineFormat(filename) )
+            return false;
+        try {
+            return Files.size(path) > LoaderConst.ParseChunkBytes;
+        } catch (IOException ex) { return false; }
+    }
+
+    /**
+     * The {@code loadOne} step of the loaders whose data goes through a {@link DataBatcher}:
+     * if {@code dataInput} is a {@code DataBatcher} and the file can be parsed in chunks,
+     * parse it on several threads. Returns false, having done nothing, otherwise.
+     */
+    /*package*/ static boolean loadOne(String filename, StreamRDF dataInput, Node graphName, ProgressMonitor monitor) {
+        if ( ! ( dataInput instanceof DataBatcher ) || ! canParseInChunks(filename) )
+            return false;
+        monitor.setLabel(LoaderOps.label(filename));
+        parse(filename, (DataBatcher)dataInput, graphName, monitor);
+        return true;
+    }
+
+    /**
+     * Parse a file in chunks, batching triples and quads on each parser thread and
+     * dispatching the batches through {@code dataBatcher}.
+     */
+    /*package*/ static void parse(String filename, DataBatcher dataBatcher, Node graphName, ProgressMonitor monitor) {
+        Supplier<StreamRDF> chunkDest = ()->{
+            DataBatcher chunkBatcher = new DataBatcher(block->dataBatcher.dispatchBlock(block, monitor), null, null);
+            return new StreamRDFWrapper(LoaderOps.toNamedGraph(chunkBatcher, graphName)) {
+                @Override
+                public void finish() {
+                    super.finish();
+                    chunkBatcher.flush();
+                }
+            };
+        };
+        parse(filename, LoaderConst.ParserThreads, LoaderConst.ParseChunkBytes, chunkDest);
+    }
+
+    /**
+     * Parse a local N-Triples or N-Quads file using {@code threads} parsers, each parsing
+     * chunks of about {@code chunkBytes} bytes. Each chunk is sent to a new {@link StreamRDF}
+     * from {@code chunkDest}, with calls of {@link StreamRDF#start} and {@link StreamRDF#finish},
+     * on the thread that parses the chunk.
+     */
+    public static void parse(String filename, int threads, long chunkBytes, Supplier<StreamRDF> chunkDest) {
+        Path path = localFile(filename);
+        if ( path == null )
+            throw new IllegalArgumentException("Not a local file: "+filename);
+        Lang lang = RDFLanguages.filenameToLang(filename);
+        if ( ! isLineFormat(filename) )
+            throw new IllegalArgumentException("Not N-Triples or N-Quads: "+filename);
+        UUID seed = UUID.randomUUID();
+        List<Long> boundaries = boundaries(path, chunkBytes);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> chunks = new ArrayList<>();
+            for ( int i = 0 ; i < boundaries.size()-1 ; i++ ) {
+                long start = boundaries.get(i);
+                long finish = boundaries.get(i+1);
+                chunks.add(executor.submit(()->parseChunk(path, start, finish, lang, seed, chunkDest.get())));
+            }
+            for ( Future<?> f : chunks )
+                f.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if ( cause instanceof RuntimeException )
+                throw (RuntimeException)cause;
+            if ( cause instanceof Error )
+                throw (Error)cause;
+            throw new RuntimeException(cause);
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void parseChunk(Path path, long start, long finish, Lang lang, UUID seed, StreamRDF dest) {
+        try ( FileChannel channel = FileChannel.open(path, StandardOpenOption.READ) ) {
+            channel.position(start);
+            InputStream input = new BufferedInputStream(new RangeInputStream(Channels.newInputStream(channel), finish-start), IOBufferSize);
+            // The parser calls dest.start() and dest.finish().
+            RDFParser.create()
+                .source(input)
+                .lang(lang)
+                .labelToNode(LabelToNode.createScopeByDocumentHash(seed))
+                .parse(dest);
+        } catch (IOException ex) { throw new RuntimeIOException(ex); }
+    }
+
+    /** The file offsets where chunks start, with the file size as the last entry. */
+    /*package*/ static List<Long> boundaries(Path path, long chunkBytes) {
+        List<Long> boundaries = new ArrayList<>();
+        try ( FileChannel channel = FileChannel.open(path, StandardOpenOption.READ) ) {
+            long size = channel.size();
+            ByteBuffer bb = ByteBuffer.allocate(8*1024);
+            long posn = 0;
+            while ( posn < size ) {
+                boundaries.add(posn);
+                posn = nextLineStart(channel, posn+chunkBytes, size, bb);
+            }
+            boundaries.add(size);
+        } catch (IOException ex) { throw new RuntimeIOException(ex); }
+        return boundaries;
+    }
+
+    /** The first line start at or after {@code posn}, or the file size if there isn't one. */
+    private static long nextLineStart(FileChannel channel, long posn, long size, ByteBuffer bb) throws IOException {
+        if ( posn >= size )
+            return size;
+        // A line starts at posn if the byte before is a newline.
+        long x = posn-1;
+        while ( x < size ) {
+            bb.clear();
+            int n = channel.read(bb, x);
+            if ( n <= 0 )
+                break;
+            for ( int i = 0 ; i < n ; i++ ) {
+                if ( bb.get(i) == '\n' )
+                    return x+i+1;
+            }
+            x += n;
+        }
+        return size;
+    }
+
+    private static boolean isLineFormat(String filename) {
+        Lang lang = RDFLanguages.filenameToLang(filename);
+        if ( ! RDFLanguages.NTRIPLES.equals(lang) && ! RDFLanguages.NQUADS.equals(lang) )
+            return false;
+        // Compressed files can not be split.
+        return IO.filenameNoCompression(filename).equals(filename);
+    }
+
+    private static Path localFile(String filename) {
+        if ( filename.equals("-") )
+            return null;
+        String fn = filename;
+        if ( fn.startsWith("file:") )
+            fn = IRILib.IRIToFilename(fn);
+        else if ( fn.contains("://") )
+            return null;
+        Path path = Paths.get(fn);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    /** Read at most {@code length} bytes. */
+    private static class RangeInputStream extends FilterInputStream {
+        private long remaining;
+
+        RangeInputStream(InputStream input, long length) {
+            super(input);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if ( remaining <= 0 )
+                return -1;
+            int b = super.read();
+            if ( b >= 0 )
+                remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if ( remaining <= 0 )
+                return -1;
+            int n = super.read(b, off, (int)Math.min(len, remaining));
+            if ( n > 0 )
+                remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long x = super.skip(Math.min(n, remaining));
+            remaining -= x;
+            return x;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int)Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
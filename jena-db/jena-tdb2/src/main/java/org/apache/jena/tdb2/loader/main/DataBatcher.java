@@ -28,6 +28,7 @@ import org.apache.jena.riot.system.StreamRDF;
 import org.apache.jena.sparql.core.Quad;
 import org.apache.jena.tdb2.loader.base.BulkStartFinish;
 import org.apache.jena.tdb2.loader.base.MonitorOutput;
+import org.apache.jena.tdb2.loader.base.ProgressMonitor;
 
 /**
  * A {@link StreamRDF} that groups triples and quads and dispatches them in batches. This
@@ -62,14 +63,41 @@ public class DataBatcher implements StreamRDFCounting, BulkStartFinish {
 
     @Override
     public void finishBulk() {
-        DataBlock lastData = null;
+        flush();
+        dispatch(DataBlock.END);
+    }
+
+    /** Dispatch any triples and quads not yet sent on. */
+    public void flush() {
         if ( ! isEmpty(triples) || ! isEmpty(quads) ) {
-            lastData = new DataBlock(triples, quads);
+            DataBlock lastData = new DataBlock(triples, quads);
             dispatch(lastData);
             triples = null;
             quads = null;
         }
-        dispatch(DataBlock.END);
+    }
+
+    /**
+     * Dispatch a block of triples and quads that has been batched elsewhere, such as by
+     * a parser thread of {@link ChunkedParser}, and include it in the counts. This
+     * can be called from several threads but not while data is being sent to this
+     * batcher as a {@link StreamRDF}.
+     */
+    /*package*/ synchronized void dispatchBlock(DataBlock block, ProgressMonitor monitor) {
+        long x = 0;
+        if ( block.triples != null ) {
+            countTriples += block.triples.size();
+            x += block.triples.size();
+        }
+        if ( block.quads != null ) {
+            countQuads += block.quads.size();
+            x += block.quads.size();
+        }
+        if ( monitor != null ) {
+            for ( long i = 0 ; i < x ; i++ )
+                monitor.tick();
+        }
+        dispatch(block);
     }
 
     private <X> boolean isEmpty(List<X> list) {
@@ -21,7 +21,9 @@ package org.apache.jena.tdb2.loader.main;
 import static org.apache.jena.tdb2.loader.main.PhasedOps.acquire;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Semaphore;
@@ -50,7 +52,10 @@ import org.apache.jena.tdb2.store.nodetable.NodeTable;
  * converting them to two outputs of
  * blocks of {@code Tuple<NodeId>}.
  * <p>
- * This class runs one task thread which updates
+ * This class runs one task thread which updates the node table.
+ * The distinct nodes of each block are found, and allocated if new, with one call of
+ * {@link NodeTable#bulkNodeToNodeId}, which looks them up in the order of the node table
+ * index, rather than one node at a time.
  * <p>
  * Data is deliver into the process by calling the provided functions for {@code Destination<Tuple<NodeId>}.
  * <p>
@@ -131,11 +136,12 @@ public class DataToTuples implements BulkStartFinish {
                 DataBlock data = input.take();
                 if ( data == DataBlock.END )
                     break;
+                Map<Node, NodeId> nodeIds = nodeIds(nodeTable, data);
                 if ( data.triples != null ) {
                     List<Tuple<NodeId>> tuples = new ArrayList<>(data.triples.size());
                     for ( Triple t : data.triples ) {
                         countTriples++;
-                        accTuples(t, nodeTable, tuples);
+                        tuples.add(nodes(nodeIds, t));
                     }
                     dispatchTuples3(tuples);
                 }
@@ -143,7 +149,7 @@ public class DataToTuples implements BulkStartFinish {
                     List<Tuple<NodeId>> tuples = new ArrayList<>(data.quads.size());
                     for ( Quad q : data.quads ) {
                         countQuads++;
-                        accTuples(q, nodeTable, tuples);
+                        tuples.add(nodes(nodeIds, q));
                     }
                     dispatchTuples4(tuples);
                 }
@@ -173,14 +179,6 @@ public class DataToTuples implements BulkStartFinish {
         dest4.deliver(chunk);
     }
 
-    private static void accTuples(Triple triple, NodeTable nodeTable, List<Tuple<NodeId>> acc) {
-        acc.add(nodes(nodeTable, triple));
-    }
-
-    private static void accTuples(Quad quad, NodeTable nodeTable, List<Tuple<NodeId>> acc) {
-        acc.add(nodes(nodeTable, quad));
-    }
-
     // Recycle?
     private List<Tuple<NodeId>> allocChunkTriples() {
         return new ArrayList<>(LoaderConst.ChunkSize);
@@ -215,6 +213,46 @@ public class DataToTuples implements BulkStartFinish {
         return TupleFactory.tuple(g,s,p,o);
     }
 
+    /** Find or allocate the NodeIds of all the distinct nodes in a block. */
+    private static Map<Node, NodeId> nodeIds(NodeTable nodeTable, DataBlock data) {
+        Map<Node, NodeId> nodeIds = new HashMap<>();
+        if ( data.triples != null ) {
+            for ( Triple t : data.triples ) {
+                nodeIds.put(t.getSubject(), null);
+                nodeIds.put(t.getPredicate(), null);
+                nodeIds.put(t.getObject(), null);
+            }
+        }
+        if ( data.quads != null ) {
+            for ( Quad q : data.quads ) {
+                nodeIds.put(q.getGraph(), null);
+                nodeIds.put(q.getSubject(), null);
+                nodeIds.put(q.getPredicate(), null);
+                nodeIds.put(q.getObject(), null);
+            }
+        }
+        List<Node> nodes = new ArrayList<>(nodeIds.keySet());
+        List<NodeId> x = nodeTable.bulkNodeToNodeId(nodes, true);
+        for ( int i = 0; i < nodes.size() ; i++ )
+            nodeIds.put(nodes.get(i), x.get(i));
+        return nodeIds;
+    }
+
+    private static Tuple<NodeId> nodes(Map<Node, NodeId> nodeIds, Triple triple) {
+        NodeId s = nodeIds.get(triple.getSubject());
+        NodeId p = nodeIds.get(triple.getPredicate());
+        NodeId o = nodeIds.get(triple.getObject());
+        return TupleFactory.tuple(s,p,o);
+    }
+
+    private static Tuple<NodeId> nodes(Map<Node, NodeId> nodeIds, Quad quad) {
+        NodeId g = nodeIds.get(quad.getGraph());
+        NodeId s = nodeIds.get(quad.getSubject());
+        NodeId p = nodeIds.get(quad.getPredicate());
+        NodeId o = nodeIds.get(quad.getObject());
+        return TupleFactory.tuple(g,s,p,o);
+    }
+
     private static final NodeId idForNode(NodeTable nodeTable, Node node) {
         return nodeTable.getAllocateNodeId(node);
     }
@@ -0,0 +1,351 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.loader.main;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import org.apache.jena.atlas.RuntimeIOException;
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.atlas.lib.tuple.TupleMap;
+import org.apache.jena.dboe.base.record.Record;
+import org.apache.jena.dboe.base.record.RecordFactory;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.NodeIdFactory;
+
+/**
+ * Sort the keys of an index, for building the index bottom-up.
+ * <p>
+ * Tuples are added as index keys, in the order of the index, to a buffer in memory.
+ * When the buffer is full, it is sorted and written to a temporary file as a run.
+ * {@link #sorted} returns the keys in order, without duplicates, merging the runs.
+ * Keys compare as unsigned bytes, the same as B+Tree records.
+ */
+class ExternalSort implements AutoCloseable {
+    // Merge at most this many runs at once.
+    /*package*/ static final int MergeWidth = 100;
+    private static final int InitialBufferKeys = 1024;
+    private static final int IOBufferSize = 128*1024;
+
+    private final String label;
+    private final int keyLength;
+    private final int runSize;
+    private final Path tmpDir;
+    // Keys, one after another, keyLength bytes each.
+    private byte[] buffer = null;
+    private int count = 0;
+    private final byte[] pivot;
+    private final byte[] swapSpace;
+    private final List<Path> runs = new ArrayList<>();
+    private long total = 0;
+
+    /**
+     * @param label     Name for the temporary files
+     * @param keyLength Bytes in a key
+     * @param runSize   Number of keys in a run
+     * @param tmpDir    Directory for runs; null for the system temporary directory.
+     */
+    /*package*/ ExternalSort(String label, int keyLength, int runSize, Path tmpDir) {
+        this.label = label;
+        this.keyLength = keyLength;
+        this.runSize = runSize;
+        this.tmpDir = tmpDir;
+        this.pivot = new byte[keyLength];
+        this.swapSpace = new byte[keyLength];
+    }
+
+    /** Add a tuple, as the key of an index with the {@link TupleMap}. */
+    public void add(Tuple<NodeId> tuple, TupleMap tupleMap) {
+        int offset = slot();
+        for ( int i = 0; i < tuple.len() ; i++ ) {
+            int j = tupleMap.getSlotIdx(i);
+            NodeIdFactory.set(tuple.get(j), buffer, offset + i * NodeId.SIZE);
+        }
+    }
+
+    /** Add a key. */
+    public void add(byte[] key) {
+        int offset = slot();
+        System.arraycopy(key, 0, buffer, offset, keyLength);
+    }
+
+    // Space for the next key.
+    private int slot() {
+        if ( buffer == null )
+            buffer = new byte[Math.min(InitialBufferKeys, runSize) * keyLength];
+        if ( count == runSize )
+            spill();
+        else if ( (count+1) * keyLength > buffer.length )
+            buffer = Arrays.copyOf(buffer, Math.min(2 * count, runSize) * keyLength);
+        total++;
+        return (count++) * keyLength;
+    }
+
+    /** Number of keys added, including duplicates. */
+    public long count() {
+        return total;
+    }
+
+    /** Number of runs written to disk so far. */
+    public int runs() {
+        return runs.size();
+    }
+
+    /**
+     * The keys, sorted, without duplicates.
+     * This can be called once, after all the keys have been added.
+     */
+    public Iterator<Record> sorted(RecordFactory factory) {
+        if ( runs.isEmpty() ) {
+            sort(0, count);
+            return new BufferIterator(factory);
+        }
+        if ( count > 0 )
+            spill();
+        buffer = null;
+        // Reduce the number of runs to be merged at once.
+        while ( runs.size() > MergeWidth ) {
+            List<Path> group = new ArrayList<>(runs.subList(0, MergeWidth));
+            runs.subList(0, MergeWidth).clear();
+            Path run = newRun();
+            try ( OutputStream out = new BufferedOutputStream(Files.newOutputStream(run), IOBufferSize) ) {
+                Iterator<byte[]> iter = merge(group);
+                while ( iter.hasNext() )
+                    out.write(iter.next());
+            } catch (IOException ex) { throw new RuntimeIOException(ex); }
+            deleteRuns(group);
+            runs.add(run);
+        }
+        Iterator<byte[]> iter = merge(runs);
+        return new Iterator<Record>() {
+            @Override public boolean hasNext() { return iter.hasNext(); }
+            @Override public Record next()     { return factory.create(iter.next()); }
+        };
+    }
+
+    /** Delete any temporary files. */
+    @Override
+    public void close() {
+        deleteRuns(runs);
+        runs.clear();
+        buffer = null;
+    }
+
+    /**
+     * Merge two sorted streams of records, dropping duplicates.
+     * Used to merge the existing contents of an index with new keys.
+     */
+    public static Iterator<Record> merge(Iterator<Record> iter1, Iterator<Record> iter2) {
+        return new Iterator<Record>() {
+            private Record r1 = iter1.hasNext() ? iter1.next() : null;
+            private Record r2 = iter2.hasNext() ? iter2.next() : null;
+            @Override
+            public boolean hasNext() {
+                return r1 != null || r2 != null;
+            }
+
+            @Override
+            public Record next() {
+                if ( !hasNext() )
+                    throw new NoSuchElementException();
+                int x = ( r1 == null ) ? 1 : ( r2 == null ) ? -1 : Record.compareByKey(r1, r2);
+                Record r = ( x <= 0 ) ? r1 : r2;
+                if ( x <= 0 )
+                    r1 = iter1.hasNext() ? iter1.next() : null;
+                if ( x >= 0 )
+                    r2 = iter2.hasNext() ? iter2.next() : null;
+                return r;
+            }
+        };
+    }
+
+    // ---- Runs
+
+    private Path newRun() {
+        try {
+            String prefix = "sort-"+label+"-";
+            return ( tmpDir == null ) ? Files.createTempFile(prefix, ".tmp") : Files.createTempFile(tmpDir, prefix, ".tmp");
+        } catch (IOException ex) { throw new RuntimeIOException(ex); }
+    }
+
+    private void spill() {
+        sort(0, count);
+        Path run = newRun();
+        try ( OutputStream out = new BufferedOutputStream(Files.newOutputStream(run), IOBufferSize) ) {
+            for ( int i = 0 ; i < count ; i++ ) {
+                if ( i > 0 && compare(i-1, i) == 0 )
+                    continue;
+                out.write(buffer, i * keyLength, keyLength);
+            }
+        } catch (IOException ex) { throw new RuntimeIOException(ex); }
+        runs.add(run);
+        count = 0;
+    }
+
+    private static void deleteRuns(List<Path> runs) {
+        for ( Path p : runs ) {
+            try { Files.deleteIfExists(p); }
+            catch (IOException ex) { throw new RuntimeIOException(ex); }
+        }
+    }
+
+    /** One run, during a merge. */
+    private class RunReader {
+        private final InputStream input;
+        private byte[] current = new byte[keyLength];
+
+        RunReader(Path run) {
+            try { input = new BufferedInputStream(Files.newInputStream(run), IOBufferSize); }
+            catch (IOException ex) { throw new RuntimeIOException(ex); }
+        }
+
+        /** Read the next key into {@code current}; return false at the end of the run. */
+        boolean advance() {
+            try {
+                current = new byte[keyLength];
+                int n = input.readNBytes(current, 0, keyLength);
+                if ( n == keyLength )
+                    return true;
+                if ( n != 0 )
+                    throw new RuntimeIOException("Short key in sort run "+label);
+                input.close();
+                return false;
+            } catch (IOException ex) { throw new RuntimeIOException(ex); }
+        }
+    }
+
+    /** Merge runs, dropping duplicates. */
+    private Iterator<byte[]> merge(List<Path> mergeRuns) {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, mergeRuns.size()),
+                                                             (r1, r2)->Arrays.compareUnsigned(r1.current, r2.current));
+        for ( Path run : mergeRuns ) {
+            RunReader reader = new RunReader(run);
+            if ( reader.advance() )
+                queue.add(reader);
+        }
+        return new Iterator<byte[]>() {
+            private byte[] last = null;
+            private byte[] slot = null;
+
+            @Override
+            public boolean hasNext() {
+                while ( slot == null && !queue.isEmpty() ) {
+                    RunReader reader = queue.poll();
+                    byte[] key = reader.current;
+                    if ( reader.advance() )
+                        queue.add(reader);
+                    if ( last != null && Arrays.equals(last, key) )
+                        continue;
+                    slot = key;
+                    last = key;
+                }
+                return slot != null;
+            }
+
+            @Override
+            public byte[] next() {
+                if ( !hasNext() )
+                    throw new NoSuchElementException();
+                byte[] key = slot;
+                slot = null;
+                return key;
+            }
+        };
+    }
+
+    /** The sorted keys of the buffer (no runs written). */
+    private class BufferIterator implements Iterator<Record> {
+        private final RecordFactory factory;
+        private int idx = 0;
+
+        BufferIterator(RecordFactory factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while ( idx > 0 && idx < count && compare(idx-1, idx) == 0 )
+                idx++;
+            return idx < count;
+        }
+
+        @Override
+        public Record next() {
+            if ( !hasNext() )
+                throw new NoSuchElementException();
+            int offset = (idx++) * keyLength;
+            return factory.create(Arrays.copyOfRange(buffer, offset, offset + keyLength));
+        }
+    }
+
+    // ---- Sorting the buffer : quicksort with a three way partition for duplicates.
+
+    private void sort(int lo, int hi) {
+        while ( hi - lo > 16 ) {
+            // Median of three as pivot.
+            int mid = (lo + hi) >>> 1;
+            if ( compare(mid, lo) < 0 )
+                swap(mid, lo);
+            if ( compare(hi-1, lo) < 0 )
+                swap(hi-1, lo);
+            if ( compare(hi-1, mid) < 0 )
+                swap(hi-1, mid);
+            System.arraycopy(buffer, mid * keyLength, pivot, 0, keyLength);
+            // [lo,lt) < pivot, [lt,i) == pivot, (gt,hi) > pivot
+            int lt = lo;
+            int i = lo;
+            int gt = hi - 1;
+            while ( i <= gt ) {
+                int x = Arrays.compareUnsigned(buffer, i * keyLength, (i+1) * keyLength, pivot, 0, keyLength);
+                if ( x < 0 )
+                    swap(lt++, i++);
+                else if ( x > 0 )
+                    swap(i, gt--);
+                else
+                    i++;
+            }
+            // Recurse on the smaller part.
+            if ( lt - lo < hi - gt ) {
+                sort(lo, lt);
+                lo = gt + 1;
+            } else {
+                sort(gt + 1, hi);
+                hi = lt;
+            }
+        }
+        for ( int i = lo + 1 ; i < hi ; i++ ) {
+            for ( int j = i ; j > lo && compare(j-1, j) > 0 ; j-- )
+                swap(j-1, j);
+        }
+    }
+
+    private int compare(int i, int j) {
+        return Arrays.compareUnsigned(buffer, i * keyLength, (i+1) * keyLength, buffer, j * keyLength, (j+1) * keyLength);
+    }
+
+    private void swap(int i, int j) {
+        if ( i == j )
+            return;
+        System.arraycopy(buffer, i * keyLength, swapSpace, 0, keyLength);
+        System.arraycopy(buffer, j * keyLength, buffer, i * keyLength, keyLength);
+        System.arraycopy(swapSpace, 0, buffer, j * keyLength, keyLength);
+    }
+}
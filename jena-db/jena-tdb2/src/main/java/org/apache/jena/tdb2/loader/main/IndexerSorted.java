@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.loader.main;
+
+import static org.apache.jena.tdb2.loader.main.PhasedOps.acquire;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import org.apache.jena.atlas.lib.ArrayUtils;
+import org.apache.jena.atlas.lib.Timer;
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.atlas.logging.Log;
+import org.apache.jena.dboe.base.record.Record;
+import org.apache.jena.dboe.trans.bplustree.BPlusTree;
+import org.apache.jena.dboe.trans.bplustree.rewriter.BPlusTreeRewriter;
+import org.apache.jena.dboe.transaction.txn.Transaction;
+import org.apache.jena.dboe.transaction.txn.TransactionCoordinator;
+import org.apache.jena.query.TxnType;
+import org.apache.jena.sparql.core.Transactional;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.loader.base.BulkStartFinish;
+import org.apache.jena.tdb2.loader.base.CoLib;
+import org.apache.jena.tdb2.loader.base.LoaderOps;
+import org.apache.jena.tdb2.loader.base.MonitorOutput;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.tupletable.TupleIndex;
+
+/**
+ * Build index(es) by sorting.
+ * Provides a function {@link #index()}, the same as {@link Indexer}, that should be called from another thread
+ * to deliver chunks of tuples ({@code  List<Tuple<NodeId>>}).
+ * <p>
+ * This class creates one thread per {@link TupleIndex}. The thread adds the tuples,
+ * as keys in the order of its index, to an {@link ExternalSort} which writes sorted runs
+ * to disk. When all the tuples have been delivered, each thread merges its runs,
+ * and the existing contents of the index, and writes the index bottom-up with
+ * {@link BPlusTreeRewriter} in a write transaction on the index. The index threads
+ * work in parallel.
+ * <p>
+ * Compared to inserting into the B+Tree one tuple at a time, disk access is sequential
+ * which matters when the indexes are larger than the RAM available for caching.
+ */
+public class IndexerSorted implements BulkStartFinish {
+
+    private BlockingQueue<List<Tuple<NodeId>>>[] pipes;
+    private final int N;
+    private final MonitorOutput output;
+    private TupleIndex[] indexes;
+    private final TupleIndex[] sources;
+    private final Transactional sourceTxn;
+    private final Path tmpDir;
+    private final int runSize;
+    private final Semaphore termination = new Semaphore(0);
+    private volatile boolean failed = false;
+
+    /**
+     * Create an indexer that writes sorted runs of {@link LoaderConst#SortRunSize} keys
+     * per index to {@code tmpDir}, or the system temporary directory if {@code tmpDir} is null.
+     */
+    public IndexerSorted(MonitorOutput output, Path tmpDir, TupleIndex... indexes) {
+        this(output, tmpDir, LoaderConst.SortRunSize, indexes);
+    }
+
+    public IndexerSorted(MonitorOutput output, Path tmpDir, int runSize, TupleIndex... indexes) {
+        this(output, tmpDir, runSize, null, null, indexes);
+    }
+
+    /**
+     * Create an indexer that writes each of {@code indexes} from the new tuples merged with
+     * the contents of the corresponding index of {@code sources}, instead of the contents of
+     * the index itself. The sources are read in a read transaction of {@code sourceTxn}.
+     * This is used to write the indexes of a new generation of a database.
+     */
+    @SuppressWarnings("unchecked")
+    public IndexerSorted(MonitorOutput output, Path tmpDir, int runSize, Transactional sourceTxn, TupleIndex[] sources, TupleIndex... indexes) {
+        this.N = indexes.length;
+        if ( sources != null && sources.length != N )
+            throw new IllegalArgumentException("Sources and indexes are different lengths");
+        this.pipes = ArrayUtils.alloc(BlockingQueue.class, N);
+        this.indexes = Arrays.copyOf(indexes, N);
+        this.sources = sources;
+        this.sourceTxn = sourceTxn;
+        this.output = output;
+        this.tmpDir = tmpDir;
+        this.runSize = runSize;
+        for ( int i = 0; i < N ; i++ ) {
+            pipes[i] = new ArrayBlockingQueue<List<Tuple<NodeId>>>(LoaderConst.QueueSizeTuples);
+        }
+    }
+
+    /** Return a function that delivers multiple {@code List<Tuple<NodeId>>>} to this indexer */
+    public Destination<Tuple<NodeId>> index() {
+        return this::index;
+    }
+
+    private void index(List<Tuple<NodeId>> chunk) {
+        for ( int i = 0; i < N ; i++ ) {
+            try {
+                pipes[i].put(chunk);
+            }
+            catch (InterruptedException e) {
+                String name = indexes[i].getName();
+                Log.error(this, "Interrupted: "+name, e);
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /** Start the threads that will do the sorting and indexing */
+    @Override
+    public void startBulk() {
+        for ( int i = 0; i < N ; i++ ) {
+            TupleIndex idx = indexes[i];
+            TupleIndex src = ( sources == null ) ? null : sources[i];
+            BlockingQueue<List<Tuple<NodeId>>> pipe = pipes[i];
+            new Thread(()->stageIndex(pipe, idx, src)).start();
+        }
+    }
+
+    /** Wait for all the indexing threads to complete. */
+    @Override
+    public void finishBulk() {
+        acquire(termination, N);
+    }
+
+    /** Whether building any of the indexes failed. The exception has been logged. */
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    private void stageIndex(BlockingQueue<List<Tuple<NodeId>>> pipe, TupleIndex idx, TupleIndex src) {
+        BPlusTree bpt = LoaderOps.idxBTree(idx);
+        try ( ExternalSort sorter = new ExternalSort(idx.getName(), bpt.getRecordFactory().keyLength(), runSize, tmpDir) ) {
+            for (;;) {
+                List<Tuple<NodeId>> tuples = pipe.take();
+                if ( tuples.isEmpty() )
+                    break;
+                for ( Tuple<NodeId> tuple : tuples )
+                    sorter.add(tuple, idx.getMapping());
+            }
+            if ( src != null )
+                Txn.executeRead(sourceTxn, ()->build(idx, bpt, LoaderOps.idxBTree(src), sorter));
+            else if ( sorter.count() > 0 )
+                build(idx, bpt, bpt, sorter);
+        } catch (Exception ex) {
+            failed = true;
+            Log.error(this, "Exception: index "+idx.getName(), ex);
+        }
+        termination.release();
+    }
+
+    /** Write {@code bpt} from the sorted tuples merged with the contents of {@code bptSource}. */
+    private void build(TupleIndex idx, BPlusTree bpt, BPlusTree bptSource, ExternalSort sorter) {
+        Timer timer = new Timer();
+        timer.startTimer();
+        TransactionCoordinator coordinator = CoLib.newCoordinator();
+        CoLib.add(coordinator, idx);
+        CoLib.start(coordinator);
+        Transaction transaction = coordinator.begin(TxnType.WRITE);
+        try {
+            int runs = sorter.runs();
+            Iterator<Record> records = sorter.sorted(bpt.getRecordFactory());
+            if ( ! bptSource.isEmpty() )
+                records = ExternalSort.merge(bptSource.iterator(), records);
+            BPlusTreeRewriter.packIntoBPlusTree(bpt, records);
+            transaction.commit();
+            long elapsed = timer.endTimer();
+            output.print("Finish - index %s [%,d items, %d runs, %,.1f seconds]", idx.getName(), sorter.count(), Math.max(1, runs), elapsed/1000.0);
+        } catch (RuntimeException ex) {
+            transaction.abort();
+            throw ex;
+        } finally {
+            CoLib.finish(coordinator);
+        }
+    }
+}
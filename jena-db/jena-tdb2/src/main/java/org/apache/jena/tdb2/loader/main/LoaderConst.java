@@ -32,6 +32,15 @@ public class LoaderConst {
     /** Queue size for chunks of tuples Tuples */
     public static final int QueueSizeTuples = 10;
 
+    /** Number of keys, per index, sorted in memory before writing a run to disk, for {@link IndexerSorted}. */
+    public static final int SortRunSize = 1_000_000;
+
+    /** Number of parser threads for N-Triples and N-Quads files, for {@link ChunkedParser}. */
+    public static final int ParserThreads = Math.max(1, Runtime.getRuntime().availableProcessors()/2);
+
+    /** Size, in bytes, of a chunk of an N-Triples or N-Quads file parsed by one parser thread. */
+    public static final long ParseChunkBytes = 64*1024*1024;
+
     //public static final int pipeSize = 10;
 
     /* package */ static final List<Tuple<NodeId>> END_TUPLES      = Collections.emptyList();
@@ -33,6 +33,7 @@ import org.apache.jena.riot.system.StreamRDF;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.tdb2.loader.DataLoader;
 import org.apache.jena.tdb2.loader.base.*;
+import org.apache.jena.tdb2.solver.stats.ReorderMaintained;
 import org.apache.jena.tdb2.store.DatasetGraphTDB;
 import org.apache.jena.tdb2.store.NodeId;
 import org.apache.jena.tdb2.store.StoragePrefixesTDB;
@@ -65,7 +66,9 @@ import org.apache.jena.tdb2.sys.TDBInternal;
  * <p>
  * {@link DataBatcher} produces {@link DataBlock DataBlocks} - grouping of triples and
  * quads and sends them to a handler {@code Consumer<DataBlock>}. This is wired up to be
- * the feed for {@link DataToTuples}.
+ * the feed for {@link DataToTuples}. Large N-Triples and N-Quads files are split into chunks
+ * and parsed on several threads by {@link ChunkedParser}, which sends batches through the
+ * {@link DataBatcher}.
  * </p><p>
  * {@link DataToTuples} processes {@link DataBlock DataBlocks} to create 2 outputs blocks
  * of {@code Tuple<NodeId>}, one output for triples, one for quads, and sends these to
@@ -225,6 +228,13 @@ public class LoaderMain extends LoaderBase implements DataLoader {
         return stream;
     }
 
+    @Override
+    protected void loadOne(String filename, ProgressMonitor monitor) {
+        // Large N-Triples and N-Quads files are parsed on several threads.
+        if ( ! ChunkedParser.loadOne(filename, dataInput, graphName, monitor) )
+            super.loadOne(filename, monitor);
+    }
+
     @Override
     public boolean bulkUseTransaction() {
         // Manipulate the transactions directly by component.
@@ -261,6 +271,8 @@ public class LoaderMain extends LoaderBase implements DataLoader {
         }
         super.finishBulk();
         dsgtdb.getTxnSystem().getTxnMgr().finishExclusiveMode();
+        // The indexes were written directly, not through the triple table.
+        ReorderMaintained.refresh(dsgtdb);
     }
 
     /** Execute secondary index building of a {@link LoaderPlan} */
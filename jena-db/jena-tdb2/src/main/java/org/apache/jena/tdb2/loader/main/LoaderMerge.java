@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.loader.main;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.graph.Node;
+import org.apache.jena.riot.lang.StreamRDFCounting;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.tdb2.TDBException;
+import org.apache.jena.tdb2.loader.DataLoader;
+import org.apache.jena.tdb2.loader.base.*;
+import org.apache.jena.tdb2.store.DatasetGraphSwitchable;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.StoragePrefixesTDB;
+import org.apache.jena.tdb2.store.tupletable.TupleIndex;
+import org.apache.jena.tdb2.sys.DatabaseOps;
+import org.apache.jena.tdb2.sys.TDBInternal;
+
+/**
+ * A {@link DataLoader} for adding data to a database that already has data, which writes
+ * a new generation of the database, as compaction does.
+ * <p>
+ * {@link #startBulk} creates the next {@code Data-NNNN} with a copy of the node tables
+ * and the prefixes and empty indexes. The new data is parsed and its nodes added to the
+ * node table of the new generation, as {@link LoaderSorted} does. The tuples are sorted
+ * into the order of each index and, in {@link #finishBulk}, merged with the index of the
+ * current database and written bottom-up to the index of the new generation. The
+ * existing indexes are read sequentially and the new indexes are written sequentially,
+ * so the time taken depends on the size of the database more than on the amount of data
+ * loaded and not on random updates to large B+Trees. Then the new generation becomes the
+ * current database.
+ * <p>
+ * The current database can be read, but not updated, during the load. If the load fails,
+ * the new generation is removed and the database is as it was.
+ * <p>
+ * The dataset must be a database on disk, from {@code DatabaseMgr.connectDatasetGraph}.
+ * Call {@link #stream()} after {@link #startBulk()}.
+ */
+public class LoaderMerge extends LoaderBase implements DataLoader {
+
+    private final DatasetGraphSwitchable container;
+    private DatasetGraphTDB dsgBase = null;
+    private DatasetGraphTDB dsgNew = null;
+    private StreamRDF stream = null;
+    private StreamRDFCounting dataInput = null;
+    private final List<BulkStartFinish> dataProcess = new ArrayList<>();
+    private boolean dataFinished = false;
+
+    public LoaderMerge(DatasetGraph dsg, MonitorOutput output) {
+        this(dsg, null, output);
+    }
+
+    public LoaderMerge(DatasetGraph dsg, Node graphName, MonitorOutput output) {
+        super(dsg, graphName, output);
+        if ( ! ( dsg instanceof DatasetGraphSwitchable ) || ! ((DatasetGraphSwitchable)dsg).hasContainerPath() )
+            throw new TDBException("Merge load requires a TDB2 database on disk");
+        container = TDBInternal.getDatabaseContainer(dsg);
+    }
+
+    private static StreamRDFCounting executeData(DatasetGraphTDB dsgBase, DatasetGraphTDB dsgNew, List<BulkStartFinish> dataProcess, MonitorOutput output) {
+        StoragePrefixesTDB dps = (StoragePrefixesTDB)dsgNew.getStoragePrefixes();
+        PrefixHandlerBulk prefixHandler = new PrefixHandlerBulk(dps, output);
+        dataProcess.add(prefixHandler);
+
+        Path sortDir = Paths.get(dsgNew.getLocation().getDirectoryPath());
+        TupleIndex[] src3 = dsgBase.getTripleTable().getNodeTupleTable().getTupleTable().getIndexes();
+        TupleIndex[] idx3 = dsgNew.getTripleTable().getNodeTupleTable().getTupleTable().getIndexes();
+        IndexerSorted indexer3 = new IndexerSorted(output, sortDir, LoaderConst.SortRunSize, dsgBase, sources(src3, idx3), idx3);
+        TupleIndex[] src4 = dsgBase.getQuadTable().getNodeTupleTable().getTupleTable().getIndexes();
+        TupleIndex[] idx4 = dsgNew.getQuadTable().getNodeTupleTable().getTupleTable().getIndexes();
+        IndexerSorted indexer4 = new IndexerSorted(output, sortDir, LoaderConst.SortRunSize, dsgBase, sources(src4, idx4), idx4);
+        dataProcess.add(indexer3);
+        dataProcess.add(indexer4);
+        Destination<Tuple<NodeId>> functionIndexer3 = indexer3.index();
+        Destination<Tuple<NodeId>> functionIndexer4 = indexer4.index();
+
+        DataToTuples dtt = new DataToTuples(dsgNew, functionIndexer3, functionIndexer4, output);
+        DataBatcher dataBatcher = new DataBatcher(dtt.data(), prefixHandler.handler(), output);
+        dataProcess.add(dtt);
+        dataProcess.add(dataBatcher);
+        return dataBatcher;
+    }
+
+    /** The index of the current database for each index of the new generation. */
+    private static TupleIndex[] sources(TupleIndex[] current, TupleIndex[] indexes) {
+        TupleIndex[] sources = new TupleIndex[indexes.length];
+        for ( int i = 0 ; i < indexes.length ; i++ ) {
+            String name = indexes[i].getName();
+            for ( TupleIndex idx : current ) {
+                if ( idx.getName().equals(name) )
+                    sources[i] = idx;
+            }
+            if ( sources[i] == null )
+                throw new TDBException("No index "+name+" in the current database");
+        }
+        return sources;
+    }
+
+    @Override
+    public StreamRDF stream() {
+        if ( stream == null )
+            throw new TDBException("Merge load not started: call startBulk() first");
+        return stream;
+    }
+
+    @Override
+    protected void loadOne(String filename, ProgressMonitor monitor) {
+        // Large N-Triples and N-Quads files are parsed on several threads.
+        if ( ! ChunkedParser.loadOne(filename, dataInput, graphName, monitor) )
+            super.loadOne(filename, monitor);
+    }
+
+    @Override
+    public boolean bulkUseTransaction() {
+        // Manipulate the transactions directly by component.
+        return false;
+    }
+
+    @Override
+    public void startBulk() {
+        dsgBase = (DatasetGraphTDB)container.get();
+        // Blocks writers on the current database.
+        dsgNew = DatabaseOps.startGeneration(container);
+        try {
+            dataInput = executeData(dsgBase, dsgNew, dataProcess, output);
+            stream = LoaderOps.toNamedGraph(dataInput, graphName);
+            // No one else can see the new generation but lock it anyway.
+            dsgNew.getTxnSystem().getTxnMgr().startExclusiveMode();
+        } catch (RuntimeException ex) {
+            DatabaseOps.abandonGeneration(container, dsgNew);
+            dsgNew = null;
+            throw ex;
+        }
+        super.startBulk();
+        BulkProcesses.start(dataProcess);
+    }
+
+    @Override
+    public void finishBulk() {
+        // Sorting, merging and index writing happens as the data pipeline finishes.
+        BulkProcesses.finish(dataProcess);
+        dataFinished = true;
+        for ( BulkStartFinish process : dataProcess ) {
+            if ( process instanceof IndexerSorted && ((IndexerSorted)process).hasFailed() ) {
+                TDBException ex = new TDBException("Merge load failed: the database has not been changed");
+                finishException(ex);
+                throw ex;
+            }
+        }
+        super.finishBulk();
+        dsgNew.getTxnSystem().getTxnMgr().finishExclusiveMode();
+        output.print("Switch to %s", dsgNew.getLocation().getDirectoryPath());
+        DatabaseOps.switchGeneration(container, dsgNew);
+        dsgNew = null;
+    }
+
+    @Override
+    public void finishException(Exception ex) {
+        // May be called more than once.
+        if ( dsgNew == null )
+            return;
+        try {
+            // Let the data pipeline threads finish before removing the new generation.
+            if ( ! dataFinished ) {
+                dataFinished = true;
+                BulkProcesses.finish(dataProcess);
+            }
+            dsgNew.getTxnSystem().getTxnMgr().finishExclusiveMode();
+            DatabaseOps.abandonGeneration(container, dsgNew);
+        } catch (Exception ex2) {
+            ex.addSuppressed(ex2);
+        }
+        dsgNew = null;
+    }
+
+    @Override
+    public long countTriples() {
+        return dataInput == null ? 0 : dataInput.countTriples();
+    }
+
+    @Override
+    public long countQuads() {
+        return dataInput == null ? 0 : dataInput.countQuads();
+    }
+
+    @Override
+    protected ProgressMonitor createProgressMonitor(MonitorOutput output) {
+        return ProgressMonitorOutput.create(output, "<unset>", LoaderMain.DataTickPoint, LoaderMain.DataSuperTick);
+    }
+}
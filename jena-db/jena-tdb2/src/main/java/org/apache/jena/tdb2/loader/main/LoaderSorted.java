@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.loader.main;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.graph.Node;
+import org.apache.jena.riot.lang.StreamRDFCounting;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.tdb2.TDBException;
+import org.apache.jena.tdb2.loader.DataLoader;
+import org.apache.jena.tdb2.loader.base.*;
+import org.apache.jena.tdb2.solver.stats.ReorderMaintained;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.StoragePrefixesTDB;
+import org.apache.jena.tdb2.store.tupletable.TupleIndex;
+import org.apache.jena.tdb2.sys.TDBInternal;
+
+/**
+ * A {@link DataLoader} that builds all the indexes by sorting.
+ * <p>
+ * The data phase is the same as {@link LoaderPlans#loaderPlanParallel}:
+ * {@code parser -> to NodeIds/Tuples} on separate threads.
+ * The tuples go to an {@link IndexerSorted} for triples and one for quads, with a thread
+ * per index which sorts the tuples into runs in the order of its index, writing runs to disk.
+ * When the data has been read, the threads merge the runs, with the existing contents of
+ * the index, and write each index bottom-up. This is all done in parallel.
+ * <p>
+ * Temporary files for the runs are written in the database directory, and removed when finished.
+ */
+public class LoaderSorted extends LoaderBase implements DataLoader {
+
+    private final DatasetGraphTDB dsgtdb;
+    private final StreamRDF stream;
+    private final StreamRDFCounting dataInput;
+    private final List<BulkStartFinish> dataProcess = new ArrayList<>();
+    private boolean exclusive = false;
+    private boolean dataFinished = false;
+
+    public LoaderSorted(DatasetGraph dsg, MonitorOutput output) {
+        this(dsg, null, output);
+    }
+
+    public LoaderSorted(DatasetGraph dsg, Node graphName, MonitorOutput output) {
+        super(dsg, graphName, output);
+        dsgtdb = TDBInternal.getDatasetGraphTDB(dsg);
+        dataInput = executeData(dsgtdb, sortDirectory(dsgtdb), dataProcess, output);
+        stream = LoaderOps.toNamedGraph(dataInput, graphName);
+    }
+
+    private static Path sortDirectory(DatasetGraphTDB dsgtdb) {
+        Location location = dsgtdb.getLocation();
+        if ( location.isMem() )
+            return null;
+        return Paths.get(location.getDirectoryPath());
+    }
+
+    private static StreamRDFCounting executeData(DatasetGraphTDB dsgtdb, Path sortDir, List<BulkStartFinish> dataProcess, MonitorOutput output) {
+        StoragePrefixesTDB dps = (StoragePrefixesTDB)dsgtdb.getStoragePrefixes();
+        PrefixHandlerBulk prefixHandler = new PrefixHandlerBulk(dps, output);
+        dataProcess.add(prefixHandler);
+
+        TupleIndex[] idx3 = dsgtdb.getTripleTable().getNodeTupleTable().getTupleTable().getIndexes();
+        IndexerSorted indexer3 = new IndexerSorted(output, sortDir, idx3);
+        TupleIndex[] idx4 = dsgtdb.getQuadTable().getNodeTupleTable().getTupleTable().getIndexes();
+        IndexerSorted indexer4 = new IndexerSorted(output, sortDir, idx4);
+        dataProcess.add(indexer3);
+        dataProcess.add(indexer4);
+        Destination<Tuple<NodeId>> functionIndexer3 = indexer3.index();
+        Destination<Tuple<NodeId>> functionIndexer4 = indexer4.index();
+
+        DataToTuples dtt = new DataToTuples(dsgtdb, functionIndexer3, functionIndexer4, output);
+        DataBatcher dataBatcher = new DataBatcher(dtt.data(), prefixHandler.handler(), output);
+        dataProcess.add(dtt);
+        dataProcess.add(dataBatcher);
+        return dataBatcher;
+    }
+
+    @Override
+    public StreamRDF stream() {
+        return stream;
+    }
+
+    @Override
+    protected void loadOne(String filename, ProgressMonitor monitor) {
+        // Large N-Triples and N-Quads files are parsed on several threads.
+        if ( ! ChunkedParser.loadOne(filename, dataInput, graphName, monitor) )
+            super.loadOne(filename, monitor);
+    }
+
+    @Override
+    public boolean bulkUseTransaction() {
+        // Manipulate the transactions directly by component.
+        return false;
+    }
+
+    @Override
+    public void startBulk() {
+        // Lock everyone else out while we multithread.
+        dsgtdb.getTxnSystem().getTxnMgr().startExclusiveMode();
+        exclusive = true;
+        super.startBulk();
+        BulkProcesses.start(dataProcess);
+    }
+
+    @Override
+    public void finishBulk() {
+        // Sorting and index building happens as the data pipeline finishes.
+        BulkProcesses.finish(dataProcess);
+        dataFinished = true;
+        for ( BulkStartFinish process : dataProcess ) {
+            if ( process instanceof IndexerSorted && ((IndexerSorted)process).hasFailed() ) {
+                TDBException ex = new TDBException("Sorted load failed: the indexes may be incomplete");
+                finishException(ex);
+                throw ex;
+            }
+        }
+        super.finishBulk();
+        exclusive = false;
+        dsgtdb.getTxnSystem().getTxnMgr().finishExclusiveMode();
+        // The indexes were written directly, not through the triple table.
+        ReorderMaintained.refresh(dsgtdb);
+    }
+
+    @Override
+    public void finishException(Exception ex) {
+        // May be called more than once.
+        if ( ! exclusive )
+            return;
+        exclusive = false;
+        try {
+            // Let the data pipeline threads finish with the indexes before others can use them.
+            if ( ! dataFinished ) {
+                dataFinished = true;
+                BulkProcesses.finish(dataProcess);
+            }
+            dsgtdb.getTxnSystem().getTxnMgr().finishExclusiveMode();
+        } catch (Exception ex2) {
+            ex.addSuppressed(ex2);
+        }
+    }
+
+    @Override
+    public long countTriples() {
+        return dataInput.countTriples();
+    }
+
+    @Override
+    public long countQuads() {
+        return dataInput.countQuads();
+    }
+
+    @Override
+    protected ProgressMonitor createProgressMonitor(MonitorOutput output) {
+        return ProgressMonitorOutput.create(output, "<unset>", LoaderMain.DataTickPoint, LoaderMain.DataSuperTick);
+    }
+}
@@ -21,7 +21,9 @@ package org.apache.jena.tdb2.params;
 import java.util.Objects;
 
 import org.apache.jena.dboe.base.block.FileMode;
+import org.apache.jena.dboe.base.recordbuffer.RecordPageFormat;
 import org.apache.jena.dboe.index.IndexParams;
+import org.apache.jena.dboe.transaction.txn.Durability;
 import org.apache.jena.tdb2.params.StoreParamsBuilder.Item;
 
 /** System parameters for a TDB database instance.
@@ -47,9 +49,16 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
     /*package*/ final Item<Integer>            blockSize;
     /*package*/ final Item<Integer>            blockReadCacheSize;
     /*package*/ final Item<Integer>            blockWriteCacheSize;
+    /*package*/ final Item<Integer>            blockReadCacheOffHeapMB;
+    /*package*/ final Item<Integer>            indexReadAhead;
     /*package*/ final Item<Integer>            Node2NodeIdCacheSize;
     /*package*/ final Item<Integer>            NodeId2NodeCacheSize;
     /*package*/ final Item<Integer>            NodeMissCacheSize;
+    /*package*/ final Item<Integer>            nodeMissFilterBits;
+    /*package*/ final Item<Integer>            nodeCacheMB;
+    /*package*/ final Item<Durability>         durability;
+    /*package*/ final Item<Integer>            syncIntervalMillis;
+    /*package*/ final Item<Boolean>            statsAuto;
 
     /* These are items affect database layout and
      * only can be applied when a database is created.
@@ -70,6 +79,10 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
     /*package*/ final Item<String>             primaryIndexPrefix;
     /*package*/ final Item<String[]>           prefixIndexes;
 
+    /*package*/ final Item<RecordPageFormat>   indexRecordFormat;
+    /*package*/ final Item<Integer>            nodeIdEncoding;
+    /*package*/ final Item<Boolean>            indexCounted;
+
     /** Build StoreParams, starting from system defaults.
      *
      * @return StoreParamsBuilder
@@ -84,22 +97,36 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
 
     /*package*/ StoreParams(Item<FileMode> fileMode, Item<Integer> blockSize,
                             Item<Integer> blockReadCacheSize, Item<Integer> blockWriteCacheSize,
+                            Item<Integer> blockReadCacheOffHeapMB, Item<Integer> indexReadAhead,
                             Item<Integer> node2NodeIdCacheSize, Item<Integer> nodeId2NodeCacheSize,
-                            Item<Integer> nodeMissCacheSize,
+                            Item<Integer> nodeMissCacheSize, Item<Integer> nodeMissFilterBits,
+                            Item<Integer> nodeCacheMB,
+                            Item<Durability> durability, Item<Integer> syncIntervalMillis,
+                            Item<Boolean> statsAuto,
 
                             Item<String> nodeTableBaseName,
                             Item<String> primaryIndexTriples, Item<String[]> tripleIndexes,
                             Item<String> primaryIndexQuads, Item<String[]> quadIndexes,
 
                             Item<String> prefixTableBasename,
-                            Item<String> primaryIndexPrefix, Item<String[]> prefixIndexes) {
+                            Item<String> primaryIndexPrefix, Item<String[]> prefixIndexes,
+
+                            Item<RecordPageFormat> indexRecordFormat, Item<Integer> nodeIdEncoding,
+                            Item<Boolean> indexCounted) {
         this.fileMode               = fileMode;
         this.blockSize              = blockSize;
         this.blockReadCacheSize     = blockReadCacheSize;
         this.blockWriteCacheSize    = blockWriteCacheSize;
+        this.blockReadCacheOffHeapMB = blockReadCacheOffHeapMB;
+        this.indexReadAhead         = indexReadAhead;
         this.Node2NodeIdCacheSize   = node2NodeIdCacheSize;
         this.NodeId2NodeCacheSize   = nodeId2NodeCacheSize;
         this.NodeMissCacheSize      = nodeMissCacheSize;
+        this.nodeMissFilterBits     = nodeMissFilterBits;
+        this.nodeCacheMB            = nodeCacheMB;
+        this.durability             = durability;
+        this.syncIntervalMillis     = syncIntervalMillis;
+        this.statsAuto              = statsAuto;
 
         this.nodeTableBaseName      = nodeTableBaseName;
 
@@ -111,6 +138,10 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
         this.prefixIndexes          = prefixIndexes;
 
         this.prefixTableBaseName         = prefixTableBasename;
+
+        this.indexRecordFormat      = indexRecordFormat;
+        this.nodeIdEncoding         = nodeIdEncoding;
+        this.indexCounted           = indexCounted;
     }
 
     /** The system default settings. This is the normal set to use.
@@ -168,6 +199,30 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
         return blockWriteCacheSize.isSet;
     }
 
+    /**
+     * Off-heap block read cache, in megabytes. This is one budget for the store,
+     * shared by all the index files, and allocated only as blocks are cached.
+     */
+    @Override
+    public Integer getBlockReadCacheOffHeapMB() {
+        return blockReadCacheOffHeapMB.value;
+    }
+
+    @Override
+    public boolean isSetBlockReadCacheOffHeapMB() {
+        return blockReadCacheOffHeapMB.isSet;
+    }
+
+    @Override
+    public Integer getIndexReadAhead() {
+        return indexReadAhead.value;
+    }
+
+    @Override
+    public boolean isSetIndexReadAhead() {
+        return indexReadAhead.isSet;
+    }
+
     @Override
     public Integer getNode2NodeIdCacheSize() {
         return Node2NodeIdCacheSize.value;
@@ -198,6 +253,56 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
         return NodeMissCacheSize.isSet;
     }
 
+    @Override
+    public Integer getNodeMissFilterBits() {
+        return nodeMissFilterBits.value;
+    }
+
+    @Override
+    public boolean isSetNodeMissFilterBits() {
+        return nodeMissFilterBits.isSet;
+    }
+
+    @Override
+    public Integer getNodeCacheMB() {
+        return nodeCacheMB.value;
+    }
+
+    @Override
+    public boolean isSetNodeCacheMB() {
+        return nodeCacheMB.isSet;
+    }
+
+    @Override
+    public Durability getDurability() {
+        return durability.value;
+    }
+
+    @Override
+    public boolean isSetDurability() {
+        return durability.isSet;
+    }
+
+    @Override
+    public Integer getSyncIntervalMillis() {
+        return syncIntervalMillis.value;
+    }
+
+    @Override
+    public boolean isSetSyncIntervalMillis() {
+        return syncIntervalMillis.isSet;
+    }
+
+    @Override
+    public Boolean getStatsAuto() {
+        return statsAuto.value;
+    }
+
+    @Override
+    public boolean isSetStatsAuto() {
+        return statsAuto.isSet;
+    }
+
     public String getNodeTableBaseName() {
         return nodeTableBaseName.value;
     }
@@ -232,6 +337,33 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
 
 
 
+    /** The layout of the records in the leaf blocks of the triple, quad and prefix indexes. */
+    public RecordPageFormat getIndexRecordFormat() {
+        return indexRecordFormat.value;
+    }
+
+    public boolean isSetIndexRecordFormat() {
+        return indexRecordFormat.isSet;
+    }
+
+    /** The version of the encoding of values inline in NodeIds. */
+    public Integer getNodeIdEncoding() {
+        return nodeIdEncoding.value;
+    }
+
+    public boolean isSetNodeIdEncoding() {
+        return nodeIdEncoding.isSet;
+    }
+
+    /** Whether the B+Tree nodes of the triple, quad and prefix indexes keep counts of the records below them. */
+    public Boolean getIndexCounted() {
+        return indexCounted.value;
+    }
+
+    public boolean isSetIndexCounted() {
+        return indexCounted.isSet;
+    }
+
     public String getPrimaryIndexPrefix() {
         return primaryIndexPrefix.value;
     }
@@ -247,9 +379,16 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
         fmt(buff, "blockSize", getBlockSize(), blockSize.isSet);
         fmt(buff, "readCacheSize", getBlockReadCacheSize(), blockReadCacheSize.isSet);
         fmt(buff, "writeCacheSize", getBlockWriteCacheSize(), blockWriteCacheSize.isSet);
+        fmt(buff, "readCacheOffHeapMB", getBlockReadCacheOffHeapMB(), blockReadCacheOffHeapMB.isSet);
+        fmt(buff, "indexReadAhead", getIndexReadAhead(), indexReadAhead.isSet);
         fmt(buff, "Node2NodeIdCacheSize", getNode2NodeIdCacheSize(), Node2NodeIdCacheSize.isSet);
         fmt(buff, "NodeId2NodeCacheSize", getNodeId2NodeCacheSize(), NodeId2NodeCacheSize.isSet);
         fmt(buff, "NodeMissCacheSize", getNodeMissCacheSize(), NodeMissCacheSize.isSet);
+        fmt(buff, "nodeMissFilterBits", getNodeMissFilterBits(), nodeMissFilterBits.isSet);
+        fmt(buff, "nodeCacheMB", getNodeCacheMB(), nodeCacheMB.isSet);
+        fmt(buff, "durability", getDurability().name(), durability.isSet);
+        fmt(buff, "syncIntervalMillis", getSyncIntervalMillis(), syncIntervalMillis.isSet);
+        fmt(buff, "statsAuto", getStatsAuto().toString(), statsAuto.isSet);
 
         fmt(buff, "nodeTableBaseName", getNodeTableBaseName(), nodeTableBaseName.isSet);
         fmt(buff, "primaryIndexTriples", getPrimaryIndexTriples(), primaryIndexTriples.isSet);
@@ -261,6 +400,10 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
         fmt(buff, "primaryIndexPrefix", getPrimaryIndexPrefix(), primaryIndexPrefix.isSet);
         fmt(buff, "prefixIndexes", getPrefixIndexes(), prefixIndexes.isSet);
 
+        fmt(buff, "indexRecordFormat", getIndexRecordFormat().toString(), indexRecordFormat.isSet);
+        fmt(buff, "nodeIdEncoding", getNodeIdEncoding(), nodeIdEncoding.isSet);
+        fmt(buff, "indexCounted", getIndexCounted().toString(), indexCounted.isSet);
+
         return buff.toString();
     }
 
@@ -301,12 +444,26 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
             return false;
         if ( !sameValues(params1.blockWriteCacheSize, params2.blockWriteCacheSize) )
             return false;
+        if ( !sameValues(params1.blockReadCacheOffHeapMB, params2.blockReadCacheOffHeapMB) )
+            return false;
+        if ( !sameValues(params1.indexReadAhead, params2.indexReadAhead) )
+            return false;
         if ( !sameValues(params1.Node2NodeIdCacheSize, params2.Node2NodeIdCacheSize) )
             return false;
         if ( !sameValues(params1.NodeId2NodeCacheSize, params2.NodeId2NodeCacheSize) )
             return false;
         if ( !sameValues(params1.NodeMissCacheSize, params2.NodeMissCacheSize) )
             return false;
+        if ( !sameValues(params1.nodeMissFilterBits, params2.nodeMissFilterBits) )
+            return false;
+        if ( !sameValues(params1.nodeCacheMB, params2.nodeCacheMB) )
+            return false;
+        if ( !sameValues(params1.durability, params2.durability) )
+            return false;
+        if ( !sameValues(params1.syncIntervalMillis, params2.syncIntervalMillis) )
+            return false;
+        if ( !sameValues(params1.statsAuto, params2.statsAuto) )
+            return false;
         if ( !sameValues(params1.nodeTableBaseName, params2.nodeTableBaseName) )
             return false;
         if ( !sameValues(params1.primaryIndexTriples, params2.primaryIndexTriples) )
@@ -323,6 +480,12 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
             return false;
         if ( !sameValues(params1.prefixIndexes, params2.prefixIndexes) )
             return false;
+        if ( !sameValues(params1.indexRecordFormat, params2.indexRecordFormat) )
+            return false;
+        if ( !sameValues(params1.nodeIdEncoding, params2.nodeIdEncoding) )
+            return false;
+        if ( !sameValues(params1.indexCounted, params2.indexCounted) )
+            return false;
         return true;
     }
 
@@ -340,7 +503,17 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
         result = prime * result + ((blockReadCacheSize == null) ? 0 : blockReadCacheSize.hashCode());
         result = prime * result + ((blockSize == null) ? 0 : blockSize.hashCode());
         result = prime * result + ((blockWriteCacheSize == null) ? 0 : blockWriteCacheSize.hashCode());
+        result = prime * result + ((blockReadCacheOffHeapMB == null) ? 0 : blockReadCacheOffHeapMB.hashCode());
+        result = prime * result + ((indexReadAhead == null) ? 0 : indexReadAhead.hashCode());
+        result = prime * result + ((nodeMissFilterBits == null) ? 0 : nodeMissFilterBits.hashCode());
+        result = prime * result + ((nodeCacheMB == null) ? 0 : nodeCacheMB.hashCode());
+        result = prime * result + ((durability == null) ? 0 : durability.hashCode());
+        result = prime * result + ((syncIntervalMillis == null) ? 0 : syncIntervalMillis.hashCode());
+        result = prime * result + ((statsAuto == null) ? 0 : statsAuto.hashCode());
         result = prime * result + ((fileMode == null) ? 0 : fileMode.hashCode());
+        result = prime * result + ((indexRecordFormat == null) ? 0 : indexRecordFormat.hashCode());
+        result = prime * result + ((nodeIdEncoding == null) ? 0 : nodeIdEncoding.hashCode());
+        result = prime * result + ((indexCounted == null) ? 0 : indexCounted.hashCode());
         result = prime * result + ((nodeTableBaseName == null) ? 0 : nodeTableBaseName.hashCode());
         result = prime * result + ((prefixTableBaseName == null) ? 0 : prefixTableBaseName.hashCode());
         result = prime * result + ((prefixIndexes == null) ? 0 : prefixIndexes.hashCode());
@@ -391,11 +564,61 @@ public class StoreParams implements IndexParams, StoreParamsDynamic
                 return false;
         } else if ( !blockWriteCacheSize.equals(other.blockWriteCacheSize) )
             return false;
+        if ( blockReadCacheOffHeapMB == null ) {
+            if ( other.blockReadCacheOffHeapMB != null )
+                return false;
+        } else if ( !blockReadCacheOffHeapMB.equals(other.blockReadCacheOffHeapMB) )
+            return false;
+        if ( indexReadAhead == null ) {
+            if ( other.indexReadAhead != null )
+                return false;
+        } else if ( !indexReadAhead.equals(other.indexReadAhead) )
+            return false;
+        if ( nodeMissFilterBits == null ) {
+            if ( other.nodeMissFilterBits != null )
+                return false;
+        } else if ( !nodeMissFilterBits.equals(other.nodeMissFilterBits) )
+            return false;
+        if ( nodeCacheMB == null ) {
+            if ( other.nodeCacheMB != null )
+                return false;
+        } else if ( !nodeCacheMB.equals(other.nodeCacheMB) )
+            return false;
+        if ( durability == null ) {
+            if ( other.durability != null )
+                return false;
+        } else if ( !durability.equals(other.durability) )
+            return false;
+        if ( syncIntervalMillis == null ) {
+            if ( other.syncIntervalMillis != null )
+                return false;
+        } else if ( !syncIntervalMillis.equals(other.syncIntervalMillis) )
+            return false;
+        if ( statsAuto == null ) {
+            if ( other.statsAuto != null )
+                return false;
+        } else if ( !statsAuto.equals(other.statsAuto) )
+            return false;
         if ( fileMode == null ) {
             if ( other.fileMode != null )
                 return false;
         } else if ( !fileMode.equals(other.fileMode) )
             return false;
+        if ( indexRecordFormat == null ) {
+            if ( other.indexRecordFormat != null )
+                return false;
+        } else if ( !indexRecordFormat.equals(other.indexRecordFormat) )
+            return false;
+        if ( nodeIdEncoding == null ) {
+            if ( other.nodeIdEncoding != null )
+                return false;
+        } else if ( !nodeIdEncoding.equals(other.nodeIdEncoding) )
+            return false;
+        if ( indexCounted == null ) {
+            if ( other.indexCounted != null )
+                return false;
+        } else if ( !indexCounted.equals(other.indexCounted) )
+            return false;
         if ( nodeTableBaseName == null ) {
             if ( other.nodeTableBaseName != null )
                 return false;
@@ -19,6 +19,8 @@
 package org.apache.jena.tdb2.params;
 
 import org.apache.jena.dboe.base.block.FileMode;
+import org.apache.jena.dboe.base.recordbuffer.RecordPageFormat;
+import org.apache.jena.dboe.transaction.txn.Durability;
 
 public class StoreParamsBuilder {
     // Immutable.
@@ -68,12 +70,25 @@ public class StoreParamsBuilder {
 
     private Item<Integer>            blockWriteCacheSize   = new Item<>(StoreParamsConst.blockWriteCacheSize, false);
 
+    private Item<Integer>            blockReadCacheOffHeapMB = new Item<>(StoreParamsConst.blockReadCacheOffHeapMB, false);
+
+    private Item<Integer>            indexReadAhead        = new Item<>(StoreParamsConst.indexReadAhead, false);
+
     private Item<Integer>            Node2NodeIdCacheSize  = new Item<>(StoreParamsConst.Node2NodeIdCacheSize, false);
 
     private Item<Integer>            NodeId2NodeCacheSize  = new Item<>(StoreParamsConst.NodeId2NodeCacheSize, false);
 
     private Item<Integer>            NodeMissCacheSize     = new Item<>(StoreParamsConst.NodeMissCacheSize, false);
 
+    private Item<Integer>            nodeMissFilterBits    = new Item<>(StoreParamsConst.nodeMissFilterBits, false);
+
+    private Item<Integer>            nodeCacheMB           = new Item<>(StoreParamsConst.nodeCacheMB, false);
+
+    private Item<Durability>         durability            = new Item<>(StoreParamsConst.durability, false);
+
+    private Item<Integer>            syncIntervalMillis    = new Item<>(StoreParamsConst.syncIntervalMillis, false);
+    private Item<Boolean>            statsAuto             = new Item<>(StoreParamsConst.statsAuto, false);
+
     /** Database layout - ignored after a database is created */
 
     private Item<Integer>            blockSize             = new Item<>(StoreParamsConst.blockSize, false);
@@ -94,6 +109,11 @@ public class StoreParamsBuilder {
 
     private Item<String[]>           prefixIndexes         = new Item<>(StoreParamsConst.prefixIndexes, false);
 
+    private Item<RecordPageFormat>   indexRecordFormat     = new Item<>(StoreParamsConst.indexRecordFormat, false);
+
+    private Item<Integer>            nodeIdEncoding        = new Item<>(StoreParamsConst.nodeIdEncoding, false);
+    private Item<Boolean>            indexCounted          = new Item<>(StoreParamsConst.indexCounted, false);
+
     public static StoreParamsBuilder create() {
         return new StoreParamsBuilder();
     }
@@ -121,6 +141,12 @@ public class StoreParamsBuilder {
         if ( additionalParams.isSetBlockWriteCacheSize() )
             b.blockWriteCacheSize(additionalParams.getBlockWriteCacheSize());
 
+        if ( additionalParams.isSetBlockReadCacheOffHeapMB() )
+            b.blockReadCacheOffHeapMB(additionalParams.getBlockReadCacheOffHeapMB());
+
+        if ( additionalParams.isSetIndexReadAhead() )
+            b.indexReadAhead(additionalParams.getIndexReadAhead());
+
         if ( additionalParams.isSetNode2NodeIdCacheSize() )
             b.node2NodeIdCacheSize(additionalParams.getNode2NodeIdCacheSize());
 
@@ -130,6 +156,21 @@ public class StoreParamsBuilder {
         if ( additionalParams.isSetNodeMissCacheSize() )
             b.nodeMissCacheSize(additionalParams.getNodeMissCacheSize());
 
+        if ( additionalParams.isSetNodeMissFilterBits() )
+            b.nodeMissFilterBits(additionalParams.getNodeMissFilterBits());
+
+        if ( additionalParams.isSetNodeCacheMB() )
+            b.nodeCacheMB(additionalParams.getNodeCacheMB());
+
+        if ( additionalParams.isSetDurability() )
+            b.durability(additionalParams.getDurability());
+
+        if ( additionalParams.isSetSyncIntervalMillis() )
+            b.syncIntervalMillis(additionalParams.getSyncIntervalMillis());
+
+        if ( additionalParams.isSetStatsAuto() )
+            b.statsAuto(additionalParams.getStatsAuto());
+
         return b.build();
     }
 
@@ -142,9 +183,16 @@ public class StoreParamsBuilder {
         this.blockSize              = other.blockSize;
         this.blockReadCacheSize     = other.blockReadCacheSize;
         this.blockWriteCacheSize    = other.blockWriteCacheSize;
+        this.blockReadCacheOffHeapMB = other.blockReadCacheOffHeapMB;
+        this.indexReadAhead         = other.indexReadAhead;
         this.Node2NodeIdCacheSize   = other.Node2NodeIdCacheSize;
         this.NodeId2NodeCacheSize   = other.NodeId2NodeCacheSize;
         this.NodeMissCacheSize      = other.NodeMissCacheSize;
+        this.nodeMissFilterBits     = other.nodeMissFilterBits;
+        this.nodeCacheMB            = other.nodeCacheMB;
+        this.durability             = other.durability;
+        this.syncIntervalMillis     = other.syncIntervalMillis;
+        this.statsAuto              = other.statsAuto;
 
         this.nodeTableBaseName      = other.nodeTableBaseName;
 
@@ -157,17 +205,27 @@ public class StoreParamsBuilder {
         this.prefixTableBaseName    = other.prefixTableBaseName;
         this.primaryIndexPrefix     = other.primaryIndexPrefix;
         this.prefixIndexes          = other.prefixIndexes;
+
+        this.indexRecordFormat      = other.indexRecordFormat;
+        this.nodeIdEncoding         = other.nodeIdEncoding;
+        this.indexCounted           = other.indexCounted;
     }
 
     public StoreParams build() {
         return new StoreParams(
                  fileMode, blockSize, blockReadCacheSize, blockWriteCacheSize,
-                 Node2NodeIdCacheSize, NodeId2NodeCacheSize, NodeMissCacheSize,
+                 blockReadCacheOffHeapMB, indexReadAhead,
+                 Node2NodeIdCacheSize, NodeId2NodeCacheSize, NodeMissCacheSize, nodeMissFilterBits,
+                 nodeCacheMB,
+                 durability, syncIntervalMillis,
+                 statsAuto,
                  nodeTableBaseName,
                  primaryIndexTriples, tripleIndexes,
                  primaryIndexQuads, quadIndexes,
                  prefixTableBaseName, primaryIndexPrefix,
-                 prefixIndexes);
+                 prefixIndexes,
+                 indexRecordFormat, nodeIdEncoding,
+                 indexCounted);
     }
 
     public FileMode getFileMode() {
@@ -206,6 +264,33 @@ public class StoreParamsBuilder {
        return this;
    }
 
+    public int getBlockReadCacheOffHeapMB() {
+        return blockReadCacheOffHeapMB.value;
+    }
+
+   /**
+    * Use an off-heap, scan resistant block read cache in place of the slot-sized read cache.
+    * This is a budget, in megabytes, for the whole store: the index files share it, and memory
+    * is only allocated as blocks are cached. Only for "direct" file mode.
+    */
+   public StoreParamsBuilder blockReadCacheOffHeapMB(int blockReadCacheOffHeapMB) {
+       this.blockReadCacheOffHeapMB = new Item<>(blockReadCacheOffHeapMB, true);
+       return this;
+   }
+
+    public int getIndexReadAhead() {
+        return indexReadAhead.value;
+    }
+
+   /**
+    * Number of records blocks to read ahead of long scans of the tuple indexes.
+    * 0 means no read-ahead.
+    */
+   public StoreParamsBuilder indexReadAhead(int indexReadAhead) {
+       this.indexReadAhead = new Item<>(indexReadAhead, true);
+       return this;
+   }
+
     public int getNode2NodeIdCacheSize() {
         return Node2NodeIdCacheSize.value;
     }
@@ -233,6 +318,74 @@ public class StoreParamsBuilder {
        return this;
    }
 
+    public int getNodeMissFilterBits() {
+        return nodeMissFilterBits.value;
+    }
+
+   /**
+    * Bits per node of a Bloom filter of the node table, used to answer lookups
+    * of nodes that are not in the database without going to the index.
+    * 0 means no filter.
+    */
+   public StoreParamsBuilder nodeMissFilterBits(int nodeMissFilterBits) {
+       this.nodeMissFilterBits = new Item<>(nodeMissFilterBits, true);
+       return this;
+   }
+
+    public int getNodeCacheMB() {
+        return nodeCacheMB.value;
+    }
+
+   /**
+    * Memory budget, in megabytes, for the Node/NodeId caches, shared between the
+    * two directions. The caches are then sized by the estimated size of the entries
+    * and admit new entries by frequency of use.
+    * 0 means use the entry count cache sizes.
+    */
+   public StoreParamsBuilder nodeCacheMB(int nodeCacheMB) {
+       this.nodeCacheMB = new Item<>(nodeCacheMB, true);
+       return this;
+   }
+
+    public Durability getDurability() {
+        return durability.value;
+    }
+
+   /**
+    * When the commit of a write transaction is on disk.
+    * The default, {@link Durability#SYNC}, forces each commit to disk before it returns.
+    */
+   public StoreParamsBuilder durability(Durability durability) {
+       this.durability = new Item<>(durability, true);
+       return this;
+   }
+
+    public int getSyncIntervalMillis() {
+        return syncIntervalMillis.value;
+    }
+
+   /**
+    * Milliseconds between forcing commits to disk for {@link Durability#PERIODIC}.
+    */
+   public StoreParamsBuilder syncIntervalMillis(int syncIntervalMillis) {
+       this.syncIntervalMillis = new Item<>(syncIntervalMillis, true);
+       return this;
+   }
+
+    public boolean getStatsAuto() {
+        return statsAuto.value;
+    }
+
+   /**
+    * Keep the predicate and type counts used to reorder basic graph patterns up to date
+    * as transactions commit, in place of a {@code stats.opt} file written by
+    * {@code tdb2.tdbstats}.
+    */
+   public StoreParamsBuilder statsAuto(boolean statsAuto) {
+       this.statsAuto = new Item<>(statsAuto, true);
+       return this;
+   }
+
    public String getNodeTableBaseName() {
        return nodeTableBaseName.value;
    }
@@ -305,5 +458,49 @@ public class StoreParamsBuilder {
        this.prefixIndexes = new Item<>(prefixIndexes, true);
        return this;
    }
+
+    public RecordPageFormat getIndexRecordFormat() {
+        return indexRecordFormat.value;
+    }
+
+   /**
+    * Layout of the records in the leaf blocks of the triple, quad and prefix indexes.
+    * {@link RecordPageFormat#prefix} stores the sorted NodeId tuples compressed
+    * against their neighbours so more fit in a block.
+    */
+   public StoreParamsBuilder indexRecordFormat(RecordPageFormat indexRecordFormat) {
+       this.indexRecordFormat = new Item<>(indexRecordFormat, true);
+       return this;
+   }
+
+    public int getNodeIdEncoding() {
+        return nodeIdEncoding.value;
+    }
+
+   /**
+    * Version of the encoding of values inline in NodeIds.
+    * Version 2 also inlines short strings, short language tagged strings, more
+    * xsd:dateTime values and durations. A database created with version 2 can not be
+    * read by versions of TDB2 that only have version 1.
+    * @see org.apache.jena.tdb2.store.NodeIdInline
+    */
+   public StoreParamsBuilder nodeIdEncoding(int nodeIdEncoding) {
+       this.nodeIdEncoding = new Item<>(nodeIdEncoding, true);
+       return this;
+   }
+
+    public boolean getIndexCounted() {
+        return indexCounted.value;
+    }
+
+   /**
+    * Keep counts of the records below each pointer in the B+Tree nodes of the triple,
+    * quad and prefix indexes. Counting the matches of a pattern then reads only the
+    * blocks at the ends of the range; there are fewer keys in each node.
+    */
+   public StoreParamsBuilder indexCounted(boolean indexCounted) {
+       this.indexCounted = new Item<>(indexCounted, true);
+       return this;
+   }
 }
 
@@ -21,6 +21,7 @@ package org.apache.jena.tdb2.params;
 import static org.apache.jena.tdb2.params.StoreParamsConst.*;
 
 import java.io.*;
+import java.util.Locale;
 
 import org.apache.jena.atlas.io.IO;
 import org.apache.jena.atlas.json.*;
@@ -28,7 +29,9 @@ import org.apache.jena.atlas.lib.Lib;
 import org.apache.jena.atlas.logging.FmtLog;
 import org.apache.jena.dboe.base.block.FileMode;
 import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.base.recordbuffer.RecordPageFormat;
 import org.apache.jena.dboe.sys.Names;
+import org.apache.jena.dboe.transaction.txn.Durability;
 import org.apache.jena.tdb2.TDBException;
 
 /** Encode and decode {@link StoreParams} */
@@ -90,9 +93,16 @@ public class StoreParamsCodec {
         encode(builder, key(fBlockSize),                params.getBlockSize());
         encode(builder, key(fBlockReadCacheSize),       params.getBlockReadCacheSize());
         encode(builder, key(fBlockWriteCacheSize),      params.getBlockWriteCacheSize());
+        encode(builder, key(fBlockReadCacheOffHeapMB),  params.getBlockReadCacheOffHeapMB());
+        encode(builder, key(fIndexReadAhead),           params.getIndexReadAhead());
         encode(builder, key(fNode2NodeIdCacheSize),     params.getNode2NodeIdCacheSize());
         encode(builder, key(fNodeId2NodeCacheSize),     params.getNodeId2NodeCacheSize());
         encode(builder, key(fNodeMissCacheSize),        params.getNodeMissCacheSize());
+        encode(builder, key(fNodeMissFilterBits),       params.getNodeMissFilterBits());
+        encode(builder, key(fNodeCacheMB),              params.getNodeCacheMB());
+        encode(builder, key(fDurability),               params.getDurability().name().toLowerCase(Locale.ROOT));
+        encode(builder, key(fSyncIntervalMillis),       params.getSyncIntervalMillis());
+        encode(builder, key(fStatsAuto),                params.getStatsAuto());
         encode(builder, key(fNodeTableBaseName),        params.getNodeTableBaseName());
         encode(builder, key(fPrimaryIndexTriples),      params.getPrimaryIndexTriples());
         encode(builder, key(fTripleIndexes),            params.getTripleIndexes());
@@ -101,6 +111,9 @@ public class StoreParamsCodec {
         encode(builder, key(fPrefixTableBaseName),      params.getPrefixTableBaseName());
         encode(builder, key(fPrimaryIndexPrefix),       params.getPrimaryIndexPrefix());
         encode(builder, key(fPrefixIndexes),            params.getPrefixIndexes());
+        encode(builder, key(fIndexRecordFormat),        params.getIndexRecordFormat().name());
+        encode(builder, key(fNodeIdEncoding),           params.getNodeIdEncoding());
+        encode(builder, key(fIndexCounted),             params.getIndexCounted());
 
         builder.finishObject("StoreParams");
         return (JsonObject)builder.build();
@@ -130,9 +143,16 @@ public class StoreParamsCodec {
                 case fBlockSize:               builder.blockSize(getInt(json, key));                       break ;
                 case fBlockReadCacheSize:      builder.blockReadCacheSize(getInt(json, key));              break ;
                 case fBlockWriteCacheSize:     builder.blockWriteCacheSize(getInt(json, key));             break ;
+                case fBlockReadCacheOffHeapMB: builder.blockReadCacheOffHeapMB(getInt(json, key));         break ;
+                case fIndexReadAhead:          builder.indexReadAhead(getInt(json, key));                  break ;
                 case fNode2NodeIdCacheSize:    builder.node2NodeIdCacheSize(getInt(json, key));            break ;
                 case fNodeId2NodeCacheSize:    builder.nodeId2NodeCacheSize(getInt(json, key));            break ;
                 case fNodeMissCacheSize:       builder.nodeMissCacheSize(getInt(json, key));               break ;
+                case fNodeMissFilterBits:      builder.nodeMissFilterBits(getInt(json, key));              break ;
+                case fNodeCacheMB:             builder.nodeCacheMB(getInt(json, key));                     break ;
+                case fDurability:              builder.durability(decodeDurability(getString(json, key))); break ;
+                case fSyncIntervalMillis:      builder.syncIntervalMillis(getInt(json, key));              break ;
+                case fStatsAuto:               builder.statsAuto(getBoolean(json, key));                   break ;
 
                 case fNodeTableBaseName:       builder.nodeTableBaseName(getString(json, key));            break ;
                 case fPrimaryIndexTriples:     builder.primaryIndexTriples(getString(json, key));          break ;
@@ -144,6 +164,10 @@ public class StoreParamsCodec {
                 case fPrimaryIndexPrefix:      builder.primaryIndexPrefix(getString(json, key));           break ;
                 case fPrefixIndexes:           builder.prefixIndexes(getStringArray(json, key));           break ;
 
+                case fIndexRecordFormat:       builder.indexRecordFormat(RecordPageFormat.valueOf(getString(json, key))); break ;
+                case fNodeIdEncoding:          builder.nodeIdEncoding(getInt(json, key));                  break ;
+                case fIndexCounted:            builder.indexCounted(getBoolean(json, key));                break ;
+
                 default:
                     throw new TDBException("StoreParams key no recognized: "+key);
             }
@@ -167,6 +191,13 @@ public class StoreParamsCodec {
         return x;
     }
 
+    private static Boolean getBoolean(JsonObject json, String key) {
+        if ( ! json.hasKey(key) )
+            throw new TDBException("StoreParamsCodec.getBoolean: no such key: "+key);
+        Boolean x = json.get(key).getAsBoolean().value();
+        return x;
+    }
+
     private static String[] getStringArray(JsonObject json, String key) {
         if ( ! json.hasKey(key) )
             throw new TDBException("StoreParamsCodec.getStringArray: no such key: "+key);
@@ -178,6 +209,14 @@ public class StoreParamsCodec {
         return x;
     }
 
+    private static Durability decodeDurability(String str) {
+        try {
+            return Durability.valueOf(str.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new TDBException("StoreParamsCodec: not a durability: "+str);
+        }
+    }
+
     // Encode helper.
     private static void encode(JsonBuilder builder, String name, Object value) {
         if ( value instanceof Number ) {
@@ -189,6 +228,10 @@ public class StoreParamsCodec {
             builder.key(name).value(value.toString());
             return;
         }
+        if ( value instanceof Boolean ) {
+            builder.key(name).value(((Boolean)value).booleanValue());
+            return;
+        }
         if ( value instanceof String[] ) {
             String[] x = (String[])value;
             builder.key(name);
@@ -19,7 +19,9 @@
 package org.apache.jena.tdb2.params;
 
 import org.apache.jena.dboe.base.block.FileMode;
+import org.apache.jena.dboe.base.recordbuffer.RecordPageFormat;
 import org.apache.jena.dboe.sys.Names;
+import org.apache.jena.dboe.transaction.txn.Durability;
 import org.apache.jena.tdb2.sys.SystemTDB;
 
 public class StoreParamsConst {
@@ -38,6 +40,12 @@ public class StoreParamsConst {
     public static final String   fBlockWriteCacheSize  = "block_write_cache_size";
     public static final int      blockWriteCacheSize   = SystemTDB.BlockWriteCacheSize;
 
+    public static final String   fBlockReadCacheOffHeapMB = "block_read_cache_offheap_mb";
+    public static final int      blockReadCacheOffHeapMB  = 0;
+
+    public static final String   fIndexReadAhead       = "index_read_ahead";
+    public static final int      indexReadAhead        = 0;
+
     public static final String   fNode2NodeIdCacheSize = "node2nodeid_cache_size";
     public static final int      Node2NodeIdCacheSize  = SystemTDB.Node2NodeIdCacheSize;
 
@@ -47,6 +55,21 @@ public class StoreParamsConst {
     public static final String   fNodeMissCacheSize    = "node_miss_cache_size";
     public static final int      NodeMissCacheSize     = SystemTDB.NodeMissCacheSize;
 
+    public static final String   fNodeMissFilterBits   = "node_miss_filter_bits";
+    public static final int      nodeMissFilterBits    = 0;
+
+    public static final String   fNodeCacheMB          = "node_cache_mb";
+    public static final int      nodeCacheMB           = 0;
+
+    public static final String   fDurability           = "durability";
+    public static final Durability durability          = Durability.SYNC;
+
+    public static final String   fSyncIntervalMillis   = "sync_interval_ms";
+    public static final int      syncIntervalMillis    = 1000;
+
+    public static final String   fStatsAuto            = "stats_auto";
+    public static final boolean  statsAuto             = false;
+
     /** Database layout - ignored after a database is created */
     public static final String   fBlockSize            = "block_size";
     public static final int      blockSize             = SystemTDB.BlockSize;
@@ -75,6 +98,16 @@ public class StoreParamsConst {
     public static final String   fPrefixIndexes        = "prefix_indexes";
     public static final String[] prefixIndexes         = Names.prefixIndexes;
 
+    public static final String   fIndexRecordFormat    = "index_record_format";
+    public static final RecordPageFormat indexRecordFormat = RecordPageFormat.fixed;
+
+    /** See {@link org.apache.jena.tdb2.store.NodeIdInline#Version1} */
+    public static final String   fNodeIdEncoding       = "node_id_encoding";
+    public static final int      nodeIdEncoding        = 1;
+
+    public static final String   fIndexCounted         = "index_counted";
+    public static final boolean  indexCounted          = false;
+
     // Must be after the constants above to get initialization order right
     // because StoreParamsBuilder uses these constants.
 
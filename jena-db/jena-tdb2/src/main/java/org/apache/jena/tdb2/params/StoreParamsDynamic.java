@@ -19,6 +19,7 @@
 package org.apache.jena.tdb2.params;
 
 import org.apache.jena.dboe.base.block.FileMode;
+import org.apache.jena.dboe.transaction.txn.Durability;
 
 /** Store parameters that can be adjusted after a store has been created,
  *  and given different values when the JVM attaches to a store area.
@@ -39,6 +40,14 @@ public interface StoreParamsDynamic {
     public Integer getBlockWriteCacheSize();
     public boolean isSetBlockWriteCacheSize();
 
+    /** Off-heap block read cache, in megabytes for the whole store, shared by the index files (note: only for direct mode files) */
+    public Integer getBlockReadCacheOffHeapMB();
+    public boolean isSetBlockReadCacheOffHeapMB();
+
+    /** Number of records blocks read ahead of long tuple index scans; 0 for none. */
+    public Integer getIndexReadAhead();
+    public boolean isSetIndexReadAhead();
+
     /** Node cache for Node{@literal ->}NodeId. */
     public Integer getNode2NodeIdCacheSize();
     public boolean isSetNode2NodeIdCacheSize();
@@ -50,5 +59,24 @@ public interface StoreParamsDynamic {
     /** Node cache for recording known misses */
     public Integer getNodeMissCacheSize();
     public boolean isSetNodeMissCacheSize();
-}
 
+    /** Bloom filter of the node table, in bits per node; 0 for none. */
+    public Integer getNodeMissFilterBits();
+    public boolean isSetNodeMissFilterBits();
+
+    /** Memory budget for the node caches, in megabytes; 0 for caches sized by number of entries. */
+    public Integer getNodeCacheMB();
+    public boolean isSetNodeCacheMB();
+
+    /** When the commit of a write transaction is on disk. */
+    public Durability getDurability();
+    public boolean isSetDurability();
+
+    /** Milliseconds between forcing commits to disk, for {@link Durability#PERIODIC}. */
+    public Integer getSyncIntervalMillis();
+    public boolean isSetSyncIntervalMillis();
+
+    /** Whether the statistics for reordering basic graph patterns are kept up to date as transactions commit. */
+    public Boolean getStatsAuto();
+    public boolean isSetStatsAuto();
+}
@@ -18,14 +18,21 @@
 
 package org.apache.jena.tdb2.solver;
 
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Predicate;
 
 import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.atlas.lib.tuple.TupleFactory;
 import org.apache.jena.atlas.logging.Log;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.ARQ;
 import org.apache.jena.sparql.ARQInternalErrorException;
 import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpVars;
 import org.apache.jena.sparql.algebra.op.*;
 import org.apache.jena.sparql.algebra.optimize.TransformFilterPlacement;
 import org.apache.jena.sparql.core.BasicPattern;
@@ -34,18 +41,28 @@ import org.apache.jena.sparql.core.Substitute;
 import org.apache.jena.sparql.core.Var;
 import org.apache.jena.sparql.engine.ExecutionContext;
 import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.iterator.QueryIterFilterExpr;
+import org.apache.jena.sparql.engine.iterator.QueryIterParallel;
 import org.apache.jena.sparql.engine.iterator.QueryIterPeek;
+import org.apache.jena.sparql.engine.iterator.QueryIterRoot;
+import org.apache.jena.sparql.engine.iterator.QueryIterSingleton;
 import org.apache.jena.sparql.engine.main.OpExecutor;
 import org.apache.jena.sparql.engine.main.OpExecutorFactory;
 import org.apache.jena.sparql.engine.main.QC;
 import org.apache.jena.sparql.engine.main.iterator.QueryIterGraph;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderProc;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformation;
+import org.apache.jena.sparql.expr.Expr;
 import org.apache.jena.sparql.expr.ExprList;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.expr.aggregate.AggCount;
 import org.apache.jena.sparql.mgt.Explain;
 import org.apache.jena.tdb2.store.DatasetGraphTDB;
 import org.apache.jena.tdb2.store.GraphTDB;
 import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -87,20 +104,129 @@ public class OpExecutorTDB2 extends OpExecutor
         return super.exec(op, input);
     }
 
-    // Retrieving nodes isn't so bad because they will be needed anyway.
-    // And if their duplicates, likely to be cached.
-    // Need to work with SolverLib which wraps the NodeId bindgins with a converter.
+    // Results of basic graph patterns are BindingTDB which retrieve nodes from the
+    // node table when they are first asked for. DISTINCT, REDUCED and joins compare
+    // NodeIds so the nodes of rows that are eliminated are never retrieved.
+    // Other operations, such as ORDER BY, need the values.
 
     @Override
     protected QueryIterator execute(OpDistinct opDistinct, QueryIterator input)
     {
-        return super.execute(opDistinct, input);
+        // Spill to disk is done by the general DISTINCT.
+        // Rows from the input are not in the visible variables of the sub-op.
+        if ( ! isForTDB || ! ( input instanceof QueryIterRoot ) || execCxt.getContext().isDefined(ARQ.spillToDiskThreshold) )
+            return super.execute(opDistinct, input);
+        QueryIterator qIter = exec(opDistinct.getSubOp(), input);
+        return QueryIterDistinctTDB.distinct(qIter, OpVars.visibleVars(opDistinct.getSubOp()), nodeTable(), execCxt);
     }
 
     @Override
     protected QueryIterator execute(OpReduced opReduced, QueryIterator input)
     {
-        return super.execute(opReduced, input);
+        if ( ! isForTDB || ! ( input instanceof QueryIterRoot ) )
+            return super.execute(opReduced, input);
+        QueryIterator qIter = exec(opReduced.getSubOp(), input);
+        return QueryIterDistinctTDB.reduced(qIter, OpVars.visibleVars(opReduced.getSubOp()), nodeTable(), execCxt);
+    }
+
+    @Override
+    protected QueryIterator execute(OpJoin opJoin, QueryIterator input)
+    {
+        // The join on NodeIds is in-memory; spill to disk is done by the general hash join.
+        if ( ! isForTDB || execCxt.getContext().isDefined(ARQ.spillToDiskThreshold) )
+            return super.execute(opJoin, input);
+        QueryIterator left;
+        QueryIterator right;
+        if ( parallelism(input) > 0 ) {
+            QueryIterParallel leftParallel = execParallel(opJoin.getLeft(), input);
+            QueryIterParallel rightParallel = execParallel(opJoin.getRight(), root());
+            leftParallel.startWith(rightParallel);
+            left = leftParallel;
+            right = rightParallel;
+        } else {
+            left = exec(opJoin.getLeft(), input);
+            right = exec(opJoin.getRight(), root());
+        }
+        Set<Var> joinKey = OpVars.fixedVars(opJoin.getLeft());
+        joinKey.retainAll(OpVars.fixedVars(opJoin.getRight()));
+        return new QueryIterHashJoinTDB(left, right, joinKey, nodeTable(), execCxt);
+    }
+
+    // COUNT(*) of one triple or quad pattern, with a counted index, is read from the
+    // counts in the B+Tree nodes without a scan of the matches.
+
+    @Override
+    protected QueryIterator execute(OpGroup opGroup, QueryIterator input)
+    {
+        if ( isForTDB && input instanceof QueryIterRoot ) {
+            Long count = countPattern(opGroup);
+            if ( count != null ) {
+                Binding parent = input.nextBinding();
+                input.close();
+                Var var = opGroup.getAggregators().get(0).getVar();
+                return QueryIterSingleton.create(parent, var, NodeValue.makeInteger(count).asNode(), execCxt);
+            }
+        }
+        return super.execute(opGroup, input);
+    }
+
+    /**
+     * The result of a group with no group keys and only COUNT(*) over a single
+     * pattern, from an index that can count the matches. Null if the group is not of
+     * this form, the pattern has a repeated variable, or there is no such index.
+     */
+    private Long countPattern(OpGroup opGroup)
+    {
+        if ( ! opGroup.getGroupVars().isEmpty() || opGroup.getAggregators().size() != 1 )
+            return null;
+        if ( ! ( opGroup.getAggregators().get(0).getAggregator() instanceof AggCount ) )
+            return null;
+        if ( ! ( execCxt.getDataset() instanceof DatasetGraphTDB ) || QC2.getFilter(execCxt.getContext()) != null )
+            return null;
+        DatasetGraphTDB ds = (DatasetGraphTDB)execCxt.getDataset();
+        Op subOp = opGroup.getSubOp();
+        BasicPattern bgp;
+        Node gn;
+        if ( subOp instanceof OpQuadPattern ) {
+            bgp = ((OpQuadPattern)subOp).getBasicPattern();
+            gn = ((OpQuadPattern)subOp).getGraphNode();
+        } else if ( subOp instanceof OpBGP ) {
+            bgp = ((OpBGP)subOp).getPattern();
+            gn = ((GraphTDB)execCxt.getActiveGraph()).getGraphName();
+        } else
+            return null;
+        if ( bgp.size() != 1 )
+            return null;
+        gn = decideGraphNode(gn, execCxt);
+        if ( gn == Node.ANY || Var.isVar(gn) )
+            return null;
+        Triple triple = bgp.get(0);
+        Node[] nodes = ( gn == null )
+            ? new Node[] {triple.getSubject(), triple.getPredicate(), triple.getObject()}
+            : new Node[] {gn, triple.getSubject(), triple.getPredicate(), triple.getObject()};
+        NodeTupleTable nodeTupleTable = ( gn == null )
+            ? ds.getTripleTable().getNodeTupleTable()
+            : ds.getQuadTable().getNodeTupleTable();
+        NodeId[] ids = new NodeId[nodes.length];
+        Set<Node> vars = new HashSet<>();
+        for ( int i = 0 ; i < nodes.length ; i++ ) {
+            Node n = nodes[i];
+            if ( Var.isVar(n) ) {
+                if ( ! vars.add(n) )
+                    return null;
+                ids[i] = NodeId.NodeIdAny;
+            } else if ( n.isConcrete() && ! n.isNodeTriple() )
+                ids[i] = nodeTupleTable.getNodeTable().getNodeIdForNode(n);
+            else
+                return null;
+        }
+        long count = nodeTupleTable.getTupleTable().count(TupleFactory.create(ids));
+        return ( count < 0 ) ? null : count;
+    }
+
+    private NodeTable nodeTable()
+    {
+        return ((GraphTDB)execCxt.getActiveGraph()).getNodeTupleTable().getNodeTable();
     }
 
     @Override
@@ -377,8 +503,32 @@ public class OpExecutorTDB2 extends OpExecutor
             filter = QC2.getFilter(execCxt.getContext());
         }
 
+        @Override
+        public QueryIterator execute(OpFilter opFilter, QueryIterator input)
+        {
+            // Comparisons with numbers in the filter become range scans of the index.
+            // The filter is still applied to the results.
+            Op sub = opFilter.getSubOp();
+            if ( ! OpBGP.isBGP(sub) && ! ( sub instanceof OpQuadPattern ) )
+                return super.execute(opFilter, input);
+            Map<Var, ValueRange> ranges = ValueRange.ranges(opFilter.getExprs());
+            if ( ranges.isEmpty() )
+                return super.execute(opFilter, input);
+            QueryIterator qIter = OpBGP.isBGP(sub)
+                ? execute((OpBGP)sub, input, ranges)
+                : execute((OpQuadPattern)sub, input, ranges);
+            for ( Expr expr : opFilter.getExprs() )
+                qIter = new QueryIterFilterExpr(qIter, expr, execCxt);
+            return qIter;
+        }
+
         @Override
         public QueryIterator execute(OpBGP opBGP, QueryIterator input)
+        {
+            return execute(opBGP, input, null);
+        }
+
+        private QueryIterator execute(OpBGP opBGP, QueryIterator input, Map<Var, ValueRange> ranges)
         {
             Graph g = execCxt.getActiveGraph();
 
@@ -390,7 +540,7 @@ public class OpExecutorTDB2 extends OpExecutor
                 //return SolverLib.execute((GraphTDB)g, bgp, input, filter, execCxt);
                 GraphTDB gtdb = (GraphTDB)g;
                 Node gn = decideGraphNode(gtdb.getGraphName(), execCxt);
-                return SolverLib.execute(gtdb.getDSG(), gn, bgp, input, filter, execCxt);
+                return SolverLib.execute(gtdb.getDSG(), gn, bgp, input, filter, ranges, execCxt);
             }
             Log.warn(this, "Non-GraphTDB passed to OpExecutorPlainTDB: "+g.getClass().getSimpleName());
             return super.execute(opBGP, input);
@@ -398,6 +548,11 @@ public class OpExecutorTDB2 extends OpExecutor
 
         @Override
         public QueryIterator execute(OpQuadPattern opQuadPattern, QueryIterator input)
+        {
+            return execute(opQuadPattern, input, null);
+        }
+
+        private QueryIterator execute(OpQuadPattern opQuadPattern, QueryIterator input, Map<Var, ValueRange> ranges)
         {
             Node gn = opQuadPattern.getGraphNode();
             gn = decideGraphNode(gn, execCxt);
@@ -407,7 +562,7 @@ public class OpExecutorTDB2 extends OpExecutor
                 DatasetGraphTDB ds = (DatasetGraphTDB)execCxt.getDataset();
                 Explain.explain("Execute", opQuadPattern.getPattern(), execCxt.getContext());
                 BasicPattern bgp = opQuadPattern.getBasicPattern();
-                return SolverLib.execute(ds, gn, bgp, input, filter, execCxt);
+                return SolverLib.execute(ds, gn, bgp, input, filter, ranges, execCxt);
             }
             // Maybe a TDB named graph inside a non-TDB dataset.
             Graph g = execCxt.getActiveGraph();
@@ -418,7 +573,7 @@ public class OpExecutorTDB2 extends OpExecutor
                 BasicPattern bgp = opQuadPattern.getBasicPattern();
                 Explain.explain("Execute", bgp, execCxt.getContext());
                 // Don't pass in G -- gn may be different.
-                return SolverLib.execute(((GraphTDB)g).getDSG(), gn, bgp, input, filter, execCxt);
+                return SolverLib.execute(((GraphTDB)g).getDSG(), gn, bgp, input, filter, ranges, execCxt);
             }
             Log.warn(this, "Non-DatasetGraphTDB passed to OpExecutorPlainTDB");
             return super.execute(opQuadPattern, input);
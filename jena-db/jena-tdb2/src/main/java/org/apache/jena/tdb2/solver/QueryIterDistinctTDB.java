@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import java.util.*;
+
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingProjectNamed;
+import org.apache.jena.sparql.engine.iterator.QueryIter1;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+
+/**
+ * DISTINCT and REDUCED, comparing NodeIds so that the nodes of rows that are
+ * eliminated are not retrieved from the node table.
+ * <p>
+ * The rows are compared on the named variables of the sub-pattern. See
+ * {@link SolverLib#termKey} for how bindings from outside the database are compared.
+ */
+public class QueryIterDistinctTDB extends QueryIter1
+{
+    private final NodeTable nodeTable;
+    private final List<Var> vars;
+    private Set<List<Object>> seen;
+    private Binding slot = null;
+
+    /** DISTINCT: eliminate all duplicates. */
+    public static QueryIterator distinct(QueryIterator input, Collection<Var> vars, NodeTable nodeTable, ExecutionContext execCxt)
+    {
+        return new QueryIterDistinctTDB(input, vars, nodeTable, new HashSet<>(), execCxt);
+    }
+
+    /** REDUCED: eliminate duplicates of the row before, as {@code QueryIterReduced} does. */
+    public static QueryIterator reduced(QueryIterator input, Collection<Var> vars, NodeTable nodeTable, ExecutionContext execCxt)
+    {
+        Set<List<Object>> window = Collections.newSetFromMap(new LinkedHashMap<List<Object>, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Boolean> eldest)
+            { return size() > 1; }
+        });
+        return new QueryIterDistinctTDB(input, vars, nodeTable, window, execCxt);
+    }
+
+    private QueryIterDistinctTDB(QueryIterator input, Collection<Var> vars, NodeTable nodeTable,
+                                 Set<List<Object>> seen, ExecutionContext execCxt)
+    {
+        super(input, execCxt);
+        this.nodeTable = nodeTable;
+        this.vars = new ArrayList<>(vars.size());
+        for ( Var v : vars ) {
+            // Hide unnamed and internal variables.
+            if ( v.isNamedVar() )
+                this.vars.add(v);
+        }
+        this.seen = seen;
+    }
+
+    @Override
+    protected boolean hasNextBinding()
+    {
+        if ( slot != null )
+            return true;
+        while ( getInput().hasNext() ) {
+            Binding b = getInput().nextBinding();
+            if ( seen.add(key(b)) ) {
+                slot = new BindingProjectNamed(b);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected Binding moveToNextBinding()
+    {
+        Binding b = slot;
+        slot = null;
+        return b;
+    }
+
+    private List<Object> key(Binding b)
+    {
+        Object[] key = new Object[vars.size()];
+        for ( int i = 0 ; i < key.length ; i++ )
+            key[i] = SolverLib.termKey(b, vars.get(i), nodeTable);
+        return Arrays.asList(key);
+    }
+
+    @Override
+    protected void closeSubIterator()
+    {
+        seen = null;
+        slot = null;
+    }
+
+    @Override
+    protected void requestSubCancel()
+    { }
+}
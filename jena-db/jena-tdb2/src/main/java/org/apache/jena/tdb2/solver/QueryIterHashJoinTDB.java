@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import java.util.*;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.sparql.engine.QueryIterator;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.iterator.QueryIter2;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+
+/**
+ * Hash join (materializing on the left, streaming on the right) that compares
+ * NodeIds, not nodes.
+ * <p>
+ * When both rows are {@link BindingTDB}s, the result is a {@link BindingTDB} so the
+ * nodes are only retrieved from the node table if they are used later, for example by
+ * a FILTER or when the results are written. Otherwise the rows are merged as
+ * {@link Algebra#merge} does.
+ */
+public class QueryIterHashJoinTDB extends QueryIter2
+{
+    private final NodeTable nodeTable;
+    private final List<Var> joinKey;
+    // The left rows by the keys of the join key variables.
+    private Map<List<Object>, List<Binding>> table = null;
+    // Left rows without all of the join key variables.
+    private List<Binding> noKey = null;
+
+    private Binding rowRight = null;
+    private Iterator<Binding> candidates = null;
+    private Binding slot = null;
+
+    /**
+     * Join {@code left} and {@code right}. The join key should be variables that are
+     * always bound on both sides; rows without them are compared with every row of the
+     * other side.
+     */
+    public QueryIterHashJoinTDB(QueryIterator left, QueryIterator right, Collection<Var> joinKey,
+                                NodeTable nodeTable, ExecutionContext execCxt)
+    {
+        super(left, right, execCxt);
+        this.nodeTable = nodeTable;
+        this.joinKey = new ArrayList<>(joinKey);
+    }
+
+    private void buildTable()
+    {
+        table = new HashMap<>();
+        noKey = new ArrayList<>();
+        QueryIterator left = getLeft();
+        while ( left.hasNext() ) {
+            Binding row = left.nextBinding();
+            List<Object> key = key(row);
+            if ( key == null )
+                noKey.add(row);
+            else
+                table.computeIfAbsent(key, (k)->new ArrayList<>(2)).add(row);
+        }
+    }
+
+    /** The keys of the join key variables, or null if any is unbound. */
+    private List<Object> key(Binding row)
+    {
+        if ( joinKey.isEmpty() )
+            return null;
+        Object[] key = new Object[joinKey.size()];
+        for ( int i = 0 ; i < key.length ; i++ ) {
+            key[i] = SolverLib.termKey(row, joinKey.get(i), nodeTable);
+            if ( key[i] == null )
+                return null;
+        }
+        return Arrays.asList(key);
+    }
+
+    @Override
+    protected boolean hasNextBinding()
+    {
+        if ( slot != null )
+            return true;
+        if ( table == null )
+            buildTable();
+        for (;;) {
+            if ( candidates != null ) {
+                while ( candidates.hasNext() ) {
+                    Binding r = merge(candidates.next(), rowRight);
+                    if ( r != null ) {
+                        slot = r;
+                        return true;
+                    }
+                }
+                candidates = null;
+            }
+            QueryIterator right = getRight();
+            if ( ! right.hasNext() )
+                return false;
+            rowRight = right.nextBinding();
+            List<Object> key = key(rowRight);
+            if ( key == null ) {
+                Iterator<Binding> all = Iter.flatMap(table.values().iterator(), List::iterator);
+                candidates = Iter.concat(all, noKey.iterator());
+            } else {
+                List<Binding> rows = table.get(key);
+                candidates = ( rows == null ) ? noKey.iterator() : Iter.concat(rows.iterator(), noKey.iterator());
+            }
+        }
+    }
+
+    @Override
+    protected Binding moveToNextBinding()
+    {
+        if ( ! hasNextBinding() )
+            throw new NoSuchElementException();
+        Binding b = slot;
+        slot = null;
+        return b;
+    }
+
+    /** The SPARQL merge rule, comparing the terms of the shared variables by key. */
+    private Binding merge(Binding left, Binding right)
+    {
+        Iterator<Var> vars = right.vars();
+        while ( vars.hasNext() ) {
+            Var v = vars.next();
+            if ( ! left.contains(v) )
+                continue;
+            Object x1 = SolverLib.termKey(left, v, nodeTable);
+            Object x2 = SolverLib.termKey(right, v, nodeTable);
+            if ( ! Objects.equals(x1, x2) )
+                return null;
+        }
+        if ( left instanceof BindingTDB && right instanceof BindingTDB ) {
+            BindingNodeId ids = new BindingNodeId(((BindingTDB)left).getBindingId());
+            vars = right.vars();
+            while ( vars.hasNext() ) {
+                Var v = vars.next();
+                if ( left.contains(v) )
+                    continue;
+                NodeId id = SolverLib.nodeIdOf(right, v);
+                if ( id == null )
+                    return Algebra.merge(left, right);
+                ids.put(v, id);
+            }
+            return new BindingTDB(ids, nodeTable);
+        }
+        return Algebra.merge(left, right);
+    }
+
+    @Override
+    protected void requestSubCancel()
+    { }
+
+    @Override
+    protected void closeSubIterator()
+    {
+        table = null;
+        noKey = null;
+        candidates = null;
+    }
+}
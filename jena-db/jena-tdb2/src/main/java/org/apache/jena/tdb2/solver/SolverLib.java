@@ -35,6 +35,7 @@ import org.apache.jena.sparql.core.Var;
 import org.apache.jena.sparql.engine.ExecutionContext;
 import org.apache.jena.sparql.engine.QueryIterator;
 import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingBase;
 import org.apache.jena.sparql.engine.binding.BindingFactory;
 import org.apache.jena.sparql.engine.binding.BindingMap;
 import org.apache.jena.sparql.engine.iterator.QueryIterNullIterator;
@@ -45,6 +46,7 @@ import org.apache.jena.tdb2.store.GraphTDB;
 import org.apache.jena.tdb2.store.NodeId;
 import org.apache.jena.tdb2.store.nodetable.NodeTable;
 import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
+import org.apache.jena.tdb2.sys.SystemTDB;
 import org.apache.jena.tdb2.sys.TDBInternal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,7 +63,7 @@ public class SolverLib
     {
         // Maybe default graph or named graph.
         NodeTupleTable ntt = graph.getNodeTupleTable();
-        return execute(ntt, graph.getGraphName(), pattern, input, filter, execCxt);
+        return execute(ntt, graph.getGraphName(), pattern, input, filter, null, execCxt);
     }
 
     /** Non-reordering execution of a quad pattern, given a iterator of bindings as input.
@@ -71,9 +73,22 @@ public class SolverLib
     public static QueryIterator execute(DatasetGraphTDB ds, Node graphNode, BasicPattern pattern,
                                         QueryIterator input, Predicate<Tuple<NodeId>> filter,
                                         ExecutionContext execCxt)
+    {
+        return execute(ds, graphNode, pattern, input, filter, null, execCxt);
+    }
+
+    /** Non-reordering execution of a quad pattern, given a iterator of bindings as input,
+     *  where a filter limits some variables to ranges of numbers.
+     *  The filter must still be applied to the results.
+     *  @see StageMatchRange
+     */
+    public static QueryIterator execute(DatasetGraphTDB ds, Node graphNode, BasicPattern pattern,
+                                        QueryIterator input, Predicate<Tuple<NodeId>> filter,
+                                        Map<Var, ValueRange> ranges,
+                                        ExecutionContext execCxt)
     {
         NodeTupleTable ntt = ds.chooseNodeTupleTable(graphNode);
-        return execute(ntt, graphNode, pattern, input, filter, execCxt);
+        return execute(ntt, graphNode, pattern, input, filter, ranges, execCxt);
     }
 
     public static Iterator<BindingNodeId> convertToIds(Iterator<Binding> iterBindings, NodeTable nodeTable)
@@ -91,6 +106,7 @@ public class SolverLib
 
     private static QueryIterator execute(NodeTupleTable nodeTupleTable, Node graphNode, BasicPattern pattern,
                                          QueryIterator input, Predicate<Tuple<NodeId>> filter,
+                                         Map<Var, ValueRange> ranges,
                                          ExecutionContext execCxt)
     {
         if ( Quad.isUnionGraph(graphNode) )
@@ -116,15 +132,31 @@ public class SolverLib
         Iterator<BindingNodeId> chain = Iter.map(input, SolverLib.convFromBinding(nodeTable));
         List<Abortable> killList = new ArrayList<>();
 
-        for ( Triple triple : triples )
+        // Union graph matches need the triples to be made distinct.
+        boolean mergeJoin = ! anyGraph && execCxt.getContext().isTrueOrUndef(SystemTDB.symMergeJoin);
+        if ( ! execCxt.getContext().isTrueOrUndef(SystemTDB.symRangeFilter) )
+            ranges = null;
+
+        for ( int i = 0 ; i < triples.size() ; i++ )
         {
-            Tuple<Node> tuple = null;
-            if ( graphNode == null )
-                // 3-tuples
-                tuple = TupleFactory.tuple(triple.getSubject(), triple.getPredicate(), triple.getObject());
-            else
-                // 4-tuples.
-                tuple = TupleFactory.tuple(graphNode, triple.getSubject(), triple.getPredicate(), triple.getObject());
+            Tuple<Node> tuple = tuple(graphNode, triples.get(i));
+            // Numbers are literals so only the object can be in a range.
+            int slot = tuple.len()-1;
+            Node object = tuple.get(slot);
+            if ( ranges != null && Var.isVar(object) && ranges.containsKey(Var.alloc(object)) && ! StageMergeJoin.hasTripleTerm(tuple) ) {
+                chain = new StageMatchRange(nodeTupleTable, chain, tuple, slot, ranges.get(Var.alloc(object)), anyGraph, filter, execCxt);
+                chain = makeAbortable(chain, killList);
+                continue;
+            }
+            if ( mergeJoin && i+1 < triples.size() ) {
+                Tuple<Node> tuple2 = tuple(graphNode, triples.get(i+1));
+                if ( StageMergeJoin.applies(tuple, tuple2) ) {
+                    chain = new StageMergeJoin(nodeTupleTable, chain, tuple, tuple2, filter, execCxt);
+                    chain = makeAbortable(chain, killList);
+                    i++;
+                    continue;
+                }
+            }
             // Plain RDF
             //chain = solve(nodeTupleTable, tuple, anyGraph, chain, filter, execCxt) ;
             // RDF-star
@@ -156,6 +188,15 @@ public class SolverLib
         return new QueryIterTDB(iterBinding, killList, input, execCxt);
     }
 
+    private static Tuple<Node> tuple(Node graphNode, Triple triple)
+    {
+        if ( graphNode == null )
+            // 3-tuples
+            return TupleFactory.tuple(triple.getSubject(), triple.getPredicate(), triple.getObject());
+        // 4-tuples.
+        return TupleFactory.tuple(graphNode, triple.getSubject(), triple.getPredicate(), triple.getObject());
+    }
+
     /** Create an abortable iterator, storing it in the killList.
      *  Just return the input iterator if kilList is null.
      */
@@ -266,6 +307,52 @@ public class SolverLib
         return b;
     }
 
+    /**
+     * The NodeId for a variable, if the binding has it without looking up the node, else null.
+     */
+    public static NodeId nodeIdOf(Binding binding, Var var)
+    {
+        while ( binding != null ) {
+            if ( binding instanceof BindingTDB ) {
+                NodeId id = ((BindingTDB)binding).getBindingId().get(var);
+                if ( id != null )
+                    return NodeId.isDoesNotExist(id) ? null : id;
+            }
+            // Other bindings: the value is at this level unless it is in the parent.
+            if ( ! ( binding instanceof BindingBase ) )
+                return null;
+            Binding parent = ((BindingBase)binding).getParent();
+            if ( parent == null || ! parent.contains(var) )
+                return null;
+            binding = parent;
+        }
+        return null;
+    }
+
+    /**
+     * An object for the term bound to a variable, or null if the variable is unbound,
+     * for comparing bindings without retrieving nodes from the node table.
+     * Keys are equal if and only if the terms are equal.
+     * <p>
+     * The key is the NodeId when there is one in the node table, or the node for inline
+     * values and nodes not in the database. Nodes that are not already NodeIds are looked
+     * up in the node table.
+     */
+    public static Object termKey(Binding binding, Var var, NodeTable nodeTable)
+    {
+        NodeId id = nodeIdOf(binding, var);
+        if ( id != null )
+            return id.isInline() ? NodeId.extract(id) : id;
+        Node n = binding.get(var);
+        if ( n == null )
+            return null;
+        id = nodeTable.getNodeIdForNode(n);
+        // An inline value may be a different term that has the same value (e.g. "01"^^xsd:integer).
+        if ( id == null || NodeId.isDoesNotExist(id) || id.isInline() )
+            return n;
+        return id;
+    }
+
     /** Find whether a specific graph name is in the quads table. */
     public static QueryIterator testForGraphName(DatasetGraphTDB ds, Node graphNode, QueryIterator input,
                                                  Predicate<Tuple<NodeId>> filter, ExecutionContext execCxt) {
@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import static org.apache.jena.tdb2.store.NodeIdType.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.NodeIdFactory;
+import org.apache.jena.tdb2.store.NodeIdType;
+import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
+import org.apache.jena.tdb2.store.tupletable.TupleIndex;
+import org.apache.jena.tdb2.store.value.DecimalNode56;
+import org.apache.jena.tdb2.store.value.DoubleNode62;
+import org.apache.jena.tdb2.store.value.FloatNode;
+import org.apache.jena.tdb2.store.value.IntegerNode;
+
+/**
+ * Match a tuple pattern where a filter limits the variable in one slot to a
+ * {@link ValueRange}.
+ * <p>
+ * If there is an index where the bound slots are the leading slots and the range slot is
+ * next, the index is in order of the NodeId of that slot. Inline integers, floats and
+ * doubles are in order of value within each part of the index for their type, so only
+ * the part of the index that has values in the range is scanned. Inline decimals are
+ * scanned and checked by value. Values that are not inline are all included. Other inline
+ * values, such as dates and strings, can not be in a numeric range and are skipped.
+ * <p>
+ * Otherwise, the tuple is matched as {@link StageMatchTuple} does.
+ * The filter must still be applied to the results.
+ */
+public class StageMatchRange extends StageMatchTuple
+{
+    private static final NodeIdType[] integerTypes = {
+        XSD_INTEGER, XSD_POSITIVE_INTEGER, XSD_NEGATIVE_INTEGER,
+        XSD_NON_NEGATIVE_INTEGER, XSD_NON_POSITIVE_INTEGER,
+        XSD_LONG, XSD_INT, XSD_SHORT, XSD_BYTE,
+        XSD_UNSIGNEDLONG, XSD_UNSIGNEDINT, XSD_UNSIGNEDSHORT, XSD_UNSIGNEDBYTE
+    };
+
+    // Range of integers that can be inline: 56 bits, signed.
+    private static final long MAX56 = (1L << 55) - 1;
+    private static final long MIN56 = -(1L << 55);
+    // The sign bit of the 62 bits of an inline double.
+    private static final long DoubleSign = 1L << 61;
+    // The sign bit of the 32 bits of an inline float.
+    private static final long FloatSign = 1L << 31;
+
+    private final NodeTupleTable nodeTupleTable;
+    private final Tuple<Node> patternTuple;
+    private final int slot;
+    private final ValueRange range;
+
+    public StageMatchRange(NodeTupleTable nodeTupleTable, Iterator<BindingNodeId> input,
+                           Tuple<Node> tuple, int slot, ValueRange range, boolean anyGraphs,
+                           Predicate<Tuple<NodeId>> filter,
+                           ExecutionContext execCxt)
+    {
+        super(nodeTupleTable, input, tuple, anyGraphs, filter, execCxt);
+        this.nodeTupleTable = nodeTupleTable;
+        this.patternTuple = tuple;
+        this.slot = slot;
+        this.range = range;
+    }
+
+    @Override
+    protected Iterator<Tuple<NodeId>> find(Tuple<NodeId> pattern)
+    {
+        // Bound by the input.
+        if ( ! NodeId.isAny(pattern.get(slot)) )
+            return super.find(pattern);
+        // A range scan is several index lookups. When the input binds other slots, it is
+        // likely to be repeated for many inputs each with only a few matches.
+        for ( int i = 0 ; i < pattern.len() ; i++ ) {
+            if ( ! NodeId.isAny(pattern.get(i)) && Var.isVar(patternTuple.get(i)) )
+                return super.find(pattern);
+        }
+        TupleIndex index = StageMergeJoin.indexFor(nodeTupleTable.getTupleTable().getIndexes(), pattern, slot);
+        if ( index == null )
+            return super.find(pattern);
+        List<Segment> segments = segments(range);
+        return Iter.flatMap(segments.iterator(), segment->segment.scan(index, pattern, slot));
+    }
+
+    /** A part of the index, as a range of NodeIds, and how to test the values in it. */
+    private static class Segment
+    {
+        final NodeId start;
+        final NodeId finish;
+        // Whether to keep a value.
+        final Predicate<NodeId> keep;
+        // Whether a value is after the last value to keep.
+        final Predicate<NodeId> after;
+
+        Segment(NodeId start, NodeId finish, Predicate<NodeId> keep, Predicate<NodeId> after)
+        {
+            this.start = start;
+            this.finish = finish;
+            this.keep = keep;
+            this.after = after;
+        }
+
+        Iterator<Tuple<NodeId>> scan(TupleIndex index, Tuple<NodeId> pattern, int slot)
+        {
+            Iterator<Tuple<NodeId>> iter = index.findFrom(pattern, start);
+            return Iter.iter(iter)
+                .takeWhile(tuple->{
+                    NodeId id = tuple.get(slot);
+                    return NodeIdFactory.compareAsKeys(id, finish) <= 0 && ! after.test(id);
+                })
+                .filter(tuple->keep.test(tuple.get(slot)));
+        }
+    }
+
+    private static List<Segment> segments(ValueRange range)
+    {
+        List<Segment> segments = new ArrayList<>();
+        // NodeIds that are not inline, which includes numbers that do not fit inline.
+        segments.add(new Segment(NodeIdFactory.createPtr(0), NodeIdFactory.createPtr(Long.MAX_VALUE),
+                                 (id)->true, (id)->false));
+        if ( range.isEmpty() )
+            return segments;
+
+        // Integers: non-negative, in order, then negative, in order.
+        long lo = Math.max(range.loLong(), MIN56);
+        long hi = Math.min(range.hiLong(), MAX56);
+        for ( NodeIdType type : integerTypes ) {
+            if ( hi >= 0 && Math.max(lo, 0) <= hi )
+                segments.add(integers(type, Math.max(lo, 0), hi));
+            if ( lo < 0 && lo <= Math.min(hi, -1) )
+                segments.add(integers(type, lo, Math.min(hi, -1)));
+        }
+
+        // Decimals: the scale is in the high bits so they are not in order.
+        segments.add(new Segment(NodeIdFactory.createValue(XSD_DECIMAL, 0), NodeIdFactory.createValue(XSD_DECIMAL, (1L<<56)-1),
+                                 (id)->range.contains(DecimalNode56.unpackAsBigDecimal(id.getPtrLocation())), (id)->false));
+
+        // Doubles and floats: sign bit, then magnitude. Non-negative, in order, then
+        // negative, in reverse order.
+        double loD = range.loDouble();
+        double hiD = range.hiDouble();
+        if ( hiD >= 0 ) {
+            long start = ( loD <= 0 ) ? 0 : DoubleNode62.pack(loD);
+            if ( start == DoubleNode62.NO_ENCODING )
+                start = 0;
+            segments.add(doubles(start, DoubleSign-1, loD, hiD, false));
+        }
+        // Negative zero is equal to zero.
+        if ( loD <= 0 ) {
+            long start = ( hiD >= 0 ) ? DoubleSign : DoubleNode62.pack(hiD);
+            if ( start == DoubleNode62.NO_ENCODING )
+                start = DoubleSign;
+            segments.add(doubles(start, 2*DoubleSign-1, loD, hiD, true));
+        }
+        if ( hiD >= 0 ) {
+            float f = ( loD <= 0 ) ? 0 : (float)loD;
+            if ( f > loD )
+                f = Math.nextDown(f);
+            segments.add(floats(FloatNode.pack(Math.max(f, 0)), FloatSign-1, loD, hiD, false));
+        }
+        if ( loD <= 0 ) {
+            float f = ( hiD >= 0 ) ? -0.0f : (float)hiD;
+            if ( f < hiD )
+                f = Math.nextUp(f);
+            // Negative zero is the first negative float.
+            long start = Math.max(FloatNode.pack(Math.min(f, -0.0f)), FloatSign);
+            segments.add(floats(start, 2*FloatSign-1, loD, hiD, true));
+        }
+        return segments;
+    }
+
+    private static Segment integers(NodeIdType type, long lo, long hi)
+    {
+        return new Segment(NodeIdFactory.createValue(type, IntegerNode.pack56(lo)),
+                           NodeIdFactory.createValue(type, IntegerNode.pack56(hi)),
+                           (id)->true, (id)->false);
+    }
+
+    private static Segment doubles(long start, long finish, double lo, double hi, boolean negative)
+    {
+        return new Segment(NodeIdFactory.createValue(XSD_DOUBLE, start), NodeIdFactory.createValue(XSD_DOUBLE, finish),
+                           (id)->inRange(DoubleNode62.unpack(id.getPtrLocation()), lo, hi),
+                           (id)->after(DoubleNode62.unpack(id.getPtrLocation()), lo, hi, negative));
+    }
+
+    private static Segment floats(long start, long finish, double lo, double hi, boolean negative)
+    {
+        return new Segment(NodeIdFactory.createValue(XSD_FLOAT, start), NodeIdFactory.createValue(XSD_FLOAT, finish),
+                           (id)->inRange(FloatNode.unpack(id.getPtrLocation()), lo, hi),
+                           (id)->after(FloatNode.unpack(id.getPtrLocation()), lo, hi, negative));
+    }
+
+    private static boolean inRange(double x, double lo, double hi)
+    {
+        // NaN is kept: the filter decides.
+        return ! ( x < lo || x > hi );
+    }
+
+    private static boolean after(double x, double lo, double hi, boolean negative)
+    {
+        // Negative values are in reverse order.
+        return negative ? x < lo : x > hi;
+    }
+}
@@ -94,7 +94,7 @@ public class StageMatchTuple extends RepeatApplyIterator<BindingNodeId>
             // Short cut - known unknown NodeId
             return Iter.nullIterator();
 
-        Iterator<Tuple<NodeId>> iterMatches = nodeTupleTable.find(TupleFactory.create(ids));
+        Iterator<Tuple<NodeId>> iterMatches = find(TupleFactory.create(ids));
 
         // ** Allow a triple or quad filter here.
         if ( filter != null )
@@ -145,6 +145,12 @@ public class StageMatchTuple extends RepeatApplyIterator<BindingNodeId>
         return Iter.iter(iterMatches).map(binder).removeNulls();
     }
 
+    /** Find the tuples that match a pattern of NodeIds, with null for unbound slots. */
+    protected Iterator<Tuple<NodeId>> find(Tuple<NodeId> pattern)
+    {
+        return nodeTupleTable.find(pattern);
+    }
+
     private static Iterator<Tuple<NodeId>> print(Iterator<Tuple<NodeId>> iter)
     {
         if ( ! iter.hasNext() )
@@ -0,0 +1,405 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.iterator.IteratorSlotted;
+import org.apache.jena.atlas.iterator.RepeatApplyIterator;
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.atlas.lib.tuple.TupleFactory;
+import org.apache.jena.atlas.lib.tuple.TupleMap;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.ExecutionContext;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.NodeIdFactory;
+import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
+import org.apache.jena.tdb2.store.tupletable.TupleIndex;
+
+/**
+ * Match two tuple patterns that share a variable by merging two index scans.
+ * <p>
+ * For each input binding, if there is an index for each pattern where the bound slots
+ * are the leading slots of the index and the shared variable is the next slot, both
+ * scans return tuples in the order of the NodeId for the shared variable. The scans are
+ * stepped forward together, and the tuples with the same NodeId are joined. When one side
+ * falls a long way behind the other, its scan is restarted at the NodeId of the other
+ * side. If that keeps happening, the join switches to looking up each NodeId of the other
+ * side in the index, so sparse matches cost about the same as nested loops.
+ * <p>
+ * Otherwise, the patterns are matched as two {@link StageMatchTuple}s.
+ */
+public class StageMergeJoin extends RepeatApplyIterator<BindingNodeId>
+{
+    // Step forward this many times before restarting a scan further on.
+    private static final int SeekDistance = 16;
+    // Look up NodeIds in the index, not merge, after restarting a scan this many times.
+    private static final int ProbeAfter = 8;
+
+    private final NodeTupleTable nodeTupleTable;
+    private final Tuple<Node> patternTuple1;
+    private final Tuple<Node> patternTuple2;
+    private final Predicate<Tuple<NodeId>> filter;
+    private final ExecutionContext execCxt;
+
+    public StageMergeJoin(NodeTupleTable nodeTupleTable, Iterator<BindingNodeId> input,
+                          Tuple<Node> tuple1, Tuple<Node> tuple2,
+                          Predicate<Tuple<NodeId>> filter,
+                          ExecutionContext execCxt)
+    {
+        super(input);
+        this.nodeTupleTable = nodeTupleTable;
+        this.patternTuple1 = tuple1;
+        this.patternTuple2 = tuple2;
+        this.filter = filter;
+        this.execCxt = execCxt;
+    }
+
+    /**
+     * Whether the two patterns might be merge joined: they share a variable and have no
+     * triple terms. Whether they are depends on the indexes and the input bindings.
+     */
+    public static boolean applies(Tuple<Node> tuple1, Tuple<Node> tuple2)
+    {
+        if ( hasTripleTerm(tuple1) || hasTripleTerm(tuple2) )
+            return false;
+        for ( Node n : tuple1 ) {
+            if ( Var.isVar(n) && slotOf(tuple2, n) >= 0 )
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected Iterator<BindingNodeId> makeNextStage(BindingNodeId input)
+    {
+        int N = patternTuple1.len();
+        NodeId ids1[] = new NodeId[N];
+        Var[] var1 = new Var[N];
+        NodeId ids2[] = new NodeId[N];
+        Var[] var2 = new Var[N];
+        if ( ! StageMatchTuple.prepare(nodeTupleTable.getNodeTable(), patternTuple1, input, ids1, var1) )
+            return Iter.nullIterator();
+        if ( ! StageMatchTuple.prepare(nodeTupleTable.getNodeTable(), patternTuple2, input, ids2, var2) )
+            return Iter.nullIterator();
+        Tuple<NodeId> pattern1 = TupleFactory.create(ids1);
+        Tuple<NodeId> pattern2 = TupleFactory.create(ids2);
+
+        for ( int slot1 = 0 ; slot1 < N ; slot1++ ) {
+            Var v = var1[slot1];
+            if ( v == null || slotOf(var1, v) != slot1 )
+                continue;
+            int slot2 = slotOf(var2, v);
+            if ( slot2 < 0 )
+                continue;
+            TupleIndex[] indexes = nodeTupleTable.getTupleTable().getIndexes();
+            TupleIndex index1 = indexFor(indexes, pattern1, slot1);
+            TupleIndex index2 = indexFor(indexes, pattern2, slot2);
+            if ( index1 != null && index2 != null ) {
+                Scan scan1 = new Scan(index1, pattern1, slot1);
+                Scan scan2 = new Scan(index2, pattern2, slot2);
+                return new MergeJoin(input, scan1, var1, scan2, var2);
+            }
+        }
+
+        // Nested loops.
+        Iterator<BindingNodeId> chain = Iter.singleton(input);
+        chain = new StageMatchTuple(nodeTupleTable, chain, patternTuple1, false, filter, execCxt);
+        return new StageMatchTuple(nodeTupleTable, chain, patternTuple2, false, filter, execCxt);
+    }
+
+    /**
+     * Find an index where the bound slots of the pattern are the leading slots, there is
+     * at least one, and {@code slot} is the next slot.
+     */
+    /*package*/ static TupleIndex indexFor(TupleIndex[] indexes, Tuple<NodeId> pattern, int slot)
+    {
+        for ( TupleIndex index : indexes ) {
+            if ( index == null )
+                continue;
+            TupleMap tupleMap = index.getMapping();
+            int i = 0;
+            while ( i < pattern.len() && ! NodeId.isAny(pattern.get(tupleMap.getSlotIdx(i))) )
+                i++;
+            // Nothing bound: a full scan.
+            if ( i == 0 || i == pattern.len() || tupleMap.getSlotIdx(i) != slot )
+                continue;
+            boolean rest = true;
+            for ( int j = i+1 ; j < pattern.len() ; j++ ) {
+                if ( ! NodeId.isAny(pattern.get(tupleMap.getSlotIdx(j))) )
+                    rest = false;
+            }
+            if ( rest )
+                return index;
+        }
+        return null;
+    }
+
+    /** A scan of an index, in order of the NodeId in one slot. */
+    private class Scan
+    {
+        private final TupleIndex index;
+        private final Tuple<NodeId> pattern;
+        private final int slot;
+        private Iterator<Tuple<NodeId>> iter;
+        private Tuple<NodeId> current = null;
+        // Number of times the scan has been restarted further on.
+        private int restarts = 0;
+
+        Scan(TupleIndex index, Tuple<NodeId> pattern, int slot)
+        {
+            this.index = index;
+            this.pattern = pattern;
+            this.slot = slot;
+            this.iter = scan(index.find(pattern));
+            advance();
+        }
+
+        private Iterator<Tuple<NodeId>> scan(Iterator<Tuple<NodeId>> tuples)
+        {
+            return ( filter == null ) ? tuples : Iter.filter(tuples, filter);
+        }
+
+        /** The NodeId of the current tuple, or null at the end of the scan. */
+        NodeId key()
+        {
+            return ( current == null ) ? null : current.get(slot);
+        }
+
+        void advance()
+        {
+            current = iter.hasNext() ? iter.next() : null;
+        }
+
+        /** Add the tuples with NodeId {@code key}, from the current tuple onwards, to {@code group}. */
+        void collect(NodeId key, List<Tuple<NodeId>> group)
+        {
+            while ( current != null && key().equals(key) ) {
+                group.add(current);
+                advance();
+            }
+        }
+
+        /** Move to the first tuple with a NodeId of {@code target} or later. */
+        void seek(NodeId target)
+        {
+            for ( int i = 0 ; i < SeekDistance ; i++ ) {
+                if ( current == null || NodeIdFactory.compareAsKeys(key(), target) >= 0 )
+                    return;
+                advance();
+            }
+            if ( current == null || NodeIdFactory.compareAsKeys(key(), target) >= 0 )
+                return;
+            Iterator<Tuple<NodeId>> iter2 = index.findFrom(pattern, target);
+            if ( iter2 != null ) {
+                Iter.close(iter);
+                iter = scan(iter2);
+                restarts++;
+                advance();
+                return;
+            }
+            while ( current != null && NodeIdFactory.compareAsKeys(key(), target) < 0 )
+                advance();
+        }
+
+        /** Add the tuples with NodeId {@code key}, found by a lookup in the index, to {@code group}. */
+        void probe(NodeId key, List<Tuple<NodeId>> group)
+        {
+            NodeId[] ids = pattern.asList().toArray(new NodeId[pattern.len()]);
+            ids[slot] = key;
+            scan(index.find(TupleFactory.create(ids))).forEachRemaining(group::add);
+        }
+
+        void close()
+        {
+            Iter.close(iter);
+            iter = Iter.nullIterator();
+            current = null;
+        }
+    }
+
+    /**
+     * Join two scans which are in order of the shared variable.
+     * <p>
+     * If one scan is restarted many times, the other scan has few tuples by comparison.
+     * The join then continues by stepping through the other scan and looking up each of its
+     * NodeIds in the index, which is cheaper than restarting a scan.
+     */
+    private static class MergeJoin extends IteratorSlotted<BindingNodeId>
+    {
+        private final BindingNodeId input;
+        private final Scan scan1;
+        private final Var[] var1;
+        private final Scan scan2;
+        private final Var[] var2;
+        // The tuples of each scan for the current NodeId of the shared variable.
+        private final List<Tuple<NodeId>> group1 = new ArrayList<>();
+        private final List<Tuple<NodeId>> group2 = new ArrayList<>();
+        private int idx1 = 0;
+        private int idx2 = 0;
+        // The scan being looked up for each NodeId of the other, or null when merging.
+        private Scan probed = null;
+
+        MergeJoin(BindingNodeId input, Scan scan1, Var[] var1, Scan scan2, Var[] var2)
+        {
+            this.input = input;
+            this.scan1 = scan1;
+            this.var1 = var1;
+            this.scan2 = scan2;
+            this.var2 = var2;
+        }
+
+        @Override
+        protected BindingNodeId moveToNext()
+        {
+            for (;;) {
+                if ( idx1 < group1.size() ) {
+                    Tuple<NodeId> tuple1 = group1.get(idx1);
+                    Tuple<NodeId> tuple2 = group2.get(idx2);
+                    if ( ++idx2 == group2.size() ) {
+                        idx2 = 0;
+                        idx1++;
+                    }
+                    BindingNodeId binding = bind(tuple1, tuple2);
+                    if ( binding != null )
+                        return binding;
+                    continue;
+                }
+                if ( ! nextGroup() )
+                    return null;
+            }
+        }
+
+        @Override
+        protected boolean hasMore()
+        {
+            return true;
+        }
+
+        /** Find the next NodeId in both scans and collect the tuples for it. */
+        private boolean nextGroup()
+        {
+            group1.clear();
+            group2.clear();
+            idx1 = 0;
+            idx2 = 0;
+            if ( probed != null )
+                return nextGroupProbe();
+            for (;;) {
+                if ( scan1.current == null || scan2.current == null )
+                    return false;
+                int x = NodeIdFactory.compareAsKeys(scan1.key(), scan2.key());
+                if ( x < 0 )
+                    scan1.seek(scan2.key());
+                else if ( x > 0 )
+                    scan2.seek(scan1.key());
+                else
+                    break;
+                if ( scan1.restarts >= ProbeAfter || scan2.restarts >= ProbeAfter ) {
+                    probed = ( scan1.restarts >= ProbeAfter ) ? scan1 : scan2;
+                    probed.close();
+                    return nextGroupProbe();
+                }
+            }
+            NodeId key = scan1.key();
+            scan1.collect(key, group1);
+            scan2.collect(key, group2);
+            return true;
+        }
+
+        private boolean nextGroupProbe()
+        {
+            Scan driver = ( probed == scan1 ) ? scan2 : scan1;
+            List<Tuple<NodeId>> driverGroup = ( probed == scan1 ) ? group2 : group1;
+            List<Tuple<NodeId>> probedGroup = ( probed == scan1 ) ? group1 : group2;
+            while ( driver.current != null ) {
+                NodeId key = driver.key();
+                driver.collect(key, driverGroup);
+                probed.probe(key, probedGroup);
+                if ( ! probedGroup.isEmpty() )
+                    return true;
+                driverGroup.clear();
+            }
+            return false;
+        }
+
+        private BindingNodeId bind(Tuple<NodeId> tuple1, Tuple<NodeId> tuple2)
+        {
+            BindingNodeId output = new BindingNodeId(input);
+            if ( ! bind(output, var1, tuple1) || ! bind(output, var2, tuple2) )
+                return null;
+            return output;
+        }
+
+        private static boolean bind(BindingNodeId output, Var[] vars, Tuple<NodeId> tuple)
+        {
+            for ( int i = 0 ; i < vars.length ; i++ ) {
+                Var v = vars[i];
+                if ( v == null )
+                    continue;
+                NodeId id = tuple.get(i);
+                NodeId id2 = output.get(v);
+                if ( id2 == null )
+                    output.put(v, id);
+                else if ( ! id2.equals(id) )
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        protected void closeIterator()
+        {
+            scan1.close();
+            scan2.close();
+        }
+    }
+
+    private static int slotOf(Tuple<Node> tuple, Node n)
+    {
+        for ( int i = 0 ; i < tuple.len() ; i++ ) {
+            if ( n.equals(tuple.get(i)) )
+                return i;
+        }
+        return -1;
+    }
+
+    private static int slotOf(Var[] vars, Var v)
+    {
+        for ( int i = 0 ; i < vars.length ; i++ ) {
+            if ( v.equals(vars[i]) )
+                return i;
+        }
+        return -1;
+    }
+
+    /*package*/ static boolean hasTripleTerm(Tuple<Node> tuple)
+    {
+        for ( Node n : tuple ) {
+            if ( n.isNodeTriple() )
+                return true;
+        }
+        return false;
+    }
+}
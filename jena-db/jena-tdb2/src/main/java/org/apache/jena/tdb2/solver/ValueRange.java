@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.expr.*;
+
+/**
+ * A range of numbers that a variable must be in for a filter to be true, from
+ * comparisons of the variable with numeric constants. Both ends are inclusive, so the
+ * range may include some numbers for which the filter is false; the filter must still
+ * be applied.
+ */
+public class ValueRange
+{
+    // null for no limit.
+    private final BigDecimal lo;
+    private final BigDecimal hi;
+
+    private ValueRange(BigDecimal lo, BigDecimal hi)
+    {
+        this.lo = lo;
+        this.hi = hi;
+    }
+
+    /**
+     * The ranges for variables from the expressions of a filter, which are a
+     * conjunction. Variables compared with numeric constants with {@code <},
+     * {@code <=}, {@code >}, {@code >=} or {@code =} have a range.
+     */
+    public static Map<Var, ValueRange> ranges(ExprList exprs)
+    {
+        Map<Var, ValueRange> ranges = new HashMap<>();
+        for ( Expr expr : exprs )
+            accumulate(expr, ranges);
+        return ranges;
+    }
+
+    private static void accumulate(Expr expr, Map<Var, ValueRange> ranges)
+    {
+        if ( expr instanceof E_LogicalAnd ) {
+            accumulate(((E_LogicalAnd)expr).getArg1(), ranges);
+            accumulate(((E_LogicalAnd)expr).getArg2(), ranges);
+            return;
+        }
+        if ( ! ( expr instanceof ExprFunction2 ) )
+            return;
+        ExprFunction2 func = (ExprFunction2)expr;
+        Expr arg1 = func.getArg1();
+        Expr arg2 = func.getArg2();
+        // Put in the form "?var op number"
+        boolean reversed = false;
+        if ( arg2.isVariable() && arg1.isConstant() ) {
+            Expr x = arg1;
+            arg1 = arg2;
+            arg2 = x;
+            reversed = true;
+        }
+        if ( ! arg1.isVariable() || ! arg2.isConstant() )
+            return;
+        BigDecimal value = number(arg2.getConstant());
+        if ( value == null )
+            return;
+        ValueRange range;
+        if ( expr instanceof E_Equals )
+            range = new ValueRange(value, value);
+        else if ( expr instanceof E_GreaterThan || expr instanceof E_GreaterThanOrEqual )
+            range = reversed ? new ValueRange(null, value) : new ValueRange(value, null);
+        else if ( expr instanceof E_LessThan || expr instanceof E_LessThanOrEqual )
+            range = reversed ? new ValueRange(value, null) : new ValueRange(null, value);
+        else
+            return;
+        ranges.merge(arg1.asVar(), range, ValueRange::intersect);
+    }
+
+    /** The value of a numeric constant, or null if it is not a finite number. */
+    private static BigDecimal number(NodeValue nv)
+    {
+        if ( nv.isInteger() || nv.isDecimal() )
+            return nv.getDecimal();
+        if ( nv.isDouble() || nv.isFloat() ) {
+            double d = nv.getDouble();
+            if ( Double.isNaN(d) || Double.isInfinite(d) )
+                return null;
+            return new BigDecimal(d);
+        }
+        return null;
+    }
+
+    private static ValueRange intersect(ValueRange range1, ValueRange range2)
+    {
+        return new ValueRange(max(range1.lo, range2.lo), min(range1.hi, range2.hi));
+    }
+
+    private static BigDecimal max(BigDecimal x1, BigDecimal x2)
+    {
+        if ( x1 == null ) return x2;
+        if ( x2 == null ) return x1;
+        return x1.max(x2);
+    }
+
+    private static BigDecimal min(BigDecimal x1, BigDecimal x2)
+    {
+        if ( x1 == null ) return x2;
+        if ( x2 == null ) return x1;
+        return x1.min(x2);
+    }
+
+    /** Whether no number is in the range. */
+    public boolean isEmpty()
+    {
+        return lo != null && hi != null && lo.compareTo(hi) > 0;
+    }
+
+    public boolean contains(BigDecimal x)
+    {
+        return ( lo == null || lo.compareTo(x) <= 0 ) && ( hi == null || x.compareTo(hi) <= 0 );
+    }
+
+    /** The smallest long at or above the bottom of the range, or {@code Long.MIN_VALUE} if there is no limit. */
+    public long loLong()
+    {
+        if ( lo == null )
+            return Long.MIN_VALUE;
+        return clamp(lo.setScale(0, RoundingMode.CEILING));
+    }
+
+    /** The largest long at or below the top of the range, or {@code Long.MAX_VALUE} if there is no limit. */
+    public long hiLong()
+    {
+        if ( hi == null )
+            return Long.MAX_VALUE;
+        return clamp(hi.setScale(0, RoundingMode.FLOOR));
+    }
+
+    private static long clamp(BigDecimal x)
+    {
+        if ( x.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) >= 0 )
+            return Long.MAX_VALUE;
+        if ( x.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) <= 0 )
+            return Long.MIN_VALUE;
+        return x.longValueExact();
+    }
+
+    /** A double at or below the bottom of the range, or negative infinity if there is no limit. */
+    public double loDouble()
+    {
+        if ( lo == null )
+            return Double.NEGATIVE_INFINITY;
+        double d = lo.doubleValue();
+        if ( ! Double.isInfinite(d) && new BigDecimal(d).compareTo(lo) > 0 )
+            d = Math.nextDown(d);
+        return d;
+    }
+
+    /** A double at or above the top of the range, or positive infinity if there is no limit. */
+    public double hiDouble()
+    {
+        if ( hi == null )
+            return Double.POSITIVE_INFINITY;
+        double d = hi.doubleValue();
+        if ( ! Double.isInfinite(d) && new BigDecimal(d).compareTo(hi) < 0 )
+            d = Math.nextUp(d);
+        return d;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "["+(lo == null ? "" : lo.toPlainString())+", "+(hi == null ? "" : hi.toPlainString())+"]";
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver.stats;
+
+import java.util.*;
+
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.atlas.lib.tuple.TupleMap;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.engine.optimizer.CharacteristicSets;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
+import org.apache.jena.tdb2.store.tupletable.TupleIndex;
+import org.apache.jena.tdb2.store.tupletable.TupleTable;
+
+/**
+ * Gather {@link CharacteristicSets} from a triple table.
+ * <p>
+ * The subjects are read from an index in subject order (usually SPO), so only one
+ * subject is held at a time. The distinct objects of each predicate are counted
+ * from an index in predicate-object order (usually POS) if there is one.
+ * Must be called inside a read transaction.
+ */
+public class CharacteristicSetsCollector
+{
+    public static CharacteristicSets gather(NodeTupleTable triples) {
+        TupleTable table = triples.getTupleTable();
+        NodeTable nodeTable = triples.getNodeTable();
+        CharacteristicSets.Builder builder = CharacteristicSets.create();
+        Map<NodeId, Node> predicates = new HashMap<>();
+
+        TupleIndex bySubject = findIndex(table, 0);
+        if ( bySubject != null ) {
+            Iterator<Tuple<NodeId>> iter = bySubject.all();
+            NodeId current = null;
+            List<Node> acc = new ArrayList<>();
+            while ( iter.hasNext() ) {
+                Tuple<NodeId> t = iter.next();
+                if ( ! t.get(0).equals(current) ) {
+                    builder.addSubject(acc);
+                    acc.clear();
+                    current = t.get(0);
+                }
+                acc.add(predicates.computeIfAbsent(t.get(1), nodeTable::getNodeForNodeId));
+            }
+            builder.addSubject(acc);
+        } else {
+            Map<NodeId, List<Node>> subjects = new HashMap<>();
+            Iterator<Tuple<NodeId>> iter = table.getIndex(0).all();
+            while ( iter.hasNext() ) {
+                Tuple<NodeId> t = iter.next();
+                Node p = predicates.computeIfAbsent(t.get(1), nodeTable::getNodeForNodeId);
+                subjects.computeIfAbsent(t.get(0), x->new ArrayList<>()).add(p);
+            }
+            subjects.values().forEach(builder::addSubject);
+        }
+
+        TupleIndex byPredicateObject = findIndex(table, 1, 2);
+        if ( byPredicateObject != null ) {
+            Iterator<Tuple<NodeId>> iter = byPredicateObject.all();
+            NodeId currentP = null;
+            NodeId currentO = null;
+            long objects = 0;
+            while ( iter.hasNext() ) {
+                Tuple<NodeId> t = iter.next();
+                if ( ! t.get(1).equals(currentP) ) {
+                    if ( currentP != null )
+                        builder.distinctObjects(predicates.get(currentP), objects);
+                    currentP = t.get(1);
+                    currentO = null;
+                    objects = 0;
+                }
+                if ( ! t.get(2).equals(currentO) ) {
+                    currentO = t.get(2);
+                    objects++;
+                }
+            }
+            if ( currentP != null )
+                builder.distinctObjects(predicates.get(currentP), objects);
+        } else {
+            Map<NodeId, Set<NodeId>> objects = new HashMap<>();
+            Iterator<Tuple<NodeId>> iter = table.getIndex(0).all();
+            while ( iter.hasNext() ) {
+                Tuple<NodeId> t = iter.next();
+                objects.computeIfAbsent(t.get(1), x->new HashSet<>()).add(t.get(2));
+            }
+            objects.forEach((p, x) -> builder.distinctObjects(predicates.get(p), x.size()));
+        }
+        return builder.build();
+    }
+
+    /** Find an index whose order starts with the given slots (in natural order). */
+    private static TupleIndex findIndex(TupleTable table, int... slots) {
+        for ( TupleIndex index : table.getIndexes() ) {
+            TupleMap map = index.getMapping();
+            boolean matches = true;
+            for ( int i = 0 ; i < slots.length ; i++ )
+                matches = matches && map.mapIdx(i) == slots[i];
+            if ( matches )
+                return index;
+        }
+        return null;
+    }
+}
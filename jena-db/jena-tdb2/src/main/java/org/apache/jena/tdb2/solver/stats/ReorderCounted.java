@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver.stats;
+
+import org.apache.jena.atlas.lib.tuple.TupleFactory;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.optimizer.StatsMatcher;
+import org.apache.jena.sparql.engine.optimizer.reorder.PatternElements;
+import org.apache.jena.sparql.engine.optimizer.reorder.PatternTriple;
+import org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformationSubstitution;
+import org.apache.jena.sparql.graph.NodeConst;
+import org.apache.jena.sparql.sse.Item;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
+
+/**
+ * Reorder the triple patterns of a basic graph pattern using the exact number of
+ * matches of the constants of each pattern, counted from the indexes of the triple table.
+ * This needs indexes that are counted B+Trees (see {@code StoreParams.getIndexCounted}).
+ * <p>
+ * A slot that will be bound by an earlier pattern ({@code TERM}) is not known until
+ * execution, so the count is capped by the same approximate weights as
+ * {@link StatsMatcher} uses.
+ */
+public class ReorderCounted extends ReorderTransformationSubstitution {
+    private final NodeTupleTable nodeTupleTable;
+
+    public ReorderCounted(NodeTupleTable nodeTupleTable) {
+        this.nodeTupleTable = nodeTupleTable;
+    }
+
+    @Override
+    protected double weight(PatternTriple pt) {
+        NodeId s = nodeId(pt.subject);
+        NodeId p = nodeId(pt.predicate);
+        NodeId o = nodeId(pt.object);
+        if ( NodeId.isDoesNotExist(s) || NodeId.isDoesNotExist(p) || NodeId.isDoesNotExist(o) )
+            return 0;
+        long count = nodeTupleTable.getTupleTable().count(TupleFactory.create3(s, p, o));
+        if ( count < 0 )
+            // No index can count this pattern.
+            return -1;
+        if ( PatternElements.isAnyTerm(pt.subject) )
+            return Math.min(count, StatsMatcher.weightSP);
+        if ( PatternElements.isAnyTerm(pt.object) ) {
+            if ( pt.predicate.isNode() && NodeConst.nodeRDFType.equals(pt.predicate.getNode()) )
+                return Math.min(count, StatsMatcher.weightTypeO);
+            return Math.min(count, StatsMatcher.weightPO);
+        }
+        return count;
+    }
+
+    /** The NodeId for a constant, or {@link NodeId#NodeIdAny} for a variable or a term that is not yet known. */
+    private NodeId nodeId(Item item) {
+        if ( ! item.isNode() )
+            return NodeId.NodeIdAny;
+        Node node = item.getNode();
+        if ( Var.isVar(node) )
+            return NodeId.NodeIdAny;
+        return nodeTupleTable.getNodeTable().getNodeIdForNode(node);
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver.stats;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.dboe.transaction.txn.Transaction;
+import org.apache.jena.dboe.transaction.txn.TransactionListener;
+import org.apache.jena.dboe.transaction.txn.TransactionalSystem;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.engine.optimizer.StatsMatcher;
+import org.apache.jena.sparql.engine.optimizer.reorder.PatternTriple;
+import org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformationSubstitution;
+import org.apache.jena.sparql.graph.NodeConst;
+import org.apache.jena.sparql.sse.Item;
+import org.apache.jena.sparql.sse.ItemList;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
+import org.apache.jena.tdb2.store.tupletable.TupleTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reorder the triple patterns of a basic graph pattern using predicate and
+ * {@code rdf:type} counts of the default graph that are kept up to date as write
+ * transactions commit. This is the {@link StatsMatcher} of a {@code stats.opt} file,
+ * without the need to run {@code tdb2.tdbstats} again after the data changes.
+ * <p>
+ * The counts are read from the file saved when the database was last closed, or, if
+ * there is none, collected by a scan of the triple table. The file is removed when it is
+ * read so that, after a crash, the counts are collected again. After that, the counts
+ * change with each triple added to, or deleted from, the triple table. The changes of a
+ * write transaction apply when it commits and are dropped if it aborts.
+ * <p>
+ * Bulk loaders that write to the indexes directly call {@link #refresh(DatasetGraphTDB)}
+ * when they finish.
+ */
+public class ReorderMaintained extends ReorderTransformationSubstitution
+                               implements TransactionListener, TupleTable.Monitor {
+    private static Logger log = LoggerFactory.getLogger(ReorderMaintained.class);
+
+    private final NodeTupleTable nodeTupleTable;
+    private final TransactionalSystem txnSystem;
+    private final String filename;
+
+    // Committed counts.  Guarded by "this".
+    private Map<Node, Long> predicates = new HashMap<>();
+    private Map<Node, Long> types = new HashMap<>();
+    private long count = 0;
+    // Built from the committed counts when first needed.
+    private StatsMatcher matcher = null;
+
+    // Changes by the write transaction. Only used by the writer.
+    private final Map<NodeId, Long> txnPredicates = new HashMap<>();
+    private final Map<NodeId, Long> txnTypes = new HashMap<>();
+    private long txnCount = 0;
+    private NodeId txnTypeId = null;
+    // The changes, as nodes, between prepare and commit.
+    private Map<Node, Long> preparedPredicates = null;
+    private Map<Node, Long> preparedTypes = null;
+
+    /**
+     * Statistics for the triple table {@code nodeTupleTable}. If {@code filename} is not
+     * null, the counts are saved there by {@link #save()}.
+     */
+    public ReorderMaintained(NodeTupleTable nodeTupleTable, TransactionalSystem txnSystem, String filename) {
+        this.nodeTupleTable = nodeTupleTable;
+        this.txnSystem = txnSystem;
+        this.filename = filename;
+    }
+
+    /** After a bulk load that did not go through the triple table, collect the counts again. */
+    public static void refresh(DatasetGraphTDB dsg) {
+        if ( dsg.getReorderTransform() instanceof ReorderMaintained )
+            ((ReorderMaintained)dsg.getReorderTransform()).scan();
+    }
+
+    /** Set the counts, from the saved file if there is one, else from the triple table. */
+    public void init() {
+        if ( filename != null && FileOps.exists(filename) ) {
+            try {
+                load(filename);
+                FileOps.delete(filename);
+                return;
+            } catch (RuntimeException ex) {
+                log.warn("Failed to read statistics file: "+filename+" : "+ex.getMessage());
+                FileOps.delete(filename);
+            }
+        }
+        scan();
+    }
+
+    /** Collect the counts from the triple table. */
+    public void scan() {
+        // Changes committed by a writer during the scan may be lost.
+        // They are only used to choose the order of patterns.
+        StatsResults results = Txn.calculateRead(txnSystem, ()->{
+            StatsCollectorNodeId collector = new StatsCollectorNodeId(nodeTupleTable.getNodeTable());
+            Iterator<Tuple<NodeId>> iter = nodeTupleTable.findAll();
+            iter.forEachRemaining(t->collector.record(null, t.get(0), t.get(1), t.get(2)));
+            return collector.results();
+        });
+        Map<Node, Long> predicates = new HashMap<>();
+        Map<Node, Long> types = new HashMap<>();
+        results.getPredicates().forEach((n, x)->predicates.put(n, (long)x));
+        results.getTypes().forEach((n, x)->types.put(n, (long)x));
+        set(predicates, types, results.getCount());
+    }
+
+    /** Save the committed counts, if there is a file for them. */
+    public synchronized void save() {
+        if ( filename != null )
+            Stats.write(filename, results());
+    }
+
+    private void load(String filename) {
+        Map<Node, Long> predicates = new HashMap<>();
+        Map<Node, Long> types = new HashMap<>();
+        long count = 0;
+        Item stats = SSE.readFile(filename);
+        // (stats (meta ...) (<p> n) ((VAR rdf:type <T>) n) ... (other 0))
+        for ( Item elt : stats.getList().cdr() ) {
+            if ( elt.isTagged(StatsMatcher.META) ) {
+                Item x = Item.find(elt.getList(), StatsMatcher.COUNT);
+                if ( x != null )
+                    count = number(x.getList().get(1));
+                continue;
+            }
+            Item key = elt.getList().get(0);
+            if ( key.isNode() )
+                predicates.put(key.getNode(), number(elt.getList().get(1)));
+            else if ( key.isList() && key.getList().size() == 3 )
+                types.put(key.getList().get(2).getNode(), number(elt.getList().get(1)));
+        }
+        set(predicates, types, count);
+    }
+
+    private static long number(Item item) {
+        return ((Number)item.getNode().getLiteralValue()).longValue();
+    }
+
+    private synchronized void set(Map<Node, Long> predicates, Map<Node, Long> types, long count) {
+        this.predicates = predicates;
+        this.types = types;
+        this.count = count;
+        this.matcher = null;
+    }
+
+    /** The committed counts. */
+    public synchronized StatsResults results() {
+        // The stats format has int counts.
+        return new StatsResults(asInts(predicates), asInts(types), asInt(count));
+    }
+
+    private static Map<Node, Integer> asInts(Map<Node, Long> counts) {
+        Map<Node, Integer> x = new HashMap<>(counts.size());
+        counts.forEach((n, c)->x.put(n, asInt(c)));
+        return x;
+    }
+
+    private static int asInt(long x) {
+        return (int)Math.min(x, Integer.MAX_VALUE);
+    }
+
+    private synchronized StatsMatcher matcher() {
+        if ( matcher == null )
+            matcher = new StatsMatcher(Stats.format(results()));
+        return matcher;
+    }
+
+    @Override
+    protected double weight(PatternTriple pt) {
+        return matcher().match(pt);
+    }
+
+    // -- TupleTable.Monitor
+
+    @Override
+    public void added(Tuple<NodeId> tuple) {
+        change(tuple, 1);
+    }
+
+    @Override
+    public void deleted(Tuple<NodeId> tuple) {
+        change(tuple, -1);
+    }
+
+    private void change(Tuple<NodeId> tuple, long delta) {
+        NodeId p = tuple.get(1);
+        if ( txnTypeId == null && ! txnPredicates.containsKey(p) ) {
+            // rdf:type may be new in this transaction so look at each predicate the first
+            // time it is seen.
+            if ( NodeConst.nodeRDFType.equals(nodeTupleTable.getNodeTable().getNodeForNodeId(p)) )
+                txnTypeId = p;
+        }
+        txnCount += delta;
+        txnPredicates.merge(p, delta, Long::sum);
+        if ( p.equals(txnTypeId) )
+            txnTypes.merge(tuple.get(2), delta, Long::sum);
+    }
+
+    // -- TransactionListener
+
+    @Override
+    public void notifyTxnStart(Transaction transaction) {
+        if ( transaction.isWriteTxn() )
+            clearTxn();
+    }
+
+    @Override
+    public void notifyPromoteFinish(Transaction transaction) {
+        if ( transaction.isWriteTxn() )
+            clearTxn();
+    }
+
+    @Override
+    public void notifyPrepareStart(Transaction transaction) {
+        // The transaction can still read the node table.
+        if ( transaction.isWriteTxn() ) {
+            NodeTable nodeTable = nodeTupleTable.getNodeTable();
+            preparedPredicates = asNodes(nodeTable, txnPredicates);
+            preparedTypes = asNodes(nodeTable, txnTypes);
+        }
+    }
+
+    @Override
+    public void notifyCommitFinish(Transaction transaction) {
+        if ( ! transaction.isWriteTxn() )
+            return;
+        if ( txnCount != 0 || ! txnPredicates.isEmpty() ) {
+            synchronized(this) {
+                count += txnCount;
+                apply(predicates, preparedPredicates);
+                apply(types, preparedTypes);
+                matcher = null;
+            }
+        }
+        clearTxn();
+    }
+
+    @Override
+    public void notifyAbortStart(Transaction transaction) {
+        if ( transaction.isWriteTxn() )
+            clearTxn();
+    }
+
+    private void clearTxn() {
+        txnPredicates.clear();
+        txnTypes.clear();
+        txnCount = 0;
+        txnTypeId = null;
+        preparedPredicates = null;
+        preparedTypes = null;
+    }
+
+    private static Map<Node, Long> asNodes(NodeTable nodeTable, Map<NodeId, Long> changes) {
+        Map<Node, Long> x = new HashMap<>(changes.size());
+        changes.forEach((id, delta)->x.merge(nodeTable.getNodeForNodeId(id), delta, Long::sum));
+        return x;
+    }
+
+    private static void apply(Map<Node, Long> counts, Map<Node, Long> changes) {
+        if ( changes == null )
+            return;
+        changes.forEach((n, delta)->{
+            long c = counts.getOrDefault(n, 0L) + delta;
+            if ( c > 0 )
+                counts.put(n, c);
+            else
+                counts.remove(n);
+        });
+    }
+}
@@ -29,6 +29,7 @@ import org.apache.jena.dboe.transaction.txn.TransactionalSystem;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.Node;
 import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.core.TransactionalShareRead;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformation;
 import org.apache.jena.tdb2.TDBException;
 import org.apache.jena.tdb2.lib.NodeLib;
@@ -36,7 +37,7 @@ import org.apache.jena.tdb2.params.StoreParams;
 import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
 
 final
-public class DatasetGraphTDB extends DatasetGraphStorage
+public class DatasetGraphTDB extends DatasetGraphStorage implements TransactionalShareRead
 {
     private final StorageTDB storageTDB;
     private final Location location;
@@ -79,10 +80,21 @@ public class DatasetGraphTDB extends DatasetGraphStorage
         return storageTDB.getTripleTable();
     }
 
+    public StorageTDB getStorageTDB() {
+        checkNotClosed();
+        return storageTDB;
+    }
+
     public TransactionalSystem getTxnSystem() {
         return txnSystem;
     }
 
+    @Override
+    public Runnable shareRead(Runnable task) {
+        checkNotClosed();
+        return txnSystem.shareRead(task);
+    }
+
     public StoreParams getStoreParams() {
         return storeParams;
     }
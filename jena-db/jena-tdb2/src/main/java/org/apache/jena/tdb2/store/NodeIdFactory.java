@@ -175,6 +175,14 @@ public class NodeIdFactory
         b.putLong(idx, v2);
     }
 
+    /**
+     * Compare two NodeIds in the order they have in index keys,
+     * which is not the order of {@link NodeId#compare}.
+     */
+    public static int compareAsKeys(NodeId nodeId1, NodeId nodeId2) {
+        return Long.compareUnsigned(encode(nodeId1), encode(nodeId2));
+    }
+
     public static void setNext(NodeId nodeId, byte[] b, int idx) {
         long v2 = encode(nodeId);
         Bytes.setLong(v2+1, b, idx);
@@ -58,13 +58,30 @@ import org.apache.jena.tdb2.store.value.*;
  * <li>Float
  * </ul>
  *
+ * Encoding version 2 ({@link #Version2}), chosen when a database is created, also inlines:
+ * <ul>
+ * <li>xsd:string of up to 7 bytes (UTF-8). See {@link StringNode}.
+ * <li>Language tagged strings with a short language tag and lexical form. See {@link StringNode}.
+ * <li>xsd:dateTime, xsd:dateTimeStamp and xsd:date, to the second, with any timezone and
+ *     signed years, when the version 1 encoding does not fit. See {@link DateTimeNode}.
+ * <li>xsd:duration, xsd:dayTimeDuration and xsd:yearMonthDuration. See {@link DurationNode}.
+ * </ul>
+ * A database using version 2 can not be read by older versions of TDB2.
+ *
  * @see IntegerNode
  * @see DecimalNode56
  * @see DoubleNode62
  * @see DateTimeNode DateTimeNode for xsd:date and xsd:DateTime
  * @see FloatNode
+ * @see StringNode
+ * @see DurationNode
  */
 public class NodeIdInline {
+    /** The original encoding of values in NodeIds. */
+    public static final int Version1 = 1;
+    /** Adds short strings, short language tagged strings, more xsd:dateTime values and durations. */
+    public static final int Version2 = 2;
+
     /** Datatypes that are candidates for inlining */
     private static Set<RDFDatatype> datatypes = new HashSet<>();
     static {
@@ -112,8 +129,27 @@ public class NodeIdInline {
         derivedTypeMap.put(NodeIdType.XSD_UNSIGNEDBYTE, XSDDatatype.XSDunsignedByte);
     }
 
+    // Version 2 types.
+    private static BiMap<NodeIdType, RDFDatatype> version2TypeMap = EnumHashBiMap.create(NodeIdType.class);
+    static {
+        version2TypeMap.put(NodeIdType.XSD_DATETIME_EXT, XSDDatatype.XSDdateTime);
+        version2TypeMap.put(NodeIdType.XSD_DATETIMESTAMP_EXT, XSDDatatype.XSDdateTimeStamp);
+        version2TypeMap.put(NodeIdType.XSD_DATE_EXT, XSDDatatype.XSDdate);
+        version2TypeMap.put(NodeIdType.XSD_DURATION, XSDDatatype.XSDduration);
+        version2TypeMap.put(NodeIdType.XSD_DAYTIMEDURATION, XSDDatatype.XSDdayTimeDuration);
+        version2TypeMap.put(NodeIdType.XSD_YEARMONTHDURATION, XSDDatatype.XSDyearMonthDuration);
+    }
+
     /** Encode a node as an inline literal.  Return null if it can't be done */
     public static NodeId inline(Node node) {
+        return inline(node, Version1);
+    }
+
+    /**
+     * Encode a node as an inline literal using the given encoding version.
+     * Return null if it can't be done
+     */
+    public static NodeId inline(Node node, int version) {
         if ( node == null ) {
             Log.warn(NodeId.class, "Null node: " + node);
             return null;
@@ -125,16 +161,67 @@ public class NodeIdInline {
         if ( !node.isLiteral() )
             return null;
 
-        if ( NodeUtils.isSimpleString(node) || NodeUtils.isLangString(node) )
-            return null;
+        if ( NodeUtils.isSimpleString(node) || NodeUtils.isLangString(node) ) {
+            if ( version < Version2 )
+                return null;
+            return inlineString(node);
+        }
 
-        try { return inline$(node); }
+        try {
+            NodeId nodeId = inline$(node);
+            if ( nodeId == null && version >= Version2 )
+                nodeId = inlineVersion2(node);
+            return nodeId;
+        }
         catch (Throwable th) {
             Log.warn(NodeId.class, "Failed to process "+node);
             return null;
         }
     }
 
+    private static NodeId inlineString(Node node) {
+        String lex = node.getLiteralLexicalForm();
+        String lang = node.getLiteralLanguage();
+        if ( lang.isEmpty() ) {
+            long v = StringNode.packString(lex);
+            if ( v == StringNode.NO_ENCODING )
+                return null;
+            return NodeId.createRaw(XSD_SHORTSTRING, v);
+        }
+        long v = StringNode.packLangString(lex, lang);
+        if ( v == StringNode.NO_ENCODING )
+            return null;
+        return NodeId.createRaw(RDF_LANGSTRING, v);
+    }
+
+    // Values that the version 1 encoding does not cover.
+    private static NodeId inlineVersion2(Node node) {
+        RDFDatatype dt = node.getLiteralDatatype();
+        NodeIdType type = version2TypeMap.inverse().get(dt);
+        if ( type == null )
+            return null;
+        LiteralLabel lit = node.getLiteral();
+        if ( ! dt.isValidLiteral(lit) )
+            return null;
+        String lex = lit.getLexicalForm();
+        long v;
+        switch (type) {
+            case XSD_DATETIME_EXT:
+            case XSD_DATETIMESTAMP_EXT:
+                v = DateTimeNode.packDateTimeExt(lex);
+                break;
+            case XSD_DATE_EXT:
+                v = DateTimeNode.packDateExt(lex);
+                break;
+            default:
+                v = DurationNode.pack(lex);
+                break;
+        }
+        if ( v == -1 )
+            return null;
+        return NodeId.createRaw(type, v);
+    }
+
     /** Return true if this node has a datatype that look like it is inlineable.
      * The node may still be out of range (e.g. very large integer).
      * Only inline(Node){@literal ->}NodeId can determine that.
@@ -317,6 +404,32 @@ public class NodeIdInline {
                     return NodeConst.nodeTrue;
                 throw new TDBException("Unrecognized boolean node id : " + val);
             }
+            case XSD_SHORTSTRING : {
+                String lex = StringNode.unpackString(nodeId.getValue2());
+                return NodeFactory.createLiteral(lex);
+            }
+            case RDF_LANGSTRING : {
+                long val = nodeId.getValue2();
+                return NodeFactory.createLiteral(StringNode.unpackLangLex(val), StringNode.unpackLang(val));
+            }
+            case XSD_DATETIMESTAMP_EXT:
+            case XSD_DATETIME_EXT: {
+                String lex = DateTimeNode.unpackDateTimeExt(nodeId.getValue2());
+                return NodeFactory.createLiteral(lex, version2TypeMap.get(type));
+            }
+            case XSD_DATE_EXT: {
+                String lex = DateTimeNode.unpackDateExt(nodeId.getValue2());
+                return NodeFactory.createLiteral(lex, XSDDatatype.XSDdate);
+            }
+            case XSD_DURATION:
+            case XSD_DAYTIMEDURATION: {
+                String lex = DurationNode.unpack(nodeId.getValue2());
+                return NodeFactory.createLiteral(lex, version2TypeMap.get(type));
+            }
+            case XSD_YEARMONTHDURATION: {
+                String lex = DurationNode.unpackYearMonth(nodeId.getValue2());
+                return NodeFactory.createLiteral(lex, XSDDatatype.XSDyearMonthDuration);
+            }
             default :
                 throw new TDBException("Unrecognized node id type: " + type);
         }
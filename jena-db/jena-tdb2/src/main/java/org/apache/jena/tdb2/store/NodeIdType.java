@@ -57,6 +57,15 @@ public enum NodeIdType {
     XSD_UNSIGNEDSHORT(T_UNSIGNEDSHORT, "UnsignedShort"),
     XSD_UNSIGNEDBYTE(T_UNSIGNEDBYTE, "UnsignedByte"),
 
+    // Encoding version 2.
+    RDF_LANGSTRING(T_LANGSTRING, "LangString"),
+    XSD_DATETIME_EXT(T_DATETIME_EXT, "DateTimeExt"),
+    XSD_DATETIMESTAMP_EXT(T_DATETIMESTAMP_EXT, "DateTimeStampExt"),
+    XSD_DATE_EXT(T_DATE_EXT, "DateExt"),
+    XSD_DURATION(T_DURATION, "Duration"),
+    XSD_DAYTIMEDURATION(T_DAYTIMEDURATION, "DayTimeDuration"),
+    XSD_YEARMONTHDURATION(T_YEARMONTHDURATION, "YearMonthDuration"),
+
     // Never stored.
     SPECIAL(T_SPECIAL, "Special"),
     // Used here only.
@@ -107,6 +116,15 @@ public enum NodeIdType {
         public static final int T_UNSIGNEDBYTE = enc(21);
         // 21 is 00010101
 
+        // Encoding version 2 - see NodeIdInline.
+        public static final int T_LANGSTRING = enc(22);
+        public static final int T_DATETIME_EXT = enc(23);
+        public static final int T_DATETIMESTAMP_EXT = enc(24);
+        public static final int T_DATE_EXT = enc(25);
+        public static final int T_DURATION = enc(26);
+        public static final int T_DAYTIMEDURATION = enc(27);
+        public static final int T_YEARMONTHDURATION = enc(28);
+
         // Never stored : bits 1011 0000 so as not to look like a double.
         public static final int T_SPECIAL = enc(0x30);
         public static final int T_INVALID = enc(0x31);
@@ -192,6 +210,14 @@ public enum NodeIdType {
             case XSD_UNSIGNEDINT:
             case XSD_UNSIGNEDSHORT:
             case XSD_UNSIGNEDBYTE:
+
+            case RDF_LANGSTRING:
+            case XSD_DATETIME_EXT:
+            case XSD_DATETIMESTAMP_EXT:
+            case XSD_DATE_EXT:
+            case XSD_DURATION:
+            case XSD_DAYTIMEDURATION:
+            case XSD_YEARMONTHDURATION:
                 return true;
             default:
                 return false;
@@ -254,6 +280,14 @@ public enum NodeIdType {
         if (x == XSD_UNSIGNEDINT.value )            return XSD_UNSIGNEDINT;
         if (x == XSD_UNSIGNEDSHORT.value )          return XSD_UNSIGNEDSHORT;
         if (x == XSD_UNSIGNEDBYTE.value )           return XSD_UNSIGNEDBYTE;
+
+        if (x == RDF_LANGSTRING.value )             return RDF_LANGSTRING;
+        if (x == XSD_DATETIME_EXT.value )           return XSD_DATETIME_EXT;
+        if (x == XSD_DATETIMESTAMP_EXT.value )      return XSD_DATETIMESTAMP_EXT;
+        if (x == XSD_DATE_EXT.value )               return XSD_DATE_EXT;
+        if (x == XSD_DURATION.value )               return XSD_DURATION;
+        if (x == XSD_DAYTIMEDURATION.value )        return XSD_DAYTIMEDURATION;
+        if (x == XSD_YEARMONTHDURATION.value )      return XSD_YEARMONTHDURATION;
         //if (x == EXTENSION.value )                  return EXTENSION;
         return INVALID$;
     }
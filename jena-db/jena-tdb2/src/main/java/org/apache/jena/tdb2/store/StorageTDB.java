@@ -22,7 +22,6 @@ import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import org.apache.jena.atlas.lib.InternalErrorException;
-import org.apache.jena.atlas.lib.tuple.Tuple;
 import org.apache.jena.dboe.storage.StorageRDF;
 import org.apache.jena.dboe.transaction.txn.Transaction;
 import org.apache.jena.dboe.transaction.txn.TransactionalSystem;
@@ -67,6 +66,7 @@ public class StorageTDB implements StorageRDF {
 
     // Watching changes (add, delete, deleteAny)
 
+    // Set and unset while writers are blocked.
     private DatasetChanges monitor = null;
 
     public void setMonitor(DatasetChanges changes) {
@@ -137,6 +137,12 @@ public class StorageTDB implements StorageRDF {
     public void removeAll(Node s, Node p, Node o) {
         checkActive();
         ensureWriteTxn();
+        if ( monitor != null ) {
+            // Delete one at a time so the monitor sees each change.
+            removeWorker(() -> getTripleTable().find(s, p, o),
+                         t  -> delete(t.getSubject(), t.getPredicate(), t.getObject()));
+            return;
+        }
         removeWorker(() -> tripleTable.getNodeTupleTable().findAsNodeIds(s,p,o),
                      x  -> tripleTable.getNodeTupleTable().getTupleTable().delete(x) );
     }
@@ -145,6 +151,11 @@ public class StorageTDB implements StorageRDF {
     public void removeAll(Node g, Node s, Node p, Node o) {
         checkActive();
         ensureWriteTxn();
+        if ( monitor != null ) {
+            removeWorker(() -> getQuadTable().find(g, s, p, o),
+                         q  -> delete(q.getGraph(), q.getSubject(), q.getPredicate(), q.getObject()));
+            return;
+        }
         removeWorker(() -> quadTable.getNodeTupleTable().findAsNodeIds(g,s,p,o),
                      x  -> quadTable.getNodeTupleTable().getTupleTable().delete(x) );
     }
@@ -152,13 +163,13 @@ public class StorageTDB implements StorageRDF {
     private static final int DeleteBufferSize = 1000;
 
     /** General purpose "remove by pattern" code */
-    private void removeWorker(Supplier<Iterator<Tuple<NodeId>>> finder, Consumer<Tuple<NodeId>> deleter) {
+    private <X> void removeWorker(Supplier<Iterator<X>> finder, Consumer<X> deleter) {
         // Allocate buffer once.
         // Not Java11 @SuppressWarnings("unchecked")
         //Tuple<NodeId>[] buffer = (Tuple<NodeId>[])new Object[DeleteBufferSize];
         Object[] buffer = new Object[DeleteBufferSize];
         while (true) {
-            Iterator<Tuple<NodeId>> iter = finder.get();
+            Iterator<X> iter = finder.get();
             // Get a slice
             int idx = 0;
             for (; idx < DeleteBufferSize; idx++ ) {
@@ -169,7 +180,7 @@ public class StorageTDB implements StorageRDF {
             // Delete them.
             for ( int i = 0; i < idx; i++ ) {
                 @SuppressWarnings("unchecked")
-                Tuple<NodeId> x = (Tuple<NodeId>)buffer[i];
+                X x = (X)buffer[i];
                 deleter.accept(x);
                 buffer[i] = null;
             }
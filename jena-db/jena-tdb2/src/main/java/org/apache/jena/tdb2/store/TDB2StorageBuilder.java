@@ -23,10 +23,15 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.UUID;
 
+import org.apache.jena.atlas.lib.FileOps;
 import org.apache.jena.atlas.lib.tuple.TupleMap;
 import org.apache.jena.dboe.DBOpEnvException;
+import org.apache.jena.dboe.base.block.BlockCachePool;
+import org.apache.jena.dboe.base.block.BlockParams;
+import org.apache.jena.dboe.base.block.FileMode;
 import org.apache.jena.dboe.base.file.*;
 import org.apache.jena.dboe.base.record.RecordFactory;
+import org.apache.jena.dboe.base.recordbuffer.RecordPageFormat;
 import org.apache.jena.dboe.index.Index;
 import org.apache.jena.dboe.index.RangeIndex;
 import org.apache.jena.dboe.storage.DatabaseRDF;
@@ -38,6 +43,7 @@ import org.apache.jena.dboe.trans.data.TransBinaryDataFile;
 import org.apache.jena.dboe.transaction.txn.*;
 import org.apache.jena.dboe.transaction.txn.journal.Journal;
 import org.apache.jena.query.ARQ;
+import org.apache.jena.sparql.ARQException;
 import org.apache.jena.sparql.engine.main.QC;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderLib;
 import org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformation;
@@ -47,6 +53,9 @@ import org.apache.jena.tdb2.params.StoreParams;
 import org.apache.jena.tdb2.params.StoreParamsCodec;
 import org.apache.jena.tdb2.params.StoreParamsFactory;
 import org.apache.jena.tdb2.solver.OpExecutorTDB2;
+import org.apache.jena.tdb2.solver.stats.ReorderCounted;
+import org.apache.jena.tdb2.solver.stats.ReorderMaintained;
+import org.apache.jena.tdb2.store.nodetable.NodeHashFilter;
 import org.apache.jena.tdb2.store.nodetable.NodeTable;
 import org.apache.jena.tdb2.store.nodetable.NodeTableCache;
 import org.apache.jena.tdb2.store.nodetable.NodeTableInline;
@@ -102,13 +111,17 @@ public class TDB2StorageBuilder {
         TDB2StorageBuilder builder = new TDB2StorageBuilder(txnSystem, location, params, new ComponentIdMgr(UUID.randomUUID()));
         StorageTDB storage = builder.buildStorage();
         StoragePrefixes prefixes = builder.buildPrefixes();
+        ReorderTransformation reorderTranform = builder.chooseReorderTransformation(storage);
 
         // Finalize.
         builder.components.forEach(txnCoord::add);
         builder.listeners.forEach(txnCoord::addListener);
+        builder.shutdownHooks.forEach(txnCoord::add);
+        txnCoord.setDurability(params.getDurability(), params.getSyncIntervalMillis());
         // Freezes the TransactionCoordinator components
         txnCoord.start();
-        ReorderTransformation reorderTranform = chooseReorderTransformation(location);
+        if ( reorderTranform instanceof ReorderMaintained )
+            ((ReorderMaintained)reorderTranform).init();
         DatasetGraphTDB dsg = new DatasetGraphTDB(location, params, reorderTranform,
                                                   storage, prefixes, txnSystem);
 
@@ -183,20 +196,39 @@ public class TDB2StorageBuilder {
     // ---- Object starts
     private final Location location;
     private final StoreParams params;
+    // The block settings of params, with one off-heap read cache budget for the whole store.
+    private final BlockParams blockParams;
     private final TransactionalSystem txnSystem;
     private final ComponentIdMgr componentIdMgr;
     // Accumulate TransactionalComponents as they are used to build the database.
     private final Collection<TransactionalComponent> components = new ArrayList<>();
     private final Collection<TransactionListener> listeners = new ArrayList<>();
+    private final Collection<TransactionCoordinator.ShutdownHook> shutdownHooks = new ArrayList<>();
 
     private TDB2StorageBuilder(TransactionalSystem txnSystem,
                         Location location, StoreParams params, ComponentIdMgr componentIdMgr) {
         this.txnSystem = txnSystem;
         this.location = location;
         this.params = params;
+        this.blockParams = blockParams(params);
         this.componentIdMgr = componentIdMgr;
     }
 
+    private static BlockParams blockParams(StoreParams params) {
+        Integer offHeapMB = params.getBlockReadCacheOffHeapMB();
+        if ( offHeapMB == null || offHeapMB <= 0 )
+            return params;
+        BlockCachePool pool = new BlockCachePool(offHeapMB*1024L*1024L, params.getBlockSize());
+        return new BlockParams() {
+            @Override public FileMode getFileMode()                 { return params.getFileMode(); }
+            @Override public Integer getBlockSize()                 { return params.getBlockSize(); }
+            @Override public Integer getBlockReadCacheSize()        { return params.getBlockReadCacheSize(); }
+            @Override public Integer getBlockWriteCacheSize()       { return params.getBlockWriteCacheSize(); }
+            @Override public Integer getBlockReadCacheOffHeapMB()   { return offHeapMB; }
+            @Override public BlockCachePool getBlockCachePool()     { return pool; }
+        };
+    }
+
 //    private Location getLocation()               { return location; }
 //    private StoreParams getParams()              { return params; }
 //    private TransactionCoordinator getTxnCoord() { return txnCoord; }
@@ -285,15 +317,16 @@ public class TDB2StorageBuilder {
     private TupleIndex makeTupleIndex(String primary, String index, String name) {
         TupleMap cmap = TupleMap.create(primary, index);
         RecordFactory rf = new RecordFactory(SystemTDB.SizeOfNodeId * cmap.length(), 0);
-        RangeIndex rIdx = makeRangeIndex(rf, index);
+        BPlusTree rIdx = makeRangeIndex(rf, params.getIndexRecordFormat(), params.getIndexCounted(), index);
+        rIdx.setReadAhead(params.getIndexReadAhead());
         TupleIndex tIdx = new TupleIndexRecord(primary.length(), cmap, index, rf, rIdx);
         return tIdx;
     }
 
-    private RangeIndex makeRangeIndex(RecordFactory recordFactory, String name) {
+    private BPlusTree makeRangeIndex(RecordFactory recordFactory, RecordPageFormat recordFormat, boolean counted, String name) {
         ComponentId cid = componentIdMgr.getComponentId(name);
         FileSet fs = new FileSet(location, name);
-        BPlusTree bpt = BPlusTreeFactory.createBPTree(cid, fs, recordFactory);
+        BPlusTree bpt = BPlusTreeFactory.createBPTree(cid, fs, blockParams, recordFormat, counted, recordFactory);
         components.add(bpt);
         return bpt;
     }
@@ -309,18 +342,35 @@ public class TDB2StorageBuilder {
             listeners.add(nodeTableCache);
         }
 
-        nodeTable = NodeTableInline.create(nodeTable);
+        nodeTable = NodeTableInline.create(nodeTable, params.getNodeIdEncoding());
         return nodeTable;
     }
 
     private NodeTable buildBaseNodeTable(String name) {
         RecordFactory recordFactory = new RecordFactory(SystemTDB.LenNodeHash, SystemTDB.SizeOfNodeId);
-        Index index = makeRangeIndex(recordFactory, name);
+        // Node hashes do not share prefixes.
+        Index index = makeRangeIndex(recordFactory, RecordPageFormat.fixed, false, name);
 
         String dataname = name+"-data";
         TransBinaryDataFile transBinFile = makeBinaryDataFile(dataname);
         components.add(transBinFile);
-        return new NodeTableTRDF(index, transBinFile);
+        NodeHashFilter filter = makeNodeHashFilter(name);
+        return new NodeTableTRDF(index, transBinFile, filter);
+    }
+
+    private NodeHashFilter makeNodeHashFilter(String name) {
+        String filename = location.isMem() ? null : new FileSet(location, name).filename(Names.extNodeFilter);
+        int bitsPerNode = params.getNodeMissFilterBits();
+        if ( bitsPerNode <= 0 ) {
+            // A filter saved earlier does not cover changes made without it.
+            if ( filename != null && FileOps.exists(filename) )
+                FileOps.delete(filename);
+            return null;
+        }
+        NodeHashFilter filter = new NodeHashFilter(bitsPerNode, filename);
+        if ( filename != null )
+            shutdownHooks.add(filter::save);
+        return filter;
     }
 
     private TransBinaryDataFile makeBinaryDataFile(String name) {
@@ -333,13 +383,53 @@ public class TDB2StorageBuilder {
         return transBinFile;
     }
 
+    /**
+     * Choose the BGP optimizer. An optimizer file in the location is used if there is one.
+     * Otherwise, if the indexes are counted, reorder by counting matches in the triple
+     * indexes, else, if statistics are maintained, reorder by those statistics.
+     */
+    private ReorderTransformation chooseReorderTransformation(StorageTDB storage) {
+        String statsFile = ( location == null || location.isMem() ) ? null : location.getPath(Names.statsAuto) ;
+        boolean optFile = location == null || location.exists(Names.optStats) || location.exists(Names.optFixed)
+                          || location.exists(Names.optNone) || location.exists(Names.optCharacteristicSets) ;
+        NodeTupleTable triples = storage.getTripleTable().getNodeTupleTable() ;
+        if ( ! optFile && ! params.getIndexCounted() && params.getStatsAuto() ) {
+            log.debug("Maintained statistics BGP optimizer") ;
+            ReorderMaintained reorder = new ReorderMaintained(triples, txnSystem, statsFile) ;
+            triples.getTupleTable().setMonitor(reorder) ;
+            listeners.add(reorder) ;
+            if ( statsFile != null )
+                shutdownHooks.add(reorder::save) ;
+            return reorder ;
+        }
+        // Counts saved earlier do not cover changes made without them.
+        if ( statsFile != null && FileOps.exists(statsFile) )
+            FileOps.delete(statsFile) ;
+        if ( ! optFile && params.getIndexCounted() ) {
+            log.debug("Counted index BGP optimizer") ;
+            return new ReorderCounted(triples) ;
+        }
+        return chooseReorderTransformation(location) ;
+    }
+
     private static boolean warnAboutOptimizer = true ;
     public static ReorderTransformation chooseReorderTransformation(Location location) {
         if ( location == null )
             return ReorderLib.identity() ;
 
         ReorderTransformation reorder = null ;
-        if ( location.exists(Names.optStats) ) {
+        if ( location.exists(Names.optCharacteristicSets) ) {
+            try {
+                reorder = ReorderLib.characteristicSets(location.getPath(Names.optCharacteristicSets)) ;
+                log.debug("Characteristic sets BGP optimizer") ;
+            }
+            catch (ARQException ex) {
+                log.warn("Error in characteristic sets file: " + ex.getMessage()) ;
+                reorder = null ;
+            }
+        }
+
+        if ( reorder == null && location.exists(Names.optStats) ) {
             try {
                 reorder = ReorderLib.weighted(location.getPath(Names.optStats)) ;
                 log.debug("Statistics-based BGP optimizer") ;
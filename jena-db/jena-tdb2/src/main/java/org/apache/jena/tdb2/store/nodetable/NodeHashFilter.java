@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.store.nodetable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.dboe.base.record.Record;
+import org.apache.jena.dboe.index.Index;
+import org.apache.jena.tdb2.TDBException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bloom filter over the node hashes of a {@link NodeTableNative}, so that a lookup of a
+ * node that is not in the node table can be answered without probing the index.
+ * <p>
+ * Nodes are only ever added to a node table so the filter only has bits set.
+ * A node added in a transaction that then aborts leaves a false positive, which
+ * is safe. The filter is built on first use, either from the file written at the
+ * last clean shutdown or by scanning the index, and it is rebuilt, larger, from the
+ * index when it has more entries than it was sized for.
+ * <p>
+ * The saved file is removed when it is loaded so that, after a crash, the
+ * filter is rebuilt from the index rather than trusted.
+ * <p>
+ * Node hashes are already well mixed, so the bit positions are taken directly from
+ * the hash bytes (double hashing).
+ */
+public class NodeHashFilter {
+    private static Logger log = LoggerFactory.getLogger(NodeHashFilter.class);
+
+    private static final int Magic = 0x4E484246;   // "NHBF"
+    private static final int MinBits = 64 * 1024;
+
+    private final int bitsPerNode;
+    private final int numHashes;
+    // Null for in-memory.
+    private final String filename;
+
+    private long[] bits = null;
+    private long mask;
+    private long entries;
+
+    private final AtomicLong negatives = new AtomicLong(0);
+    private final AtomicLong falsePositives = new AtomicLong(0);
+
+    /**
+     * Create a filter using {@code bitsPerNode} bits for each node. If {@code filename}
+     * is not null, the filter is saved there by {@link #save()} and used in place of a
+     * scan of the index next time.
+     */
+    public NodeHashFilter(int bitsPerNode, String filename) {
+        if ( bitsPerNode <= 0 )
+            throw new IllegalArgumentException("Bits per node must be positive: "+bitsPerNode);
+        this.bitsPerNode = bitsPerNode;
+        // Optimal number of hash functions: bitsPerNode * ln(2)
+        this.numHashes = Math.max(1, (int)Math.round(bitsPerNode * Math.log(2)));
+        this.filename = filename;
+    }
+
+    /** Has the filter been built? */
+    public boolean isReady() {
+        return bits != null;
+    }
+
+    /** Build the filter, from the saved file if there is one, else from the index. */
+    public void init(Index index) {
+        if ( filename != null && load() )
+            return;
+        rebuild(index);
+    }
+
+    /** Build the filter from the keys (node hashes) of the index. */
+    public void rebuild(Index index) {
+        long count = index.size();
+        allocate(Math.max(count, entries));
+        Iterator<Record> iter = index.iterator();
+        while(iter.hasNext())
+            add(iter.next().getKey());
+        Iter.close(iter);
+    }
+
+    /** Might the node with this hash be in the node table? */
+    public boolean mightContain(byte[] hash) {
+        long h1 = h1(hash);
+        long h2 = h2(hash);
+        for ( int i = 0 ; i < numHashes ; i++ ) {
+            long idx = (h1 + i * h2) & mask;
+            if ( (bits[(int)(idx >>> 6)] & (1L << idx)) == 0 ) {
+                negatives.incrementAndGet();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Add a node hash. */
+    public void add(byte[] hash) {
+        long h1 = h1(hash);
+        long h2 = h2(hash);
+        for ( int i = 0 ; i < numHashes ; i++ ) {
+            long idx = (h1 + i * h2) & mask;
+            bits[(int)(idx >>> 6)] |= (1L << idx);
+        }
+        entries++;
+    }
+
+    /** Record that a "maybe" from the filter was not in the index. */
+    public void falsePositive() {
+        falsePositives.incrementAndGet();
+    }
+
+    /** Does the filter have more entries than it was sized for? */
+    public boolean isOverfull() {
+        return entries > capacity();
+    }
+
+    /** Number of lookups answered "absent" by the filter. */
+    public long getNegatives() {
+        return negatives.get();
+    }
+
+    /** Number of lookups the filter passed to the index that were then not found. */
+    public long getFalsePositives() {
+        return falsePositives.get();
+    }
+
+    /** Number of node hashes added (including any from aborted transactions). */
+    public long getEntries() {
+        return entries;
+    }
+
+    /** Size of the filter, in bits. */
+    public long getNumBits() {
+        return bits == null ? 0 : mask + 1;
+    }
+
+    /** Write the filter to its file, if it has one. */
+    public synchronized void save() {
+        if ( filename == null || bits == null )
+            return;
+        Path path = Paths.get(filename);
+        Path tmp = Paths.get(filename+".tmp");
+        try ( DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))) ) {
+            out.writeInt(Magic);
+            out.writeInt(bitsPerNode);
+            out.writeInt(numHashes);
+            out.writeLong(entries);
+            out.writeInt(bits.length);
+            for ( long x : bits )
+                out.writeLong(x);
+        } catch (IOException ex) {
+            throw new TDBException("Failed to write node filter: "+filename, ex);
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new TDBException("Failed to write node filter: "+filename, ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("NodeHashFilter[bits=%d, hashes=%d, entries=%d, negatives=%d, falsePositives=%d]",
+                             getNumBits(), numHashes, entries, getNegatives(), getFalsePositives());
+    }
+
+    private boolean load() {
+        Path path = Paths.get(filename);
+        if ( ! Files.exists(path) )
+            return false;
+        try {
+            try ( DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path))) ) {
+                if ( in.readInt() != Magic || in.readInt() != bitsPerNode || in.readInt() != numHashes ) {
+                    FmtLog.info(log, "Node filter settings have changed - rebuilding: %s", filename);
+                    return false;
+                }
+                long savedEntries = in.readLong();
+                int len = in.readInt();
+                if ( len <= 0 || Integer.bitCount(len) != 1 )
+                    return false;
+                long[] x = new long[len];
+                for ( int i = 0 ; i < len ; i++ )
+                    x[i] = in.readLong();
+                bits = x;
+                mask = (long)len * Long.SIZE - 1;
+                entries = savedEntries;
+                return true;
+            } finally {
+                // Only valid until the database changes.
+                Files.delete(path);
+            }
+        } catch (IOException ex) {
+            FmtLog.warn(log, "Failed to read node filter - rebuilding: %s: %s", filename, ex.getMessage());
+            bits = null;
+            return false;
+        }
+    }
+
+    private long capacity() {
+        return getNumBits() / bitsPerNode;
+    }
+
+    // Room for twice the expected number of entries.
+    private void allocate(long expected) {
+        long want = Math.max(MinBits, 2 * expected * bitsPerNode);
+        long numBits = Long.highestOneBit(want - 1) << 1;
+        if ( numBits / Long.SIZE > Integer.MAX_VALUE )
+            numBits = (long)Integer.highestOneBit(Integer.MAX_VALUE) * Long.SIZE;
+        bits = new long[(int)(numBits / Long.SIZE)];
+        mask = numBits - 1;
+        entries = 0;
+    }
+
+    private static long h1(byte[] hash) {
+        return bytesToLong(hash, 0, Math.min(8, hash.length));
+    }
+
+    private static long h2(byte[] hash) {
+        long x = ( hash.length > 8 ) ? bytesToLong(hash, 8, hash.length) : Long.rotateLeft(h1(hash), 31) * 0x9E3779B97F4A7C15L;
+        // Odd, so all positions can be reached.
+        return x | 1;
+    }
+
+    private static long bytesToLong(byte[] bytes, int start, int finish) {
+        long x = 0;
+        for ( int i = start ; i < finish && i < start + 8 ; i++ )
+            x = (x << 8) | (bytes[i] & 0xFF);
+        return x;
+    }
+}
@@ -19,13 +19,19 @@
 package org.apache.jena.tdb2.store.nodetable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.atlas.lib.Cache;
 import org.apache.jena.atlas.lib.CacheFactory;
 import org.apache.jena.atlas.lib.Pair;
+import org.apache.jena.atlas.lib.cache.CacheGuava;
+import org.apache.jena.atlas.lib.cache.CacheInfo;
+import org.apache.jena.atlas.lib.cache.CacheTinyLFU;
 import org.apache.jena.atlas.logging.Log;
 import org.apache.jena.dboe.transaction.txn.Transaction;
 import org.apache.jena.dboe.transaction.txn.TransactionListener;
@@ -71,7 +77,22 @@ public class NodeTableCache implements NodeTable, TransactionListener {
     private final Object        lock          = new Object();
     private volatile Thread     writingThread;
 
+    // Estimates of the memory used by cache entries.
+    private static final int EntryOverhead  = 56;
+    private static final int NodeIdSize     = 24;
+    private static final int NodeURISize    = 56;
+    private static final int NodeOtherSize  = 80;
+
     public static NodeTable create(NodeTable nodeTable, StoreParams params) {
+        int nodeCacheMB = params.getNodeCacheMB();
+        if ( nodeCacheMB > 0 ) {
+            // Half the budget for each direction.
+            long bytes = nodeCacheMB * 1024L * 1024L / 2;
+            return new NodeTableCache(nodeTable,
+                                      new CacheTinyLFU<>(bytes, (node, id)->weight(node)),
+                                      new CacheTinyLFU<>(bytes, (id, node)->weight(node)),
+                                      params.getNodeMissCacheSize());
+        }
         int nodeToIdCacheSize = params.getNode2NodeIdCacheSize();
         int idToNodeCacheSize = params.getNodeId2NodeCacheSize();
         if ( nodeToIdCacheSize <= 0 && idToNodeCacheSize <= 0 )
@@ -79,6 +100,18 @@ public class NodeTableCache implements NodeTable, TransactionListener {
         return create(nodeTable, nodeToIdCacheSize, idToNodeCacheSize, params.getNodeMissCacheSize());
     }
 
+    /** Estimate of the bytes used by a cache entry for this node. */
+    private static int weight(Node node) {
+        int x = EntryOverhead + NodeIdSize;
+        if ( node.isURI() )
+            return x + NodeURISize + 2 * node.getURI().length();
+        if ( node.isLiteral() )
+            return x + NodeOtherSize + 2 * (node.getLiteralLexicalForm().length() + node.getLiteralLanguage().length());
+        if ( node.isBlank() )
+            return x + NodeOtherSize + 2 * node.getBlankNodeLabel().length();
+        return x + NodeOtherSize;
+    }
+
     private static NodeTable create(NodeTable nodeTable, int nodeToIdCacheSize, int idToNodeCacheSize, int nodeMissesCacheSize) {
         if ( nodeToIdCacheSize <= 0 && idToNodeCacheSize <= 0 )
             return nodeTable;
@@ -95,11 +128,42 @@ public class NodeTableCache implements NodeTable, TransactionListener {
             notPresent = CacheFactory.createCache(nodeMissesCacheSize);
     }
 
+    private NodeTableCache(NodeTable baseTable, Cache<Node, NodeId> nodeToIdCache, Cache<NodeId, Node> idToNodeCache, int nodeMissesCacheSize) {
+        this.baseTable = baseTable;
+        node2id_Cache = new ThreadBufferingCache<>("nodeToId", nodeToIdCache, 1000);
+        id2node_Cache = new ThreadBufferingCache<>("idToNode", idToNodeCache, 1000);
+        if ( nodeMissesCacheSize > 0 )
+            notPresent = CacheFactory.createCache(nodeMissesCacheSize);
+    }
+
     private static <Key, Value> ThreadBufferingCache<Key, Value> createCache(String label, int mainCachesize, int bufferSize) {
         Cache<Key, Value> cache = CacheFactory.createCache(mainCachesize);
         return new ThreadBufferingCache<>(label, cache, bufferSize);
     }
 
+    // ---- Statistics
+
+    /** Statistics for the Node to NodeId cache, or null if there is no cache. */
+    public CacheInfo getNodeToIdCacheInfo() {
+        return cacheInfo(node2id_Cache);
+    }
+
+    /** Statistics for the NodeId to Node cache, or null if there is no cache. */
+    public CacheInfo getIdToNodeCacheInfo() {
+        return cacheInfo(id2node_Cache);
+    }
+
+    private static CacheInfo cacheInfo(ThreadBufferingCache<?, ?> cache) {
+        if ( cache == null )
+            return null;
+        Cache<?, ?> base = cache.getBaseCache();
+        if ( base instanceof CacheTinyLFU )
+            return ((CacheTinyLFU<?, ?>)base).stats();
+        if ( base instanceof CacheGuava )
+            return new CacheInfo((int)Math.min(Integer.MAX_VALUE, base.size()), ((CacheGuava<?, ?>)base).stats());
+        return null;
+    }
+
     // ---- Cache access, no going to underlying table.
 
     public Node getNodeForNodeIdCache(NodeId id) {
@@ -160,22 +224,35 @@ public class NodeTableCache implements NodeTable, TransactionListener {
 
     @Override
     public List<NodeId> bulkNodeToNodeId(List<Node> required, boolean withAllocation) {
+        NodeId[] nodeIds = new NodeId[required.size()];
         synchronized(lock) {
-            List<Node> nodes = new ArrayList<>();
-            for ( Node n : required ) {
-                //
-                if ( getNodeIdForNodeCache(n) == null )
-                    nodes.add(n);
+            // Nodes not in the cache, once each.
+            Map<Node, NodeId> misses = new LinkedHashMap<>();
+            for ( int i = 0; i < nodeIds.length ; i++ ) {
+                Node n = required.get(i);
+                NodeId nid = ( n == Node.ANY ) ? NodeId.NodeIdAny : cacheLookup(n);
+                if ( nid == null && !withAllocation && notPresent(n) )
+                    nid = NodeId.NodeDoesNotExist;
+                if ( nid == null )
+                    misses.put(n, null);
+                nodeIds[i] = nid;
             }
-            // Check bulk access.
-            List<NodeId> x = baseTable.bulkNodeToNodeId(nodes, true);
+            if ( misses.isEmpty() )
+                return Arrays.asList(nodeIds);
+            List<Node> nodes = new ArrayList<>(misses.keySet());
+            List<NodeId> x = baseTable.bulkNodeToNodeId(nodes, withAllocation);
             for ( int i = 0; i < nodes.size() ; i++ ) {
                 Node n = nodes.get(i);
                 NodeId nid = x.get(i);
-                cacheUpdate(n ,nid);
+                cacheUpdate(n, nid);
+                misses.put(n, nid);
+            }
+            for ( int i = 0; i < nodeIds.length ; i++ ) {
+                if ( nodeIds[i] == null )
+                    nodeIds[i] = misses.get(required.get(i));
             }
-            return x;
         }
+        return Arrays.asList(nodeIds);
     }
 
     @Override
@@ -196,17 +273,14 @@ public class NodeTableCache implements NodeTable, TransactionListener {
         if ( n != null )
             return n;
 
+        // The NodeId to Node mapping never changes (the node table is append-only)
+        // so read outside the lock; only the cache update needs to be consistent.
+        n = baseTable.getNodeForNodeId(id);
         synchronized (lock) {
             // Lock to update two caches consistently.
-            // Verify cache miss
-            n = cacheLookup(id);
-            if ( n != null )
-                return n;
-
-            n = baseTable.getNodeForNodeId(id);
             cacheUpdate(n, id);
-            return n;
         }
+        return n;
     }
 
     // Node ==> NodeId
@@ -18,8 +18,14 @@
 
 package org.apache.jena.tdb2.store.nodetable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.apache.jena.graph.Node;
+import org.apache.jena.tdb2.TDBException;
 import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.NodeIdInline;
 
 /** NodeTable wrapper to handle inline node ids.
  * If a node can be made inline, then the underlying table never sees it.
@@ -31,20 +37,31 @@ public class NodeTableInline extends NodeTableWrapper
 {
     // Stack order: Inline > Cache > Actual
 
+    private final int version;
+
     public static NodeTable create(NodeTable nodeTable)
     {
-        return new NodeTableInline(nodeTable);
+        return create(nodeTable, NodeIdInline.Version1);
+    }
+
+    /** Inline values using NodeId encoding {@code version}; see {@link NodeIdInline}. */
+    public static NodeTable create(NodeTable nodeTable, int version)
+    {
+        if ( version < NodeIdInline.Version1 || version > NodeIdInline.Version2 )
+            throw new TDBException("Unsupported NodeId encoding version: "+version);
+        return new NodeTableInline(nodeTable, version);
     }
 
-    private NodeTableInline(NodeTable nodeTable)
+    private NodeTableInline(NodeTable nodeTable, int version)
     {
         super(nodeTable);
+        this.version = version;
     }
 
     @Override
     public final NodeId getAllocateNodeId(Node node)
     {
-        NodeId nid = NodeId.inline(node);
+        NodeId nid = NodeIdInline.inline(node, version);
         if ( nid != null ) return nid;
         return super.getAllocateNodeId(node);
     }
@@ -52,10 +69,33 @@ public class NodeTableInline extends NodeTableWrapper
     @Override
     public final NodeId getNodeIdForNode(Node node)
     {
-        NodeId nid = NodeId.inline(node);
+        NodeId nid = NodeIdInline.inline(node, version);
         if ( nid != null ) return nid;
         return super.getNodeIdForNode(node);
     }
+
+    /** Inline nodes are encoded; the rest are passed to the wrapped table together. */
+    @Override
+    public final List<NodeId> bulkNodeToNodeId(List<Node> nodes, boolean withAllocation)
+    {
+        NodeId[] nodeIds = new NodeId[nodes.size()];
+        List<Node> stored = new ArrayList<>();
+        for ( int i = 0; i < nodeIds.length ; i++ ) {
+            nodeIds[i] = NodeIdInline.inline(nodes.get(i), version);
+            if ( nodeIds[i] == null )
+                stored.add(nodes.get(i));
+        }
+        if ( stored.isEmpty() )
+            return Arrays.asList(nodeIds);
+        List<NodeId> x = super.bulkNodeToNodeId(stored, withAllocation);
+        int j = 0;
+        for ( int i = 0; i < nodeIds.length ; i++ ) {
+            if ( nodeIds[i] == null )
+                nodeIds[i] = x.get(j++);
+        }
+        return Arrays.asList(nodeIds);
+    }
+
     @Override
     public final Node getNodeForNodeId(NodeId id)
     {
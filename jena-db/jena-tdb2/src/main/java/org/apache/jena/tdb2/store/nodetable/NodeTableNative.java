@@ -18,12 +18,14 @@
 
 package org.apache.jena.tdb2.store.nodetable;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
 import org.apache.jena.atlas.lib.NotImplemented;
 import org.apache.jena.atlas.lib.Pair;
 import org.apache.jena.dboe.base.record.Record;
+import org.apache.jena.dboe.base.record.RecordFactory;
 import org.apache.jena.dboe.index.Index;
 import org.apache.jena.graph.Node;
 import org.apache.jena.tdb2.TDBException;
@@ -38,10 +40,22 @@ import org.apache.jena.tdb2.store.NodeIdFactory;
 public abstract class NodeTableNative implements NodeTable
 {
     protected Index nodeHashToId;        // hash -> int
+    // Optional: answers "not present" without touching the index.
+    private final NodeHashFilter nodeHashFilter;
     private boolean syncNeeded = false;
 
     public NodeTableNative(Index nodeToId) {
+        this(nodeToId, null);
+    }
+
+    public NodeTableNative(Index nodeToId, NodeHashFilter nodeHashFilter) {
         this.nodeHashToId = nodeToId;
+        this.nodeHashFilter = nodeHashFilter;
+    }
+
+    /** The filter of node hashes, or null if there isn't one. */
+    public NodeHashFilter getNodeHashFilter() {
+        return nodeHashFilter;
     }
     // ---- Public interface for Node <==> NodeId
 
@@ -72,9 +86,56 @@ public abstract class NodeTableNative implements NodeTable
         return x == null;
     }
 
+    /**
+     * Find, or allocate, the NodeIds for a list of nodes.
+     * The nodes are looked up in the order of their hashes, which is the order of the
+     * node to NodeId index, so the index is accessed in one pass from low keys to high
+     * keys, and each distinct node is looked up once.
+     */
     @Override
     public List<NodeId> bulkNodeToNodeId(List<Node> nodes, boolean withAllocation) {
-        return NodeTableOps.bulkNodeToNodeIdImpl(this, nodes, withAllocation);
+        int N = nodes.size();
+        RecordFactory factory = nodeHashToId.getRecordFactory();
+        Record[] records = new Record[N];
+        Integer[] order = new Integer[N];
+        for ( int i = 0; i < N ; i++ ) {
+            Node node = nodes.get(i);
+            if ( node != Node.ANY ) {
+                Hash hash = new Hash(factory.keyLength());
+                NodeLib.setHash(hash, node);
+                records[i] = factory.create(hash.getBytes());
+            }
+            order[i] = i;
+        }
+        // Node.ANY, which has no record, first.
+        Arrays.sort(order, (i1, i2) -> {
+            Record r1 = records[i1];
+            Record r2 = records[i2];
+            if ( r1 == null || r2 == null )
+                return Boolean.compare(r1 != null, r2 != null);
+            return Record.compareByKey(r1, r2);
+        });
+        NodeId[] nodeIds = new NodeId[N];
+        synchronized (this) {
+            Record previous = null;
+            NodeId previousId = null;
+            for ( int i : order ) {
+                Record r = records[i];
+                if ( r == null ) {
+                    nodeIds[i] = NodeId.NodeIdAny;
+                    continue;
+                }
+                // Same hash, same node.
+                if ( previous != null && Record.keyEQ(previous, r) ) {
+                    nodeIds[i] = previousId;
+                    continue;
+                }
+                previous = r;
+                previousId = accessIndex(nodes.get(i), r, withAllocation);
+                nodeIds[i] = previousId;
+            }
+        }
+        return Arrays.asList(nodeIds);
     }
 
     @Override
@@ -126,17 +187,32 @@ public abstract class NodeTableNative implements NodeTable
         byte k[] = hash.getBytes();
         // Key only.
         Record r = nodeHashToId.getRecordFactory().create(k);
+        return accessIndex(node, r, create);
+    }
 
+    // The record has the key for the hash of the node.
+    private NodeId accessIndex(Node node, Record r, boolean create)
+    {
+        byte k[] = r.getKey();
         synchronized (this)  // Pair to readNodeFromTable.
         {
+            boolean maybePresent = true;
+            if ( nodeHashFilter != null ) {
+                // Built in the first transaction to use the node table.
+                if ( ! nodeHashFilter.isReady() )
+                    nodeHashFilter.init(nodeHashToId);
+                maybePresent = nodeHashFilter.mightContain(k);
+            }
             // Key and value, or null
-            Record r2 = nodeHashToId.find(r);
+            Record r2 = maybePresent ? nodeHashToId.find(r) : null;
             if ( r2 != null )
             {
                 // Found.  Get the NodeId.
                 NodeId id = NodeIdFactory.get(r2.getValue(), 0);
                 return id;
             }
+            if ( maybePresent && nodeHashFilter != null )
+                nodeHashFilter.falsePositive();
 
             // Not found.
             if ( ! create )
@@ -152,6 +228,11 @@ public abstract class NodeTableNative implements NodeTable
             // Put in index - may appear because of concurrency
             if ( ! nodeHashToId.insert(r) )
                 throw new TDBException("NodeTableBase::nodeToId - record mysteriously appeared");
+            if ( nodeHashFilter != null ) {
+                nodeHashFilter.add(k);
+                if ( nodeHashFilter.isOverfull() )
+                    nodeHashFilter.rebuild(nodeHashToId);
+            }
             return id;
         }
     }
@@ -42,7 +42,11 @@ public class NodeTableTRDF extends NodeTableNative {
     private final TProtocol protocol;
 
     public NodeTableTRDF(Index nodeToId, BinaryDataFile objectFile) {
-        super(nodeToId);
+        this(nodeToId, objectFile, null);
+    }
+
+    public NodeTableTRDF(Index nodeToId, BinaryDataFile objectFile, NodeHashFilter nodeHashFilter) {
+        super(nodeToId, nodeHashFilter);
         try {
             this.diskFile = objectFile;
             transport = new TReadAppendFileTransport(diskFile);
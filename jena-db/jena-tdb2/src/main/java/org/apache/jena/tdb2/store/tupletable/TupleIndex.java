@@ -29,11 +29,11 @@ import org.apache.jena.tdb2.store.NodeId;
 
 public interface TupleIndex extends Sync, Closeable
 {
-    /** Insert a tuple */
-    public void add(Tuple<NodeId> tuple);
+    /** Insert a tuple; return true if it was not already in the index */
+    public boolean add(Tuple<NodeId> tuple);
 
-    /** Delete a tuple */
-    public void delete(Tuple<NodeId> tuple);
+    /** Delete a tuple; return true if it was in the index */
+    public boolean delete(Tuple<NodeId> tuple);
 
     /** Insert tuples */
     public void addAll(Collection<Tuple<NodeId>> tuples);
@@ -55,6 +55,26 @@ public interface TupleIndex extends Sync, Closeable
      */
     public Iterator<Tuple<NodeId>> find(Tuple<NodeId> pattern);
 
+    /**
+     * Find the tuples matching a pattern, in index order, starting at the first tuple
+     * with {@code start}, or a later NodeId, in the first slot of the index that is not
+     * bound by the pattern. The bound slots of the pattern must be the leading slots of
+     * the index. Return null if the pattern is not of this form or the index does not
+     * support starting part way through a range.
+     */
+    public default Iterator<Tuple<NodeId>> findFrom(Tuple<NodeId> pattern, NodeId start) {
+        return null;
+    }
+
+    /**
+     * The number of tuples matching a pattern, in natural order, or -1 if the index can
+     * not count them without a scan. A counted index can count the matches of a pattern
+     * where the bound slots are the leading slots of the index.
+     */
+    public default long count(Tuple<NodeId> pattern) {
+        return -1;
+    }
+
     /** return an iterator of everything */
     public Iterator<Tuple<NodeId>> all();
 
@@ -35,6 +35,7 @@ import org.apache.jena.dboe.base.record.Record;
 import org.apache.jena.dboe.base.record.RecordFactory;
 import org.apache.jena.dboe.base.record.RecordMapper;
 import org.apache.jena.dboe.index.RangeIndex;
+import org.apache.jena.dboe.trans.bplustree.BPlusTree;
 import org.apache.jena.tdb2.TDBException;
 import org.apache.jena.tdb2.lib.TupleLib;
 import org.apache.jena.tdb2.store.NodeId;
@@ -46,12 +47,15 @@ public class TupleIndexRecord extends TupleIndexBase
     private final RangeIndex index;
     private final RecordFactory factory;
     private final RecordMapper<Tuple<NodeId>> recordMapper;
+    // Whether the index can count a range without a scan.
+    private final boolean counted;
 
     public TupleIndexRecord(int N,  TupleMap tupleMapping, String name, RecordFactory factory, RangeIndex index)
     {
         super(N, tupleMapping, name);
         this.factory = factory;
         this.index = index;
+        this.counted = ( index instanceof BPlusTree ) && ((BPlusTree)index).getParams().isCounted();
 
         if ( factory.keyLength() != N*SizeOfNodeId)
             throw new TDBException(format("Mismatch: TupleIndex of length %d is not comparative with a factory for key length %d", N, factory.keyLength()));
@@ -89,16 +93,16 @@ public class TupleIndexRecord extends TupleIndexBase
 
     /** Insert a tuple */
     @Override
-    protected void performAdd(Tuple<NodeId> tuple) {
+    protected boolean performAdd(Tuple<NodeId> tuple) {
         Record r = TupleLib.record(factory, tuple, tupleMap);
-        index.insert(r);
+        return index.insert(r);
     }
 
     /** Delete a tuple */
     @Override
-    protected void performDelete(Tuple<NodeId> tuple) {
+    protected boolean performDelete(Tuple<NodeId> tuple) {
         Record r = TupleLib.record(factory, tuple, tupleMap);
-        index.delete(r);
+        return index.delete(r);
     }
 
     /** Insert tuples */
@@ -243,6 +247,55 @@ public class TupleIndexRecord extends TupleIndexBase
         return tuples;
     }
 
+    @Override
+    public Iterator<Tuple<NodeId>> findFrom(Tuple<NodeId> patternNaturalOrder, NodeId start) {
+        Tuple<NodeId> pattern = tupleMap.map(patternNaturalOrder);
+        int leading = 0;
+        while ( leading < pattern.len() && ! NodeId.isAny(pattern.get(leading)) )
+            leading++;
+        if ( leading == 0 || leading == pattern.len() )
+            return null;
+        for ( int i = leading; i < pattern.len() ; i++ ) {
+            if ( ! NodeId.isAny(pattern.get(i)) )
+                return null;
+        }
+        Record minRec = factory.createKeyOnly();
+        Record maxRec = factory.createKeyOnly();
+        for ( int i = 0; i < leading ; i++ ) {
+            NodeIdFactory.set(pattern.get(i), minRec.getKey(), i*SizeOfNodeId);
+            NodeIdFactory.set(pattern.get(i), maxRec.getKey(), i*SizeOfNodeId);
+        }
+        NodeIdFactory.set(start, minRec.getKey(), leading*SizeOfNodeId);
+        NodeIdFactory.setNext(pattern.get(leading-1), maxRec.getKey(), (leading-1)*SizeOfNodeId);
+        return index.iterator(minRec, maxRec, recordMapper);
+    }
+
+    @Override
+    public long count(Tuple<NodeId> patternNaturalOrder) {
+        if ( ! counted )
+            return -1;
+        Tuple<NodeId> pattern = tupleMap.map(patternNaturalOrder);
+        int leading = 0;
+        while ( leading < pattern.len() && ! NodeId.isAny(pattern.get(leading)) )
+            leading++;
+        for ( int i = leading; i < pattern.len() ; i++ ) {
+            if ( ! NodeId.isAny(pattern.get(i)) )
+                return -1;
+        }
+        if ( leading == 0 )
+            return index.size();
+        Record minRec = factory.createKeyOnly();
+        Record maxRec = factory.createKeyOnly();
+        for ( int i = 0; i < leading ; i++ ) {
+            NodeIdFactory.set(pattern.get(i), minRec.getKey(), i*SizeOfNodeId);
+            NodeIdFactory.set(pattern.get(i), maxRec.getKey(), i*SizeOfNodeId);
+        }
+        if ( leading == pattern.len() )
+            return index.contains(minRec) ? 1 : 0;
+        NodeIdFactory.setNext(pattern.get(leading-1), maxRec.getKey(), (leading-1)*SizeOfNodeId);
+        return index.countRange(minRec, maxRec);
+    }
+
     @Override
     public Iterator<Tuple<NodeId>> all()
     {
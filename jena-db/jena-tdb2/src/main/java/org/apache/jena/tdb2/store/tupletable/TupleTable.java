@@ -43,6 +43,13 @@ public class TupleTable implements Sync, Closeable
     private final TupleIndex   scanAllIndex;   // Use this index if a complete scan is needed.
     private final int tupleLen;
     private boolean syncNeeded = false;
+    private Monitor monitor = null;
+
+    /** Told of each tuple that is added to, or deleted from, the table. */
+    public interface Monitor {
+        public void added(Tuple<NodeId> tuple);
+        public void deleted(Tuple<NodeId> tuple);
+    }
 
     public TupleTable(int tupleLen, TupleIndex[] indexes)
     {
@@ -90,15 +97,23 @@ public class TupleTable implements Sync, Closeable
         // the indexes when the triple is already present.
         if ( tupleLen != t.len() )
             throw new TDBException(format("Mismatch: inserting tuple of length %d into a table of tuples of length %d", t.len(), tupleLen));
+        boolean changed = false;
         for ( int i = 0; i < indexes.length ; i++ ) {
             if ( indexes[i] == null ) continue;
-            indexes[i].add(t);
+            changed |= indexes[i].add(t);
             syncNeeded = true;
         }
+        if ( changed && monitor != null )
+            monitor.added(t);
     }
 
     /** Insert tuples */
     public void addAll(List<Tuple<NodeId>> t) {
+        if ( monitor != null ) {
+            // One at a time so the monitor sees each change.
+            t.forEach(this::add);
+            return;
+        }
         // Parallel.
         for ( int i = 0; i < indexes.length ; i++ ) {
             if ( indexes[i] == null ) continue;
@@ -112,15 +127,22 @@ public class TupleTable implements Sync, Closeable
         if ( tupleLen != t.len() )
             throw new TDBException(format("Mismatch: deleting tuple of length %d from a table of tuples of length %d", t.len(), tupleLen));
 
+        boolean changed = false;
         for ( TupleIndex index : indexes ) {
             if ( index == null )
                 continue;
-            index.delete( t );
+            changed |= index.delete( t );
         }
+        if ( changed && monitor != null )
+            monitor.deleted(t);
     }
 
     /** Delete tuples */
     public void deleteAll(List<Tuple<NodeId>> t) {
+        if ( monitor != null ) {
+            t.forEach(this::delete);
+            return;
+        }
         // Parallel.
         for ( int i = 0; i < indexes.length ; i++ ) {
             if ( indexes[i] == null ) continue;
@@ -165,6 +187,25 @@ public class TupleTable implements Sync, Closeable
         return index.find(pattern);
     }
 
+    /**
+     * The number of tuples matching a pattern, or -1 if no index can count them
+     * without a scan. See {@link TupleIndex#count}.
+     */
+    public long count(Tuple<NodeId> pattern) {
+        for ( int i = 0; i < tupleLen ; i++ ) {
+            if ( NodeId.isDoesNotExist(pattern.get(i)) )
+                return 0;
+        }
+        for ( TupleIndex idx : indexes ) {
+            if ( idx == null )
+                continue;
+            long x = idx.count(pattern);
+            if ( x >= 0 )
+                return x;
+        }
+        return -1;
+    }
+
     @Override
     final public void close() {
         for ( TupleIndex idx : indexes ) {
@@ -214,6 +255,9 @@ public class TupleTable implements Sync, Closeable
         indexes[i] = index;
     }
 
+    /** Set the {@link Monitor} told of changes, or null for none. */
+    public void setMonitor(Monitor monitor)             { this.monitor = monitor; }
+
     /** Number of indexes on this tuple table */
     public int numIndexes()                             { return indexes.length; }
 }
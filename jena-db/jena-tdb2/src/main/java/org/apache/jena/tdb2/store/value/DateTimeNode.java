@@ -166,6 +166,138 @@ public class DateTimeNode
         return tz(v, tz);
     }
 
+    // ---- Extended layout
+    // For values the layout above can not hold: years outside 0 to 7999 and timezones
+    // that are not a whole number of quarter hours. Precision is to the second.
+    //
+    // Bits 45-55 (11 bits) : timezone in minutes, signed, + special for Z and no timezone.
+    // Bits 31-44 (14 bits) : year, signed (-8192 to 8191)
+    // Bits 27-30 (4 bits)  : month
+    // Bits 22-26 (5 bits)  : day
+    // Bits 17-21 (5 bits)  : hour
+    // Bits 11-16 (6 bits)  : minute
+    // Bits 5-10  (6 bits)  : second
+    // Bits 0-4             : zero
+
+    static final int       X_SECOND        = 5;
+    static final int       X_MINUTE        = X_SECOND + 6;
+    static final int       X_HOUR          = X_MINUTE + 6;
+    static final int       X_DAY           = X_HOUR + 5;
+    static final int       X_MONTH         = X_DAY + 5;
+    static final int       X_YEAR          = X_MONTH + 4;
+    static final int       X_YEAR_LEN      = 14;
+    static final int       X_TZ            = X_YEAR + X_YEAR_LEN;
+    static final int       X_TZ_LEN        = 11;
+    // Timezones are -14:00 to +14:00, so -840 to 840 minutes.
+    static final int       X_TZ_Z          = 0x3FF;
+    static final int       X_TZ_NONE       = 0x3FE;
+
+    /** Pack an xsd:dateTime in the extended layout. Returns -1 for unpackable. */
+    public static long packDateTimeExt(String lex) {
+        try {
+            return packExt$(lex);
+        }
+        catch (Exception ex) {
+            return -1;
+        }
+    }
+
+    /** Pack an xsd:date in the extended layout. Returns -1 for unpackable. */
+    public static long packDateExt(String lex) {
+        return packDateTimeExt(lex);
+    }
+
+    private static long packExt$(String lex) {
+        lex = lex.trim();
+        boolean containsZ = (lex.indexOf('Z') > 0);
+        XMLGregorianCalendar xcal = datatypeFactory.newXMLGregorianCalendar(lex);
+        if ( xcal.getEon() != null )
+            return -1;
+        if ( xcal.getFractionalSecond() != null && xcal.getFractionalSecond().signum() != 0 )
+            return -1;
+        int y = xcal.getYear();
+        if ( y < -(1 << (X_YEAR_LEN - 1)) || y >= (1 << (X_YEAR_LEN - 1)) )
+            return -1;
+        int tz;
+        if ( containsZ )
+            tz = X_TZ_Z;
+        else if ( xcal.getTimezone() == DatatypeConstants.FIELD_UNDEFINED )
+            tz = X_TZ_NONE;
+        else {
+            tz = xcal.getTimezone();
+            if ( tz < -14 * 60 || tz > 14 * 60 )
+                return -1;
+        }
+        long v = 0;
+        v = BitsLong.pack(v, tz & 0x7FF, X_TZ, X_TZ + X_TZ_LEN);
+        v = BitsLong.pack(v, y & 0x3FFF, X_YEAR, X_YEAR + X_YEAR_LEN);
+        v = BitsLong.pack(v, xcal.getMonth(), X_MONTH, X_MONTH + 4);
+        v = BitsLong.pack(v, xcal.getDay(), X_DAY, X_DAY + 5);
+        // Date only : fields undefined.
+        if ( xcal.getHour() != DatatypeConstants.FIELD_UNDEFINED ) {
+            v = BitsLong.pack(v, xcal.getHour(), X_HOUR, X_HOUR + 5);
+            v = BitsLong.pack(v, xcal.getMinute(), X_MINUTE, X_MINUTE + 6);
+            v = BitsLong.pack(v, xcal.getSecond(), X_SECOND, X_SECOND + 6);
+        }
+        return v;
+    }
+
+    public static String unpackDateTimeExt(long v) {
+        return unpackExt(v, true);
+    }
+
+    public static String unpackDateExt(long v) {
+        return unpackExt(v, false);
+    }
+
+    private static String unpackExt(long v, boolean isDateTime) {
+        int years = signExtend((int)BitsLong.unpack(v, X_YEAR, X_YEAR + X_YEAR_LEN), X_YEAR_LEN);
+        int months = (int)BitsLong.unpack(v, X_MONTH, X_MONTH + 4);
+        int days = (int)BitsLong.unpack(v, X_DAY, X_DAY + 5);
+        int tz = (int)BitsLong.unpack(v, X_TZ, X_TZ + X_TZ_LEN);
+
+        StringBuilder sb = new StringBuilder(50);
+        if ( years < 0 ) {
+            sb.append('-');
+            years = -years;
+        }
+        NumberUtils.formatUnsignedInt(sb, years, 4);
+        sb.append('-');
+        NumberUtils.formatInt(sb, months, 2);
+        sb.append('-');
+        NumberUtils.formatInt(sb, days, 2);
+        if ( isDateTime ) {
+            sb.append('T');
+            NumberUtils.formatInt(sb, (int)BitsLong.unpack(v, X_HOUR, X_HOUR + 5), 2);
+            sb.append(':');
+            NumberUtils.formatInt(sb, (int)BitsLong.unpack(v, X_MINUTE, X_MINUTE + 6), 2);
+            sb.append(':');
+            NumberUtils.formatInt(sb, (int)BitsLong.unpack(v, X_SECOND, X_SECOND + 6), 2);
+        }
+        if ( tz == X_TZ_Z ) {
+            sb.append("Z");
+            return sb.toString();
+        }
+        if ( tz == X_TZ_NONE )
+            return sb.toString();
+        tz = signExtend(tz, X_TZ_LEN);
+        if ( tz < 0 ) {
+            tz = -tz;
+            sb.append('-');
+        } else
+            sb.append('+');
+        NumberUtils.formatUnsignedInt(sb, tz / 60, 2);
+        sb.append(':');
+        NumberUtils.formatUnsignedInt(sb, tz % 60, 2);
+        return sb.toString();
+    }
+
+    private static int signExtend(int x, int len) {
+        if ( BitsInt.isSet(x, len - 1) )
+            x = BitsInt.set(x, len, 32);
+        return x;
+    }
+
     public static String unpackDateTime(long v) {
         return unpack(v, true);
     }
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jena.tdb2.store.value;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.Duration;
+
+import org.apache.jena.atlas.lib.BitsLong;
+import org.apache.jena.atlas.lib.NumberUtils;
+
+/**
+ * xsd:duration, xsd:dayTimeDuration and xsd:yearMonthDuration, packed into 56 bits
+ * as the (months, milliseconds) value of the duration.
+ * <p>
+ * The lexical form is not kept; a duration is unpacked in canonical form
+ * ({@code "PT36H"} becomes {@code "P1DT12H"}).
+ */
+public class DurationNode
+{
+    // ---- Layout
+    // Bit 55       : sign (1 for negative)
+    // Bits 39-54   : months (16 bits), years*12+months
+    // Bits 0-38    : milliseconds (39 bits, about 17 years), of days, hours, minutes and seconds.
+
+    /** Returned by {@link #pack} for "does not fit". */
+    public static final long NO_ENCODING = -1;
+
+    static final int       MILLIS          = 0;
+    static final int       MILLIS_LEN      = 39;
+    static final int       MONTHS          = MILLIS_LEN;
+    static final int       MONTHS_LEN      = 16;
+    static final int       SIGN            = MONTHS + MONTHS_LEN;
+
+    private static final long MaxMillis    = (1L << MILLIS_LEN) - 1;
+    private static final long MaxMonths    = (1L << MONTHS_LEN) - 1;
+
+    /** Pack a duration. The lexical form is assumed to be legal. Returns {@link #NO_ENCODING} if it does not fit. */
+    public static long pack(String lex) {
+        try {
+            return pack$(lex);
+        }
+        catch (Exception ex) {
+            return NO_ENCODING;
+        }
+    }
+
+    private static long pack$(String lex) {
+        Duration duration = DateTimeNode.datatypeFactory.newDuration(lex.trim());
+        long months = field(duration, DatatypeConstants.YEARS) * 12 + field(duration, DatatypeConstants.MONTHS);
+        long millis = field(duration, DatatypeConstants.DAYS);
+        millis = millis * 24 + field(duration, DatatypeConstants.HOURS);
+        millis = millis * 60 + field(duration, DatatypeConstants.MINUTES);
+        millis = Math.multiplyExact(millis, 60_000L);
+        BigDecimal seconds = (BigDecimal)duration.getField(DatatypeConstants.SECONDS);
+        if ( seconds != null ) {
+            BigDecimal ms = seconds.movePointRight(3);
+            // Sub-millisecond precision.
+            if ( ms.signum() != 0 && ms.stripTrailingZeros().scale() > 0 )
+                return NO_ENCODING;
+            millis = Math.addExact(millis, ms.longValueExact());
+        }
+        if ( months > MaxMonths || millis > MaxMillis )
+            return NO_ENCODING;
+        long v = 0;
+        v = BitsLong.pack(v, months, MONTHS, MONTHS + MONTHS_LEN);
+        v = BitsLong.pack(v, millis, MILLIS, MILLIS + MILLIS_LEN);
+        if ( duration.getSign() < 0 && ( months != 0 || millis != 0 ) )
+            v = BitsLong.set(v, SIGN);
+        return v;
+    }
+
+    // Integer field, or 0 if not present. Large values make the pack fail.
+    private static long field(Duration duration, DatatypeConstants.Field field) {
+        BigInteger x = (BigInteger)duration.getField(field);
+        if ( x == null )
+            return 0;
+        if ( x.bitLength() > 31 )
+            throw new ArithmeticException();
+        return x.longValue();
+    }
+
+    /** Unpack to the canonical lexical form of xsd:duration and xsd:dayTimeDuration. */
+    public static String unpack(long v) {
+        return unpack(v, "PT0S");
+    }
+
+    /** Unpack to the canonical lexical form of xsd:yearMonthDuration. */
+    public static String unpackYearMonth(long v) {
+        return unpack(v, "P0M");
+    }
+
+    private static String unpack(long v, String zero) {
+        long months = BitsLong.unpack(v, MONTHS, MONTHS + MONTHS_LEN);
+        long millis = BitsLong.unpack(v, MILLIS, MILLIS + MILLIS_LEN);
+        if ( months == 0 && millis == 0 )
+            return zero;
+        StringBuilder sb = new StringBuilder(30);
+        if ( BitsLong.isSet(v, SIGN) )
+            sb.append('-');
+        sb.append('P');
+        long years = months / 12;
+        months = months % 12;
+        if ( years != 0 )
+            sb.append(years).append('Y');
+        if ( months != 0 )
+            sb.append(months).append('M');
+        if ( millis == 0 )
+            return sb.toString();
+        long days = millis / 86_400_000L;
+        millis = millis % 86_400_000L;
+        if ( days != 0 )
+            sb.append(days).append('D');
+        if ( millis == 0 )
+            return sb.toString();
+        sb.append('T');
+        long hours = millis / 3_600_000L;
+        millis = millis % 3_600_000L;
+        long minutes = millis / 60_000L;
+        millis = millis % 60_000L;
+        if ( hours != 0 )
+            sb.append(hours).append('H');
+        if ( minutes != 0 )
+            sb.append(minutes).append('M');
+        if ( millis != 0 ) {
+            sb.append(millis / 1000);
+            int fractionSec = (int)(millis % 1000);
+            if ( fractionSec != 0 ) {
+                sb.append('.');
+                if ( fractionSec % 100 == 0 )
+                    NumberUtils.formatInt(sb, fractionSec / 100, 1);
+                else if ( fractionSec % 10 == 0 )
+                    NumberUtils.formatInt(sb, fractionSec / 10, 2);
+                else
+                    NumberUtils.formatInt(sb, fractionSec, 3);
+            }
+            sb.append('S');
+        }
+        return sb.toString();
+    }
+}
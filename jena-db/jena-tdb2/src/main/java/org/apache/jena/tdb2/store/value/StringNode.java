@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jena.tdb2.store.value;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Short strings and short language tagged strings, packed into 56 bits.
+ * <p>
+ * Strings are written as their UTF-8 bytes, first byte highest, padded with zeros.
+ * Strings containing U+0000 are not packed.
+ * <ul>
+ * <li>xsd:string: up to 7 bytes.
+ * <li>rdf:langString: bits 53-55 are the length of the language tag (1 to 7
+ * characters, each one of {@code [a-zA-Z0-9-]}), then the language tag at 6 bits a
+ * character, then as many bytes of the lexical form as fit in the remaining bits
+ * (5 bytes for a two letter language tag).
+ * </ul>
+ */
+public class StringNode
+{
+    /** Returned by the pack operations for "does not fit". */
+    public static final long NO_ENCODING = -1;
+
+    /** Maximum UTF-8 length, in bytes, of an inline xsd:string */
+    public static final int MaxStringBytes = 7;
+
+    private static final int LANG_LEN       = 53;
+    private static final int LANG_LEN_BITS  = 3;
+    private static final int CHAR_BITS      = 6;
+    private static final int MaxLangChars   = 7;
+
+    /** Pack an xsd:string. Returns {@link #NO_ENCODING} if it does not fit. */
+    public static long packString(String lex) {
+        return packBytes(lex, 0, 56);
+    }
+
+    public static String unpackString(long v) {
+        return unpackBytes(v, 56);
+    }
+
+    /** Pack a language tagged string. Returns {@link #NO_ENCODING} if it does not fit. */
+    public static long packLangString(String lex, String lang) {
+        int langLen = lang.length();
+        if ( langLen == 0 || langLen > MaxLangChars )
+            return NO_ENCODING;
+        long v = ((long)langLen) << LANG_LEN;
+        for ( int i = 0 ; i < langLen ; i++ ) {
+            int c = encLangChar(lang.charAt(i));
+            if ( c == 0 )
+                return NO_ENCODING;
+            v |= ((long)c) << langCharShift(i);
+        }
+        return packBytes(lex, v, lexBits(langLen));
+    }
+
+    public static String unpackLangLex(long v) {
+        return unpackBytes(v, lexBits(langLength(v)));
+    }
+
+    public static String unpackLang(long v) {
+        int langLen = langLength(v);
+        char[] chars = new char[langLen];
+        for ( int i = 0 ; i < langLen ; i++ )
+            chars[i] = decLangChar((int)((v >>> langCharShift(i)) & 0x3F));
+        return new String(chars);
+    }
+
+    private static int langLength(long v) {
+        return (int)((v >>> LANG_LEN) & ((1 << LANG_LEN_BITS) - 1));
+    }
+
+    private static int langCharShift(int i) {
+        return LANG_LEN - CHAR_BITS * (i + 1);
+    }
+
+    // Bits below the language tag.
+    private static int lexBits(int langLen) {
+        return LANG_LEN - CHAR_BITS * langLen;
+    }
+
+    // Pack the UTF-8 bytes into the top of the low "bits" bits.
+    private static long packBytes(String lex, long v, int bits) {
+        int maxBytes = bits / 8;
+        // UTF-8 is at least one byte per char.
+        if ( lex.length() > maxBytes )
+            return NO_ENCODING;
+        byte[] b = lex.getBytes(StandardCharsets.UTF_8);
+        if ( b.length > maxBytes )
+            return NO_ENCODING;
+        // Unpaired surrogates do not survive UTF-8.
+        if ( ! new String(b, StandardCharsets.UTF_8).equals(lex) )
+            return NO_ENCODING;
+        for ( int i = 0 ; i < b.length ; i++ ) {
+            if ( b[i] == 0 )
+                return NO_ENCODING;
+            v |= ((long)(b[i] & 0xFF)) << (bits - 8 * (i + 1));
+        }
+        return v;
+    }
+
+    private static String unpackBytes(long v, int bits) {
+        int maxBytes = bits / 8;
+        byte[] b = new byte[maxBytes];
+        int len = 0;
+        for ( ; len < maxBytes ; len++ ) {
+            byte x = (byte)(v >>> (bits - 8 * (len + 1)));
+            if ( x == 0 )
+                break;
+            b[len] = x;
+        }
+        return new String(b, 0, len, StandardCharsets.UTF_8);
+    }
+
+    // 0 is "not encodable".
+    private static int encLangChar(char ch) {
+        if ( ch >= 'a' && ch <= 'z' ) return ch - 'a' + 1;
+        if ( ch >= 'A' && ch <= 'Z' ) return ch - 'A' + 27;
+        if ( ch >= '0' && ch <= '9' ) return ch - '0' + 53;
+        if ( ch == '-' )              return 63;
+        return 0;
+    }
+
+    private static char decLangChar(int c) {
+        if ( c <= 26 ) return (char)('a' + c - 1);
+        if ( c <= 52 ) return (char)('A' + c - 27);
+        if ( c <= 62 ) return (char)('0' + c - 53);
+        return '-';
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.sys;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.atlas.logging.FmtLog;
+import org.apache.jena.atlas.logging.Log;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.storage.StoragePrefixes;
+import org.apache.jena.dboe.transaction.txn.TransactionCoordinator;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.TxnType;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDBException;
+import org.apache.jena.tdb2.store.DatasetGraphSwitchable;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.store.StorageTDB;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Online compaction: copy a snapshot while writers continue, catch up with the
+ * changes committed meanwhile, then switch over.
+ *
+ * @see DatabaseOps#compactOnline
+ */
+/*package*/ class CompactOnline {
+    private static Logger LOG = LoggerFactory.getLogger(CompactOnline.class);
+
+    // Catch up until at most this many changes are waiting, then switch.
+    private static final long SwitchLag = 10_000;
+    private static final int MaxCatchupRounds = 20;
+    // Attempts to enter exclusive mode without blocking new transactions.
+    private static final int SwitchAttempts = 50;
+    private static final int SwitchAttemptPauseMillis = 20;
+    // Progress is updated every this many quads.
+    private static final int CopyTick = 10_000;
+    // Progress is logged every this many quads.
+    private static final int CopyLogTick = 1_000_000;
+    // Changes recorded and not yet applied before new write transactions are held up.
+    /*package*/ static long MaxPendingChanges = 1_000_000;
+
+    /*package*/ static void compact(DatasetGraphSwitchable container, Location loc1, Location loc2, CompactionProgress progress) {
+        if ( loc1.isMem() || loc2.isMem() )
+            throw new TDBException("Compact involves a memory location: "+loc1+" : "+loc2);
+
+        DatabaseOps.copyFiles(loc1, loc2);
+        StoreConnection srcConn = StoreConnection.connectExisting(loc1);
+
+        if ( srcConn == null )
+            throw new TDBException("No database at location : "+loc1);
+        if ( ! ( container.get() instanceof DatasetGraphTDB ) )
+            throw new TDBException("Not a TDB2 database in DatasetGraphSwitchable");
+
+        DatasetGraphTDB dsgCurrent = (DatasetGraphTDB)container.get();
+        DatasetGraphTDB dsgBase = srcConn.getDatasetGraphTDB();
+        if ( dsgBase != dsgCurrent )
+            throw new TDBException("Inconsistent datasets : "+dsgCurrent.getLocation()+" , "+dsgBase.getLocation());
+
+        TransactionCoordinator txnMgr = dsgBase.getTxnSystem().getTxnMgr();
+        StorageTDB storage = dsgBase.getStorageTDB();
+        CompactionChangeLog changeLog = new CompactionChangeLog(dsgBase.getTxnSystem(), progress, MaxPendingChanges);
+
+        progress.start();
+        // Start recording and take the snapshot with no writer active so that every
+        // change after the snapshot is recorded.
+        txnMgr.blockWriters();
+        try {
+            storage.setMonitor(changeLog);
+            dsgBase.begin(TxnType.READ);
+        } catch (RuntimeException ex) {
+            storage.unsetMonitor(changeLog);
+            throw ex;
+        } finally {
+            txnMgr.enableWriters();
+        }
+
+        boolean recording = true;
+        boolean exclusive = false;
+        boolean switched = false;
+        DatasetGraphTDB dsgCompact = null;
+        try {
+            // -- Copy
+            dsgCompact = StoreConnection.connectCreate(loc2).getDatasetGraphTDB();
+            copy(dsgBase, dsgCompact, progress);
+            progress.copyFinished();
+            FmtLog.debug(LOG, "Copied %d quads: %s", progress.getQuadsCopied(), loc2);
+
+            // -- Catch up
+            for ( int i = 0 ; i < MaxCatchupRounds && progress.getLag() > SwitchLag ; i++ )
+                changeLog.applyFinished(dsgCompact);
+
+            // -- Switch
+            progress.switching();
+            // Waiting writers would stop this thread entering exclusive mode.
+            changeLog.stopBlocking();
+            exclusive = enterExclusiveMode(txnMgr, changeLog, dsgCompact);
+            long switchStart = System.currentTimeMillis();
+
+            // No transactions on the current database.
+            storage.unsetMonitor(changeLog);
+            recording = false;
+            changeLog.applyFinished(dsgCompact);
+            copyPrefixes(dsgBase, dsgCompact);
+
+            TransactionCoordinator txnMgr2 = dsgCompact.getTxnSystem().getTxnMgr();
+            txnMgr2.startExclusiveMode();
+            if ( ! container.change(dsgCurrent, dsgCompact) ) {
+                Log.warn(DatabaseOps.class, "Inconistent: old datasetgraph not as expected");
+                container.set(dsgCompact);
+            }
+            txnMgr2.finishExclusiveMode();
+            switched = true;
+            // New database running.
+
+            StoreConnection.release(dsgBase.getLocation());
+            progress.finished(System.currentTimeMillis() - switchStart);
+            FmtLog.debug(LOG, "%s", progress);
+        } catch (RuntimeException ex) {
+            changeLog.stopBlocking();
+            if ( recording ) {
+                if ( exclusive )
+                    storage.unsetMonitor(changeLog);
+                else
+                    unsetMonitor(txnMgr, storage, changeLog);
+            }
+            if ( ! switched ) {
+                // Remove the partial copy so the current database is still the latest.
+                if ( dsgCompact != null )
+                    StoreConnection.release(loc2);
+                FileOps.clearAll(loc2.getDirectoryPath());
+                FileOps.delete(new File(loc2.getDirectoryPath()), false);
+            }
+            throw ex;
+        } finally {
+            // Any transactions that were waiting to start on the old database now fail.
+            if ( exclusive )
+                txnMgr.finishExclusiveMode();
+        }
+    }
+
+    /** Copy the snapshot. The caller is in a read transaction on {@code dsgBase}, which this ends. */
+    private static void copy(DatasetGraphTDB dsgBase, DatasetGraphTDB dsgCompact, CompactionProgress progress) {
+        try {
+            Txn.executeWrite(dsgCompact, ()->{
+                Iterator<Quad> iter = dsgBase.find();
+                long count = 0;
+                while(iter.hasNext()) {
+                    dsgCompact.add(iter.next());
+                    if ( ++count % CopyTick == 0 )
+                        progress.copied(CopyTick);
+                    if ( count % CopyLogTick == 0 )
+                        FmtLog.info(LOG, "%s", progress);
+                }
+                progress.copied(count % CopyTick);
+            });
+        } finally {
+            dsgBase.end();
+        }
+    }
+
+    /** Copy the prefixes table directly; finding the graph names in the data would be a scan. */
+    private static void copyPrefixes(DatasetGraphTDB dsgBase, DatasetGraphTDB dsgCompact) {
+        StoragePrefixes prefixes1 = dsgBase.getStoragePrefixes();
+        StoragePrefixes prefixes2 = dsgCompact.getStoragePrefixes();
+        Txn.executeRead(dsgBase, ()->
+            Txn.executeWrite(dsgCompact, ()->{
+                List<Node> graphNames = Iter.toList(prefixes1.listGraphNodes());
+                for ( Node gn : graphNames )
+                    prefixes1.get(gn).forEachRemaining(e->prefixes2.add(gn, e.getPrefix(), e.getUri()));
+            })
+        );
+    }
+
+    /**
+     * Enter exclusive mode on the current database. Try without blocking first,
+     * applying changes between attempts, because waiting on the lock holds up new
+     * transactions until the ones in progress finish.
+     */
+    private static boolean enterExclusiveMode(TransactionCoordinator txnMgr, CompactionChangeLog changeLog, DatasetGraphTDB dsgCompact) {
+        for ( int i = 0 ; i < SwitchAttempts ; i++ ) {
+            if ( txnMgr.tryExclusiveMode() )
+                return true;
+            changeLog.applyFinished(dsgCompact);
+            try { Thread.sleep(SwitchAttemptPauseMillis); }
+            catch (InterruptedException ex) { break; }
+        }
+        txnMgr.startExclusiveMode();
+        return true;
+    }
+
+    private static void unsetMonitor(TransactionCoordinator txnMgr, StorageTDB storage, CompactionChangeLog changeLog) {
+        txnMgr.blockWriters();
+        try {
+            storage.unsetMonitor(changeLog);
+        } catch (RuntimeException ex) {
+            // Already unset.
+        } finally {
+            txnMgr.enableWriters();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.sys;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.jena.dboe.transaction.txn.Transaction;
+import org.apache.jena.dboe.transaction.txn.TransactionalSystem;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.DatasetChanges;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.QuadAction;
+import org.apache.jena.system.Txn;
+
+/**
+ * Record of the changes made to a database, grouped by write transaction, while it
+ * is being copied by an online compaction. The changes of committed transactions are
+ * applied to the new database in commit order; those of aborted transactions are
+ * dropped.
+ * <p>
+ * TDB2 has a single active writer so the changes of one transaction are contiguous.
+ * The record is held in memory. It is bounded: while more than a set number of
+ * changes are waiting to be applied, a new write transaction is held up at its first
+ * change until the compaction catches up, or {@link #stopBlocking} is called.
+ */
+/*package*/ class CompactionChangeLog implements DatasetChanges {
+
+    private static class Change {
+        final QuadAction action;
+        final Node g, s, p, o;
+        Change(QuadAction action, Node g, Node s, Node p, Node o) {
+            this.action = action;
+            this.g = g; this.s = s; this.p = p; this.o = o;
+        }
+    }
+
+    private static class Batch {
+        final Transaction txn;
+        final List<Change> changes = new ArrayList<>();
+        Batch(Transaction txn) { this.txn = txn; }
+    }
+
+    private final TransactionalSystem txnSystem;
+    private final CompactionProgress progress;
+    private final long maxPending;
+    // Oldest first.
+    private final Deque<Batch> batches = new ArrayDeque<>();
+    private long pending = 0;
+    private boolean blocking = true;
+
+    /*package*/ CompactionChangeLog(TransactionalSystem txnSystem, CompactionProgress progress, long maxPending) {
+        this.txnSystem = txnSystem;
+        this.progress = progress;
+        this.maxPending = maxPending;
+    }
+
+    @Override
+    public void start() {}
+
+    @Override
+    public synchronized void change(QuadAction action, Node g, Node s, Node p, Node o) {
+        Transaction txn = txnSystem.getThreadTransaction();
+        Batch batch = batches.peekLast();
+        if ( batch == null || batch.txn != txn ) {
+            // A new transaction: hold it up while too many changes are waiting.
+            // The changes of a transaction in progress are not limited because they
+            // can not be applied until it commits.
+            if ( blocking && pending >= maxPending ) {
+                progress.writerHeld();
+                while ( blocking && pending >= maxPending ) {
+                    try { wait(); }
+                    catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            batch = new Batch(txn);
+            batches.addLast(batch);
+        }
+        batch.changes.add(new Change(action, g, s, p, o));
+        pending++;
+        progress.recorded();
+    }
+
+    /** Do not hold up writers any more, for example, to switch databases or on failure. */
+    /*package*/ synchronized void stopBlocking() {
+        blocking = false;
+        notifyAll();
+    }
+
+    @Override
+    public void finish() {}
+
+    @Override
+    public void reset() {}
+
+    /**
+     * Apply the changes of the transactions that have committed, oldest first, to
+     * {@code dsg} in one write transaction. Stops at a transaction that is still
+     * active. Returns the number of transactions applied.
+     */
+    /*package*/ int applyFinished(DatasetGraph dsg) {
+        List<Batch> committed = new ArrayList<>();
+        synchronized(this) {
+            while ( ! batches.isEmpty() ) {
+                Batch batch = batches.peekFirst();
+                switch(batch.txn.getState()) {
+                    case COMMITTED: case END_COMMITTED:
+                        committed.add(batch);
+                        break;
+                    case ABORTED: case END_ABORTED:
+                        progress.discarded(batch.changes.size());
+                        break;
+                    default:
+                        // Still active.
+                        batch = null;
+                }
+                if ( batch == null )
+                    break;
+                batches.removeFirst();
+                pending -= batch.changes.size();
+            }
+            // Writers may be waiting for room.
+            notifyAll();
+        }
+        if ( committed.isEmpty() )
+            return 0;
+        Txn.executeWrite(dsg, ()->{
+            for ( Batch batch : committed ) {
+                for ( Change c : batch.changes ) {
+                    switch(c.action) {
+                        case ADD:    dsg.add(c.g, c.s, c.p, c.o);    break;
+                        case DELETE: dsg.delete(c.g, c.s, c.p, c.o); break;
+                        default: break;
+                    }
+                }
+            }
+        });
+        long n = committed.stream().mapToLong(b->b.changes.size()).sum();
+        progress.applied(committed.size(), n);
+        return committed.size();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.sys;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of an {@linkplain DatabaseOps#compactOnline online compaction}.
+ * <p>
+ * The compaction updates this object as it goes; other threads can read it at any
+ * time, for example to report throughput and how far the new database is behind the
+ * current one.
+ */
+public class CompactionProgress {
+
+    public enum Phase {
+        /** Not started yet. */
+        WAITING,
+        /** Copying a snapshot of the database. */
+        COPY,
+        /** Applying changes committed during the copy. */
+        CATCHUP,
+        /** Writers held off while the last changes are applied and the databases switched. */
+        SWITCH,
+        /** The new database is in use. */
+        FINISHED,
+        /** The compaction failed; the current database is still in use. */
+        FAILED
+    }
+
+    private volatile Phase phase = Phase.WAITING;
+    private volatile long startTime = -1;
+    private volatile long copyFinishTime = -1;
+    private volatile long finishTime = -1;
+    private volatile long switchMillis = -1;
+
+    private final AtomicLong quadsCopied = new AtomicLong(0);
+    private final AtomicLong changesRecorded = new AtomicLong(0);
+    private final AtomicLong changesApplied = new AtomicLong(0);
+    private final AtomicLong changesDiscarded = new AtomicLong(0);
+    private final AtomicLong transactionsApplied = new AtomicLong(0);
+    private final AtomicLong writersHeld = new AtomicLong(0);
+
+    public CompactionProgress() {}
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /** Has the compaction finished, successfully or not? */
+    public boolean isDone() {
+        return phase == Phase.FINISHED || phase == Phase.FAILED;
+    }
+
+    /** Number of quads (and triples) copied from the snapshot. */
+    public long getQuadsCopied() {
+        return quadsCopied.get();
+    }
+
+    /** Number of changes, made by writers since the snapshot, that have been recorded. */
+    public long getChangesRecorded() {
+        return changesRecorded.get();
+    }
+
+    /** Number of recorded changes applied to the new database. */
+    public long getChangesApplied() {
+        return changesApplied.get();
+    }
+
+    /** Number of committed write transactions applied to the new database. */
+    public long getTransactionsApplied() {
+        return transactionsApplied.get();
+    }
+
+    /**
+     * Number of write transactions that were held up because too many changes were
+     * waiting to be applied to the new database.
+     */
+    public long getWritersHeld() {
+        return writersHeld.get();
+    }
+
+    /**
+     * Number of changes not yet applied to the new database; how far the new
+     * database is behind the current one. Includes changes of the write transaction
+     * in progress, if any.
+     */
+    public long getLag() {
+        return changesRecorded.get() - changesApplied.get() - changesDiscarded.get();
+    }
+
+    /** Milliseconds since the compaction started, or for which it ran if it has finished. */
+    public long getElapsedMillis() {
+        if ( startTime < 0 )
+            return 0;
+        long end = ( finishTime < 0 ) ? System.currentTimeMillis() : finishTime;
+        return end - startTime;
+    }
+
+    /** Copy rate, in quads per second. */
+    public double getCopyRate() {
+        if ( startTime < 0 )
+            return 0;
+        long end = ( copyFinishTime < 0 ) ? System.currentTimeMillis() : copyFinishTime;
+        long millis = Math.max(1, end - startTime);
+        return 1000.0 * quadsCopied.get() / millis;
+    }
+
+    /** Milliseconds for which writers were held off to switch databases, or -1. */
+    public long getSwitchMillis() {
+        return switchMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Compaction[%s: copied=%d (%.0f/s), applied=%d, lag=%d, elapsed=%dms]",
+                             phase, getQuadsCopied(), getCopyRate(), getChangesApplied(), getLag(), getElapsedMillis());
+    }
+
+    /*package*/ void start() {
+        startTime = System.currentTimeMillis();
+        phase = Phase.COPY;
+    }
+
+    /*package*/ void copied(long n) {
+        quadsCopied.addAndGet(n);
+    }
+
+    /*package*/ void copyFinished() {
+        copyFinishTime = System.currentTimeMillis();
+        phase = Phase.CATCHUP;
+    }
+
+    /*package*/ void recorded() {
+        changesRecorded.incrementAndGet();
+    }
+
+    /*package*/ void writerHeld() {
+        writersHeld.incrementAndGet();
+    }
+
+    /*package*/ void applied(long transactions, long changes) {
+        transactionsApplied.addAndGet(transactions);
+        changesApplied.addAndGet(changes);
+    }
+
+    /*package*/ void discarded(long changes) {
+        changesDiscarded.addAndGet(changes);
+    }
+
+    /*package*/ void switching() {
+        phase = Phase.SWITCH;
+    }
+
+    /*package*/ void finished(long switchMillis) {
+        this.switchMillis = switchMillis;
+        finishTime = System.currentTimeMillis();
+        phase = Phase.FINISHED;
+    }
+
+    /*package*/ void failed() {
+        finishTime = System.currentTimeMillis();
+        phase = Phase.FAILED;
+    }
+}
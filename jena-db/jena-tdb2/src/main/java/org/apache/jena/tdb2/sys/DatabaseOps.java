@@ -25,8 +25,10 @@ import java.util.zip.GZIPOutputStream;
 
 import org.apache.jena.atlas.RuntimeIOException;
 import org.apache.jena.atlas.lib.DateTimeUtils;
+import org.apache.jena.atlas.lib.FileOps;
 import org.apache.jena.atlas.lib.Pair;
 import org.apache.jena.atlas.logging.Log;
+import org.apache.jena.dboe.base.file.FileSet;
 import org.apache.jena.dboe.base.file.Location;
 import org.apache.jena.dboe.sys.Names;
 import org.apache.jena.dboe.transaction.txn.TransactionCoordinator;
@@ -79,7 +81,7 @@ public class DatabaseOps {
 
     private static DatasetGraphSwitchable createSwitchable(Location location, StoreParams params) {
         if ( location.isMem() ) {
-            DatasetGraph dsg = StoreConnection.connectCreate(location).getDatasetGraph();
+            DatasetGraph dsg = StoreConnection.connectCreate(location, params).getDatasetGraph();
             return new DatasetGraphSwitchable(null, location, dsg);
         }
         // Exists?
@@ -126,7 +128,7 @@ public class DatabaseOps {
         return x.getRight().toString();
     }
 
-    private static void checkSupportsAdmin(DatasetGraphSwitchable container) {
+    /*package*/ static void checkSupportsAdmin(DatasetGraphSwitchable container) {
         if ( ! container.hasContainerPath() )
             throw new TDBException("Dataset does not support admin operations");
     }
@@ -171,37 +173,154 @@ public class DatabaseOps {
     public static void compact(DatasetGraphSwitchable container) {
         checkSupportsAdmin(container);
         synchronized(compactionLock) {
-            Path base = container.getContainerPath();
-            Path db1 = findLocation(base, dbPrefix);
-            Location loc1 = IOX.asLocation(db1);
-
-            // -- Checks
-            Location loc1a = ((DatasetGraphTDB)container.get()).getLocation();
-            if ( loc1a.isMem() ) {}
-            if ( ! loc1a.exists() )
-                throw new TDBException("No such location: "+loc1a);
-
-            // Is this the same database location?
-            if ( ! loc1.equals(loc1a) )
-                throw new TDBException("Inconsistent (not latested?) : "+loc1a+" : "+loc1);
-            // -- Checks
-
-            // Version
-            int v = IOX.extractIndex(db1.getFileName().toString(), dbPrefix, SEP);
-            String next = FilenameUtils.filename(dbPrefix, SEP, v+1);
-
-            Path db2 = db1.getParent().resolve(next);
-            IOX.createDirectory(db2);
-            Location loc2 = IOX.asLocation(db2);
-            LOG.debug(String.format("Compact %s -> %s\n", db1.getFileName(), db2.getFileName()));
-
-            compact(container, loc1, loc2);
+            Pair<Location, Location> locations = compactLocations(container);
+            compact(container, locations.getLeft(), locations.getRight());
         }
     }
 
-    // XXX Later - switch in a recording dataset, not block writers, and reply after
-    // switch over before releasing the new dataset to the container.
-    // Maybe copy indexes and switch the DSG over (drop switchable).
+    /**
+     * Compact the database without holding off writers while it is copied.
+     * <p>
+     * A read transaction snapshot of the current database is copied to a new
+     * {@code Data-NNNN} while writers continue. Changes committed during the copy
+     * are recorded and then applied to the new database. Writers are held off only
+     * for the final switchover, when the last changes are applied and the
+     * {@link DatasetGraphSwitchable} is changed to the new database.
+     * <p>
+     * The {@link CompactionProgress} is updated as the compaction proceeds and can be
+     * read from other threads. Changes made by bulk loaders, which write to the
+     * indexes directly, are not recorded; do not run a bulk load during an online compaction.
+     */
+    public static void compactOnline(DatasetGraphSwitchable container, CompactionProgress progress) {
+        checkSupportsAdmin(container);
+        synchronized(compactionLock) {
+            Pair<Location, Location> locations = compactLocations(container);
+            try {
+                CompactOnline.compact(container, locations.getLeft(), locations.getRight(), progress);
+            } catch (RuntimeException ex) {
+                progress.failed();
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Start a new generation of the database for a merge load.
+     * <p>
+     * Writers on the current database are blocked until the new generation is switched in
+     * with {@link #switchGeneration} or discarded with {@link #abandonGeneration}; readers
+     * continue. The next {@code Data-NNNN} is created with a copy of the node tables and
+     * the prefixes of the current database, so it has the same {@code NodeId}s, and with
+     * empty triple and quad indexes for the caller to build, for example from the current
+     * indexes merged with new data.
+     */
+    public static DatasetGraphTDB startGeneration(DatasetGraphSwitchable container) {
+        checkSupportsAdmin(container);
+        if ( ! ( container.get() instanceof DatasetGraphTDB ) )
+            throw new TDBException("Not a TDB2 database in DatasetGraphSwitchable");
+        DatasetGraphTDB dsgBase = (DatasetGraphTDB)container.get();
+        TransactionCoordinator txnMgr = dsgBase.getTxnSystem().getTxnMgr();
+        Location loc2 = null;
+        synchronized(compactionLock) {
+            Pair<Location, Location> locations = compactLocations(container);
+            loc2 = locations.getRight();
+        }
+        txnMgr.blockWriters();
+        try {
+            Location loc1 = dsgBase.getLocation();
+            copyFiles(loc1, loc2);
+            StoreParams params = dsgBase.getStoreParams();
+            copyStorage(loc1, loc2, params.getNodeTableBaseName());
+            copyStorage(loc1, loc2, params.getPrefixTableBaseName());
+            for ( String idx : params.getPrefixIndexes() )
+                copyStorage(loc1, loc2, idx);
+            return StoreConnection.connectCreate(loc2).getDatasetGraphTDB();
+        } catch (RuntimeException ex) {
+            removeGeneration(loc2);
+            txnMgr.enableWriters();
+            throw ex;
+        }
+    }
+
+    /**
+     * Make a generation from {@link #startGeneration} the current database. This waits
+     * for readers of the current database to finish. The caller must not be in exclusive
+     * mode on the new generation.
+     */
+    public static void switchGeneration(DatasetGraphSwitchable container, DatasetGraphTDB dsgNew) {
+        DatasetGraphTDB dsgCurrent = (DatasetGraphTDB)container.get();
+        TransactionCoordinator txnMgr = dsgCurrent.getTxnSystem().getTxnMgr();
+        TransactionCoordinator txnMgr2 = dsgNew.getTxnSystem().getTxnMgr();
+        txnMgr.startExclusiveMode();
+        txnMgr2.startExclusiveMode();
+        // No transactions on either database.
+        if ( ! container.change(dsgCurrent, dsgNew) ) {
+            Log.warn(DatabaseOps.class, "Inconistent: old datasetgraph not as expected");
+            container.set(dsgNew);
+        }
+        txnMgr2.finishExclusiveMode();
+        // As compact: transactions waiting on the old database now fail.
+        StoreConnection.release(dsgCurrent.getLocation());
+    }
+
+    /**
+     * Discard a generation from {@link #startGeneration}, leaving the current database
+     * as it was, and allow writers again.
+     */
+    public static void abandonGeneration(DatasetGraphSwitchable container, DatasetGraphTDB dsgNew) {
+        DatasetGraphTDB dsgCurrent = (DatasetGraphTDB)container.get();
+        Location loc2 = dsgNew.getLocation();
+        StoreConnection.release(loc2);
+        removeGeneration(loc2);
+        dsgCurrent.getTxnSystem().getTxnMgr().enableWriters();
+    }
+
+    private static void removeGeneration(Location location) {
+        FileOps.clearAll(location.getDirectoryPath());
+        FileOps.delete(new File(location.getDirectoryPath()), false);
+    }
+
+    /** Copy the files of a B+Tree, or a node table, from {@code loc1} to {@code loc2}. */
+    private static void copyStorage(Location loc1, Location loc2, String name) {
+        String dataname = name+"-data";
+        String[][] files = {
+            { name, Names.extBptState }, { name, Names.extBptTree }, { name, Names.extBptRecords },
+            { dataname, Names.extObjNodeData }, { dataname, Names.extBdfState }
+        };
+        for ( String[] f : files ) {
+            String fn1 = new FileSet(loc1, f[0]).filename(f[1]);
+            if ( FileOps.exists(fn1) )
+                IOX.copy(fn1, new FileSet(loc2, f[0]).filename(f[1]));
+        }
+    }
+
+    /** Current and next database locations for a compaction. */
+    private static Pair<Location, Location> compactLocations(DatasetGraphSwitchable container) {
+        Path base = container.getContainerPath();
+        Path db1 = findLocation(base, dbPrefix);
+        Location loc1 = IOX.asLocation(db1);
+
+        // -- Checks
+        Location loc1a = ((DatasetGraphTDB)container.get()).getLocation();
+        if ( loc1a.isMem() ) {}
+        if ( ! loc1a.exists() )
+            throw new TDBException("No such location: "+loc1a);
+
+        // Is this the same database location?
+        if ( ! loc1.equals(loc1a) )
+            throw new TDBException("Inconsistent (not latested?) : "+loc1a+" : "+loc1);
+        // -- Checks
+
+        // Version
+        int v = IOX.extractIndex(db1.getFileName().toString(), dbPrefix, SEP);
+        String next = FilenameUtils.filename(dbPrefix, SEP, v+1);
+
+        Path db2 = db1.getParent().resolve(next);
+        IOX.createDirectory(db2);
+        Location loc2 = IOX.asLocation(db2);
+        LOG.debug(String.format("Compact %s -> %s\n", db1.getFileName(), db2.getFileName()));
+        return Pair.create(loc1, loc2);
+    }
 
     /** Copy the latest version from one location to another. */
     private static void compact(DatasetGraphSwitchable container, Location loc1, Location loc2) {
@@ -256,7 +375,7 @@ public class DatabaseOps {
     }
 
     /** Copy certain configuration files from {@code loc1} to {@code loc2}. */
-    private static void copyFiles(Location loc1, Location loc2) {
+    /*package*/ static void copyFiles(Location loc1, Location loc2) {
         FileFilter copyFiles  = (pathname)->{
             String fn = pathname.getName();
             if ( fn.equals(Names.TDB_CONFIG_FILE) )
@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.sys;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.base.record.Record;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDBException;
+import org.apache.jena.tdb2.store.DatasetGraphSwitchable;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.NodeIdFactory;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+import org.apache.jena.tdb2.store.nodetable.NodeTableTRDF;
+import org.apache.jena.tdb2.store.tupletable.TupleIndex;
+
+/**
+ * Garbage collection of the node table: nodes that are no longer used by any triple
+ * or quad.
+ * <p>
+ * The node table is append-only and a NodeId is the position of the node in the node
+ * data file, so removing nodes means renumbering the NodeIds in every index. That is
+ * what {@linkplain DatabaseOps#compact compaction} does: it rebuilds the database
+ * with only the nodes used by the data. {@link #analyse} finds how much of the node
+ * table is unused without changing anything; {@link #collect} compacts the database
+ * if there is anything to reclaim and reports the change in size of the node table files.
+ */
+public class NodeTableGC {
+
+    /** Result of a node table analysis or collection. */
+    public static class Report {
+        private final long nodes;
+        private final long unreferencedNodes;
+        private final long dataBytes;
+        private final long unreferencedBytes;
+        private final long filesBefore;
+        private final long filesAfter;
+
+        private Report(long nodes, long unreferencedNodes, long dataBytes, long unreferencedBytes,
+                       long filesBefore, long filesAfter) {
+            this.nodes = nodes;
+            this.unreferencedNodes = unreferencedNodes;
+            this.dataBytes = dataBytes;
+            this.unreferencedBytes = unreferencedBytes;
+            this.filesBefore = filesBefore;
+            this.filesAfter = filesAfter;
+        }
+
+        /** Number of nodes in the node table. */
+        public long getNodes()              { return nodes; }
+
+        /** Number of nodes not used by any triple or quad. */
+        public long getUnreferencedNodes()  { return unreferencedNodes; }
+
+        /** Length of the node data. */
+        public long getDataBytes()          { return dataBytes; }
+
+        /** Bytes of node data used by the unreferenced nodes. */
+        public long getUnreferencedBytes()  { return unreferencedBytes; }
+
+        /** Size on disk of the node table files before collection, or -1. */
+        public long getFilesBefore()        { return filesBefore; }
+
+        /** Size on disk of the node table files after collection, or -1 if there was no collection. */
+        public long getFilesAfter()         { return filesAfter; }
+
+        /** Has the node table been rewritten? */
+        public boolean isCollected()        { return filesAfter >= 0; }
+
+        /** Bytes on disk reclaimed by the collection. */
+        public long getReclaimedBytes() {
+            return isCollected() ? filesBefore - filesAfter : 0;
+        }
+
+        private Report collected(long before, long after) {
+            return new Report(nodes, unreferencedNodes, dataBytes, unreferencedBytes, before, after);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("NodeTableGC[nodes=%d, unreferenced=%d, dataBytes=%d, unreferencedBytes=%d, reclaimed=%d]",
+                                 nodes, unreferencedNodes, dataBytes, unreferencedBytes, getReclaimedBytes());
+        }
+    }
+
+    private NodeTableGC() {}
+
+    /**
+     * Find the nodes of the node table that are not used by the data. This is done in a
+     * read transaction and scans the primary triple and quad indexes and the node index.
+     */
+    public static Report analyse(DatasetGraphTDB dsg) {
+        return Txn.calculateRead(dsg, ()->analyse$(dsg));
+    }
+
+    /**
+     * Analyse the node table and, if there are unused nodes, compact the database which
+     * rewrites the node table with only the nodes in use.
+     *
+     * @param container The database.
+     * @param online Whether to use {@linkplain DatabaseOps#compactOnline online compaction}.
+     */
+    public static Report collect(DatasetGraphSwitchable container, boolean online) {
+        DatabaseOps.checkSupportsAdmin(container);
+        DatasetGraphTDB dsg = (DatasetGraphTDB)container.get();
+        Report report = analyse(dsg);
+        if ( report.getUnreferencedNodes() == 0 )
+            return report;
+        String nodeTableName = dsg.getStoreParams().getNodeTableBaseName();
+        long before = filesSize(dsg.getLocation(), nodeTableName);
+        if ( online )
+            DatabaseOps.compactOnline(container, new CompactionProgress());
+        else
+            DatabaseOps.compact(container);
+        Location location = ((DatasetGraphTDB)container.get()).getLocation();
+        long after = filesSize(location, nodeTableName);
+        return report.collected(before, after);
+    }
+
+    private static Report analyse$(DatasetGraphTDB dsg) {
+        NodeTableTRDF nodeTable = baseNodeTable(dsg.getTripleTable().getNodeTupleTable().getNodeTable());
+
+        // All nodes, by position in the node data.
+        LongSet all = new LongSet();
+        Iterator<Record> iter = nodeTable.getIndex().iterator();
+        iter.forEachRemaining(r->all.add(NodeIdFactory.get(r.getValue(), 0).getPtrLocation()));
+        Iter.close(iter);
+        long[] positions = all.toSortedArray();
+
+        // Nodes used by the data.
+        LongSet used = new LongSet();
+        addNodeIds(used, dsg.getTripleTable().getNodeTupleTable().getTupleTable().getIndex(0));
+        addNodeIds(used, dsg.getQuadTable().getNodeTupleTable().getTupleTable().getIndex(0));
+        long[] referenced = used.toSortedArray();
+
+        long dataLength = nodeTable.getData().length();
+        long unreferenced = 0;
+        long unreferencedBytes = 0;
+        for ( int i = 0 ; i < positions.length ; i++ ) {
+            if ( Arrays.binarySearch(referenced, positions[i]) >= 0 )
+                continue;
+            unreferenced++;
+            long end = ( i+1 < positions.length ) ? positions[i+1] : dataLength;
+            unreferencedBytes += end - positions[i];
+        }
+        return new Report(positions.length, unreferenced, dataLength, unreferencedBytes, -1, -1);
+    }
+
+    private static void addNodeIds(LongSet acc, TupleIndex index) {
+        Iterator<Tuple<NodeId>> iter = index.all();
+        iter.forEachRemaining(tuple->{
+            for ( int i = 0 ; i < tuple.len() ; i++ ) {
+                NodeId nid = tuple.get(i);
+                if ( nid.isPtr() )
+                    acc.add(nid.getPtrLocation());
+            }
+        });
+        Iter.close(iter);
+    }
+
+    private static NodeTableTRDF baseNodeTable(NodeTable nodeTable) {
+        NodeTable nt = nodeTable;
+        while ( nt != null ) {
+            if ( nt instanceof NodeTableTRDF )
+                return (NodeTableTRDF)nt;
+            nt = nt.wrapped();
+        }
+        throw new TDBException("No base node table: "+nodeTable);
+    }
+
+    /** Total size of the files of the node table, its index and its data. */
+    private static long filesSize(Location location, String nodeTableName) {
+        File[] files = new File(location.getDirectoryPath()).listFiles(f->
+            f.getName().startsWith(nodeTableName+".") || f.getName().startsWith(nodeTableName+"-data."));
+        long x = 0;
+        if ( files != null ) {
+            for ( File f : files )
+                x += f.length();
+        }
+        return x;
+    }
+
+    /**
+     * Set of longs, kept as an array which is sorted and made unique when it is full,
+     * so the space used is in proportion to the number of different values.
+     */
+    private static class LongSet {
+        private long[] values = new long[1024];
+        private int size = 0;
+
+        void add(long x) {
+            if ( size == values.length ) {
+                compact();
+                if ( size > values.length / 2 )
+                    values = Arrays.copyOf(values, 2 * values.length);
+            }
+            values[size++] = x;
+        }
+
+        private void compact() {
+            Arrays.sort(values, 0, size);
+            int j = 0;
+            for ( int i = 0 ; i < size ; i++ ) {
+                if ( j == 0 || values[i] != values[j-1] )
+                    values[j++] = values[i];
+            }
+            size = j;
+        }
+
+        long[] toSortedArray() {
+            compact();
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -124,6 +124,12 @@ public class SystemTDB
     /** Experimental : triple and quad filtering at scan level */
     public static final Symbol symTupleFilter       = allocSymbol("tupleFilter");
 
+    /** Merge join of pairs of triple or quad patterns in a basic graph pattern : default true */
+    public static final Symbol symMergeJoin         = allocSymbol("mergeJoin");
+
+    /** Use numeric ranges in filters to scan part of an index of inline values : default true */
+    public static final Symbol symRangeFilter       = allocSymbol("rangeFilter");
+
     private static final String PropertyFileKey1    = tdbPropertyRoot+".settings";
     private static final String PropertyFileKey2    = tdbSymbolPrefix+":settings";
 
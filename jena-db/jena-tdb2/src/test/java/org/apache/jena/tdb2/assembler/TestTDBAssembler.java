@@ -22,6 +22,8 @@ import org.apache.jena.assembler.JA;
 import org.apache.jena.assembler.exceptions.AssemblerException;
 import static org.junit.Assert.*;
 import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.dboe.transaction.txn.Durability;
+import org.apache.jena.dboe.transaction.txn.TransactionCoordinator;
 import org.apache.jena.graph.Graph;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.rdf.model.Model;
@@ -29,6 +31,7 @@ import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.sparql.core.assembler.AssemblerUtils;
 import org.apache.jena.sparql.core.assembler.DatasetAssemblerVocab;
 import org.apache.jena.tdb2.ConfigTest;
+import org.apache.jena.tdb2.params.StoreParams;
 import org.apache.jena.tdb2.store.DatasetGraphSwitchable;
 import org.apache.jena.tdb2.store.GraphViewSwitchable;
 import org.apache.jena.tdb2.sys.TDBInternal;
@@ -71,6 +74,17 @@ public class TestTDBAssembler
         createTest(dirAssem + "/tdb-dataset-embed.ttl", DatasetAssemblerVocab.tDataset);
     }
 
+    @Test
+    public void createDatasetDurability() {
+        Object thing = AssemblerUtils.build(dirAssem + "/tdb-dataset-durability.ttl", VocabTDB2.tDatasetTDB);
+        Dataset ds = (Dataset)thing;
+        TransactionCoordinator txnCoord = TDBInternal.getTransactionCoordinator(ds.asDatasetGraph());
+        assertEquals(Durability.PERIODIC, txnCoord.getDurability());
+        StoreParams params = TDBInternal.getDatasetGraphTDB(ds.asDatasetGraph()).getStoreParams();
+        assertEquals(500, params.getSyncIntervalMillis().intValue());
+        ds.close();
+    }
+
     private void createTest(String filename, Resource type) {
         Object thing = AssemblerUtils.build(filename, type);
         assertTrue(thing instanceof Dataset);
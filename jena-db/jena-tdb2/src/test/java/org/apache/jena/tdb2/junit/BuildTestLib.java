@@ -26,6 +26,7 @@ import org.apache.jena.dboe.index.RangeIndex;
 import org.apache.jena.dboe.trans.bplustree.BPlusTree;
 import org.apache.jena.dboe.trans.bplustree.BPlusTreeFactory;
 import org.apache.jena.tdb2.params.StoreParams;
+import org.apache.jena.tdb2.store.nodetable.NodeHashFilter;
 import org.apache.jena.tdb2.store.nodetable.NodeTable;
 import org.apache.jena.tdb2.store.nodetable.NodeTableCache;
 import org.apache.jena.tdb2.store.nodetable.NodeTableInline;
@@ -46,7 +47,7 @@ public class BuildTestLib {
     public static NodeTable makeNodeTable(Location location, String basename, StoreParams params) {
         NodeTable nt = makeNodeTableBase(location, basename, params);
         nt = NodeTableCache.create(nt, params);
-        nt = NodeTableInline.create(nt);
+        nt = NodeTableInline.create(nt, params.getNodeIdEncoding());
         return nt;
     }
 
@@ -56,7 +57,10 @@ public class BuildTestLib {
 
         Index index = buildRangeIndex(fs, recordFactory, params);
         BinaryDataFile bdf = createBinaryDataFile(location, basename+"-data");
-        NodeTable nt = new NodeTableTRDF(index, bdf);
+        NodeHashFilter filter = null;
+        if ( params.getNodeMissFilterBits() > 0 )
+            filter = new NodeHashFilter(params.getNodeMissFilterBits(), null);
+        NodeTable nt = new NodeTableTRDF(index, bdf, filter);
         return nt;
     }
 
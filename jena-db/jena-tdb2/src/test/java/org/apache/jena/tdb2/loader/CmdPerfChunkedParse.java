@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.loader;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jena.atlas.lib.Lib;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sys.JenaSystem;
+import org.apache.jena.tdb2.loader.main.ChunkedParser;
+import org.apache.jena.tdb2.loader.main.LoaderConst;
+
+/**
+ * Parse an N-Triples or N-Quads file with one parser, as the loader does for other
+ * formats, and then with {@link ChunkedParser}. Reports triples/quads per second.
+ */
+public class CmdPerfChunkedParse
+{
+    static { JenaSystem.init(); }
+
+    public static void main(String...argv) {
+        // Usage: file [threads]
+        if ( argv.length < 1 || argv.length > 2 ) {
+            System.err.println("Usage: "+Lib.classShortName(CmdPerfChunkedParse.class)+" file [threads]");
+            System.exit(1);
+        }
+        String filename = argv[0];
+        int threads = ( argv.length > 1 ) ? Integer.parseInt(argv[1]) : LoaderConst.ParserThreads;
+        // Warm up.
+        run("Warm up", ()->RDFDataMgr.parse(counter(new AtomicLong()), filename), new AtomicLong());
+        AtomicLong count1 = new AtomicLong();
+        run("Single parser", ()->RDFDataMgr.parse(counter(count1), filename), count1);
+        AtomicLong count2 = new AtomicLong();
+        run("Chunked ("+threads+" threads)", ()->ChunkedParser.parse(filename, threads, LoaderConst.ParseChunkBytes, ()->counter(count2)), count2);
+    }
+
+    private static StreamRDF counter(AtomicLong count) {
+        return new StreamRDFBase() {
+            long x = 0;
+            @Override public void triple(Triple triple) { x++; }
+            @Override public void quad(Quad quad)       { x++; }
+            @Override public void finish()              { count.addAndGet(x); }
+        };
+    }
+
+    private static void run(String label, Runnable action, AtomicLong count) {
+        long start = System.currentTimeMillis();
+        action.run();
+        long millis = Math.max(1, System.currentTimeMillis() - start);
+        System.out.printf("%-22s: %,d items in %,d ms : %,.0f items/s\n", label, count.get(), millis, 1000.0 * count.get() / millis);
+    }
+}
@@ -24,7 +24,10 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses( {
     TestLoaderStdSetups.class ,
-    TestLoaderMainPlan.class
+    TestLoaderMainPlan.class ,
+    TestLoaderSorted.class ,
+    TestChunkedParser.class ,
+    TestLoaderMerge.class
 })
 
 public class TS_Loader {}
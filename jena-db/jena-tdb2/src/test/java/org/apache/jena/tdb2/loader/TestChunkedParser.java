@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Supplier;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.tdb2.loader.main.ChunkedParser;
+import org.junit.After;
+import org.junit.Test;
+
+public class TestChunkedParser {
+
+    private List<Path> files = new ArrayList<>();
+
+    @After public void after() throws IOException {
+        for ( Path p : files )
+            Files.deleteIfExists(p);
+    }
+
+    private Path file(String suffix, String... lines) throws IOException {
+        Path p = Files.createTempFile("chunked-", suffix);
+        files.add(p);
+        Files.write(p, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return p;
+    }
+
+    private Path fileNT(int N) throws IOException {
+        String[] lines = new String[N];
+        for ( int i = 0 ; i < N ; i++ )
+            lines[i] = String.format("_:b%d <http://example/p> \"%d\" .", i%7, i);
+        return file(".nt", lines);
+    }
+
+    private static List<Quad> parse(Path p, int threads, long chunkBytes) {
+        List<Quad> results = Collections.synchronizedList(new ArrayList<>());
+        Supplier<StreamRDF> dest = ()->new StreamRDFBase() {
+            @Override public void triple(Triple triple) { results.add(Quad.create(Quad.defaultGraphIRI, triple)); }
+            @Override public void quad(Quad quad)       { results.add(quad); }
+        };
+        ChunkedParser.parse(p.toString(), threads, chunkBytes, dest);
+        return results;
+    }
+
+    private static Set<Node> subjects(List<Quad> quads) {
+        Set<Node> x = new HashSet<>();
+        quads.forEach(q->x.add(q.getSubject()));
+        return x;
+    }
+
+    @Test public void chunked_parse_01() throws IOException {
+        Path p = fileNT(100);
+        List<Quad> quads = parse(p, 4, 50);
+        assertEquals(100, quads.size());
+        // Blank node labels are the same across chunks.
+        assertEquals(7, subjects(quads).size());
+        assertTrue(subjects(quads).stream().allMatch(Node::isBlank));
+        // Objects are all different.
+        Set<Node> objects = new HashSet<>();
+        quads.forEach(q->objects.add(q.getObject()));
+        assertEquals(100, objects.size());
+    }
+
+    @Test public void chunked_parse_02() throws IOException {
+        // One chunk.
+        Path p = fileNT(100);
+        List<Quad> quads = parse(p, 2, 1024*1024);
+        assertEquals(100, quads.size());
+        assertEquals(7, subjects(quads).size());
+    }
+
+    @Test public void chunked_parse_03() throws IOException {
+        // Lines longer than the chunk size.
+        Path p = fileNT(20);
+        List<Quad> quads = parse(p, 3, 5);
+        assertEquals(20, quads.size());
+        assertEquals(7, subjects(quads).size());
+    }
+
+    @Test public void chunked_parse_04() throws IOException {
+        // Separate parses of a file have separate blank nodes.
+        Path p = fileNT(20);
+        Set<Node> s1 = subjects(parse(p, 2, 50));
+        Set<Node> s2 = subjects(parse(p, 2, 50));
+        assertEquals(7, s1.size());
+        assertEquals(7, s2.size());
+        s1.retainAll(s2);
+        assertTrue(s1.isEmpty());
+    }
+
+    @Test public void chunked_parse_quads() throws IOException {
+        Path p = file(".nq",
+                      "<http://example/s> <http://example/p> _:b0 <http://example/g1> .",
+                      "# Comment",
+                      "",
+                      "<http://example/s> <http://example/p> _:b0 <http://example/g2> .",
+                      "<http://example/s> <http://example/p> _:b1 .",
+                      "_:b1 <http://example/p> \"abc\\ndef\" <http://example/g1> .");
+        List<Quad> quads = parse(p, 3, 20);
+        assertEquals(4, quads.size());
+        Set<Node> bnodes = new HashSet<>();
+        quads.forEach(q->{
+            if ( q.getSubject().isBlank() ) bnodes.add(q.getSubject());
+            if ( q.getObject().isBlank() )  bnodes.add(q.getObject());
+        });
+        assertEquals(2, bnodes.size());
+        // Same as parsing in one go, up to blank node labels.
+        assertEquals(4, Iter.count(RDFDataMgr.loadDatasetGraph(p.toString()).find()));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void chunked_parse_bad() throws IOException {
+        Path p = file(".ttl", "<http://example/s> <http://example/p> 123 .");
+        parse(p, 2, 50);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.loader;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.sparql.util.IsoMatcher;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.ConfigTest;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.TDBException;
+import org.apache.jena.tdb2.loader.base.LoaderOps;
+import org.apache.jena.tdb2.sys.IOX;
+import org.apache.jena.tdb2.sys.StoreConnection;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestLoaderMerge {
+
+    private static String DIR = "testing/Loader/";
+    private Location dir = null;
+
+    private static Quad quad1 = SSE.parseQuad("(_ <s> <p> <o1>)");
+    private static Quad quad2 = SSE.parseQuad("(_ <s> <p> <o9>)");
+    private static Quad quad3 = SSE.parseQuad("(<g> _:b <p> <o9>)");
+
+    @Before
+    public void before() {
+        String DIR = ConfigTest.getCleanDir();
+        FileOps.ensureDir(DIR);
+        FileOps.clearAll(DIR);
+        dir = Location.create(DIR);
+    }
+
+    @After
+    public void after() {
+        TDBInternal.reset();
+        FileUtils.deleteQuietly(IOX.asFile(dir));
+    }
+
+    private DatasetGraph database() {
+        DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(dir);
+        Txn.executeWrite(dsg, ()->{
+            dsg.add(quad1);
+            dsg.add(quad2);
+            dsg.add(quad3);
+            dsg.getDefaultGraph().getPrefixMapping().setNsPrefix("ex", "http://example/");
+        });
+        return dsg;
+    }
+
+    private static Location location(DatasetGraph dsg) {
+        return TDBInternal.getDatasetGraphTDB(dsg).getLocation();
+    }
+
+    @Test public void load_merge_01() {
+        DatasetGraph dsg = database();
+        Location loc1 = location(dsg);
+        DataLoader loader = LoaderFactory.mergeLoader(dsg, LoaderOps.nullOutput());
+        loader.startBulk();
+        loader.load(DIR + "data-1.nq", DIR + "data-2.nt");
+        loader.finishBulk();
+
+        Location loc2 = location(dsg);
+        assertNotEquals(loc1, loc2);
+        assertFalse(StoreConnection.isSetup(loc1));
+
+        Txn.executeRead(dsg, ()->{
+            // data-2.nt includes <s> <p> <o1>
+            assertEquals(3, dsg.getDefaultGraph().size());
+            assertEquals(2, dsg.getGraph(NodeFactory.createURI("g")).size());
+            assertTrue(dsg.contains(quad1));
+            assertTrue(dsg.contains(quad2));
+            // Every index.
+            Node o9 = NodeFactory.createURI("o9");
+            assertEquals(2, Iter.count(dsg.find(null, null, null, o9)));
+            assertEquals(1, Iter.count(dsg.getDefaultGraph().find(null, null, o9)));
+            List<Quad> x = Iter.toList(dsg.find(null, null, NodeFactory.createURI("p"), null));
+            assertEquals(5, x.size());
+            // Existing blank node.
+            assertEquals(1, Iter.count(dsg.find(null, quad3.getSubject(), null, null)));
+            assertEquals("http://example/", dsg.getDefaultGraph().getPrefixMapping().getNsPrefixURI("ex"));
+        });
+        // Updates after the merge load.
+        Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ <s> <p> 123)")));
+        Txn.executeRead(dsg, ()->assertEquals(4, dsg.getDefaultGraph().size()));
+    }
+
+    @Test public void load_merge_02() {
+        // Same as loading in one go.
+        DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(dir);
+        Txn.executeWrite(dsg, ()->RDFDataMgr.read(dsg, DIR + "data-1.nq"));
+        DataLoader loader = LoaderFactory.mergeLoader(dsg, LoaderOps.nullOutput());
+        loader.startBulk();
+        loader.load(DIR + "data-3.trig");
+        loader.finishBulk();
+
+        DatasetGraph expected = RDFDataMgr.loadDatasetGraph(DIR + "data-1.nq");
+        RDFDataMgr.read(expected, DIR + "data-3.trig");
+        Txn.executeRead(dsg, ()->assertTrue(IsoMatcher.isomorphic(expected, dsg)));
+    }
+
+    @Test public void load_merge_graph() {
+        DatasetGraph dsg = database();
+        Node gn = NodeFactory.createURI("http://example/g");
+        DataLoader loader = LoaderFactory.mergeLoader(dsg, gn, LoaderOps.nullOutput());
+        loader.startBulk();
+        loader.load(DIR + "data-2.nt");
+        loader.finishBulk();
+        Txn.executeRead(dsg, ()->{
+            assertEquals(2, dsg.getDefaultGraph().size());
+            assertEquals(2, dsg.getGraph(gn).size());
+        });
+    }
+
+    @Test public void load_merge_abort() {
+        DatasetGraph dsg = database();
+        Location loc1 = location(dsg);
+        DataLoader loader = LoaderFactory.mergeLoader(dsg, LoaderOps.nullOutput());
+        loader.startBulk();
+        // Readers can use the database during the load.
+        Txn.executeRead(dsg, ()->assertEquals(2, dsg.getDefaultGraph().size()));
+        loader.stream().triple(Triple.create(NodeFactory.createURI("s"), NodeFactory.createURI("q"), NodeFactory.createURI("o")));
+        loader.finishException(new RuntimeException());
+        assertEquals(loc1, location(dsg));
+        // Only the original generation.
+        assertEquals(1, IOX.asFile(dir).list((d, fn)->fn.startsWith("Data-")).length);
+        // Writers are allowed again.
+        Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ <s> <p> 123)")));
+        Txn.executeRead(dsg, ()->assertEquals(3, dsg.getDefaultGraph().size()));
+    }
+
+    @Test(expected=TDBException.class)
+    public void load_merge_mem() {
+        LoaderFactory.mergeLoader(DatabaseMgr.createDatasetGraph(), LoaderOps.nullOutput());
+    }
+}
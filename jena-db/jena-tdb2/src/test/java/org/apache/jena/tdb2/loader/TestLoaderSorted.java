@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.loader;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.*;
+import java.util.function.BiFunction;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.transaction.txn.Durability;
+import org.apache.jena.atlas.lib.tuple.TupleFactory;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.ConfigTest;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.loader.base.LoaderOps;
+import org.apache.jena.tdb2.loader.base.MonitorOutput;
+import org.apache.jena.tdb2.loader.main.IndexerSorted;
+import org.apache.jena.tdb2.loader.main.LoaderConst;
+import org.apache.jena.tdb2.params.StoreParams;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.NodeIdFactory;
+import org.apache.jena.tdb2.store.tupletable.TupleIndex;
+import org.apache.jena.tdb2.sys.TDBInternal;
+import org.junit.Test;
+
+/** Tests specific to the sorted loader; the general loader tests are in {@link TestLoaderStdSetups}. */
+public class TestLoaderSorted {
+
+    private static String DIR = "testing/Loader/";
+
+    // Loading into a database with data merges with the existing index contents.
+    @Test public void load_sorted_existing() {
+        DatasetGraph dsg = DatabaseMgr.createDatasetGraph();
+        Txn.executeWrite(dsg, ()->{
+            dsg.add(SSE.parseQuad("(_ <s> <p> <o1>)"));
+            dsg.add(SSE.parseQuad("(_ <s> <p> <o9>)"));
+            dsg.add(SSE.parseQuad("(<g> <s> <p> <o9>)"));
+        });
+        DataLoader loader = LoaderFactory.sortedLoader(dsg, LoaderOps.nullOutput());
+        loader.startBulk();
+        loader.load(DIR + "data-1.nq", DIR + "data-2.nt");
+        loader.finishBulk();
+        Txn.executeRead(dsg, ()->{
+            // data-2.nt includes <s> <p> <o1>
+            assertEquals(3, dsg.getDefaultGraph().size());
+            assertEquals(2, dsg.getGraph(NodeFactory.createURI("g")).size());
+            Node o9 = NodeFactory.createURI("o9");
+            assertEquals(2, Iter.count(dsg.find(null, null, null, o9)));
+        });
+    }
+
+    // A bulk load after commits that are not yet on disk (PERIODIC durability).
+    // The delayed commits must not be written over the loaded state.
+    @Test public void load_after_periodic_commit() {
+        for ( BiFunction<DatasetGraph, MonitorOutput, DataLoader> factory :
+              List.<BiFunction<DatasetGraph, MonitorOutput, DataLoader>>of(LoaderFactory::parallelLoader,
+                                                                            LoaderFactory::sortedLoader,
+                                                                            LoaderFactory::mergeLoader) ) {
+            Location location = Location.create(ConfigTest.getCleanDir());
+            StoreParams params = StoreParams.builder().durability(Durability.PERIODIC).syncIntervalMillis(3600_000).build();
+            DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(location, params);
+            Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(_ <s> <p> <o1>)")));
+            DataLoader loader = factory.apply(dsg, LoaderOps.nullOutput());
+            loader.startBulk();
+            loader.load(DIR + "data-1.nq", DIR + "data-2.nt");
+            loader.finishBulk();
+            TDBInternal.expel(dsg);
+
+            DatasetGraph dsg2 = DatabaseMgr.connectDatasetGraph(location);
+            Txn.executeRead(dsg2, ()->{
+                // data-2.nt includes <s> <p> <o1>
+                assertEquals(2, dsg2.getDefaultGraph().size());
+                assertEquals(1, dsg2.getGraph(NodeFactory.createURI("g")).size());
+            });
+            TDBInternal.expel(dsg2);
+        }
+    }
+
+    // Many small runs, more than are merged at once, with duplicates.
+    @Test public void index_sorted_runs() {
+        indexSorted(2, 500);
+    }
+
+    @Test public void index_sorted_one_run() {
+        indexSorted(LoaderConst.SortRunSize, 500);
+    }
+
+    private static void indexSorted(int runSize, int N) {
+        DatasetGraph dsg = DatabaseMgr.createDatasetGraph();
+        DatasetGraphTDB dsgtdb = TDBInternal.getDatasetGraphTDB(dsg);
+        TupleIndex[] indexes = dsgtdb.getTripleTable().getNodeTupleTable().getTupleTable().getIndexes();
+
+        Random random = new Random(1234);
+        List<Tuple<NodeId>> tuples = new ArrayList<>();
+        Set<Tuple<NodeId>> expected = new HashSet<>();
+        for ( int i = 0 ; i < N ; i++ ) {
+            Tuple<NodeId> t = TupleFactory.tuple(NodeIdFactory.createPtr(random.nextInt(20)),
+                                                 NodeIdFactory.createPtr(random.nextInt(5)),
+                                                 NodeIdFactory.createPtr(random.nextInt(100)));
+            tuples.add(t);
+            expected.add(t);
+        }
+
+        dsgtdb.getTxnSystem().getTxnMgr().startExclusiveMode();
+        IndexerSorted indexer = new IndexerSorted(LoaderOps.nullOutput(), null, runSize, indexes);
+        indexer.startBulk();
+        indexer.index().deliver(tuples.subList(0, N/2));
+        indexer.index().deliver(tuples.subList(N/2, N));
+        // End of data.
+        indexer.index().deliver(Collections.emptyList());
+        indexer.finishBulk();
+        dsgtdb.getTxnSystem().getTxnMgr().finishExclusiveMode();
+
+        Txn.executeRead(dsg, ()->{
+            for ( TupleIndex idx : indexes ) {
+                Set<Tuple<NodeId>> actual = new HashSet<>(Iter.toList(idx.all()));
+                assertEquals(idx.getName(), expected, actual);
+                assertEquals(idx.getName(), expected.size(), idx.size());
+            }
+        });
+    }
+}
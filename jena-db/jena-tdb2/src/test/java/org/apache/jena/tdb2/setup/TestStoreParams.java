@@ -21,6 +21,8 @@ package org.apache.jena.tdb2.setup;
 import org.apache.jena.atlas.json.JSON;
 import org.apache.jena.atlas.json.JsonObject;
 import org.apache.jena.dboe.base.block.FileMode;
+import org.apache.jena.dboe.base.recordbuffer.RecordPageFormat;
+import org.apache.jena.dboe.transaction.txn.Durability;
 import org.apache.jena.tdb2.TDBException;
 import org.apache.jena.tdb2.params.StoreParams;
 import org.apache.jena.tdb2.params.StoreParamsBuilder;
@@ -131,6 +133,103 @@ public class TestStoreParams {
 
     }
 
+    @Test public void store_params_23() {
+        StoreParams params = StoreParams.builder().fileMode(FileMode.direct).blockReadCacheOffHeapMB(64).build();
+        assertTrue(params.isSetBlockReadCacheOffHeapMB());
+        StoreParams params2 = roundTrip(params);
+        assertEqualsStoreParams(params, params2);
+        assertEquals(64, params2.getBlockReadCacheOffHeapMB().intValue());
+        StoreParams params3 = StoreParamsBuilder.modify(StoreParams.getDftStoreParams(), params);
+        assertEquals(64, params3.getBlockReadCacheOffHeapMB().intValue());
+    }
+
+    @Test public void store_params_24() {
+        StoreParams params = StoreParams.builder().indexRecordFormat(RecordPageFormat.prefix).build();
+        assertTrue(params.isSetIndexRecordFormat());
+        StoreParams params2 = roundTrip(params);
+        assertEqualsStoreParams(params, params2);
+        assertEquals(RecordPageFormat.prefix, params2.getIndexRecordFormat());
+        // Layout, not dynamic.
+        StoreParams params3 = StoreParamsBuilder.modify(StoreParams.getDftStoreParams(), params);
+        assertEquals(RecordPageFormat.fixed, params3.getIndexRecordFormat());
+    }
+
+    @Test public void store_params_25() {
+        StoreParams params = StoreParams.builder().indexReadAhead(8).build();
+        assertTrue(params.isSetIndexReadAhead());
+        StoreParams params2 = roundTrip(params);
+        assertEqualsStoreParams(params, params2);
+        assertEquals(8, params2.getIndexReadAhead().intValue());
+        StoreParams params3 = StoreParamsBuilder.modify(StoreParams.getDftStoreParams(), params);
+        assertEquals(8, params3.getIndexReadAhead().intValue());
+    }
+
+    @Test public void store_params_26() {
+        StoreParams params = StoreParams.builder().nodeMissFilterBits(10).build();
+        assertTrue(params.isSetNodeMissFilterBits());
+        StoreParams params2 = roundTrip(params);
+        assertEqualsStoreParams(params, params2);
+        assertEquals(10, params2.getNodeMissFilterBits().intValue());
+        StoreParams params3 = StoreParamsBuilder.modify(StoreParams.getDftStoreParams(), params);
+        assertEquals(10, params3.getNodeMissFilterBits().intValue());
+    }
+
+    @Test public void store_params_27() {
+        StoreParams params = StoreParams.builder().nodeCacheMB(64).build();
+        assertTrue(params.isSetNodeCacheMB());
+        StoreParams params2 = roundTrip(params);
+        assertEqualsStoreParams(params, params2);
+        assertEquals(64, params2.getNodeCacheMB().intValue());
+        StoreParams params3 = StoreParamsBuilder.modify(StoreParams.getDftStoreParams(), params);
+        assertEquals(64, params3.getNodeCacheMB().intValue());
+    }
+
+    @Test public void store_params_28() {
+        StoreParams params = StoreParams.builder().nodeIdEncoding(2).build();
+        assertTrue(params.isSetNodeIdEncoding());
+        StoreParams params2 = roundTrip(params);
+        assertEqualsStoreParams(params, params2);
+        assertEquals(2, params2.getNodeIdEncoding().intValue());
+        // Layout, not dynamic.
+        StoreParams params3 = StoreParamsBuilder.modify(StoreParams.getDftStoreParams(), params);
+        assertEquals(1, params3.getNodeIdEncoding().intValue());
+    }
+
+    @Test public void store_params_29() {
+        StoreParams params = StoreParams.builder().durability(Durability.PERIODIC).syncIntervalMillis(200).build();
+        assertTrue(params.isSetDurability());
+        assertTrue(params.isSetSyncIntervalMillis());
+        StoreParams params2 = roundTrip(params);
+        assertEqualsStoreParams(params, params2);
+        assertEquals(Durability.PERIODIC, params2.getDurability());
+        assertEquals(200, params2.getSyncIntervalMillis().intValue());
+        StoreParams params3 = StoreParamsBuilder.modify(StoreParams.getDftStoreParams(), params);
+        assertEquals(Durability.PERIODIC, params3.getDurability());
+        assertEquals(200, params3.getSyncIntervalMillis().intValue());
+        assertEquals(Durability.SYNC, StoreParams.getDftStoreParams().getDurability());
+    }
+
+    @Test public void store_params_30() {
+        StoreParams params = StoreParams.builder().indexCounted(true).build();
+        assertTrue(params.isSetIndexCounted());
+        StoreParams params2 = roundTrip(params);
+        assertEqualsStoreParams(params, params2);
+        assertTrue(params2.getIndexCounted());
+        // Layout, not dynamic.
+        StoreParams params3 = StoreParamsBuilder.modify(StoreParams.getDftStoreParams(), params);
+        assertFalse(params3.getIndexCounted());
+    }
+
+    @Test public void store_params_31() {
+        StoreParams params = StoreParams.builder().statsAuto(true).build();
+        assertTrue(params.isSetStatsAuto());
+        StoreParams params2 = roundTrip(params);
+        assertEqualsStoreParams(params, params2);
+        assertTrue(params2.getStatsAuto());
+        StoreParams params3 = StoreParamsBuilder.modify(StoreParams.getDftStoreParams(), params);
+        assertTrue(params3.getStatsAuto());
+        assertFalse(StoreParams.getDftStoreParams().getStatsAuto());
+    }
 
     // --------
 
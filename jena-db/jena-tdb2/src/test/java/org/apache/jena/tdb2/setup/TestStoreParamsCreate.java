@@ -29,14 +29,29 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import org.apache.jena.atlas.iterator.Iter;
 import org.apache.jena.atlas.json.JSON;
 import org.apache.jena.atlas.json.JsonObject;
 import org.apache.jena.atlas.lib.FileOps;
 import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.base.recordbuffer.RecordPageFormat;
 import org.apache.jena.dboe.sys.Names;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.system.Txn;
 import org.apache.jena.tdb2.ConfigTest;
 import org.apache.jena.tdb2.params.StoreParams;
+import org.apache.jena.sparql.sse.SSE;
 import org.apache.jena.tdb2.params.StoreParamsCodec;
+import org.apache.jena.tdb2.solver.stats.ReorderMaintained;
+import org.apache.jena.tdb2.solver.stats.StatsResults;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.store.NodeIdInline;
+import org.apache.jena.tdb2.store.nodetable.NodeHashFilter;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+import org.apache.jena.tdb2.store.nodetable.NodeTableNative;
 import org.apache.jena.tdb2.sys.StoreConnection;
 import org.apache.jena.tdb2.sys.TDBInternal;
 import org.junit.After;
@@ -159,6 +174,162 @@ public class TestStoreParamsCreate {
     }
 
 
+    // Compressed index records.
+    @Test public void params_create_prefix_01() {
+        StoreParams pPrefix = StoreParams.builder(pApp).indexRecordFormat(RecordPageFormat.prefix).build();
+        StoreConnection.connectCreate(loc, pPrefix);
+        DatasetGraph dsg = StoreConnection.connectExisting(loc).getDatasetGraph();
+        Node s = NodeFactory.createURI("http://example/s");
+        Node p = NodeFactory.createURI("http://example/p");
+        int N = 2000;
+        Txn.executeWrite(dsg, ()->{
+            for ( int i = 0 ; i < N ; i++ )
+                dsg.getDefaultGraph().add(Triple.create(s, p, NodeFactory.createURI("http://example/o"+i)));
+        });
+        // Some deletes - may merge blocks.
+        Txn.executeWrite(dsg, ()->{
+            for ( int i = 0 ; i < N ; i += 3 )
+                dsg.getDefaultGraph().delete(Triple.create(s, p, NodeFactory.createURI("http://example/o"+i)));
+        });
+        expel();
+        StoreConnection.connectCreate(loc, null);
+        StoreParams pDB = StoreConnection.connectExisting(loc).getDatasetGraphTDB().getStoreParams();
+        assertEquals(RecordPageFormat.prefix, pDB.getIndexRecordFormat());
+        DatasetGraph dsg2 = StoreConnection.connectExisting(loc).getDatasetGraph();
+        Txn.executeRead(dsg2, ()->{
+            assertEquals(N - (N+2)/3, dsg2.getDefaultGraph().size());
+            assertTrue(dsg2.getDefaultGraph().contains(s, p, NodeFactory.createURI("http://example/o1")));
+            assertFalse(dsg2.getDefaultGraph().contains(s, p, NodeFactory.createURI("http://example/o3")));
+            assertEquals(N - (N+2)/3, Iter.count(dsg2.getDefaultGraph().find(Node.ANY, p, Node.ANY)));
+        });
+    }
+
+    // Node table filter, saved on shutdown.
+    @Test public void params_create_filter_01() {
+        StoreParams pFilter = StoreParams.builder(pApp).nodeMissFilterBits(10).build();
+        StoreConnection.connectCreate(loc, pFilter);
+        DatasetGraph dsg = StoreConnection.connectExisting(loc).getDatasetGraph();
+        Node s = NodeFactory.createURI("http://example/s");
+        Node p = NodeFactory.createURI("http://example/p");
+        int N = 100;
+        Txn.executeWrite(dsg, ()->{
+            for ( int i = 0 ; i < N ; i++ )
+                dsg.getDefaultGraph().add(Triple.create(s, p, NodeFactory.createURI("http://example/o"+i)));
+        });
+        expel();
+        Path filterFile = Paths.get(loc.getPath(Names.nodeTableBaseName, Names.extNodeFilter));
+        assertTrue(Files.exists(filterFile));
+
+        StoreConnection.connectCreate(loc, null);
+        DatasetGraphTDB dsg2 = StoreConnection.connectExisting(loc).getDatasetGraphTDB();
+        assertEquals(10, dsg2.getStoreParams().getNodeMissFilterBits().intValue());
+        NodeTableNative nt = (NodeTableNative)dsg2.getTripleTable().getNodeTupleTable().getNodeTable().baseNodeTable();
+        NodeHashFilter filter = nt.getNodeHashFilter();
+        assertNotNull(filter);
+        Txn.executeRead(dsg2, ()->{
+            assertTrue(dsg2.getDefaultGraph().contains(s, p, NodeFactory.createURI("http://example/o1")));
+            assertFalse(dsg2.getDefaultGraph().contains(s, p, NodeFactory.createURI("http://example/other")));
+        });
+        // Loaded, and only good until the database changes.
+        assertTrue(filter.isReady());
+        assertFalse(Files.exists(filterFile));
+        assertTrue(filter.getNegatives() > 0);
+    }
+
+    // Filter turned off - any saved filter is discarded.
+    @Test public void params_create_filter_02() {
+        StoreParams pFilter = StoreParams.builder(pApp).nodeMissFilterBits(10).build();
+        StoreConnection.connectCreate(loc, pFilter);
+        DatasetGraph dsg = StoreConnection.connectExisting(loc).getDatasetGraph();
+        Txn.executeWrite(dsg, ()->dsg.getDefaultGraph().add(SSE.parseTriple("(<x> <p> 1)")));
+        expel();
+        Path filterFile = Paths.get(loc.getPath(Names.nodeTableBaseName, Names.extNodeFilter));
+        assertTrue(Files.exists(filterFile));
+        StoreConnection.connectCreate(loc, StoreParams.builder(pApp).nodeMissFilterBits(0).build());
+        assertFalse(Files.exists(filterFile));
+    }
+
+    // Maintained statistics - saved at shutdown, read at startup.
+    @Test public void params_create_stats_01() {
+        StoreParams pStats = StoreParams.builder(pApp).statsAuto(true).build();
+        StoreConnection.connectCreate(loc, pStats);
+        DatasetGraph dsg = StoreConnection.connectExisting(loc).getDatasetGraph();
+        Txn.executeWrite(dsg, ()->{
+            dsg.getDefaultGraph().add(SSE.parseTriple("(<x> <p> 1)"));
+            dsg.getDefaultGraph().add(SSE.parseTriple("(<x> <q> 1)"));
+            dsg.getDefaultGraph().add(SSE.parseTriple("(<y> <p> 2)"));
+        });
+        expel();
+        Path statsFile = Paths.get(loc.getPath(Names.statsAuto));
+        assertTrue(Files.exists(statsFile));
+
+        StoreConnection.connectCreate(loc, null);
+        DatasetGraphTDB dsg2 = StoreConnection.connectExisting(loc).getDatasetGraphTDB();
+        assertTrue(dsg2.getReorderTransform() instanceof ReorderMaintained);
+        // Loaded, and only good until the database changes.
+        assertFalse(Files.exists(statsFile));
+        StatsResults results = ((ReorderMaintained)dsg2.getReorderTransform()).results();
+        assertEquals(3, results.getCount());
+        assertEquals(2, results.getPredicates().get(SSE.parseNode("<p>")).intValue());
+        assertEquals(1, results.getPredicates().get(SSE.parseNode("<q>")).intValue());
+    }
+
+    // Statistics turned off - any saved statistics are discarded.
+    @Test public void params_create_stats_02() {
+        StoreParams pStats = StoreParams.builder(pApp).statsAuto(true).build();
+        StoreConnection.connectCreate(loc, pStats);
+        DatasetGraph dsg = StoreConnection.connectExisting(loc).getDatasetGraph();
+        Txn.executeWrite(dsg, ()->dsg.getDefaultGraph().add(SSE.parseTriple("(<x> <p> 1)")));
+        expel();
+        Path statsFile = Paths.get(loc.getPath(Names.statsAuto));
+        assertTrue(Files.exists(statsFile));
+        StoreConnection.connectCreate(loc, StoreParams.builder(pApp).statsAuto(false).build());
+        assertFalse(Files.exists(statsFile));
+    }
+
+    // NodeId encoding version 2.
+    @Test public void params_create_nodeid_01() {
+        StoreParams pEnc = StoreParams.builder(pApp).nodeIdEncoding(NodeIdInline.Version2).build();
+        StoreConnection.connectCreate(loc, pEnc);
+        DatasetGraph dsg = StoreConnection.connectExisting(loc).getDatasetGraph();
+        Triple t1 = SSE.parseTriple("(<x> <p> 'abc')");
+        Triple t2 = SSE.parseTriple("(<x> <p> 'chat'@fr)");
+        Triple t3 = SSE.parseTriple("(<x> <p> 'a longer string')");
+        Txn.executeWrite(dsg, ()->{
+            dsg.getDefaultGraph().add(t1);
+            dsg.getDefaultGraph().add(t2);
+            dsg.getDefaultGraph().add(t3);
+        });
+        expel();
+        // Layout - the setting of the database is used.
+        StoreConnection.connectCreate(loc, StoreParams.builder(pApp).nodeIdEncoding(NodeIdInline.Version1).build());
+        DatasetGraphTDB dsg2 = StoreConnection.connectExisting(loc).getDatasetGraphTDB();
+        assertEquals(NodeIdInline.Version2, dsg2.getStoreParams().getNodeIdEncoding().intValue());
+        Txn.executeRead(dsg2, ()->{
+            assertEquals(3, dsg2.getDefaultGraph().size());
+            assertTrue(dsg2.getDefaultGraph().contains(t1));
+            assertTrue(dsg2.getDefaultGraph().contains(t2));
+            assertTrue(dsg2.getDefaultGraph().contains(t3));
+            NodeTable nt = dsg2.getTripleTable().getNodeTupleTable().getNodeTable();
+            assertTrue(nt.getNodeIdForNode(t1.getObject()).isInline());
+            assertTrue(nt.getNodeIdForNode(t2.getObject()).isInline());
+            assertFalse(nt.getNodeIdForNode(t3.getObject()).isInline());
+        });
+    }
+
+    @Test public void params_create_nodeid_02() {
+        // Default is version 1.
+        StoreConnection.connectCreate(loc, pApp);
+        DatasetGraphTDB dsg = StoreConnection.connectExisting(loc).getDatasetGraphTDB();
+        assertEquals(NodeIdInline.Version1, dsg.getStoreParams().getNodeIdEncoding().intValue());
+        Triple t1 = SSE.parseTriple("(<x> <p> 'abc')");
+        Txn.executeWrite(dsg, ()->dsg.getDefaultGraph().add(t1));
+        Txn.executeRead(dsg, ()->{
+            NodeTable nt = dsg.getTripleTable().getNodeTupleTable().getNodeTable();
+            assertFalse(nt.getNodeIdForNode(t1.getObject()).isInline());
+        });
+    }
+
 //    // Custom then modified.
 //    @Test public void params_reconnect_03() {
 //        // Create.
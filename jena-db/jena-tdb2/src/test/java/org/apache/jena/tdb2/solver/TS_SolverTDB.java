@@ -25,6 +25,13 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses( {
     TestSolverTDB.class     // Tests the TDB connectivity
     , TestStats.class
+    , TestMergeJoin.class
+    , TestLateMaterialization.class
+    , TestRangeFilter.class
+    , TestCountedIndexes.class
+    , TestMaintainedStats.class
+    , TestCharacteristicSetsTDB.class
+    , TestParallelQueryTDB.class
 })
 
 public class TS_SolverTDB
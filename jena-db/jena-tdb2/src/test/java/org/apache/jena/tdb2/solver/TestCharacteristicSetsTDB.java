@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.jena.atlas.lib.FileOps;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.sys.Names;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.*;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.engine.optimizer.CharacteristicSets;
+import org.apache.jena.sparql.engine.optimizer.reorder.ReorderCharacteristicSets;
+import org.apache.jena.sparql.engine.optimizer.reorder.ReorderTransformation;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.ConfigTest;
+import org.apache.jena.tdb2.params.StoreParams;
+import org.apache.jena.tdb2.solver.stats.CharacteristicSetsCollector;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.store.TDB2StorageBuilder;
+import org.junit.Test;
+
+/** Characteristic sets gathered from TDB2 and used for planning basic graph patterns. */
+public class TestCharacteristicSetsTDB
+{
+    private static final PrefixMapping pmap = PrefixMapping.Factory.create().setNsPrefix("", "http://example/");
+
+    private static final String[] data = {
+        "(:s1 :p 1)", "(:s1 :q 2)",
+        "(:s2 :p 1)",
+        "(:s3 :p 4)", "(:s3 :q 5)", "(:s3 :q 6)",
+        "(:s4 :r :s1)"
+    };
+
+    private static DatasetGraphTDB build(StoreParams params) {
+        DatasetGraphTDB dsg = TDB2StorageBuilder.build(Location.mem(), params);
+        Txn.executeWrite(dsg, ()->{
+            for ( String str : data )
+                dsg.getDefaultGraph().add(SSE.parseTriple(str, pmap));
+        });
+        return dsg;
+    }
+
+    private static CharacteristicSets gather(DatasetGraphTDB dsg) {
+        return Txn.calculateRead(dsg, ()->CharacteristicSetsCollector.gather(dsg.getTripleTable().getNodeTupleTable()));
+    }
+
+    private static void assertSameStats(CharacteristicSets expected, CharacteristicSets actual) {
+        assertEquals(expected.count(), actual.count());
+        assertEquals(expected.subjects(), actual.subjects());
+        assertEquals(expected.sets().size(), actual.sets().size());
+        assertEquals(expected.predicates(), actual.predicates());
+        for ( Node p : expected.predicates() ) {
+            assertEquals(expected.triples(p), actual.triples(p));
+            assertEquals(expected.distinctSubjects(p), actual.distinctSubjects(p));
+            assertEquals(expected.distinctObjects(p), actual.distinctObjects(p));
+        }
+    }
+
+    @Test public void cset_tdb_01() {
+        DatasetGraphTDB dsg = build(StoreParams.getSmallStoreParams());
+        CharacteristicSets cs = gather(dsg);
+        CharacteristicSets expected = Txn.calculateRead(dsg, ()->CharacteristicSets.gather(dsg.getDefaultGraph()));
+        assertSameStats(expected, cs);
+        assertEquals(7, cs.count());
+        assertEquals(4, cs.subjects());
+        assertEquals(3, cs.sets().size());
+        assertEquals(2, cs.distinctObjects(SSE.parseNode(":p", pmap)));
+    }
+
+    @Test public void cset_tdb_02() {
+        // No POS index : distinct objects are counted another way.
+        StoreParams params = StoreParams.builder(StoreParams.getSmallStoreParams()).tripleIndexes(new String[] {"SPO", "OSP"}).build();
+        DatasetGraphTDB dsg = build(params);
+        assertSameStats(gather(build(StoreParams.getSmallStoreParams())), gather(dsg));
+    }
+
+    @Test public void cset_tdb_03() {
+        // No SPO index : subjects are grouped another way.
+        StoreParams params = StoreParams.builder(StoreParams.getSmallStoreParams()).tripleIndexes(new String[] {"POS", "OSP"}).build();
+        DatasetGraphTDB dsg = build(params);
+        assertSameStats(gather(build(StoreParams.getSmallStoreParams())), gather(dsg));
+    }
+
+    @Test public void cset_tdb_04() {
+        // Query with the gathered statistics.
+        DatasetGraphTDB dsg = build(StoreParams.getSmallStoreParams());
+        ReorderTransformation reorder = new ReorderCharacteristicSets(gather(dsg));
+        List<String> order = List.of("(?x :p ?a)", "(?x :q ?b)", "(?y :r ?x)");
+        // ?y :r ?x has only one match.
+        BasicPattern bgp = new BasicPattern();
+        order.forEach(str->bgp.add(SSE.parseTriple(str, pmap)));
+        assertEquals(SSE.parseTriple("(?y :r ?x)", pmap), reorder.reorder(bgp).get(0));
+
+        Query query = QueryFactory.create("PREFIX : <http://example/> SELECT * { ?x :p ?a ; :q ?b . ?y :r ?x }");
+        Txn.executeRead(dsg, ()->{
+            try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsg)) ) {
+                assertEquals(1, ResultSetFormatter.consume(qExec.execSelect()));
+            }
+        });
+    }
+
+    @Test public void cset_tdb_05() {
+        // A characteristic sets file in the database directory.
+        String dir = ConfigTest.getCleanDir();
+        try {
+            Location location = Location.create(dir);
+            gather(build(StoreParams.getSmallStoreParams())).write(location.getPath(Names.optCharacteristicSets));
+            ReorderTransformation reorder = TDB2StorageBuilder.chooseReorderTransformation(location);
+            assertTrue(reorder instanceof ReorderCharacteristicSets);
+            assertEquals(7, ((ReorderCharacteristicSets)reorder).getStats().count());
+        } finally {
+            FileOps.clearDirectory(dir);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.atlas.lib.tuple.Tuple;
+import org.apache.jena.atlas.lib.tuple.TupleFactory;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.*;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.params.StoreParams;
+import org.apache.jena.tdb2.solver.stats.ReorderCounted;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.TDB2StorageBuilder;
+import org.apache.jena.tdb2.store.nodetupletable.NodeTupleTable;
+import org.apache.jena.tdb2.store.tupletable.TupleTable;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Counting with counted B+Tree indexes, checked against scans and a general purpose in-memory dataset. */
+public class TestCountedIndexes
+{
+    private static final String PREFIXES = "PREFIX : <http://example/>\n";
+
+    private static DatasetGraphTDB dsg = null;
+    private static DatasetGraphTDB dsgNotCounted = null;
+    private static DatasetGraph reference = null;
+
+    @BeforeClass public static void beforeClass() {
+        dsg = TDB2StorageBuilder.build(Location.mem(), StoreParams.builder().indexCounted(true).build());
+        dsgNotCounted = TDB2StorageBuilder.build(Location.mem());
+        reference = DatasetGraphFactory.createTxnMem();
+        Txn.executeWrite(dsg, ()->load(dsg));
+        Txn.executeWrite(dsgNotCounted, ()->load(dsgNotCounted));
+        load(reference);
+        // Delete some, so that counts are maintained by deletes as well.
+        Txn.executeWrite(dsg, ()->unload(dsg));
+        Txn.executeWrite(dsgNotCounted, ()->unload(dsgNotCounted));
+        unload(reference);
+    }
+
+    @AfterClass public static void afterClass() {
+        dsg = null;
+        dsgNotCounted = null;
+        reference = null;
+    }
+
+    private static Node uri(String localName) {
+        return NodeFactory.createURI("http://example/"+localName);
+    }
+
+    private static void load(DatasetGraph dsg) {
+        Node g = uri("g");
+        for ( int i = 0 ; i < 500 ; i++ ) {
+            Node s = uri("s"+i);
+            dsg.add(Quad.defaultGraphIRI, s, uri("p"), uri("o"+(i%7)));
+            dsg.add(Quad.defaultGraphIRI, s, uri("q"), NodeFactory.createLiteral("v"+(i%3)));
+            if ( i % 50 == 0 )
+                dsg.add(Quad.defaultGraphIRI, s, uri("rare"), SSE.parseNode(Integer.toString(i)));
+            if ( i % 2 == 0 )
+                dsg.add(g, s, uri("p"), uri("o"+(i%5)));
+        }
+        dsg.add(Quad.defaultGraphIRI, uri("x"), uri("x"), uri("x"));
+    }
+
+    private static void unload(DatasetGraph dsg) {
+        for ( int i = 0 ; i < 500 ; i += 3 )
+            dsg.delete(Quad.defaultGraphIRI, uri("s"+i), uri("p"), uri("o"+(i%7)));
+    }
+
+    private static void testCount(Node s, Node p, Node o) {
+        Txn.executeRead(dsg, ()->{
+            NodeTupleTable ntt = dsg.getTripleTable().getNodeTupleTable();
+            TupleTable table = ntt.getTupleTable();
+            Tuple<NodeId> pattern = TupleFactory.create3(nodeId(ntt, s), nodeId(ntt, p), nodeId(ntt, o));
+            long expected = Iter.count(table.find(pattern));
+            assertEquals(expected, table.count(pattern));
+        });
+    }
+
+    private static NodeId nodeId(NodeTupleTable ntt, Node node) {
+        if ( node == null )
+            return NodeId.NodeIdAny;
+        return ntt.getNodeTable().getNodeIdForNode(node);
+    }
+
+    private static void test(String qs) {
+        Query query = QueryFactory.create(PREFIXES+qs);
+        ResultSetRewindable expected;
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(reference)) ) {
+            expected = ResultSetFactory.makeRewindable(qExec.execSelect());
+        }
+        test(dsg, query, expected);
+        expected.reset();
+        test(dsgNotCounted, query, expected);
+    }
+
+    private static void test(DatasetGraph dsg, Query query, ResultSetRewindable expected) {
+        Txn.executeRead(dsg, ()->{
+            try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsg)) ) {
+                ResultSetRewindable results = ResultSetFactory.makeRewindable(qExec.execSelect());
+                assertEquals(expected.size(), results.size());
+                expected.reset();
+                assertTrue(ResultSetCompare.equalsByTerm(expected, results));
+            }
+        });
+    }
+
+    @Test public void count_table_01() { testCount(null, null, null); }
+
+    @Test public void count_table_02() { testCount(uri("s1"), null, null); }
+
+    @Test public void count_table_03() { testCount(null, uri("p"), null); }
+
+    @Test public void count_table_04() { testCount(null, null, uri("o3")); }
+
+    @Test public void count_table_05() { testCount(null, uri("p"), uri("o3")); }
+
+    @Test public void count_table_06() { testCount(uri("s1"), uri("q"), null); }
+
+    @Test public void count_table_07() { testCount(uri("s1"), null, uri("o1")); }
+
+    @Test public void count_table_08() { testCount(uri("s3"), uri("p"), uri("o3")); }
+
+    @Test public void count_table_09() { testCount(uri("s4"), uri("p"), uri("o4")); }
+
+    @Test public void count_table_10() {
+        Txn.executeRead(dsgNotCounted, ()->{
+            TupleTable table = dsgNotCounted.getTripleTable().getNodeTupleTable().getTupleTable();
+            assertEquals(-1, table.count(TupleFactory.create3(NodeId.NodeIdAny, NodeId.NodeIdAny, NodeId.NodeIdAny)));
+        });
+    }
+
+    @Test public void count_query_01() { test("SELECT (count(*) AS ?c) { ?s ?p ?o }"); }
+
+    @Test public void count_query_02() { test("SELECT (count(*) AS ?c) { ?s :p ?o }"); }
+
+    @Test public void count_query_03() { test("SELECT (count(*) AS ?c) { ?s :p :o2 }"); }
+
+    @Test public void count_query_04() { test("SELECT (count(*) AS ?c) { GRAPH :g { ?s :p ?o } }"); }
+
+    @Test public void count_query_05() { test("SELECT (count(*) AS ?c) { ?s :notInData ?o }"); }
+
+    @Test public void count_query_06() {
+        // Repeated variable: not a range of an index.
+        test("SELECT (count(*) AS ?c) { ?x ?x ?o }");
+    }
+
+    @Test public void count_query_07() {
+        // Not a single pattern.
+        test("SELECT (count(*) AS ?c) { ?s :p ?o ; :q ?v }");
+    }
+
+    @Test public void count_query_08() { test("SELECT (count(*) AS ?c) { GRAPH ?g { ?s :p ?o } }"); }
+
+    @Test public void reorder_01() {
+        assertTrue(dsg.getReorderTransform() instanceof ReorderCounted);
+        assertTrue(! ( dsgNotCounted.getReorderTransform() instanceof ReorderCounted ));
+    }
+
+    @Test public void reorder_02() {
+        BasicPattern bgp = SSE.parseBGP("(prefix ((: <http://example/>)) (bgp (?s :p ?o) (?s :q ?v) (?s :rare ?n)))");
+        Txn.executeRead(dsg, ()->{
+            BasicPattern bgp2 = dsg.getReorderTransform().reorder(bgp);
+            assertEquals(Triple.create(Var.alloc("s"), uri("rare"), Var.alloc("n")), bgp2.get(0));
+        });
+    }
+
+    @Test public void reorder_03() {
+        test("SELECT * { ?s :p ?o ; :q ?v ; :rare ?n }");
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.*;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** DISTINCT, REDUCED and joins on NodeIds, checked against a general purpose in-memory dataset. */
+public class TestLateMaterialization
+{
+    private static final String PREFIXES = "PREFIX : <http://example/> PREFIX xsd: <http://www.w3.org/2001/XMLSchema#>\n";
+
+    private static DatasetGraph dsg = null;
+    private static DatasetGraph reference = null;
+
+    @BeforeClass public static void beforeClass() {
+        dsg = DatabaseMgr.createDatasetGraph();
+        reference = DatasetGraphFactory.createTxnMem();
+        Txn.executeWrite(dsg, ()->load(dsg));
+        load(reference);
+    }
+
+    @AfterClass public static void afterClass() {
+        dsg = null;
+        reference = null;
+    }
+
+    private static Node uri(String localName) {
+        return NodeFactory.createURI("http://example/"+localName);
+    }
+
+    private static void load(DatasetGraph dsg) {
+        for ( int i = 0 ; i < 100 ; i++ ) {
+            Node s = uri("s"+i);
+            dsg.add(Quad.defaultGraphIRI, s, uri("p"), uri("o"+(i%7)));
+            dsg.add(Quad.defaultGraphIRI, s, uri("q"), NodeFactory.createLiteral("v"+(i%3)));
+            if ( i % 2 == 0 )
+                dsg.add(Quad.defaultGraphIRI, s, uri("r"), SSE.parseNode(Integer.toString(i%4)));
+            if ( i % 5 == 0 )
+                dsg.add(Quad.defaultGraphIRI, uri("o"+(i%7)), uri("label"), NodeFactory.createLiteral("L"+i));
+        }
+    }
+
+    private static void test(String qs) {
+        test(qs, null);
+    }
+
+    private static void test(String qs, Long spillThreshold) {
+        Query query = QueryFactory.create(PREFIXES+qs);
+        ResultSetRewindable expected;
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(reference)) ) {
+            expected = ResultSetFactory.makeRewindable(qExec.execSelect());
+        }
+        Txn.executeRead(dsg, ()->{
+            try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsg)) ) {
+                if ( spillThreshold != null )
+                    qExec.getContext().set(ARQ.spillToDiskThreshold, spillThreshold);
+                ResultSetRewindable results = ResultSetFactory.makeRewindable(qExec.execSelect());
+                assertEquals(expected.size(), results.size());
+                expected.reset();
+                assertTrue(ResultSetCompare.equalsByTerm(expected, results));
+            }
+        });
+    }
+
+    @Test public void distinct_01() {
+        test("SELECT DISTINCT ?o { ?s :p ?o }");
+    }
+
+    @Test public void distinct_02() {
+        test("SELECT DISTINCT ?o ?v { ?s :p ?o ; :q ?v }");
+    }
+
+    @Test public void distinct_03() {
+        // Optional: some rows have unbound variables.
+        test("SELECT DISTINCT ?o ?n { ?s :p ?o OPTIONAL { ?s :r ?n } }");
+    }
+
+    @Test public void distinct_04() {
+        // Values that are not from the database.
+        test("SELECT DISTINCT ?x { { ?s :r ?x } UNION { VALUES ?x { 1 01 :o1 :notInData 'v1' } } }");
+    }
+
+    @Test public void distinct_05() {
+        test("SELECT DISTINCT ?v ?z { ?s :q ?v BIND(str(?v) AS ?z) }");
+    }
+
+    @Test public void reduced_01() {
+        test("SELECT REDUCED ?o { ?s :p ?o } ORDER BY ?o");
+    }
+
+    @Test public void reduced_02() {
+        test("SELECT REDUCED ?o { ?s :p ?o }");
+    }
+
+    @Test public void join_01() {
+        // A join that is not done by substitution.
+        test("SELECT * { ?s :p ?o . { SELECT ?o (count(*) AS ?c) { ?x :p ?o } GROUP BY ?o } }");
+    }
+
+    @Test public void join_02() {
+        test("SELECT * { { ?s :p ?o OPTIONAL { ?s :r ?n } } { ?o :label ?L OPTIONAL { ?z :r ?n } } }");
+    }
+
+    @Test public void join_03() {
+        // Join on values from outside the database.
+        test("SELECT * { { ?s :r ?n } { SELECT ?n (count(*) AS ?c) { VALUES ?n { 1 01 2 5 :s1 } } GROUP BY ?n } }");
+    }
+
+    @Test public void join_04() {
+        test("SELECT * { { ?s :q ?v } { SELECT ?s { ?s :r ?n } } FILTER(?v != 'v1') }");
+    }
+
+    @Test public void join_spill_01() {
+        // With a spill threshold, joins are done by the general hash join, which spills.
+        test("SELECT * { ?s :p ?o . { SELECT ?o (count(*) AS ?c) { ?x :p ?o } GROUP BY ?o } }", 10L);
+    }
+
+    @Test public void join_spill_02() {
+        test("SELECT * { { ?s :p ?o OPTIONAL { ?s :r ?n } } { ?o :label ?L OPTIONAL { ?z :r ?n } } }", 10L);
+    }
+
+    @Test public void join_distinct_01() {
+        test("SELECT DISTINCT ?o ?c { ?s :p ?o . { SELECT ?o (count(*) AS ?c) { ?x :p ?o } GROUP BY ?o } }");
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.params.StoreParams;
+import org.apache.jena.tdb2.solver.stats.ReorderMaintained;
+import org.apache.jena.tdb2.solver.stats.StatsResults;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.store.TDB2StorageBuilder;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Statistics kept up to date as transactions commit. */
+public class TestMaintainedStats
+{
+    private static final PrefixMapping pmap = PrefixMapping.Factory.create()
+        .setNsPrefix("", "http://example/")
+        .setNsPrefix("rdf", RDF.getURI());
+
+    private DatasetGraphTDB dsg;
+
+    @Before public void before() {
+        dsg = TDB2StorageBuilder.build(Location.mem(), StoreParams.builder().statsAuto(true).build());
+    }
+
+    private ReorderMaintained reorder() {
+        return (ReorderMaintained)dsg.getReorderTransform();
+    }
+
+    private static Triple triple(String str) {
+        return SSE.parseTriple(str, pmap);
+    }
+
+    private static Node node(String str) {
+        return SSE.parseNode(str, pmap);
+    }
+
+    private void add(String... triples) {
+        Txn.executeWrite(dsg, ()->{
+            for ( String str : triples )
+                dsg.getDefaultGraph().add(triple(str));
+        });
+    }
+
+    private void delete(String... triples) {
+        Txn.executeWrite(dsg, ()->{
+            for ( String str : triples )
+                dsg.getDefaultGraph().delete(triple(str));
+        });
+    }
+
+    private void assertCount(long expected, String predicate) {
+        Integer x = reorder().results().getPredicates().get(node(predicate));
+        assertEquals(expected, x == null ? 0 : x.intValue());
+    }
+
+    @Test public void stats_maintained_01() {
+        assertTrue(dsg.getReorderTransform() instanceof ReorderMaintained);
+        assertEquals(0, reorder().results().getCount());
+        add("(:s :p 1)", "(:s :p 2)", "(:s :q 1)");
+        assertEquals(3, reorder().results().getCount());
+        assertCount(2, ":p");
+        assertCount(1, ":q");
+    }
+
+    @Test public void stats_maintained_02() {
+        // Adding a triple that is already there, or deleting one that is not, is not a change.
+        add("(:s :p 1)", "(:s :p 1)");
+        add("(:s :p 1)");
+        delete("(:s :p 2)");
+        assertEquals(1, reorder().results().getCount());
+        assertCount(1, ":p");
+    }
+
+    @Test public void stats_maintained_03() {
+        add("(:s :p 1)", "(:s :p 2)", "(:s :q 1)");
+        delete("(:s :p 1)", "(:s :q 1)");
+        assertEquals(1, reorder().results().getCount());
+        assertCount(1, ":p");
+        assertNull(reorder().results().getPredicates().get(node(":q")));
+    }
+
+    @Test public void stats_maintained_04() {
+        add("(:s :p 1)");
+        Txn.executeWrite(dsg, ()->{
+            dsg.getDefaultGraph().add(triple("(:s :p 2)"));
+            dsg.abort();
+        });
+        assertEquals(1, reorder().results().getCount());
+        assertCount(1, ":p");
+    }
+
+    @Test public void stats_maintained_05() {
+        // rdf:type is first used in the transaction.
+        add("(:s1 rdf:type :T)", "(:s2 rdf:type :T)", "(:s3 rdf:type :U)");
+        StatsResults results = reorder().results();
+        assertEquals(3, results.getPredicates().get(node("rdf:type")).intValue());
+        assertEquals(2, results.getTypes().get(node(":T")).intValue());
+        assertEquals(1, results.getTypes().get(node(":U")).intValue());
+        delete("(:s1 rdf:type :T)");
+        assertEquals(1, reorder().results().getTypes().get(node(":T")).intValue());
+    }
+
+    @Test public void stats_maintained_06() {
+        // Delete by pattern.
+        add("(:s :p 1)", "(:s :p 2)", "(:s :q 1)");
+        Txn.executeWrite(dsg, ()->dsg.getDefaultGraph().remove(null, node(":p"), null));
+        assertEquals(1, reorder().results().getCount());
+        assertCount(0, ":p");
+    }
+
+    @Test public void stats_maintained_07() {
+        // Named graphs are not counted.
+        Txn.executeWrite(dsg, ()->dsg.add(SSE.parseQuad("(<http://example/g> <http://example/s> <http://example/p> 1)")));
+        assertEquals(0, reorder().results().getCount());
+    }
+
+    @Test public void stats_maintained_08() {
+        // Counts from the data already in the database.
+        add("(:s :p 1)", "(:s :p 2)", "(:s :q 1)");
+        reorder().scan();
+        assertEquals(3, reorder().results().getCount());
+        assertCount(2, ":p");
+    }
+
+    @Test public void stats_reorder_01() {
+        for ( int i = 0 ; i < 200 ; i++ )
+            add("(:s"+i+" :p "+i+")");
+        add("(:s1 :rare 1)");
+        BasicPattern bgp = SSE.parseBGP("(bgp (?s :p ?o) (?s :rare ?x))", pmap);
+        BasicPattern bgp2 = reorder().reorder(bgp);
+        assertEquals(Triple.create(Var.alloc("s"), node(":rare"), Var.alloc("x")), bgp2.get(0));
+        // And the other way round, after changes.
+        for ( int i = 0 ; i < 400 ; i++ )
+            add("(:s"+i+" :rare "+i+")");
+        delete("(:s1 :p 1)");
+        for ( int i = 2 ; i < 200 ; i++ )
+            delete("(:s"+i+" :p "+i+")");
+        bgp2 = reorder().reorder(bgp);
+        assertEquals(Triple.create(Var.alloc("s"), node(":p"), Var.alloc("o")), bgp2.get(0));
+    }
+}
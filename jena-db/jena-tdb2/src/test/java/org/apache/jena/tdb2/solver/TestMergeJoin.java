@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.*;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.params.StoreParams;
+import org.apache.jena.tdb2.params.StoreParamsBuilder;
+import org.apache.jena.tdb2.sys.SystemTDB;
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/** Merge join of pairs of patterns, checked against a general purpose in-memory dataset. */
+@RunWith(Parameterized.class)
+public class TestMergeJoin
+{
+    @Parameters(name = "{index}: {0}")
+    public static Collection<Object[]> data() {
+        StoreParams paramsPSO = StoreParamsBuilder.create()
+            .tripleIndexes(new String[] {"SPO", "PSO", "OSP"})
+            .build();
+        return Arrays.asList(new Object[][] {
+            { "Default indexes", null },
+            { "PSO index", paramsPSO }
+        });
+    }
+
+    private static final String PREFIXES = "PREFIX : <http://example/> PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n";
+    private static final int N = 500;
+
+    // Build each database once, not once per test.
+    private static final Map<String, DatasetGraph> databases = new HashMap<>();
+    private static DatasetGraph reference = null;
+
+    private final DatasetGraph dsg;
+
+    public TestMergeJoin(String label, StoreParams params) {
+        dsg = databases.computeIfAbsent(label, (x)->{
+            DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(Location.mem(), params);
+            Txn.executeWrite(dsg, ()->load(dsg));
+            return dsg;
+        });
+        if ( reference == null ) {
+            reference = DatasetGraphFactory.createTxnMem();
+            load(reference);
+        }
+    }
+
+    @AfterClass public static void afterClass() {
+        databases.clear();
+        reference = null;
+    }
+
+    private static Node uri(String localName) {
+        return NodeFactory.createURI("http://example/"+localName);
+    }
+
+    private static void load(DatasetGraph dsg) {
+        Node rdfType = NodeFactory.createURI("http://www.w3.org/1999/02/22-rdf-syntax-ns#type");
+        Node g = uri("g");
+        for ( int i = 0 ; i < N ; i++ ) {
+            Node s = uri("s"+i);
+            if ( i % 2 == 0 )
+                dsg.add(Quad.defaultGraphIRI, s, rdfType, uri("T"));
+            if ( i % 3 == 0 )
+                dsg.add(Quad.defaultGraphIRI, s, uri("p1"), NodeFactory.createLiteral("v"+(i%7)));
+            dsg.add(Quad.defaultGraphIRI, s, uri("p2"), uri("c"+(i%5)));
+            if ( i % 10 == 0 )
+                dsg.add(Quad.defaultGraphIRI, s, uri("p2"), uri("c"+((i+1)%5)));
+            // Sparse.
+            if ( i % 97 == 0 ) {
+                dsg.add(Quad.defaultGraphIRI, s, uri("name"), NodeFactory.createLiteral("n"+i));
+                dsg.add(Quad.defaultGraphIRI, s, uri("flag"), uri("yes"));
+            }
+            dsg.add(Quad.defaultGraphIRI, uri("a"+(i%11)), uri("knows"), uri("x"+(i%13)));
+            dsg.add(Quad.defaultGraphIRI, uri("b"+(i%17)), uri("likes"), uri("x"+(i%19)));
+            if ( i % 4 == 0 ) {
+                dsg.add(g, s, rdfType, uri("T"));
+                dsg.add(g, s, uri("p2"), uri("c"+(i%3)));
+            }
+        }
+    }
+
+    private void test(String qs) {
+        Query query = QueryFactory.create(PREFIXES+qs);
+        ResultSetRewindable expected;
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(reference)) ) {
+            expected = ResultSetFactory.makeRewindable(qExec.execSelect());
+        }
+        assertTrue("No results", expected.size() > 0);
+        for ( boolean mergeJoin : new boolean[] {true, false} ) {
+            expected.reset();
+            Txn.executeRead(dsg, ()->{
+                try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsg)) ) {
+                    qExec.getContext().set(SystemTDB.symMergeJoin, mergeJoin);
+                    ResultSetRewindable results = ResultSetFactory.makeRewindable(qExec.execSelect());
+                    assertEquals("mergeJoin="+mergeJoin, expected.size(), results.size());
+                    assertTrue("mergeJoin="+mergeJoin, ResultSetCompare.equalsByTerm(expected, results));
+                }
+            });
+        }
+    }
+
+    @Test public void mergeJoin_star_01() {
+        test("SELECT * { ?s rdf:type :T . ?s :p2 :c1 }");
+    }
+
+    @Test public void mergeJoin_star_02() {
+        // Only joins by merge with a PSO index.
+        test("SELECT * { ?s :p1 ?a . ?s :p2 ?b }");
+    }
+
+    @Test public void mergeJoin_star_03() {
+        test("SELECT * { ?s :p1 ?a . ?s :p2 ?b . ?s rdf:type :T }");
+    }
+
+    @Test public void mergeJoin_object_01() {
+        test("SELECT * { ?a :knows ?x . ?b :likes ?x }");
+    }
+
+    @Test public void mergeJoin_sparse_01() {
+        // Few on one side, many on the other.
+        test("SELECT * { ?s :name ?n . ?s rdf:type :T }");
+    }
+
+    @Test public void mergeJoin_sparse_02() {
+        test("SELECT * { ?s rdf:type :T . ?s :name ?n }");
+    }
+
+    @Test public void mergeJoin_sparse_03() {
+        test("SELECT * { ?s :flag :yes . ?s :p2 :c2 }");
+    }
+
+    @Test public void mergeJoin_sparse_04() {
+        test("SELECT * { ?s :p2 :c2 . ?s :flag :yes }");
+    }
+
+    @Test public void mergeJoin_repeated_01() {
+        // Two variables shared.
+        test("SELECT * { ?s :p2 ?c . ?s :p2 ?c }");
+    }
+
+    @Test public void mergeJoin_bound_01() {
+        test("SELECT * { VALUES ?c { :c1 :c2 } ?s :p2 ?c . ?s rdf:type :T }");
+    }
+
+    @Test public void mergeJoin_graph_01() {
+        test("SELECT * { GRAPH :g { ?s rdf:type :T . ?s :p2 :c2 } }");
+    }
+
+    @Test public void mergeJoin_graph_02() {
+        test("SELECT * { GRAPH ?g { ?s rdf:type :T . ?s :p2 ?c } }");
+    }
+}
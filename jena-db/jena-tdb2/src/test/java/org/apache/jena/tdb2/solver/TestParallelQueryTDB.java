@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.query.*;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.ThreadTxn;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.junit.Test;
+
+/** UNION branches and join sides evaluated at the same time in a read transaction. */
+public class TestParallelQueryTDB
+{
+    private static final PrefixMapping pmap = PrefixMapping.Factory.create().setNsPrefix("", "http://example/");
+
+    private static DatasetGraph build() {
+        DatasetGraph dsg = DatabaseMgr.createDatasetGraph();
+        Txn.executeWrite(dsg, ()->{
+            for ( int i = 0 ; i < 100 ; i++ ) {
+                dsg.getDefaultGraph().add(SSE.parseTriple("(:s"+i+" :p"+(i%10)+" "+i+")", pmap));
+                dsg.getDefaultGraph().add(SSE.parseTriple("(:s"+i+" :q :o"+(i%3)+")", pmap));
+            }
+        });
+        return dsg;
+    }
+
+    private static ResultSetRewindable exec(DatasetGraph dsg, String qs, int parallelism) {
+        Query query = QueryFactory.create("PREFIX : <http://example/> "+qs);
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsg)) ) {
+            if ( parallelism > 0 )
+                qExec.getContext().set(ARQ.parallelBranches, parallelism);
+            return ResultSetFactory.copyResults(qExec.execSelect());
+        }
+    }
+
+    private static final String queryUnion = "SELECT * { { ?s :p1 ?o } UNION { ?s :p2 ?o } UNION { ?s :p3 ?o } UNION { ?s :q :o2 } }";
+    private static final String queryJoin  = "SELECT * { { ?s :q ?o } { SELECT ?s (1 AS ?x) { ?s :p4 ?v } } }";
+
+    private static void test(String qs) {
+        DatasetGraph dsg = build();
+        Txn.executeRead(dsg, ()->{
+            ResultSetRewindable expected = exec(dsg, qs, 0);
+            ResultSetRewindable actual = exec(dsg, qs, 4);
+            assertTrue(ResultSetCompare.equalsByTerm(expected, actual));
+        });
+    }
+
+    @Test public void parallel_tdb_01() { test(queryUnion); }
+
+    @Test public void parallel_tdb_02() { test(queryJoin); }
+
+    @Test public void parallel_tdb_03() {
+        // The branches see the read transaction, not later changes.
+        DatasetGraph dsg = build();
+        Txn.executeRead(dsg, ()->{
+            int expected = exec(dsg, queryUnion, 0).size();
+            ThreadTxn.threadTxnWrite(dsg, ()->
+                dsg.getDefaultGraph().add(SSE.parseTriple("(:x :p1 :y)", pmap))
+            ).run();
+            assertEquals(expected, exec(dsg, queryUnion, 4).size());
+        });
+        Txn.executeRead(dsg, ()->{
+            assertEquals(exec(dsg, queryUnion, 0).size(), exec(dsg, queryUnion, 4).size());
+        });
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.tdb2.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.*;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.resultset.ResultSetCompare;
+import org.apache.jena.sparql.sse.SSE;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.sys.SystemTDB;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Filters on numeric ranges, checked against a general purpose in-memory dataset. */
+public class TestRangeFilter
+{
+    private static final String PREFIXES = "PREFIX : <http://example/> PREFIX xsd: <http://www.w3.org/2001/XMLSchema#>\n";
+
+    private static DatasetGraph dsg = null;
+    private static DatasetGraph reference = null;
+
+    @BeforeClass public static void beforeClass() {
+        dsg = DatabaseMgr.createDatasetGraph();
+        Txn.executeWrite(dsg, ()->load(dsg));
+        // Copy the data as TDB returns it, so inline values have the same lexical forms.
+        reference = DatasetGraphFactory.createTxnMem();
+        Txn.executeRead(dsg, ()->dsg.find().forEachRemaining(reference::add));
+    }
+
+    @AfterClass public static void afterClass() {
+        dsg = null;
+        reference = null;
+    }
+
+    private static Node uri(String localName) {
+        return NodeFactory.createURI("http://example/"+localName);
+    }
+
+    private static List<Node> values() {
+        List<Node> values = new ArrayList<>();
+        for ( int i = -300 ; i <= 300 ; i += 7 )
+            values.add(SSE.parseNode(Integer.toString(i)));
+        String[] others = {
+            "'150'^^xsd:long", "'-150'^^xsd:int", "'200'^^xsd:short", "'100'^^xsd:unsignedByte",
+            "'150'^^xsd:positiveInteger", "'-120'^^xsd:negativeInteger",
+            // Not inline.
+            "123456789012345678901234567890", "-123456789012345678901234567890",
+            "150.5", "-150.5", "100.0", "199.99", "0.0", "12345678901234567890.5",
+            "'150.5'^^xsd:double", "'-150.5'^^xsd:double", "'100'^^xsd:double", "'200'^^xsd:double",
+            "'0'^^xsd:double", "'-0.0'^^xsd:double", "'NaN'^^xsd:double", "'INF'^^xsd:double", "'-INF'^^xsd:double",
+            "'1e300'^^xsd:double", "'-1e-300'^^xsd:double", "'100.00000000001'^^xsd:double",
+            "'150.5'^^xsd:float", "'-150.5'^^xsd:float", "'100'^^xsd:float", "'-0.0'^^xsd:float",
+            "'NaN'^^xsd:float", "'-INF'^^xsd:float", "'199.9'^^xsd:float",
+            "'150'", "'abc'", "'2020-01-01'^^xsd:date", "'2020-01-01T00:00:00Z'^^xsd:dateTime", "true", ":o150"
+        };
+        for ( String s : others )
+            values.add(SSE.parseNode(s, SSE.getPrefixMapRead()));
+        return values;
+    }
+
+    private static void load(DatasetGraph dsg) {
+        List<Node> values = values();
+        for ( int i = 0 ; i < values.size() ; i++ ) {
+            Node s = uri("s"+i);
+            dsg.add(Quad.defaultGraphIRI, s, uri("p"), values.get(i));
+            dsg.add(Quad.defaultGraphIRI, uri("x"+(i%5)), uri("q"), s);
+            if ( i % 3 == 0 )
+                dsg.add(uri("g"), s, uri("p"), values.get(i));
+        }
+    }
+
+    private static void test(String qs) {
+        Query query = QueryFactory.create(PREFIXES+qs);
+        ResultSetRewindable expected;
+        try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(reference)) ) {
+            expected = ResultSetFactory.makeRewindable(qExec.execSelect());
+        }
+        for ( boolean rangeFilter : new boolean[] {true, false} ) {
+            expected.reset();
+            Txn.executeRead(dsg, ()->{
+                try ( QueryExecution qExec = QueryExecutionFactory.create(query, DatasetFactory.wrap(dsg)) ) {
+                    qExec.getContext().set(SystemTDB.symRangeFilter, rangeFilter);
+                    ResultSetRewindable results = ResultSetFactory.makeRewindable(qExec.execSelect());
+                    assertEquals("rangeFilter="+rangeFilter, expected.size(), results.size());
+                    assertTrue("rangeFilter="+rangeFilter, ResultSetCompare.equalsByTerm(expected, results));
+                }
+            });
+        }
+    }
+
+    @Test public void range_01() {
+        test("SELECT * { ?s :p ?o FILTER(?o > 100 && ?o < 200) }");
+    }
+
+    @Test public void range_02() {
+        test("SELECT * { ?s :p ?o FILTER(?o >= 100) FILTER(?o <= 200) }");
+    }
+
+    @Test public void range_03() {
+        test("SELECT * { ?s :p ?o FILTER(-200 < ?o && 0 >= ?o) }");
+    }
+
+    @Test public void range_04() {
+        test("SELECT * { ?s :p ?o FILTER(?o < -100) }");
+    }
+
+    @Test public void range_05() {
+        test("SELECT * { ?s :p ?o FILTER(?o > 100.5) }");
+    }
+
+    @Test public void range_06() {
+        test("SELECT * { ?s :p ?o FILTER(?o >= -1.5e0 && ?o <= 1.5e0) }");
+    }
+
+    @Test public void range_07() {
+        test("SELECT * { ?s :p ?o FILTER(?o = 150) }");
+    }
+
+    @Test public void range_08() {
+        test("SELECT * { ?s :p ?o FILTER(?o = 0) }");
+    }
+
+    @Test public void range_09() {
+        // Empty range.
+        test("SELECT * { ?s :p ?o FILTER(?o > 200 && ?o < 100) }");
+    }
+
+    @Test public void range_10() {
+        test("SELECT * { ?s :p ?o FILTER(?o > 1e200) }");
+    }
+
+    @Test public void range_11() {
+        // Not only a range.
+        test("SELECT * { ?s :p ?o FILTER(?o > 100 || ?o < -100) }");
+    }
+
+    @Test public void range_12() {
+        test("SELECT * { ?s :p ?o FILTER(?o > 100 && isLiteral(?o)) }");
+    }
+
+    @Test public void range_bgp_01() {
+        test("SELECT * { ?x :q ?s . ?s :p ?o FILTER(?o > 100 && ?o < 200) }");
+    }
+
+    @Test public void range_bgp_02() {
+        test("SELECT * { ?s :p ?o . ?x :q ?s FILTER(?o > 100 && ?o < 200) }");
+    }
+
+    @Test public void range_bound_01() {
+        test("SELECT * { VALUES ?s { :s1 :s50 :s99 } ?s :p ?o FILTER(?o < 0) }");
+    }
+
+    @Test public void range_graph_01() {
+        test("SELECT * { GRAPH :g { ?s :p ?o FILTER(?o > -100 && ?o < 150) } }");
+    }
+
+    @Test public void range_graph_02() {
+        test("SELECT * { GRAPH ?g { ?s :p ?o FILTER(?o > -100 && ?o < 150) } }");
+    }
+}
@@ -22,6 +22,7 @@ import org.apache.jena.dboe.base.block.FileMode;
 import org.apache.jena.tdb2.store.value.TestDoubleNode62;
 import org.apache.jena.tdb2.store.value.TestFloatNode;
 import org.apache.jena.tdb2.store.value.TestNodeIdInline;
+import org.apache.jena.tdb2.store.value.TestNodeIdInline2;
 import org.apache.jena.tdb2.sys.SystemTDB;
 import org.apache.jena.tdb2.sys.TestOps;
 import org.junit.AfterClass;
@@ -33,6 +34,7 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses( {
     TestNodeId.class
     , TestNodeIdInline.class
+    , TestNodeIdInline2.class
     , TestDoubleNode62.class
     , TestFloatNode.class
     , TestTripleTable.class
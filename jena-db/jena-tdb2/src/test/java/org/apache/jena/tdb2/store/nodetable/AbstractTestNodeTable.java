@@ -22,6 +22,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.jena.graph.Node;
 import org.apache.jena.sparql.util.NodeFactoryExtra;
 import org.apache.jena.tdb2.store.NodeId;
@@ -64,4 +67,54 @@ public abstract class AbstractTestNodeTable
     @Test public void nodetable_05()    { testNode("'x'@en"); }
     @Test public void nodetable_06()    { testNode("'x'^^<http://example/dt>"); }
     @Test public void nodetable_07()    { testNode("'نواف'"); }
+
+    private static List<Node> nodes(String...strs) {
+        List<Node> nodes = new ArrayList<>();
+        for ( String str : strs )
+            nodes.add(NodeFactoryExtra.parseNode(str));
+        return nodes;
+    }
+
+    @Test public void nodetable_bulk_01() {
+        NodeTable nt = createEmptyNodeTable();
+        List<Node> nodes = nodes("<http://example/x>", "1", "'x'", "<http://example/x>", "_:b", "'x'@en", "1", "'x'");
+        List<NodeId> nodeIds = nt.bulkNodeToNodeId(nodes, true);
+        assertEquals(nodes.size(), nodeIds.size());
+        for ( int i = 0 ; i < nodes.size() ; i++ ) {
+            NodeId nodeId = nodeIds.get(i);
+            assertNotEquals(NodeId.NodeDoesNotExist, nodeId);
+            assertEquals(nt.getNodeIdForNode(nodes.get(i)), nodeId);
+            assertEquals(nodes.get(i), nt.getNodeForNodeId(nodeId));
+        }
+        assertEquals(nodeIds.get(0), nodeIds.get(3));
+        assertEquals(nodeIds.get(2), nodeIds.get(7));
+        assertNotEquals(nodeIds.get(0), nodeIds.get(2));
+    }
+
+    @Test public void nodetable_bulk_02() {
+        NodeTable nt = createEmptyNodeTable();
+        NodeId nodeId = nt.getAllocateNodeId(NodeFactoryExtra.parseNode("<http://example/x>"));
+        List<Node> nodes = nodes("<http://example/y>", "<http://example/x>", "'z'", "<http://example/y>");
+        List<NodeId> nodeIds = nt.bulkNodeToNodeId(nodes, false);
+        assertEquals(NodeId.NodeDoesNotExist, nodeIds.get(0));
+        assertEquals(nodeId, nodeIds.get(1));
+        assertEquals(NodeId.NodeDoesNotExist, nodeIds.get(2));
+        assertEquals(NodeId.NodeDoesNotExist, nodeIds.get(3));
+        // Not allocated.
+        assertEquals(NodeId.NodeDoesNotExist, nt.getNodeIdForNode(nodes.get(0)));
+    }
+
+    @Test public void nodetable_bulk_03() {
+        NodeTable nt = createEmptyNodeTable();
+        List<Node> nodes = new ArrayList<>();
+        for ( int i = 0 ; i < 500 ; i++ )
+            nodes.add(NodeFactoryExtra.parseNode("<http://example/n"+(i%200)+">"));
+        List<NodeId> nodeIds = nt.bulkNodeToNodeId(nodes, true);
+        for ( int i = 0 ; i < nodes.size() ; i++ ) {
+            assertEquals(nodeIds.get(i%200), nodeIds.get(i));
+            assertEquals(nodes.get(i), nt.getNodeForNodeId(nodeIds.get(i)));
+        }
+        // Again, all present.
+        assertEquals(nodeIds, nt.bulkNodeToNodeId(nodes, true));
+    }
 }
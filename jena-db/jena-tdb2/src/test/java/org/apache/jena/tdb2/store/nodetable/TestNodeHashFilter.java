@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jena.tdb2.store.nodetable;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.dboe.base.record.RecordFactory;
+import org.apache.jena.dboe.index.Index;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.tdb2.junit.BuildTestLib;
+import org.apache.jena.tdb2.params.StoreParams;
+import org.apache.jena.tdb2.params.StoreParamsBuilder;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.sys.SystemTDB;
+import org.junit.Test;
+
+public class TestNodeHashFilter extends AbstractTestNodeTable
+{
+    @Override
+    protected NodeTable createEmptyNodeTable() {
+        return makeNodeTable();
+    }
+
+    private static NodeTableNative makeNodeTable() {
+        StoreParams params =
+            StoreParamsBuilder.create()
+                .nodeId2NodeCacheSize(-1)
+                .node2NodeIdCacheSize(-1)
+                .nodeMissCacheSize(-1)
+                .nodeMissFilterBits(10).build();
+        // No cache, no inlining.
+        return (NodeTableNative)BuildTestLib.makeNodeTableBase(Location.mem(), "test", params);
+    }
+
+    private static Node node(int i) {
+        return NodeFactory.createURI("http://example/node"+i);
+    }
+
+    private static byte[] randomHash(Random random) {
+        byte[] b = new byte[SystemTDB.LenNodeHash];
+        random.nextBytes(b);
+        return b;
+    }
+
+    @Test public void filter_01() {
+        NodeHashFilter filter = new NodeHashFilter(10, null);
+        filter.init(emptyIndex());
+        assertTrue(filter.isReady());
+        Random random = new Random(1234);
+        byte[][] hashes = new byte[1000][];
+        for ( int i = 0 ; i < hashes.length ; i++ ) {
+            hashes[i] = randomHash(random);
+            filter.add(hashes[i]);
+        }
+        // No false negatives.
+        for ( byte[] h : hashes )
+            assertTrue(filter.mightContain(h));
+        assertEquals(0, filter.getNegatives());
+        // Few false positives.
+        int positives = 0;
+        for ( int i = 0 ; i < 10000 ; i++ ) {
+            if ( filter.mightContain(randomHash(random)) )
+                positives++;
+        }
+        assertTrue("False positives: "+positives, positives < 200);
+    }
+
+    @Test public void filter_02() {
+        NodeTableNative nt = makeNodeTable();
+        NodeHashFilter filter = nt.getNodeHashFilter();
+        assertNotNull(filter);
+        NodeId id = nt.getAllocateNodeId(node(1));
+        assertEquals(id, nt.getNodeIdForNode(node(1)));
+        long x = filter.getNegatives() + filter.getFalsePositives();
+        assertEquals(NodeId.NodeDoesNotExist, nt.getNodeIdForNode(node(2)));
+        assertEquals(x+1, filter.getNegatives() + filter.getFalsePositives());
+    }
+
+    @Test public void filter_grow_01() {
+        NodeTableNative nt = makeNodeTable();
+        NodeHashFilter filter = nt.getNodeHashFilter();
+        int N = 10000;
+        NodeId[] ids = new NodeId[N];
+        for ( int i = 0 ; i < N ; i++ )
+            ids[i] = nt.getAllocateNodeId(node(i));
+        long numBits1 = filter.getNumBits();
+        // Rebuilt, larger, from the index on the way.
+        assertTrue(numBits1 >= 10L * N);
+        assertFalse(filter.isOverfull());
+        for ( int i = 0 ; i < N ; i++ )
+            assertEquals(ids[i], nt.getNodeIdForNode(node(i)));
+        for ( int i = N ; i < 2*N ; i++ )
+            assertEquals(NodeId.NodeDoesNotExist, nt.getNodeIdForNode(node(i)));
+        assertTrue(filter.getNegatives() > 0);
+    }
+
+    @Test public void filter_save_01() throws Exception {
+        Path dir = Files.createTempDirectory("filter");
+        String filename = dir.resolve("nodes.bloom").toString();
+        try {
+            Random random = new Random(99);
+            NodeHashFilter filter1 = new NodeHashFilter(10, filename);
+            filter1.init(emptyIndex());
+            byte[][] hashes = new byte[100][];
+            for ( int i = 0 ; i < hashes.length ; i++ ) {
+                hashes[i] = randomHash(random);
+                filter1.add(hashes[i]);
+            }
+            filter1.save();
+            assertTrue(Files.exists(dir.resolve("nodes.bloom")));
+
+            NodeHashFilter filter2 = new NodeHashFilter(10, filename);
+            // Not from the (empty) index.
+            filter2.init(emptyIndex());
+            assertEquals(filter1.getNumBits(), filter2.getNumBits());
+            assertEquals(100, filter2.getEntries());
+            for ( byte[] h : hashes )
+                assertTrue(filter2.mightContain(h));
+            // Used once.
+            assertFalse(Files.exists(dir.resolve("nodes.bloom")));
+
+            // Different settings - rebuild.
+            filter2.save();
+            NodeHashFilter filter3 = new NodeHashFilter(16, filename);
+            filter3.init(emptyIndex());
+            assertEquals(0, filter3.getEntries());
+        } finally {
+            Files.deleteIfExists(dir.resolve("nodes.bloom"));
+            Files.delete(dir);
+        }
+    }
+
+    private static Index emptyIndex() {
+        RecordFactory recordFactory = new RecordFactory(SystemTDB.LenNodeHash, SystemTDB.SizeOfNodeId);
+        return BuildTestLib.buildRangeIndex(null, recordFactory, null);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jena.tdb2.store.nodetable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.atlas.lib.cache.CacheInfo;
+import org.apache.jena.dboe.base.file.Location;
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+import org.apache.jena.tdb2.junit.BuildTestLib;
+import org.apache.jena.tdb2.params.StoreParams;
+import org.apache.jena.tdb2.params.StoreParamsBuilder;
+import org.apache.jena.tdb2.store.NodeId;
+import org.junit.Test;
+
+/** Node table with caches sized by memory rather than number of entries */
+public class TestNodeTableCacheWeighted extends AbstractTestNodeTable
+{
+    @Override
+    protected NodeTable createEmptyNodeTable()
+    {
+        StoreParams params =
+            StoreParamsBuilder.create()
+                .nodeCacheMB(1)
+                .nodeMissCacheSize(10).build();
+        return BuildTestLib.makeNodeTable(Location.mem(), "test", params);
+    }
+
+    private static NodeTableCache cache(NodeTable nt) {
+        while ( nt != null ) {
+            if ( nt instanceof NodeTableCache )
+                return (NodeTableCache)nt;
+            nt = nt.wrapped();
+        }
+        throw new AssertionError("No NodeTableCache");
+    }
+
+    @Test public void nodetable_cache_stats_01() {
+        NodeTable nt = createEmptyNodeTable();
+        NodeTableCache cache = cache(nt);
+        Node n = NodeFactoryExtra.parseNode("<http://example/s>");
+        NodeId id = nt.getAllocateNodeId(n);
+        for ( int i = 0 ; i < 5 ; i++ ) {
+            assertEquals(id, nt.getNodeIdForNode(n));
+            assertEquals(n, nt.getNodeForNodeId(id));
+        }
+        CacheInfo info1 = cache.getNodeToIdCacheInfo();
+        CacheInfo info2 = cache.getIdToNodeCacheInfo();
+        assertEquals(1, info1.cacheSize);
+        assertEquals(1, info2.cacheSize);
+        assertTrue(info1.hits >= 5);
+        assertTrue(info2.hits >= 5);
+    }
+
+    @Test public void nodetable_cache_stats_02() {
+        // Entry count caches also give statistics.
+        StoreParams params = StoreParamsBuilder.create().nodeId2NodeCacheSize(10).node2NodeIdCacheSize(10).build();
+        NodeTable nt = BuildTestLib.makeNodeTable(Location.mem(), "test", params);
+        NodeTableCache cache = cache(nt);
+        Node n = NodeFactoryExtra.parseNode("'abc'");
+        NodeId id = nt.getAllocateNodeId(n);
+        nt.getNodeForNodeId(id);
+        CacheInfo info = cache.getIdToNodeCacheInfo();
+        assertEquals(1, info.cacheSize);
+        assertEquals(1, info.hits);
+    }
+}
@@ -311,5 +311,34 @@ public class TestTupleIndexRecordDirect
         assertFalse(iter.hasNext());
    }
 
+    @Test public void TupleIndexRecordFindFrom_1()
+    {
+        TupleIndexRecord index = create("POS");
+        add(index, n1, n2, n1);
+        add(index, n1, n2, n3);
+        add(index, n2, n2, n4);
+        add(index, n1, n2, n5);
+        add(index, n1, n3, n3);
 
+        Tuple<NodeId> tuple2 = tuple(null, n2, null);
+        Iterator<Tuple<NodeId>> iter = index.findFrom(tuple2, n3);
+        assertNotNull(iter);
+        assertEquals(tuple(n1, n2, n3), iter.next());
+        assertEquals(tuple(n2, n2, n4), iter.next());
+        assertEquals(tuple(n1, n2, n5), iter.next());
+        assertFalse(iter.hasNext());
+    }
+
+    @Test public void TupleIndexRecordFindFrom_2()
+    {
+        TupleIndexRecord index = create("SPO");
+        add(index, n1, n2, n3);
+        // Bound slots are not leading slots of the index.
+        assertNull(index.findFrom(tuple(null, n2, null), n1));
+        assertNull(index.findFrom(tuple(n1, null, n3), n1));
+        // No slots bound.
+        assertNull(index.findFrom(tuple(null, null, null), n1));
+        Iterator<Tuple<NodeId>> iter = index.findFrom(tuple(n1, n2, null), n4);
+        assertFalse(iter.hasNext());
+    }
 }
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jena.tdb2.store.value;
+
+import static org.junit.Assert.*;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+import org.apache.jena.tdb2.store.NodeId;
+import org.apache.jena.tdb2.store.NodeIdInline;
+import org.apache.jena.tdb2.store.NodeIdType;
+import org.junit.Test;
+
+/** NodeId encoding version 2 */
+public class TestNodeIdInline2
+{
+    // Strings
+    @Test public void nodeId2_string_01()
+    { test("''"); }
+
+    @Test public void nodeId2_string_02()
+    { test("'abc'"); }
+
+    @Test public void nodeId2_string_03()
+    { test("'abcdefg'"); }
+
+    @Test public void nodeId2_string_04()
+    { testNoInline("'abcdefgh'"); }
+
+    @Test public void nodeId2_string_05()
+    // 6 bytes in UTF-8
+    { test("'نوا'"); }
+
+    @Test public void nodeId2_string_06()
+    // 8 bytes in UTF-8
+    { testNoInline("'نواف'"); }
+
+    @Test public void nodeId2_string_07()
+    { test("'abc'^^xsd:string", "'abc'"); }
+
+    @Test public void nodeId2_string_08()
+    { testNoInline(NodeFactory.createLiteral("a\u0000b")); }
+
+    @Test public void nodeId2_string_09()
+    // Unpaired surrogate
+    { testNoInline(NodeFactory.createLiteral("a\uD800")); }
+
+    @Test public void nodeId2_string_10() {
+        // Not in version 1.
+        Node n = NodeFactoryExtra.parseNode("'abc'");
+        assertNull(NodeIdInline.inline(n, NodeIdInline.Version1));
+        assertEquals(NodeIdType.XSD_SHORTSTRING, NodeIdInline.inline(n, NodeIdInline.Version2).type());
+    }
+
+    // Language tagged strings
+    @Test public void nodeId2_lang_01()
+    { test("'chat'@fr"); }
+
+    @Test public void nodeId2_lang_02()
+    { test("'abcde'@en"); }
+
+    @Test public void nodeId2_lang_03()
+    { testNoInline("'abcdef'@en"); }
+
+    @Test public void nodeId2_lang_04()
+    { test("'ab'@en-GB"); }
+
+    @Test public void nodeId2_lang_05()
+    // Case of the language tag is kept.
+    { test("'ab'@en-gb"); }
+
+    @Test public void nodeId2_lang_06()
+    { test("''@de"); }
+
+    @Test public void nodeId2_lang_07()
+    { testNoInline("'x'@en-12345678"); }
+
+    @Test public void nodeId2_lang_08() {
+        Node n1 = NodeFactoryExtra.parseNode("'ab'@en");
+        Node n2 = NodeFactoryExtra.parseNode("'ab'@EN");
+        assertNotEquals(inline(n1), inline(n2));
+    }
+
+    // Date/times the version 1 encoding does not cover.
+    @Test public void nodeId2_dateTime_01()
+    { test("'2020-01-02T10:11:12+00:01'^^xsd:dateTime"); }
+
+    @Test public void nodeId2_dateTime_02()
+    { test("'-0044-03-15T12:00:00Z'^^xsd:dateTime"); }
+
+    @Test public void nodeId2_dateTime_03()
+    { test("'8100-01-01T00:00:00'^^xsd:dateTime"); }
+
+    @Test public void nodeId2_dateTime_04()
+    { test("'2020-01-02T10:11:12-09:59'^^xsd:dateTimeStamp"); }
+
+    @Test public void nodeId2_dateTime_05()
+    // Sub-second and not quarter hour timezone.
+    { testNoInline("'2020-01-02T10:11:12.5+00:01'^^xsd:dateTime"); }
+
+    @Test public void nodeId2_dateTime_06() {
+        // Version 1 encoding used where possible.
+        Node n = NodeFactoryExtra.parseNode("'2020-01-02T10:11:12.123+05:30'^^xsd:dateTime");
+        assertEquals(NodeIdInline.inline(n, NodeIdInline.Version1), inline(n));
+        assertEquals(NodeIdType.XSD_DATETIME, inline(n).type());
+    }
+
+    @Test public void nodeId2_date_01()
+    { test("'-0500-06-01'^^xsd:date"); }
+
+    @Test public void nodeId2_date_02()
+    { test("'2000-06-01-00:01'^^xsd:date"); }
+
+    // Durations
+    @Test public void nodeId2_duration_01()
+    { test("'P1Y2M3DT4H5M6S'^^xsd:duration"); }
+
+    @Test public void nodeId2_duration_02()
+    { test("'-P1D'^^xsd:duration"); }
+
+    @Test public void nodeId2_duration_03()
+    { test("'PT36H'^^xsd:duration", "'P1DT12H'^^xsd:duration"); }
+
+    @Test public void nodeId2_duration_04()
+    { test("'PT1.5S'^^xsd:duration"); }
+
+    @Test public void nodeId2_duration_05()
+    { test("'P0D'^^xsd:duration", "'PT0S'^^xsd:duration"); }
+
+    @Test public void nodeId2_duration_06()
+    { testNoInline("'PT0.0001S'^^xsd:duration"); }
+
+    @Test public void nodeId2_duration_07()
+    { testNoInline("'P100000Y'^^xsd:duration"); }
+
+    @Test public void nodeId2_duration_08()
+    { test("'PT2M'^^xsd:dayTimeDuration"); }
+
+    @Test public void nodeId2_duration_09()
+    { test("'P14M'^^xsd:yearMonthDuration", "'P1Y2M'^^xsd:yearMonthDuration"); }
+
+    @Test public void nodeId2_duration_10()
+    { test("'P0Y'^^xsd:yearMonthDuration", "'P0M'^^xsd:yearMonthDuration"); }
+
+    @Test public void nodeId2_duration_11()
+    { testNoInline("'P1X'^^xsd:duration"); }
+
+    @Test public void nodeId2_other_01()
+    { testNoInline("<http://example/>"); }
+
+    @Test public void nodeId2_other_02()
+    // Version 1 types are unchanged.
+    { test("'3'^^xsd:int"); }
+
+    private static NodeId inline(Node n) {
+        return NodeIdInline.inline(n, NodeIdInline.Version2);
+    }
+
+    private void test(String x) { test(x, x); }
+
+    private void test(String x, String expected) {
+        test(x, NodeFactoryExtra.parseNode(expected));
+    }
+
+    private void testNoInline(String x) {
+        testNoInline(NodeFactoryExtra.parseNode(x));
+    }
+
+    private void testNoInline(Node n) {
+        NodeId nodeId = inline(n);
+        assertNull("Converted NodeId but expected no inline form: "+n, nodeId);
+    }
+
+    private void test(String x, Node correct) {
+        Node n = NodeFactoryExtra.parseNode(x);
+        NodeId nodeId = inline(n);
+        assertNotNull("Expected inlining: "+x, nodeId);
+        Node n2 = NodeId.extract(nodeId);
+        assertNotNull("Expected recovery", n2);
+        assertEquals("Not same term", correct, n2);
+        // Canonical forms encode the same.
+        assertEquals(nodeId, inline(n2));
+    }
+}
@@ -20,6 +20,10 @@ package org.apache.jena.tdb2.sys;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.apache.commons.io.FileUtils;
 import org.apache.jena.atlas.lib.FileOps;
 import org.apache.jena.dboe.base.file.Location;
@@ -190,6 +194,142 @@ public class TestDatabaseOps
         Txn.executeRead(dsgOld,  ()->assertNull(dsgOld.getDefaultGraph().getPrefixMapping().getNsPrefixURI("ex")));
     }
 
+    @Test public void compact_online_1() {
+        DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(dir);
+        DatasetGraphSwitchable dsgs = (DatasetGraphSwitchable)dsg;
+        DatasetGraph dsg1 = dsgs.get();
+        Location loc1 = ((DatasetGraphTDB)dsg1).getLocation();
+
+        Txn.executeWrite(dsg, ()-> {
+            dsg.add(quad2);
+            dsg.add(quad1);
+            dsg.getDefaultGraph().getPrefixMapping().setNsPrefix("ex", "http://example/");
+        });
+        CompactionProgress progress = DatabaseMgr.compactOnline(dsg);
+        assertEquals(CompactionProgress.Phase.FINISHED, progress.getPhase());
+        assertEquals(2, progress.getQuadsCopied());
+        assertEquals(0, progress.getLag());
+
+        assertFalse(StoreConnection.isSetup(loc1));
+        DatasetGraph dsg2 = dsgs.get();
+        assertNotEquals(dsg1, dsg2);
+        assertNotEquals(loc1, ((DatasetGraphTDB)dsg2).getLocation());
+
+        Txn.executeRead(dsg, ()-> {
+            assertTrue(dsg.contains(quad2));
+            assertTrue(dsg.contains(quad1));
+            assertEquals("http://example/", dsg.getDefaultGraph().getPrefixMapping().getNsPrefixURI("ex"));
+        });
+    }
+
+    @Test public void compact_online_2() throws Exception {
+        // Writers continue during the compaction and no committed change is lost.
+        DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(dir);
+        DatasetGraphSwitchable dsgs = (DatasetGraphSwitchable)dsg;
+        Txn.executeWrite(dsg, ()-> {
+            for ( int i = 0 ; i < 2000 ; i++ )
+                dsg.add(SSE.parseQuad("(_ <s> <p> "+i+")"));
+        });
+
+        AtomicBoolean stop = new AtomicBoolean(false);
+        List<Quad> committed = new ArrayList<>();
+        Thread writer = new Thread(()->{
+            int i = 0;
+            while ( ! stop.get() ) {
+                Quad q = SSE.parseQuad("(<g> <s> <q> "+i+")");
+                Quad q0 = SSE.parseQuad("(_ <s> <p> "+i+")");
+                // Use one database for the whole transaction; retry if it was switched.
+                DatasetGraph current = dsgs.get();
+                try {
+                    Txn.executeWrite(current, ()->{
+                        current.add(q);
+                        current.delete(q0);
+                    });
+                } catch (RuntimeException ex) {
+                    continue;
+                }
+                committed.add(q);
+                i++;
+            }
+        });
+        writer.start();
+        CompactionProgress progress = new CompactionProgress();
+        DatabaseMgr.compactOnline(dsg, progress);
+        stop.set(true);
+        writer.join();
+
+        assertEquals(CompactionProgress.Phase.FINISHED, progress.getPhase());
+        assertTrue(progress.getChangesApplied() <= progress.getChangesRecorded());
+        int n = committed.size();
+        Txn.executeRead(dsg, ()-> {
+            committed.forEach(q->assertTrue(dsg.contains(q)));
+            assertEquals(n, dsg.getGraph(SSE.parseNode("<g>")).size());
+            assertEquals(Math.max(0, 2000 - n), dsg.getDefaultGraph().size());
+        });
+    }
+
+    @Test public void compact_online_2a() throws Exception {
+        // As compact_online_2, with writers held up after a few changes.
+        long x = CompactOnline.MaxPendingChanges;
+        CompactOnline.MaxPendingChanges = 10;
+        try {
+            compact_online_2();
+        } finally {
+            CompactOnline.MaxPendingChanges = x;
+        }
+    }
+
+    @Test public void compact_online_3() {
+        // Compact, then compact again.
+        DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(dir);
+        Txn.executeWrite(dsg, ()->dsg.add(quad1));
+        DatabaseMgr.compactOnline(dsg);
+        Txn.executeWrite(dsg, ()->dsg.add(quad2));
+        DatabaseMgr.compactOnline(dsg);
+        Txn.executeRead(dsg, ()-> {
+            assertTrue(dsg.contains(quad1));
+            assertTrue(dsg.contains(quad2));
+        });
+    }
+
+    @Test public void gc_nodes_1() {
+        DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(dir);
+        DatasetGraphSwitchable dsgs = (DatasetGraphSwitchable)dsg;
+        Txn.executeWrite(dsg, ()-> {
+            for ( int i = 0 ; i < 10 ; i++ )
+                dsg.add(SSE.parseQuad("(_ <s> <p> 'value"+i+"')"));
+        });
+        Txn.executeWrite(dsg, ()-> {
+            for ( int i = 0 ; i < 5 ; i++ )
+                dsg.delete(SSE.parseQuad("(_ <s> <p> 'value"+i+"')"));
+        });
+        NodeTableGC.Report report1 = NodeTableGC.analyse((DatasetGraphTDB)dsgs.get());
+        assertEquals(12, report1.getNodes());
+        assertEquals(5, report1.getUnreferencedNodes());
+        assertTrue(report1.getUnreferencedBytes() > 0);
+        assertFalse(report1.isCollected());
+
+        NodeTableGC.Report report2 = DatabaseMgr.collectNodeTable(dsg, false);
+        assertTrue(report2.isCollected());
+        assertTrue(report2.getReclaimedBytes() > 0);
+
+        NodeTableGC.Report report3 = NodeTableGC.analyse((DatasetGraphTDB)dsgs.get());
+        assertEquals(7, report3.getNodes());
+        assertEquals(0, report3.getUnreferencedNodes());
+        Txn.executeRead(dsg, ()->assertEquals(5, dsg.getDefaultGraph().size()));
+    }
+
+    @Test public void gc_nodes_2() {
+        // Nothing to collect.
+        DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(dir);
+        Txn.executeWrite(dsg, ()->dsg.add(quad1));
+        DatasetGraph dsg1 = ((DatasetGraphSwitchable)dsg).get();
+        NodeTableGC.Report report = DatabaseMgr.collectNodeTable(dsg, true);
+        assertFalse(report.isCollected());
+        assertEquals(0, report.getReclaimedBytes());
+        assertSame(dsg1, ((DatasetGraphSwitchable)dsg).get());
+    }
+
     @Test public void backup_1() {
         DatasetGraph dsg = DatabaseMgr.connectDatasetGraph(dir);
         Txn.executeWrite(dsg, ()-> {
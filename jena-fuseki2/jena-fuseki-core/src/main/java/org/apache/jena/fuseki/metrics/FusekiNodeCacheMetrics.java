@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jena.fuseki.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import org.apache.jena.atlas.lib.cache.CacheInfo;
+import org.apache.jena.fuseki.server.DataAccessPoint;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.tdb2.store.DatasetGraphTDB;
+import org.apache.jena.tdb2.store.nodetable.NodeTable;
+import org.apache.jena.tdb2.store.nodetable.NodeTableCache;
+import org.apache.jena.tdb2.sys.TDBInternal;
+
+/**
+ * Statistics of the node table caches of a TDB2 dataset.
+ * <p>
+ * The node table is found each time the gauges are read because the storage of
+ * a TDB2 database is replaced when it is compacted.
+ */
+public class FusekiNodeCacheMetrics implements MeterBinder {
+
+    private DataAccessPoint dataAccessPoint;
+
+    public FusekiNodeCacheMetrics(DataAccessPoint dataAccessPoint) {
+        this.dataAccessPoint = dataAccessPoint;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        DatasetGraph dsg = dataAccessPoint.getDataService().getDataset();
+        if ( dsg == null || ! TDBInternal.isTDB2(dsg) )
+            return;
+        register(registry, "nodeToId", NodeTableCache::getNodeToIdCacheInfo);
+        register(registry, "idToNode", NodeTableCache::getIdToNodeCacheInfo);
+    }
+
+    private void register(MeterRegistry registry, String cacheName, Function<NodeTableCache, CacheInfo> stats) {
+        gauge(registry, "fuseki_tdb2_node_cache_hits", cacheName, stats, info->info.hits);
+        gauge(registry, "fuseki_tdb2_node_cache_misses", cacheName, stats, info->info.misses);
+        gauge(registry, "fuseki_tdb2_node_cache_evictions", cacheName, stats, info->info.evictions);
+        gauge(registry, "fuseki_tdb2_node_cache_size", cacheName, stats, info->info.cacheSize);
+    }
+
+    private void gauge(MeterRegistry registry, String name, String cacheName,
+                       Function<NodeTableCache, CacheInfo> stats, ToDoubleFunction<CacheInfo> value) {
+        Gauge.builder(name, dataAccessPoint, dap->{
+                CacheInfo info = cacheInfo(dap, stats);
+                return info == null ? Double.NaN : value.applyAsDouble(info);
+            })
+            .tags( new String[] {
+                    "dataset", dataAccessPoint.getName(),
+                    "cache", cacheName
+            } )
+            .register( registry );
+    }
+
+    private static CacheInfo cacheInfo(DataAccessPoint dap, Function<NodeTableCache, CacheInfo> stats) {
+        DatasetGraph dsg = dap.getDataService().getDataset();
+        if ( dsg == null )
+            return null;
+        DatasetGraphTDB dsgtdb = TDBInternal.getDatasetGraphTDB(dsg);
+        if ( dsgtdb == null )
+            return null;
+        NodeTable nodeTable = dsgtdb.getTripleTable().getNodeTupleTable().getNodeTable();
+        while ( nodeTable != null ) {
+            if ( nodeTable instanceof NodeTableCache )
+                return stats.apply((NodeTableCache)nodeTable);
+            nodeTable = nodeTable.wrapped();
+        }
+        return null;
+    }
+}
@@ -25,6 +25,7 @@ import org.apache.jena.atlas.lib.Registry;
 import org.apache.jena.atlas.logging.Log;
 import org.apache.jena.fuseki.Fuseki;
 import org.apache.jena.fuseki.FusekiException;
+import org.apache.jena.fuseki.metrics.FusekiNodeCacheMetrics;
 import org.apache.jena.fuseki.metrics.FusekiRequestsMetrics;
 
 /**
@@ -55,6 +56,7 @@ public class DataAccessPointRegistry extends Registry<String, DataAccessPoint>
         super.put(name, accessPt);
         if (meterRegistry != null) {
             new FusekiRequestsMetrics( accessPt ).bindTo( meterRegistry );
+            new FusekiNodeCacheMetrics( accessPt ).bindTo( meterRegistry );
         }
     }
 
@@ -30,6 +30,7 @@ import org.apache.jena.fuseki.servlets.ServletOps;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.core.DatasetGraphWrapper;
 import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.sys.CompactionProgress;
 import org.apache.jena.tdb2.sys.TDBInternal;
 import org.slf4j.Logger;
 
@@ -91,17 +92,24 @@ public class ActionCompact extends ActionAsyncTask
 
     static class CompactTask extends TaskBase {
         static private Logger log = Fuseki.compactLog;
+        // "?online=true" - do not hold off writers while copying.
+        private final boolean online;
 
         public CompactTask(HttpAction action) {
             super(action);
+            this.online = "true".equalsIgnoreCase(action.getRequest().getParameter("online"));
         }
 
         @Override
         public void run() {
             try {
                 DatasetGraph dsg = getTDB2(dataset);
-                log.info(format("[%d] >>>> Start compact %s", actionId, datasetName));
-                DatabaseMgr.compact(dsg);
+                log.info(format("[%d] >>>> Start compact %s%s", actionId, datasetName, online ? " (online)" : ""));
+                if ( online ) {
+                    CompactionProgress progress = DatabaseMgr.compactOnline(dsg);
+                    log.info(format("[%d] %s", actionId, progress));
+                } else
+                    DatabaseMgr.compact(dsg);
                 log.info(format("[%d] <<<< Finish compact %s", actionId, datasetName));
             } catch (Throwable ex) {
                 log.warn(format("[%d] **** Exception in compact", actionId), ex);